@@ -0,0 +1,24 @@
+package com.scienceminer.glutton;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Sample data shared by the benchmarks.
+ */
+public class BenchmarkFixtures {
+
+    /**
+     * A typical Crossref metadata record, as stored in the crossref database
+     */
+    public static String crossrefRecord() {
+        try (InputStream is = BenchmarkFixtures.class.getResourceAsStream("/crossref-record.json")) {
+            return IOUtils.toString(is, StandardCharsets.UTF_8).trim();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read the benchmark fixture", e);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.scienceminer.glutton.indexing;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.scienceminer.glutton.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creation of the object to be indexed from a Crossref record, from the already parsed JSON (as
+ * done by the loaders) and from the JSON string (as done when indexing the stored records).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetadataObjBuilderBenchmark {
+
+    private String record;
+    private JsonNode recordNode;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        record = BenchmarkFixtures.crossrefRecord();
+        recordNode = new ObjectMapper().readTree(record);
+    }
+
+    @Benchmark
+    public MetadataObj fromJsonNode() {
+        return MetadataObjBuilder.createMetadataObjFromJsonNode(recordNode);
+    }
+
+    @Benchmark
+    public MetadataObj fromJsonString() {
+        return MetadataObjBuilder.createMetadataObj(record);
+    }
+}
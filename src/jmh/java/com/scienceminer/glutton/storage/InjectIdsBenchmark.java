@@ -0,0 +1,75 @@
+package com.scienceminer.glutton.storage;
+
+import com.scienceminer.glutton.BenchmarkFixtures;
+import com.scienceminer.glutton.data.IdsGraphData;
+import com.scienceminer.glutton.data.IstexData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Injection of the identifiers and OA link in a Crossref record, from the separate identifier
+ * records and from the consolidated DOI identifiers record. The identifiers are given, the lookups
+ * themselves are not measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InjectIdsBenchmark {
+
+    private static final String DOI = "10.1016/s0014-5793(01)03313-0";
+    private static final String HAL_ID = "hal-01234567";
+    private static final String OA_LINK = "https://hal.science/hal-01234567/document";
+
+    private LookupEngine lookupEngine;
+    private String record;
+    private IstexData istexData;
+    private IdsGraphData ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        lookupEngine = new LookupEngine();
+        record = BenchmarkFixtures.crossrefRecord();
+
+        // PMID and PMC ID are present, so that the PMID database is not looked up
+        istexData = new IstexData();
+        istexData.setIstexId("E6CF7ECC9B002E3EA3EC590E7CC8DDBF38655723");
+        istexData.setArk(Collections.singletonList("ark:/67375/6H6-N49F7F6G-P"));
+        istexData.setPmid(Collections.singletonList("11749962"));
+        istexData.setPmc(Collections.singletonList("PMC1234567"));
+        istexData.setPii(Collections.singletonList("S0014-5793(01)03313-0"));
+
+        ids = new IdsGraphData();
+        ids.setIstexId(istexData.getIstexId());
+        ids.setArk(istexData.getArk().get(0));
+        ids.setPmid(istexData.getPmid().get(0));
+        ids.setPmcid(istexData.getPmc().get(0));
+        ids.setPii(istexData.getPii().get(0));
+        ids.setHalId(HAL_ID);
+        ids.setOaLink(OA_LINK);
+    }
+
+    @Benchmark
+    public String injectIdsAndOALink() {
+        return lookupEngine.injectIdsAndOALink(record, DOI, istexData, OA_LINK, HAL_ID);
+    }
+
+    @Benchmark
+    public String injectIdsGraph() {
+        return lookupEngine.injectIdsGraph(record, ids);
+    }
+}
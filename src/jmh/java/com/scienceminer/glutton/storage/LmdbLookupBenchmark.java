@@ -0,0 +1,142 @@
+package com.scienceminer.glutton.storage;
+
+import com.scienceminer.glutton.BenchmarkFixtures;
+import com.scienceminer.glutton.data.IdsGraphData;
+import com.scienceminer.glutton.utils.BinarySerialiser;
+import org.apache.commons.io.FileUtils;
+import org.lmdbjava.Dbi;
+import org.lmdbjava.DbiFlags;
+import org.lmdbjava.Env;
+import org.lmdbjava.EnvFlags;
+import org.lmdbjava.Txn;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.ByteBuffer.allocateDirect;
+
+/**
+ * Lookups/sec of a DOI -> OA url database: the former lookup code (a direct buffer allocated for 
+ * each lookup and FST serialized keys) against LmdbStore (thread-local buffers and UTF-8 keys).
+ * Both databases contain the same entries, with FST serialized values.
+ *
+ * The same generated fixture also contains a DOI -> Crossref record database and a DOI -> 
+ * identifiers database, for the point gets of the full lookup path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(4)
+public class LmdbLookupBenchmark {
+
+    @Param({"100000"})
+    public int entries;
+
+    private File path;
+    private Env<ByteBuffer> environment;
+    private Dbi<ByteBuffer> legacyDb;
+    private LmdbStore<String> store;
+    private LmdbStore<String> records;
+    private LmdbStore<IdsGraphData> ids;
+    private String[] dois;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        path = Files.createTempDirectory("glutton-jmh").toFile();
+        environment = Env.create()
+            .setMapSize(1024L * 1024L * 1024L)
+            .setMaxReaders(64)
+            .setMaxDbs(6)
+            .open(path, EnvFlags.MDB_NOTLS);
+
+        legacyDb = environment.openDbi("legacy", DbiFlags.MDB_CREATE);
+        store = LmdbStore.open(environment, "store", KeyEncoding.UTF8, ValueCodec.fst());
+        records = LmdbStore.open(environment, "records", KeyEncoding.UTF8, ValueCodec.jsonRecord(StorageFormat.JSON));
+        ids = LmdbStore.open(environment, "ids", KeyEncoding.UTF8, ValueCodec.idsGraph());
+        final String record = BenchmarkFixtures.crossrefRecord();
+
+        dois = new String[entries];
+        try (Txn<ByteBuffer> txn = environment.txnWrite()) {
+            for (int i = 0; i < entries; i++) {
+                dois[i] = "10.1000/journal." + (1900 + i % 120) + "." + i;
+                final String url = "https://example.org/pdf/" + i + ".pdf";
+
+                final ByteBuffer keyBuffer = allocateDirect(environment.getMaxKeySize());
+                keyBuffer.put(BinarySerialiser.serialize(dois[i])).flip();
+                final byte[] serializedValue = BinarySerialiser.serialize(url);
+                final ByteBuffer valBuffer = allocateDirect(serializedValue.length);
+                valBuffer.put(serializedValue).flip();
+                legacyDb.put(txn, keyBuffer, valBuffer);
+
+                store.put(txn, dois[i], url);
+                records.put(txn, dois[i], record);
+
+                final IdsGraphData idsGraphData = new IdsGraphData();
+                idsGraphData.setPmid(String.valueOf(10000000 + i));
+                idsGraphData.setPmcid("PMC" + (1000000 + i));
+                idsGraphData.setOaLink(url);
+                ids.put(txn, dois[i], idsGraphData);
+            }
+            txn.commit();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        environment.close();
+        FileUtils.deleteDirectory(path);
+    }
+
+    private String randomDoi() {
+        return dois[ThreadLocalRandom.current().nextInt(dois.length)];
+    }
+
+    @Benchmark
+    public String legacyLookup() {
+        final ByteBuffer keyBuffer = allocateDirect(environment.getMaxKeySize());
+        String record = null;
+        try (Txn<ByteBuffer> tx = environment.txnRead()) {
+            keyBuffer.put(BinarySerialiser.serialize(randomDoi())).flip();
+            ByteBuffer cachedData = legacyDb.get(tx, keyBuffer);
+            if (cachedData != null) {
+                record = (String) BinarySerialiser.deserialize(cachedData);
+            }
+        }
+        return record;
+    }
+
+    @Benchmark
+    public String storeLookup() {
+        return store.get(randomDoi());
+    }
+
+    @Benchmark
+    public String recordLookup() {
+        return records.get(randomDoi());
+    }
+
+    @Benchmark
+    public IdsGraphData idsGraphLookup() {
+        return ids.get(randomDoi());
+    }
+}
@@ -0,0 +1,80 @@
+package com.scienceminer.glutton.storage;
+
+import com.scienceminer.glutton.data.MatchingDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pairwise ranking of the candidates returned by the search engine against the metadata of a
+ * reference, and distance between a single candidate and the reference.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RankingBenchmark {
+
+    private static final String ATITLE = "Identification of a novel protein kinase which phosphorylates the cytoplasmic domain of the insulin receptor in adipocytes";
+    private static final String FIRST_AUTHOR = "Nakamura";
+    private static final String JTITLE = "FEBS Letters";
+    private static final String YEAR = "2001";
+
+    // number of candidates returned by the blocking step
+    @Param({"4", "10"})
+    public int candidates;
+
+    private LookupEngine lookupEngine;
+    private MatchingDocument referenceDocument;
+    private List<MatchingDocument> matchingDocuments;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        lookupEngine = new LookupEngine();
+
+        referenceDocument = new MatchingDocument();
+        referenceDocument.setATitle(ATITLE);
+        referenceDocument.setFirstAuthor(FIRST_AUTHOR);
+        referenceDocument.setJTitle(JTITLE);
+        referenceDocument.setYear(YEAR);
+
+        matchingDocuments = new ArrayList<>();
+        for (int i = 0; i < candidates; i++) {
+            MatchingDocument candidate = new MatchingDocument("crossref:10.1016/s0014-5793(01)0331" + i + "-0");
+            // the candidates get more and more distant from the reference
+            candidate.setATitle(i == 0 ? ATITLE : ATITLE.substring(0, ATITLE.length() - 4 * i) + " in muscle cells");
+            candidate.setFirstAuthor(i % 3 == 0 ? FIRST_AUTHOR : "Tanaka");
+            candidate.setJTitle(i % 2 == 0 ? JTITLE : "Biochemical Journal");
+            candidate.setAbbreviatedTitle(i % 2 == 0 ? "FEBS Lett." : "Biochem. J.");
+            candidate.setYear(String.valueOf(2001 - i % 2));
+            candidate.setBlockingScore(1.0 - 0.05 * i);
+            matchingDocuments.add(candidate);
+        }
+    }
+
+    @Benchmark
+    public List<MatchingDocument> pairwiseRanking() {
+        return lookupEngine.pairwiseRanking(ATITLE, FIRST_AUTHOR, JTITLE, null, YEAR, null, null, null, null,
+            matchingDocuments);
+    }
+
+    @Benchmark
+    public double recordDistance() {
+        return lookupEngine.recordDistance(matchingDocuments.get(matchingDocuments.size() - 1), referenceDocument);
+    }
+}
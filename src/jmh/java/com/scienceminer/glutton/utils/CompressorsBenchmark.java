@@ -0,0 +1,61 @@
+package com.scienceminer.glutton.utils;
+
+import com.scienceminer.glutton.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Snappy against gzip on a Crossref record, for compression and decompression.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressorsBenchmark {
+
+    private byte[] data;
+    private byte[] snappyData;
+    private byte[] gzipData;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        data = BenchmarkFixtures.crossrefRecord().getBytes(StandardCharsets.UTF_8);
+        snappyData = Compressors.compressSnappy(data);
+        gzipData = Compressors.compressGzip(data);
+    }
+
+    @Benchmark
+    public byte[] snappyCompress() throws IOException {
+        return Compressors.compressSnappy(data);
+    }
+
+    @Benchmark
+    public byte[] snappyDecompress() throws IOException {
+        return Compressors.decompressSnappy(snappyData);
+    }
+
+    @Benchmark
+    public byte[] gzipCompress() throws IOException {
+        return Compressors.compressGzip(data);
+    }
+
+    @Benchmark
+    public byte[] gzipDecompress() throws IOException {
+        return Compressors.decompressGzip(gzipData);
+    }
+}
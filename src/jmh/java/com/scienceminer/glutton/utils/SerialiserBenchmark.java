@@ -0,0 +1,87 @@
+package com.scienceminer.glutton.utils;
+
+import com.scienceminer.glutton.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization round trips of a Crossref record: FST (the legacy storage format, with and without
+ * Snappy) and the raw UTF-8 JSON record format. Deserialization reads from a direct buffer, as the
+ * values returned by LMDB.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerialiserBenchmark {
+
+    private String record;
+
+    private ByteBuffer fstRecord;
+    private ByteBuffer compressedFstRecord;
+    private ByteBuffer jsonRecord;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        record = BenchmarkFixtures.crossrefRecord();
+        fstRecord = toDirectBuffer(BinarySerialiser.serialize(record));
+        compressedFstRecord = toDirectBuffer(BinarySerialiser.serializeAndCompress(record));
+        jsonRecord = toDirectBuffer(JsonRecordSerialiser.serialize(record, true));
+    }
+
+    private static ByteBuffer toDirectBuffer(byte[] data) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+        buffer.put(data).flip();
+        return buffer;
+    }
+
+    @Benchmark
+    public byte[] fstSerialize() {
+        return BinarySerialiser.serialize(record);
+    }
+
+    @Benchmark
+    public Object fstDeserialize() {
+        return BinarySerialiser.deserialize(fstRecord.duplicate());
+    }
+
+    @Benchmark
+    public byte[] compressedFstSerialize() throws IOException {
+        return BinarySerialiser.serializeAndCompress(record);
+    }
+
+    @Benchmark
+    public Object compressedFstDeserialize() throws IOException {
+        return BinarySerialiser.deserializeAndDecompress(compressedFstRecord.duplicate());
+    }
+
+    @Benchmark
+    public Object compressedFstRoundTrip() throws IOException {
+        return BinarySerialiser.deserializeAndDecompress(BinarySerialiser.serializeAndCompress(record));
+    }
+
+    @Benchmark
+    public byte[] jsonRecordSerialize() throws IOException {
+        return JsonRecordSerialiser.serialize(record, true);
+    }
+
+    @Benchmark
+    public String jsonRecordDeserialize() throws IOException {
+        return JsonRecordSerialiser.deserialize(jsonRecord);
+    }
+}
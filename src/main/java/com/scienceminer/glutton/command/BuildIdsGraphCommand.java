@@ -0,0 +1,66 @@
+package com.scienceminer.glutton.command;
+
+import com.codahale.metrics.ConsoleReporter;
+import com.codahale.metrics.MetricRegistry;
+import com.scienceminer.glutton.configuration.LookupConfiguration;
+import com.scienceminer.glutton.storage.StorageEnvFactory;
+import com.scienceminer.glutton.storage.lookup.HALLookup;
+import com.scienceminer.glutton.storage.lookup.IdsGraphLookup;
+import com.scienceminer.glutton.storage.lookup.IstexIdsLookup;
+import com.scienceminer.glutton.storage.lookup.OALookup;
+import com.scienceminer.glutton.storage.lookup.PMIdsLookup;
+import io.dropwizard.core.cli.ConfiguredCommand;
+import io.dropwizard.core.setup.Bootstrap;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Build the database of all the identifiers of a DOI from the PMID, ISTEX, HAL and Unpaywall
+ * databases, to be launched again after any of these databases is loaded.
+ */
+public class BuildIdsGraphCommand extends ConfiguredCommand<LookupConfiguration> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BuildIdsGraphCommand.class);
+
+    public BuildIdsGraphCommand() {
+        super("ids_graph", "Build the consolidated DOI identifiers database");
+    }
+
+    @Override
+    public void configure(Subparser subparser) {
+        super.configure(subparser);
+    }
+
+    @Override
+    protected void run(Bootstrap bootstrap, Namespace namespace, LookupConfiguration configuration) throws Exception {
+
+        final MetricRegistry metrics = new MetricRegistry();
+
+        ConsoleReporter reporter = ConsoleReporter.forRegistry(metrics)
+                .convertRatesTo(TimeUnit.SECONDS)
+                .convertDurationsTo(TimeUnit.MILLISECONDS)
+                .build();
+
+        reporter.start(15, TimeUnit.SECONDS);
+
+        LOGGER.info("Building the DOI identifiers database");
+
+        StorageEnvFactory storageEnvFactory = new StorageEnvFactory(configuration);
+
+        long start = System.nanoTime();
+
+        IdsGraphLookup idsGraphLookup = IdsGraphLookup.getInstance(storageEnvFactory);
+        idsGraphLookup.build(PMIdsLookup.getInstance(storageEnvFactory),
+            new IstexIdsLookup(storageEnvFactory),
+            HALLookup.getInstance(storageEnvFactory),
+            new OALookup(storageEnvFactory),
+            metrics.meter("idsGraph"));
+        LOGGER.info("DOI identifiers database built with " + idsGraphLookup.getSize() + " records. ");
+
+        LOGGER.info("Finished in " +
+                TimeUnit.SECONDS.convert(System.nanoTime() - start, TimeUnit.NANOSECONDS) + " s");
+    }
+}
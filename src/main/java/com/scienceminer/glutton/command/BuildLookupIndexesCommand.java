@@ -0,0 +1,54 @@
+package com.scienceminer.glutton.command;
+
+import com.codahale.metrics.ConsoleReporter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.scienceminer.glutton.configuration.LookupConfiguration;
+import com.scienceminer.glutton.storage.StorageEnvFactory;
+import com.scienceminer.glutton.storage.lookup.CrossrefMetadataLookup;
+import io.dropwizard.core.cli.ConfiguredCommand;
+import io.dropwizard.core.setup.Bootstrap;
+import net.sourceforge.argparse4j.inf.Namespace;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Command for building the exact lookup indexes (title + first author, journal + volume + first page
+ * and journal dictionary) of the Crossref records already stored in the LMDB. The records loaded
+ * afterwards are added to the indexes when they are stored.
+ **/
+public class BuildLookupIndexesCommand extends ConfiguredCommand<LookupConfiguration> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BuildLookupIndexesCommand.class);
+
+    public BuildLookupIndexesCommand() {
+        super("lookup_indexes", "Build the exact lookup indexes of the Crossref records stored in the LMDB");
+    }
+
+    @Override
+    protected void run(Bootstrap bootstrap, Namespace namespace, LookupConfiguration configuration) throws Exception {
+
+        final MetricRegistry metrics = new MetricRegistry();
+
+        ConsoleReporter reporter = ConsoleReporter.forRegistry(metrics)
+                .convertRatesTo(TimeUnit.SECONDS)
+                .convertDurationsTo(TimeUnit.MILLISECONDS)
+                .build();
+
+        reporter.start(15, TimeUnit.SECONDS);
+
+        StorageEnvFactory storageEnvFactory = new StorageEnvFactory(configuration);
+        CrossrefMetadataLookup crossrefMetadataLookup = CrossrefMetadataLookup.getInstance(storageEnvFactory);
+
+        long start = System.nanoTime();
+        crossrefMetadataLookup.buildLookupIndexes(metrics.meter("lookupIndexing"));
+
+        LOGGER.info("Finished in " +
+                TimeUnit.SECONDS.convert(System.nanoTime() - start, TimeUnit.NANOSECONDS) + " s");
+        LOGGER.info("Lookup indexes completed");
+
+        System.exit(0);
+    }
+
+}
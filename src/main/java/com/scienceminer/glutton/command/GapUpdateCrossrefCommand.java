@@ -5,6 +5,7 @@ import com.codahale.metrics.Counter;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.scienceminer.glutton.configuration.LookupConfiguration;
+import com.scienceminer.glutton.indexing.ElasticSearchAsyncIndexer;
 import com.scienceminer.glutton.storage.StorageEnvFactory;
 import com.scienceminer.glutton.storage.lookup.CrossrefMetadataLookup;
 import com.scienceminer.glutton.utils.crossrefclient.IncrementalLoaderTask;
@@ -66,12 +67,15 @@ public class GapUpdateCrossrefCommand extends ConfiguredCommand<LookupConfigurat
         final Counter counterIndexedRecords = metrics.counter("crossref_gap_update_indexed_records");
         final Counter counterFailedIndexedRecords = metrics.counter("crossref_gap_update_failed_indexed_records");
 
+        ElasticSearchAsyncIndexer.getInstance(configuration).registerMetrics(metrics);
+
         System.out.println("Run gap update...");
 
         ExecutorService executor = Executors.newSingleThreadExecutor();
         Runnable task = new IncrementalLoaderTask(metadataLookup, 
                                                   metadataLookup.getLastIndexed(), 
                                                   configuration, 
+                                                  metrics, 
                                                   meter, 
                                                   counterInvalidRecords,
                                                   counterIndexedRecords,
@@ -5,12 +5,17 @@ import com.codahale.metrics.Counter;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.scienceminer.glutton.configuration.LookupConfiguration;
+import com.scienceminer.glutton.indexing.ElasticSearchAsyncIndexer;
 import com.scienceminer.glutton.indexing.ElasticSearchIndexer;
+import com.scienceminer.glutton.indexing.ParallelIndexer;
+import com.scienceminer.glutton.indexing.SolrIndexer;
 import com.scienceminer.glutton.storage.StorageEnvFactory;
 import com.scienceminer.glutton.storage.lookup.HALLookup;
 import com.scienceminer.glutton.storage.lookup.CrossrefMetadataLookup;
+import com.scienceminer.glutton.storage.lookup.search.SearchBackend;
 import io.dropwizard.core.cli.ConfiguredCommand;
 import io.dropwizard.core.setup.Bootstrap;
+import net.sourceforge.argparse4j.impl.Arguments;
 import net.sourceforge.argparse4j.inf.Namespace;
 import net.sourceforge.argparse4j.inf.Subparser;
 import org.apache.commons.lang3.StringUtils;
@@ -32,10 +37,31 @@ import java.util.concurrent.*;
 public class IndexCommand extends ConfiguredCommand<LookupConfiguration> {
     private static final Logger LOGGER = LoggerFactory.getLogger(IndexCommand.class);
 
+    public static final String PARALLEL = "index.parallel";
+    public static final String RESUME = "index.resume";
+
     public IndexCommand() {
         super("index", "Index in the selected search engine all the JSON metadata documents currently stored in the LMDB");
     }
 
+    @Override
+    public void configure(Subparser subparser) {
+        super.configure(subparser);
+
+        subparser.addArgument("--parallel")
+                .dest(PARALLEL)
+                .type(Integer.class)
+                .required(false)
+                .setDefault(1)
+                .help("The number of threads reading and converting the records, each thread reading a range " + 
+                    "of the keys. Default is 1, indexing the records sequentially.");
+
+        subparser.addArgument("--resume")
+                .dest(RESUME)
+                .action(Arguments.storeTrue())
+                .help("Resume an interrupted parallel indexing from its checkpoint, the existing index is kept.");
+    }
+
     @Override
     protected void run(Bootstrap bootstrap, Namespace namespace, LookupConfiguration configuration) throws Exception {
 
@@ -50,18 +76,36 @@ public class IndexCommand extends ConfiguredCommand<LookupConfiguration> {
 
         StorageEnvFactory storageEnvFactory = new StorageEnvFactory(configuration);
 
+        if (SearchBackend.SOLR.equalsIgnoreCase(configuration.getSearchEngine())) {
+            indexSolr(namespace, configuration, storageEnvFactory, metrics);
+            System.exit(0);
+        }
+
         ElasticSearchIndexer indexer = ElasticSearchIndexer.getInstance(configuration);
         final Meter meter = metrics.meter("metadataIndexing");
         final Counter counterIndexedRecords = metrics.counter("indexedRecords");
 
-        indexer.setupIndex(false);
+        final int parallel = namespace.getInt(PARALLEL);
+        final boolean resume = namespace.getBoolean(RESUME);
+
+        // a resumed indexing extends the existing index
+        indexer.setupIndex(resume);
         long start = System.nanoTime();
 
         HALLookup halLookup = HALLookup.getInstance(storageEnvFactory);
-        halLookup.indexMetadata(indexer, meter, counterIndexedRecords);
-
         CrossrefMetadataLookup crossrefMetadataLookup = CrossrefMetadataLookup.getInstance(storageEnvFactory);
-        crossrefMetadataLookup.indexMetadata(indexer, meter, counterIndexedRecords);
+
+        if (parallel > 1 || resume) {
+            final Counter counterFailedIndexedRecords = metrics.counter("failedIndexedRecords");
+            ElasticSearchAsyncIndexer.getInstance(configuration).registerMetrics(metrics);
+            ParallelIndexer parallelIndexer = new ParallelIndexer(configuration, parallel, resume);
+
+            halLookup.indexMetadata(parallelIndexer, meter, counterIndexedRecords, counterFailedIndexedRecords);
+            crossrefMetadataLookup.indexMetadata(parallelIndexer, meter, counterIndexedRecords, counterFailedIndexedRecords);
+        } else {
+            halLookup.indexMetadata(indexer, meter, counterIndexedRecords);
+            crossrefMetadataLookup.indexMetadata(indexer, meter, counterIndexedRecords);
+        }
 
         LOGGER.info("Number of metadata records processed: " + meter.getCount());
         LOGGER.info("Finished in " +
@@ -71,4 +115,31 @@ public class IndexCommand extends ConfiguredCommand<LookupConfiguration> {
         System.exit(0);
     }
 
+    /**
+     * The documents are sent to Solr by concurrent update streams, the --parallel option is then
+     * not used
+     */
+    private void indexSolr(Namespace namespace, LookupConfiguration configuration,
+                           StorageEnvFactory storageEnvFactory, MetricRegistry metrics) {
+        SolrIndexer indexer = SolrIndexer.getInstance(configuration);
+        final Meter meter = metrics.meter("metadataIndexing");
+        final Counter counterIndexedRecords = metrics.counter("indexedRecords");
+
+        indexer.setupIndex(namespace.getBoolean(RESUME));
+        long start = System.nanoTime();
+
+        HALLookup halLookup = HALLookup.getInstance(storageEnvFactory);
+        CrossrefMetadataLookup crossrefMetadataLookup = CrossrefMetadataLookup.getInstance(storageEnvFactory);
+
+        halLookup.indexMetadata(indexer, meter, counterIndexedRecords);
+        crossrefMetadataLookup.indexMetadata(indexer, meter, counterIndexedRecords);
+        indexer.commit();
+        indexer.close();
+
+        LOGGER.info("Number of metadata records processed: " + meter.getCount());
+        LOGGER.info("Finished in " +
+                TimeUnit.SECONDS.convert(System.nanoTime() - start, TimeUnit.NANOSECONDS) + " s");
+        LOGGER.info("Metadata record indexing task completed");
+    }
+
 }
\ No newline at end of file
@@ -4,36 +4,43 @@ import com.codahale.metrics.ConsoleReporter;
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
 
 import com.scienceminer.glutton.configuration.LookupConfiguration;
 import com.scienceminer.glutton.reader.CrossrefJsonReader;
-import com.scienceminer.glutton.reader.CrossrefJsonlReader;
-import com.scienceminer.glutton.reader.CrossrefJsonArrayReader;
+import com.scienceminer.glutton.reader.CrossrefReaderFactory;
 import com.scienceminer.glutton.storage.StorageEnvFactory;
+import com.scienceminer.glutton.storage.lookup.CrossrefLoadCheckpoint;
+import com.scienceminer.glutton.storage.lookup.CrossrefLoadingPipeline;
 import com.scienceminer.glutton.storage.lookup.CrossrefMetadataLookup;
+import com.scienceminer.glutton.indexing.ElasticSearchAsyncIndexer;
 import com.scienceminer.glutton.indexing.ElasticSearchIndexer;
 import io.dropwizard.core.cli.ConfiguredCommand;
 import io.dropwizard.core.setup.Bootstrap;
+import net.sourceforge.argparse4j.impl.Arguments;
 import net.sourceforge.argparse4j.inf.Namespace;
 import net.sourceforge.argparse4j.inf.Subparser;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
-import org.tukaani.xz.XZInputStream;
+import org.apache.commons.io.input.CloseShieldInputStream;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.FileInputStream;
-import java.io.File;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
-import java.util.zip.GZIPInputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,6 +58,8 @@ public class LoadCrossrefCommand extends ConfiguredCommand<LookupConfiguration>
     private static final Logger LOGGER = LoggerFactory.getLogger(LoadCrossrefCommand.class);
 
     public static final String CROSSREF_SOURCE = "crossref.dump";
+    public static final String CROSSREF_THREADS = "crossref.threads";
+    public static final String CROSSREF_RESUME = "crossref.resume";
 
     public LoadCrossrefCommand() {
         super("crossref", "Prepare the crossref database");
@@ -65,6 +74,20 @@ public class LoadCrossrefCommand extends ConfiguredCommand<LookupConfiguration>
                 .type(String.class)
                 .required(true)
                 .help("The path to the source file of crossref dump.");
+
+        subparser.addArgument("--threads")
+                .dest(CROSSREF_THREADS)
+                .type(Integer.class)
+                .required(false)
+                .setDefault(0)
+                .help("The number of threads parsing the files of a crossref dump directory, " +
+                    "by default the number of available processors minus one.");
+
+        subparser.addArgument("--resume")
+                .dest(CROSSREF_RESUME)
+                .action(Arguments.storeTrue())
+                .help("Resume an interrupted loading of the same dump, the files and tar entries " +
+                    "already loaded are skipped.");
     }
 
     @Override
@@ -92,101 +115,54 @@ public class LoadCrossrefCommand extends ConfiguredCommand<LookupConfiguration>
         final Counter counterFailedIndexedRecords = metrics.counter("crossref_failed_indexed_records");
 
         ElasticSearchIndexer.getInstance(configuration).setupIndex(true);
+        ElasticSearchAsyncIndexer.getInstance(configuration).registerMetrics(metrics);
         
+        int threads = namespace.getInt(CROSSREF_THREADS);
+        if (threads <= 0)
+            threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+        final List<CrossrefLoadingPipeline.DumpFile> dumpFiles;
         if (Files.isDirectory(crossrefFilePath)) {
+            // the files are parsed in parallel, each file is then decompressed by a single thread
             try (Stream<Path> stream = Files.walk(crossrefFilePath, 1)) {
-                CrossrefJsonArrayReader readerJsonArray = new CrossrefJsonArrayReader(configuration);
-                CrossrefJsonlReader readerJsonl = new CrossrefJsonlReader(configuration);
-
-                stream.filter(path -> Files.isRegularFile(path) && Files.isReadable(path)
+                dumpFiles = stream.filter(path -> Files.isRegularFile(path) && Files.isReadable(path)
                         && (StringUtils.endsWithIgnoreCase(path.getFileName().toString(), ".gz") ||
                         StringUtils.endsWithIgnoreCase(path.getFileName().toString(), ".xz") ||
                         StringUtils.endsWithIgnoreCase(path.getFileName().toString(), ".json")))
-                        .forEach(dumpFile -> {
-                                CrossrefJsonReader reader = null;
-                                try (InputStream inputStreamCrossref = selectStream(dumpFile)) {
-                                    if (CrossrefJsonReader.isJsonArray(inputStreamCrossref))
-                                        reader = readerJsonArray;
-                                    else
-                                        reader = readerJsonl;
-                                } catch (IOException e) {
-                                    LOGGER.error("Error while pre-processing " + dumpFile.toAbsolutePath(), e);
-                                }
-
-                                if (reader != null) {
-                                    try (InputStream inputStreamCrossref = selectStream(dumpFile)) {
-                                        metadataLookup.loadFromFile(inputStreamCrossref, 
-                                            reader, 
-                                            meter, 
-                                            counterInvalidRecords, 
-                                            counterIndexedRecords,
-                                            counterFailedIndexedRecords);
-                                        // possibly update with the lastest indexed date obtained from this file
-                                        if (metadataLookup.getLastIndexed() == null || 
-                                            metadataLookup.getLastIndexed().isBefore(reader.getLastIndexed()))
-                                            metadataLookup.setLastIndexed(reader.getLastIndexed());
-                                    } catch (Exception e) {
-                                        LOGGER.error("Error while processing " + dumpFile.toAbsolutePath(), e);
-                                    }
-                                }
-                            }
-                        );
+                        .map(dumpFile -> new CrossrefDumpFile(dumpFile, configuration, 1))
+                        .collect(Collectors.toList());
             }
-        } else if (StringUtils.endsWithIgnoreCase(crossrefFilePath.getFileName().toString(), ".tar.gz")) {
-            // this is a typical metadata plus single tar file, with json array files in it
-            if (Files.isRegularFile(crossrefFilePath) && Files.isReadable(crossrefFilePath)){
-                TarArchiveInputStream tarInput = 
-                    new TarArchiveInputStream(new GZIPInputStream(Files.newInputStream(crossrefFilePath)));
-                TarArchiveEntry currentEntry = tarInput.getNextTarEntry();
-
-                while (currentEntry != null) {
-                    //System.out.println("processing file " + currentEntry.getName());
-                    try {
-                        CrossrefJsonArrayReader reader = new CrossrefJsonArrayReader(configuration);
-                        metadataLookup.loadFromFile(tarInput, 
-                            reader, 
-                            meter, 
-                            counterInvalidRecords, 
-                            counterIndexedRecords,
-                            counterFailedIndexedRecords);
-                        // possibly update with the lastest indexed date obtained from this file
-                        if (metadataLookup.getLastIndexed() == null || 
-                            metadataLookup.getLastIndexed().isBefore(reader.getLastIndexed()))
-                            metadataLookup.setLastIndexed(reader.getLastIndexed());
-                    } catch (Exception e) {
-                        LOGGER.error("Error while processing " + currentEntry.getName(), e);
-                    }
-                    currentEntry = tarInput.getNextTarEntry();
-                }
-                tarInput.close();
-            } else
-                LOGGER.error("Crossref snapshot file is not found");
-
+        } else if (Files.isRegularFile(crossrefFilePath) && Files.isReadable(crossrefFilePath)) {
+            // a single file, possibly a tar archive, which can be decompressed in parallel when it 
+            // is a multi-block xz file
+            dumpFiles = Collections.singletonList(new CrossrefDumpFile(crossrefFilePath, configuration, threads));
         } else {
-            CrossrefJsonReader reader = null;
-            try (InputStream inputStreamCrossref = selectStream(crossrefFilePath)) {
-                if (CrossrefJsonReader.isJsonArray(inputStreamCrossref))
-                    reader = new CrossrefJsonArrayReader(configuration);
-                else
-                    reader = new CrossrefJsonlReader(configuration);
-            } catch (IOException e) {
-                LOGGER.error("Error while pre-processing " + crossrefFilePath.toAbsolutePath(), e);
-            }
+            LOGGER.error("Crossref dump file is not found");
+            dumpFiles = Collections.emptyList();
+        }
 
-            if (reader != null) {
-                try (InputStream inputStreamCrossref = selectStream(crossrefFilePath)) {
-                    metadataLookup.loadFromFile(inputStreamCrossref, 
-                        reader, 
-                        meter, 
-                        counterInvalidRecords, 
-                        counterIndexedRecords,
-                        counterFailedIndexedRecords);
-                    metadataLookup.setLastIndexed(reader.getLastIndexed());
-                } catch (Exception e) {
-                    LOGGER.error("Error while processing " + crossrefFilePath, e);
-                }
-            }
+        // the checkpoint of a previous run is discarded, unless the loading is resumed
+        CrossrefLoadCheckpoint checkpoint = null;
+        if (namespace.getBoolean(CROSSREF_RESUME)) {
+            checkpoint = metadataLookup.getLoadCheckpoint();
+            if (checkpoint == null)
+                LOGGER.info("No interrupted loading to resume, loading the whole dump");
+            else
+                LOGGER.info("Resuming the loading, " + checkpoint.getCompletedFileCount() + " files already loaded");
+        } else {
+            metadataLookup.clearLoadCheckpoint();
         }
+        if (checkpoint == null)
+            checkpoint = new CrossrefLoadCheckpoint();
+
+        new CrossrefLoadingPipeline(metadataLookup,
+            configuration,
+            Math.min(threads, Math.max(1, dumpFiles.size())),
+            meter,
+            counterInvalidRecords,
+            counterIndexedRecords,
+            counterFailedIndexedRecords).load(dumpFiles, checkpoint);
+
         LOGGER.info("Number of Crossref records processed: " + meter.getCount());
         LOGGER.info("Crossref lookup size " + metadataLookup.getSize() + " records.");
         if (metadataLookup.getLastIndexed() != null) {
@@ -198,18 +174,82 @@ public class LoadCrossrefCommand extends ConfiguredCommand<LookupConfiguration>
         System.exit(0);
     }
 
-    private InputStream selectStream(Path crossrefFilePath) throws IOException {
-        return selectStream(crossrefFilePath.toFile());
-    }
+    /**
+     * A file of a crossref dump, the format (tar archive, jsonl or json array) is detected for 
+     * each file, and for each file of a tar archive, from the same decompressed stream. A new 
+     * reader is used for each file, as the readers keep the latest indexed date
+     */
+    private static class CrossrefDumpFile implements CrossrefLoadingPipeline.DumpFile {
+        private final Path path;
+        private final LookupConfiguration configuration;
+        private final int xzThreads;
+
+        CrossrefDumpFile(Path path, LookupConfiguration configuration, int xzThreads) {
+            this.path = path;
+            this.configuration = configuration;
+            this.xzThreads = xzThreads;
+        }
 
-    private InputStream selectStream(File crossrefFile) throws IOException {
-        InputStream inputStreamCrossref = new FileInputStream(crossrefFile);
-        if (crossrefFile.getName().endsWith(".xz")) {
-            inputStreamCrossref = new XZInputStream(inputStreamCrossref);
-        } else if (crossrefFile.getName().endsWith(".gz")) {
-            inputStreamCrossref = new GZIPInputStream(inputStreamCrossref);
-        } 
-        return inputStreamCrossref;
-    }
+        /**
+         * The file name identifies the file in the checkpoint, so that a dump directory can be 
+         * moved before resuming its loading
+         */
+        @Override
+        public String getName() {
+            return path.getFileName().toString();
+        }
+
+        @Override
+        public LocalDateTime load(int firstEntry, 
+                                  Counter counterInvalidRecords, 
+                                  Consumer<JsonNode> closure, 
+                                  BiConsumer<Integer, LocalDateTime> entryCompleted) throws IOException {
+            try (BufferedInputStream inputStreamCrossref = CrossrefReaderFactory.open(path, xzThreads)) {
+                CrossrefReaderFactory.Format format = CrossrefReaderFactory.detectFormat(inputStreamCrossref);
+                if (format != CrossrefReaderFactory.Format.TAR) {
+                    CrossrefJsonReader reader = CrossrefReaderFactory.newReader(format, configuration);
+                    reader.load(inputStreamCrossref, counterInvalidRecords, closure);
+                    return reader.getLastIndexed();
+                }
 
+                // this is typically a metadata plus snapshot, with json array files in it
+                LocalDateTime lastIndexed = null;
+                int failedEntries = 0;
+                TarArchiveInputStream tarInput = new TarArchiveInputStream(inputStreamCrossref);
+                TarArchiveEntry currentEntry;
+                int entry = 0;
+                while ((currentEntry = tarInput.getNextTarEntry()) != null) {
+                    if (!currentEntry.isFile())
+                        continue;
+                    // the entries loaded by a previous run are decompressed but not parsed
+                    if (entry++ < firstEntry)
+                        continue;
+                    LocalDateTime entryLastIndexed = null;
+                    try {
+                        // the readers close their input, but the tar stream is still needed
+                        BufferedInputStream entryInput = new BufferedInputStream(new CloseShieldInputStream(tarInput));
+                        CrossrefJsonReader reader = 
+                            CrossrefReaderFactory.newReader(CrossrefReaderFactory.detectFormat(entryInput), configuration);
+                        reader.load(entryInput, counterInvalidRecords, closure);
+                        entryLastIndexed = reader.getLastIndexed();
+                        // possibly update with the lastest indexed date obtained from this file
+                        if (entryLastIndexed != null && 
+                            (lastIndexed == null || lastIndexed.isBefore(entryLastIndexed)))
+                            lastIndexed = entryLastIndexed;
+                    } catch (Exception e) {
+                        LOGGER.error("Error while processing " + currentEntry.getName(), e);
+                        failedEntries++;
+                        continue;
+                    }
+                    // the completed entries are counted from the start of the archive, the entries 
+                    // following a failed one are loaded but not completed, to be parsed again by a resume
+                    if (failedEntries == 0)
+                        entryCompleted.accept(entry, entryLastIndexed);
+                }
+                if (failedEntries > 0)
+                    throw new IOException(failedEntries + " entries of " + path + " cannot be loaded");
+                return lastIndexed;
+            }
+        }
+    }
 }
@@ -8,6 +8,7 @@ import com.codahale.metrics.MetricRegistry;
 import com.scienceminer.glutton.configuration.LookupConfiguration;
 import com.scienceminer.glutton.storage.StorageEnvFactory;
 import com.scienceminer.glutton.storage.lookup.HALLookup;
+import com.scienceminer.glutton.indexing.ElasticSearchAsyncIndexer;
 import com.scienceminer.glutton.indexing.ElasticSearchIndexer;
 import io.dropwizard.core.cli.ConfiguredCommand;
 import io.dropwizard.core.setup.Bootstrap;
@@ -62,6 +63,7 @@ public class LoadHALCommand extends ConfiguredCommand<LookupConfiguration> {
         final Counter counterFailedIndexedRecords = metrics.counter("HAL_failed_indexed_records");
 
         ElasticSearchIndexer.getInstance(configuration).setupIndex(true);
+        ElasticSearchAsyncIndexer.getInstance(configuration).registerMetrics(metrics);
 
         halLookup.loadFromHALAPI(meter, counterInvalidRecords, counterIndexedRecords, counterFailedIndexedRecords);
 
@@ -0,0 +1,70 @@
+package com.scienceminer.glutton.command;
+
+import com.codahale.metrics.ConsoleReporter;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.scienceminer.glutton.configuration.LookupConfiguration;
+import com.scienceminer.glutton.indexing.LuceneIndexer;
+import com.scienceminer.glutton.storage.StorageEnvFactory;
+import com.scienceminer.glutton.storage.lookup.CrossrefMetadataLookup;
+import com.scienceminer.glutton.storage.lookup.HALLookup;
+import io.dropwizard.core.cli.ConfiguredCommand;
+import io.dropwizard.core.setup.Bootstrap;
+import net.sourceforge.argparse4j.inf.Namespace;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Command for building the embedded Lucene index from all the JSON metadata documents stored in
+ * the LMDB, used for the blocking when the search engine is "lucene". The existing index is
+ * replaced.
+ **/
+public class LuceneIndexCommand extends ConfiguredCommand<LookupConfiguration> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LuceneIndexCommand.class);
+
+    public LuceneIndexCommand() {
+        super("lucene_index", "Build the embedded Lucene index from all the JSON metadata documents currently stored in the LMDB");
+    }
+
+    @Override
+    protected void run(Bootstrap bootstrap, Namespace namespace, LookupConfiguration configuration) throws Exception {
+
+        final MetricRegistry metrics = new MetricRegistry();
+
+        ConsoleReporter reporter = ConsoleReporter.forRegistry(metrics)
+                .convertRatesTo(TimeUnit.SECONDS)
+                .convertDurationsTo(TimeUnit.MILLISECONDS)
+                .build();
+
+        reporter.start(15, TimeUnit.SECONDS);
+
+        StorageEnvFactory storageEnvFactory = new StorageEnvFactory(configuration);
+
+        final Meter meter = metrics.meter("metadataIndexing");
+        final Counter counterIndexedRecords = metrics.counter("indexedRecords");
+
+        long start = System.nanoTime();
+
+        HALLookup halLookup = HALLookup.getInstance(storageEnvFactory);
+        CrossrefMetadataLookup crossrefMetadataLookup = CrossrefMetadataLookup.getInstance(storageEnvFactory);
+
+        LuceneIndexer indexer = new LuceneIndexer(configuration);
+        try {
+            halLookup.indexMetadata(indexer, meter, counterIndexedRecords);
+            crossrefMetadataLookup.indexMetadata(indexer, meter, counterIndexedRecords);
+        } finally {
+            indexer.close();
+        }
+
+        LOGGER.info("Number of metadata records indexed: " + counterIndexedRecords.getCount());
+        LOGGER.info("Finished in " +
+                TimeUnit.SECONDS.convert(System.nanoTime() - start, TimeUnit.NANOSECONDS) + " s");
+        LOGGER.info("Lucene index built in " + configuration.getLucene().getPath());
+
+        System.exit(0);
+    }
+
+}
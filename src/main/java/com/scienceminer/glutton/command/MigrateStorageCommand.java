@@ -0,0 +1,174 @@
+package com.scienceminer.glutton.command;
+
+import com.codahale.metrics.ConsoleReporter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.scienceminer.glutton.configuration.LookupConfiguration;
+import com.scienceminer.glutton.storage.KeyEncoding;
+import com.scienceminer.glutton.storage.StorageEnvFactory;
+import com.scienceminer.glutton.storage.StorageFormat;
+import com.scienceminer.glutton.storage.StorageMigrator;
+import com.scienceminer.glutton.storage.lookup.CrossrefMetadataLookup;
+import com.scienceminer.glutton.storage.lookup.HALLookup;
+import com.scienceminer.glutton.storage.lookup.IstexIdsLookup;
+import com.scienceminer.glutton.storage.lookup.OALookup;
+import com.scienceminer.glutton.storage.lookup.PMIdsLookup;
+import io.dropwizard.core.cli.ConfiguredCommand;
+import io.dropwizard.core.setup.Bootstrap;
+import net.sourceforge.argparse4j.impl.Arguments;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.lmdbjava.Env;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Command for rewriting the JSON records stored in the LMDB in another storage format, by default 
+ * the format indicated in the configuration for each environment.
+ *
+ * With --keys, the environments using the legacy FST key encoding are instead copied into new
+ * environments with plain UTF-8 keys, the former environments being kept as backup.
+ **/
+public class MigrateStorageCommand extends ConfiguredCommand<LookupConfiguration> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MigrateStorageCommand.class);
+
+    public static final String ENV = "env";
+    public static final String FORMAT = "format";
+    public static final String KEYS = "keys";
+
+    private static final List<String> ALL_ENVS = Arrays.asList(CrossrefMetadataLookup.ENV_NAME, 
+        HALLookup.ENV_NAME, OALookup.ENV_NAME, PMIdsLookup.ENV_NAME, IstexIdsLookup.ENV_NAME);
+
+    public MigrateStorageCommand() {
+        super("migrate_storage", "Rewrite the JSON metadata records stored in the LMDB in the configured storage format");
+    }
+
+    @Override
+    public void configure(Subparser subparser) {
+        super.configure(subparser);
+
+        subparser.addArgument("--env")
+                .dest(ENV)
+                .type(String.class)
+                .required(false)
+                .setDefault("all")
+                .choices(CrossrefMetadataLookup.ENV_NAME, HALLookup.ENV_NAME, OALookup.ENV_NAME, 
+                    PMIdsLookup.ENV_NAME, IstexIdsLookup.ENV_NAME, "all")
+                .help("The storage environment to migrate, default is all. Only crossref and hal " + 
+                    "environments contain JSON records.");
+
+        subparser.addArgument("--format")
+                .dest(FORMAT)
+                .type(String.class)
+                .required(false)
+                .help("The target storage format (json or fst), default is the format indicated in the configuration");
+
+        subparser.addArgument("--keys")
+                .dest(KEYS)
+                .action(Arguments.storeTrue())
+                .help("Convert the keys of the environments to plain UTF-8 keys instead of migrating the JSON records. " + 
+                    "The LMDB must not be in use by the service during the conversion.");
+    }
+
+    @Override
+    protected void run(Bootstrap bootstrap, Namespace namespace, LookupConfiguration configuration) throws Exception {
+
+        final MetricRegistry metrics = new MetricRegistry();
+
+        ConsoleReporter reporter = ConsoleReporter.forRegistry(metrics)
+                .convertRatesTo(TimeUnit.SECONDS)
+                .convertDurationsTo(TimeUnit.MILLISECONDS)
+                .build();
+
+        reporter.start(15, TimeUnit.SECONDS);
+
+        StorageEnvFactory storageEnvFactory = new StorageEnvFactory(configuration);
+
+        final String env = namespace.get(ENV);
+        final String format = namespace.get(FORMAT);
+        final Meter meter = metrics.meter("migratedRecords");
+
+        long start = System.nanoTime();
+
+        if (namespace.getBoolean(KEYS)) {
+            for (String envName : ALL_ENVS) {
+                if (env.equals("all") || env.equals(envName))
+                    migrateKeys(storageEnvFactory, configuration, envName, meter);
+            }
+            LOGGER.info("Finished in " +
+                TimeUnit.SECONDS.convert(System.nanoTime() - start, TimeUnit.NANOSECONDS) + " s");
+            return;
+        }
+
+        if (env.equals("all") || env.equals(CrossrefMetadataLookup.ENV_NAME)) {
+            StorageFormat targetFormat = format != null ? StorageFormat.fromName(format) : 
+                storageEnvFactory.getStorageFormat(CrossrefMetadataLookup.ENV_NAME);
+            LOGGER.info("Migrating Crossref records to " + targetFormat + " format");
+            CrossrefMetadataLookup.getInstance(storageEnvFactory).migrateStorage(targetFormat, meter);
+        }
+
+        if (env.equals("all") || env.equals(HALLookup.ENV_NAME)) {
+            StorageFormat targetFormat = format != null ? StorageFormat.fromName(format) : 
+                storageEnvFactory.getStorageFormat(HALLookup.ENV_NAME);
+            LOGGER.info("Migrating HAL records to " + targetFormat + " format");
+            HALLookup.getInstance(storageEnvFactory).migrateStorage(targetFormat, meter);
+        }
+
+        LOGGER.info("Number of records processed: " + meter.getCount());
+        LOGGER.info("Finished in " +
+                TimeUnit.SECONDS.convert(System.nanoTime() - start, TimeUnit.NANOSECONDS) + " s");
+    }
+
+    /**
+     * Copy the environment into a new environment with UTF-8 keys, then swap the directories and
+     * keep the former environment as backup
+     */
+    private void migrateKeys(StorageEnvFactory storageEnvFactory, 
+                             LookupConfiguration configuration, 
+                             String envName, 
+                             Meter meter) throws Exception {
+        final File envPath = new File(configuration.getStorage() + File.separator + envName);
+        if (!new File(envPath, "data.mdb").exists()) {
+            LOGGER.info("No " + envName + " environment to convert");
+            return;
+        }
+
+        final Env<ByteBuffer> source = storageEnvFactory.getEnv(envName);
+        final KeyEncoding sourceEncoding = storageEnvFactory.getKeyEncoding(source);
+        if (sourceEncoding == KeyEncoding.UTF8) {
+            LOGGER.info("The " + envName + " environment already uses UTF-8 keys");
+            source.close();
+            return;
+        }
+
+        final String targetName = envName + "-utf8";
+        final File targetPath = new File(configuration.getStorage() + File.separator + targetName);
+        final File backupPath = new File(configuration.getStorage() + File.separator + envName + "-fst.bak");
+        if (targetPath.exists() || backupPath.exists()) {
+            source.close();
+            throw new IllegalStateException("Remove " + targetPath + " and " + backupPath + " before converting " + envName);
+        }
+
+        LOGGER.info("Converting the keys of the " + envName + " environment to UTF-8");
+        final Env<ByteBuffer> target = storageEnvFactory.getEnv(targetName);
+        try {
+            StorageMigrator.migrateKeys(source, sourceEncoding, target, storageEnvFactory.getKeyEncoding(target), 
+                configuration.getStoringBatchSize(), meter);
+        } finally {
+            target.close();
+            source.close();
+        }
+
+        Files.move(envPath.toPath(), backupPath.toPath());
+        Files.move(targetPath.toPath(), envPath.toPath());
+        LOGGER.info("The former " + envName + " environment is kept in " + backupPath + ", it can be removed");
+    }
+}
@@ -7,7 +7,9 @@ import io.dropwizard.core.Configuration;
 
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.io.File;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
@@ -20,6 +22,9 @@ public class LookupConfiguration extends Configuration {
 
     private String storage;
 
+    // format of the stored JSON records per storage environment (e.g. crossref, hal)
+    private Map<String, String> storageFormats = new HashMap<>();
+
     private String version;
 
     private Source source;
@@ -30,10 +35,20 @@ public class LookupConfiguration extends Configuration {
 
     private Solr solr;
 
+    private Lucene lucene;
+
     private Crossref crossref;
 
+    private Cache cache;
+
+    private Admission admission;
+
+    private KeyFilters keyFilters;
+
     private String grobidHost;
 
+    private Grobid grobid;
+
     private ProxyParameters proxy;
 
     private String timeZone;
@@ -66,6 +81,16 @@ public class LookupConfiguration extends Configuration {
 
     private int maxAcceptedRequests;
 
+    // "default" for processing the lookup requests in the HTTP server threads, "virtual" for 
+    // processing them on virtual threads, or on a pool of requestCarrierThreads threads when 
+    // virtual threads are not available (0 for the number of available processors)
+    private String requestExecution = "default";
+    private int requestCarrierThreads = 0;
+
+    // batch lookup
+    private int maxBatchSize = 10000;
+    private int batchConcurrency = 64;
+
     public String getStorage() {
         return storage;
     }
@@ -76,6 +101,14 @@ public class LookupConfiguration extends Configuration {
         this.storage = storage;
     }
 
+    public Map<String, String> getStorageFormats() {
+        return storageFormats;
+    }
+
+    public void setStorageFormats(Map<String, String> storageFormats) {
+        this.storageFormats = storageFormats;
+    }
+
     public String getVersion() {
         return version;
     }
@@ -88,7 +121,7 @@ public class LookupConfiguration extends Configuration {
         return searchEngine;
     }
 
-    public void setSearchEngine(String searchEnginesearchEngine) {
+    public void setSearchEngine(String searchEngine) {
         this.searchEngine = searchEngine;
     }
 
@@ -104,10 +137,25 @@ public class LookupConfiguration extends Configuration {
         return solr;
     }
 
+    public Lucene getLucene() {
+        // the section is optional, with default values
+        if (lucene == null)
+            lucene = new Lucene();
+        return lucene;
+    }
+
+    public void setLucene(Lucene lucene) {
+        this.lucene = lucene;
+    }
+
     public Crossref getCrossref() {
         return crossref;
     }
 
+    public Cache getCache() {
+        return cache;
+    }
+
     public int getStoringBatchSize() {
         return storingBatchSize;
     }
@@ -142,6 +190,38 @@ public class LookupConfiguration extends Configuration {
         this.maxAcceptedRequests = maxAcceptedRequests;
     }
 
+    public String getRequestExecution() {
+        return requestExecution;
+    }
+
+    public void setRequestExecution(String requestExecution) {
+        this.requestExecution = requestExecution;
+    }
+
+    public int getRequestCarrierThreads() {
+        return requestCarrierThreads;
+    }
+
+    public void setRequestCarrierThreads(int requestCarrierThreads) {
+        this.requestCarrierThreads = requestCarrierThreads;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public int getBatchConcurrency() {
+        return batchConcurrency;
+    }
+
+    public void setBatchConcurrency(int batchConcurrency) {
+        this.batchConcurrency = batchConcurrency;
+    }
+
     public String getGrobidHost() {
         return grobidHost;
     }
@@ -193,6 +273,13 @@ public class LookupConfiguration extends Configuration {
         private String host;
         private String index;
         private int maxConnections = 10;
+        private int multiSearchWindow = 0;
+        private int multiSearchMaxQueries = 32;
+        private int maxInFlightBulks = 4;
+        private long maxBulkSizeBytes = 5 * 1024 * 1024;
+        private int maxBulkRetries = 5;
+        private long bulkRetryDelay = 500;
+        private String deadLetterFile = "logs/elastic-dead-letter.jsonl";
 
         public String getHost() {
             return host;
@@ -217,12 +304,71 @@ public class LookupConfiguration extends Configuration {
         public void setMaxConnections(int maxConnections) {
             this.maxConnections = maxConnections;
         }
+
+        public int getMultiSearchWindow() {
+            return multiSearchWindow;
+        }
+
+        public void setMultiSearchWindow(int multiSearchWindow) {
+            this.multiSearchWindow = multiSearchWindow;
+        }
+
+        public int getMultiSearchMaxQueries() {
+            return multiSearchMaxQueries;
+        }
+
+        public void setMultiSearchMaxQueries(int multiSearchMaxQueries) {
+            this.multiSearchMaxQueries = multiSearchMaxQueries;
+        }
+
+        public int getMaxInFlightBulks() {
+            return maxInFlightBulks;
+        }
+
+        public void setMaxInFlightBulks(int maxInFlightBulks) {
+            this.maxInFlightBulks = maxInFlightBulks;
+        }
+
+        public long getMaxBulkSizeBytes() {
+            return maxBulkSizeBytes;
+        }
+
+        public void setMaxBulkSizeBytes(long maxBulkSizeBytes) {
+            this.maxBulkSizeBytes = maxBulkSizeBytes;
+        }
+
+        public int getMaxBulkRetries() {
+            return maxBulkRetries;
+        }
+
+        public void setMaxBulkRetries(int maxBulkRetries) {
+            this.maxBulkRetries = maxBulkRetries;
+        }
+
+        public long getBulkRetryDelay() {
+            return bulkRetryDelay;
+        }
+
+        public void setBulkRetryDelay(long bulkRetryDelay) {
+            this.bulkRetryDelay = bulkRetryDelay;
+        }
+
+        public String getDeadLetterFile() {
+            return deadLetterFile;
+        }
+
+        public void setDeadLetterFile(String deadLetterFile) {
+            this.deadLetterFile = deadLetterFile;
+        }
     }
 
     public class Solr {
 
         private String host;
         private String core;
+        private int maxConnections = 10;
+        private int updateQueueSize = 10000;
+        private int updateThreads = 4;
 
         public String getHost() {
             return host;
@@ -239,11 +385,269 @@ public class LookupConfiguration extends Configuration {
         public void setCore(String core) {
             this.core = core;
         }
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public int getUpdateQueueSize() {
+            return updateQueueSize;
+        }
+
+        public void setUpdateQueueSize(int updateQueueSize) {
+            this.updateQueueSize = updateQueueSize;
+        }
+
+        public int getUpdateThreads() {
+            return updateThreads;
+        }
+
+        public void setUpdateThreads(int updateThreads) {
+            this.updateThreads = updateThreads;
+        }
+    }
+
+    public class Lucene {
+
+        // directory of the embedded Lucene index
+        private String path = "data/lucene";
+        // memory used for buffering the documents when building the index, in MB
+        private double ramBufferSize = 256;
+
+        public String getPath() {
+            return path;
+        }
+
+        public void setPath(String path) {
+            // if the path is relative, we need to adjust to the subproject directory
+            this.path = checkPath(path);
+        }
+
+        public double getRamBufferSize() {
+            return ramBufferSize;
+        }
+
+        public void setRamBufferSize(double ramBufferSize) {
+            this.ramBufferSize = ramBufferSize;
+        }
+    }
+
+    public class Cache {
+
+        // maximum estimated size of the cached entries in bytes, 0 disables the cache
+        private long maxSizeBytes = 0;
+        // time to live of the cached entries in seconds
+        private long ttlSeconds = 86400;
+
+        public long getMaxSizeBytes() {
+            return maxSizeBytes;
+        }
+
+        public void setMaxSizeBytes(long maxSizeBytes) {
+            this.maxSizeBytes = maxSizeBytes;
+        }
+
+        public long getTtlSeconds() {
+            return ttlSeconds;
+        }
+
+        public void setTtlSeconds(long ttlSeconds) {
+            this.ttlSeconds = ttlSeconds;
+        }
+    }
+
+    public KeyFilters getKeyFilters() {
+        // the section is optional, the key filters are then disabled
+        if (keyFilters == null)
+            keyFilters = new KeyFilters();
+        return keyFilters;
+    }
+
+    public void setKeyFilters(KeyFilters keyFilters) {
+        this.keyFilters = keyFilters;
+    }
+
+    public class KeyFilters {
+
+        // Bloom filters of the keys of the DOI databases, checked before the lookups
+        private boolean enabled = false;
+        // target false positive rate of the filters, a lower rate needs more memory
+        private double falsePositiveRate = 0.01;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getFalsePositiveRate() {
+            return falsePositiveRate;
+        }
+
+        public void setFalsePositiveRate(double falsePositiveRate) {
+            this.falsePositiveRate = falsePositiveRate;
+        }
+    }
+
+    public Admission getAdmission() {
+        // the section is optional, with default values
+        if (admission == null)
+            admission = new Admission();
+        return admission;
+    }
+
+    public void setAdmission(Admission admission) {
+        this.admission = admission;
+    }
+
+    public class Admission {
+
+        // bounds of the adaptive concurrency limits of the lookups by strong identifier and by 
+        // bibliographical metadata
+        private int minConcurrency = 4;
+        private int strongIdMaxConcurrency = 1024;
+        private int biblioMaxConcurrency = 256;
+        // latency in milliseconds beyond which a lookup is considered as slow and the limit decreased
+        private long strongIdLatencyThreshold = 100;
+        private long biblioLatencyThreshold = 3000;
+        // multiplicative decrease of the limits when a lookup is slow or a backend overloaded
+        private double backoffRatio = 0.9;
+
+        public int getMinConcurrency() {
+            return minConcurrency;
+        }
+
+        public void setMinConcurrency(int minConcurrency) {
+            this.minConcurrency = minConcurrency;
+        }
+
+        public int getStrongIdMaxConcurrency() {
+            return strongIdMaxConcurrency;
+        }
+
+        public void setStrongIdMaxConcurrency(int strongIdMaxConcurrency) {
+            this.strongIdMaxConcurrency = strongIdMaxConcurrency;
+        }
+
+        public int getBiblioMaxConcurrency() {
+            return biblioMaxConcurrency;
+        }
+
+        public void setBiblioMaxConcurrency(int biblioMaxConcurrency) {
+            this.biblioMaxConcurrency = biblioMaxConcurrency;
+        }
+
+        public long getStrongIdLatencyThreshold() {
+            return strongIdLatencyThreshold;
+        }
+
+        public void setStrongIdLatencyThreshold(long strongIdLatencyThreshold) {
+            this.strongIdLatencyThreshold = strongIdLatencyThreshold;
+        }
+
+        public long getBiblioLatencyThreshold() {
+            return biblioLatencyThreshold;
+        }
+
+        public void setBiblioLatencyThreshold(long biblioLatencyThreshold) {
+            this.biblioLatencyThreshold = biblioLatencyThreshold;
+        }
+
+        public double getBackoffRatio() {
+            return backoffRatio;
+        }
+
+        public void setBackoffRatio(double backoffRatio) {
+            this.backoffRatio = backoffRatio;
+        }
+    }
+
+    public Grobid getGrobid() {
+        // the section is optional, with default values
+        if (grobid == null)
+            grobid = new Grobid();
+        return grobid;
+    }
+
+    public void setGrobid(Grobid grobid) {
+        this.grobid = grobid;
+    }
+
+    public class Grobid {
+
+        // max number of connections to the GROBID service, kept alive between the requests
+        private int maxConnections = 32;
+        // interval in seconds between two checks of the availability of the GROBID service
+        private int healthCheckInterval = 10;
+        // citations to be parsed received during this time window (in milliseconds) are sent together 
+        // to GROBID as one processCitationList request, 0 to send each citation individually
+        private int batchWindow = 5;
+        private int batchMaxCitations = 32;
+        // max time in milliseconds to wait for the parsing of a raw reference, beyond this time the 
+        // candidates are ranked with the metadata of the query only, 0 for no limit
+        private long timeBudget = 2000;
+        // max number of parsed citations kept in the persistent cache, 0 to disable the cache
+        private long cacheMaxEntries = 0;
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public int getHealthCheckInterval() {
+            return healthCheckInterval;
+        }
+
+        public void setHealthCheckInterval(int healthCheckInterval) {
+            this.healthCheckInterval = healthCheckInterval;
+        }
+
+        public int getBatchWindow() {
+            return batchWindow;
+        }
+
+        public void setBatchWindow(int batchWindow) {
+            this.batchWindow = batchWindow;
+        }
+
+        public int getBatchMaxCitations() {
+            return batchMaxCitations;
+        }
+
+        public void setBatchMaxCitations(int batchMaxCitations) {
+            this.batchMaxCitations = batchMaxCitations;
+        }
+
+        public long getTimeBudget() {
+            return timeBudget;
+        }
+
+        public void setTimeBudget(long timeBudget) {
+            this.timeBudget = timeBudget;
+        }
+
+        public long getCacheMaxEntries() {
+            return cacheMaxEntries;
+        }
+
+        public void setCacheMaxEntries(long cacheMaxEntries) {
+            this.cacheMaxEntries = cacheMaxEntries;
+        }
     }
 
     public class Crossref {
         private String dumpPath;
         private boolean cleanProcessFiles; 
+        private boolean writeProcessFiles = true;
         private String mailto;
         private String token;
         private List<String> ignoreCrossrefFields;
@@ -287,6 +691,14 @@ public class LookupConfiguration extends Configuration {
         public void setCleanProcessFiles(boolean clean) {
             this.cleanProcessFiles = clean;
         }
+
+        public boolean getWriteProcessFiles() {
+            return this.writeProcessFiles;
+        }
+
+        public void setWriteProcessFiles(boolean write) {
+            this.writeProcessFiles = write;
+        }
     }
 
     public ProxyParameters getProxy() {
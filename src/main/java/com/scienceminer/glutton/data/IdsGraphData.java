@@ -0,0 +1,83 @@
+package com.scienceminer.glutton.data;
+
+import java.io.Serializable;
+
+/**
+ * All the identifiers and the OA link related to a DOI, consolidated from the PMID, ISTEX, HAL
+ * and Unpaywall databases, so that the identifiers of a DOI are obtained with a single lookup.
+ */
+public class IdsGraphData implements Serializable {
+
+    private String pmid;
+    private String pmcid;
+    private String istexId;
+    private String ark;
+    private String mesh;
+    private String pii;
+    private String halId;
+    private String oaLink;
+
+    public String getPmid() {
+        return pmid;
+    }
+
+    public void setPmid(String pmid) {
+        this.pmid = pmid;
+    }
+
+    public String getPmcid() {
+        return pmcid;
+    }
+
+    public void setPmcid(String pmcid) {
+        this.pmcid = pmcid;
+    }
+
+    public String getIstexId() {
+        return istexId;
+    }
+
+    public void setIstexId(String istexId) {
+        this.istexId = istexId;
+    }
+
+    public String getArk() {
+        return ark;
+    }
+
+    public void setArk(String ark) {
+        this.ark = ark;
+    }
+
+    public String getMesh() {
+        return mesh;
+    }
+
+    public void setMesh(String mesh) {
+        this.mesh = mesh;
+    }
+
+    public String getPii() {
+        return pii;
+    }
+
+    public void setPii(String pii) {
+        this.pii = pii;
+    }
+
+    public String getHalId() {
+        return halId;
+    }
+
+    public void setHalId(String halId) {
+        this.halId = halId;
+    }
+
+    public String getOaLink() {
+        return oaLink;
+    }
+
+    public void setOaLink(String oaLink) {
+        this.oaLink = oaLink;
+    }
+}
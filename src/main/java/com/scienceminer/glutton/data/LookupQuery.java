@@ -0,0 +1,138 @@
+package com.scienceminer.glutton.data;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * A single lookup query, as sent to the batch lookup endpoint. The fields are the same as the
+ * parameters of the single lookup query (GET/POST /lookup).
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class LookupQuery {
+
+    private String doi;
+    private String halid;
+    private String pmid;
+    private String pmc;
+    private String pii;
+    private String istexid;
+    private String firstAuthor;
+    private String atitle;
+    private String jtitle;
+    private String volume;
+    private String firstPage;
+    private String year;
+    private String biblio;
+    private Boolean parseReference;
+
+    public String getDoi() {
+        return doi;
+    }
+
+    public void setDoi(String doi) {
+        this.doi = doi;
+    }
+
+    public String getHalid() {
+        return halid;
+    }
+
+    public void setHalid(String halid) {
+        this.halid = halid;
+    }
+
+    public String getPmid() {
+        return pmid;
+    }
+
+    public void setPmid(String pmid) {
+        this.pmid = pmid;
+    }
+
+    public String getPmc() {
+        return pmc;
+    }
+
+    public void setPmc(String pmc) {
+        this.pmc = pmc;
+    }
+
+    public String getPii() {
+        return pii;
+    }
+
+    public void setPii(String pii) {
+        this.pii = pii;
+    }
+
+    public String getIstexid() {
+        return istexid;
+    }
+
+    public void setIstexid(String istexid) {
+        this.istexid = istexid;
+    }
+
+    public String getFirstAuthor() {
+        return firstAuthor;
+    }
+
+    public void setFirstAuthor(String firstAuthor) {
+        this.firstAuthor = firstAuthor;
+    }
+
+    public String getAtitle() {
+        return atitle;
+    }
+
+    public void setAtitle(String atitle) {
+        this.atitle = atitle;
+    }
+
+    public String getJtitle() {
+        return jtitle;
+    }
+
+    public void setJtitle(String jtitle) {
+        this.jtitle = jtitle;
+    }
+
+    public String getVolume() {
+        return volume;
+    }
+
+    public void setVolume(String volume) {
+        this.volume = volume;
+    }
+
+    public String getFirstPage() {
+        return firstPage;
+    }
+
+    public void setFirstPage(String firstPage) {
+        this.firstPage = firstPage;
+    }
+
+    public String getYear() {
+        return year;
+    }
+
+    public void setYear(String year) {
+        this.year = year;
+    }
+
+    public String getBiblio() {
+        return biblio;
+    }
+
+    public void setBiblio(String biblio) {
+        this.biblio = biblio;
+    }
+
+    public Boolean getParseReference() {
+        return parseReference;
+    }
+
+    public void setParseReference(Boolean parseReference) {
+        this.parseReference = parseReference;
+    }
+}
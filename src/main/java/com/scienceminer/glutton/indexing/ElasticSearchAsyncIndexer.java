@@ -20,6 +20,7 @@ import co.elastic.clients.elasticsearch.cat.IndicesResponse;
 import co.elastic.clients.elasticsearch.indices.ExistsRequest;
 import co.elastic.clients.elasticsearch.indices.RefreshRequest;
 import co.elastic.clients.elasticsearch.core.bulk.*;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
 
 import com.fasterxml.jackson.databind.node.*;
 import com.fasterxml.jackson.core.*;
@@ -34,6 +35,22 @@ import org.apache.commons.io.FileUtils;
 
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.lmdbjava.*;
 import java.nio.ByteBuffer;
@@ -41,6 +58,16 @@ import java.nio.ByteBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Asynchronous bulk indexing, used when loading the metadata records: the storing of the records
+ * continues while the bulk requests are processed by Elasticsearch.
+ *
+ * The number of bulk requests sent concurrently is bounded, beyond it the loaders wait, so that
+ * Elasticsearch is not flooded. The documents are grouped in bulk requests bounded by their
+ * estimated size in bytes. The documents rejected by Elasticsearch because it is overloaded (429)
+ * or temporarily unavailable are sent again after an exponential delay, the documents which cannot
+ * be indexed are written in a dead-letter file.
+ */
 public class ElasticSearchAsyncIndexer {
     protected static final Logger logger = LoggerFactory.getLogger(ElasticSearchAsyncIndexer.class);
 
@@ -53,6 +80,30 @@ public class ElasticSearchAsyncIndexer {
 
     private String settingsPath = "config/elastic-settings.json";
 
+    // estimated size of the bulk action line and of the field names of an indexed document
+    private static final int OPERATION_OVERHEAD = 256;
+
+    private static final ObjectMapper DEAD_LETTER_MAPPER = new ObjectMapper()
+        .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+
+    private final int maxInFlightBulks;
+    private final long maxBulkSizeBytes;
+    private final int maxBulkRetries;
+    private final long bulkRetryDelay;
+
+    // a permit is held by a bulk request until all its documents are indexed or dead-lettered,
+    // including its retries
+    private final Semaphore inFlightBulks;
+    private final ScheduledExecutorService retryScheduler;
+    private final AtomicInteger pendingRetries = new AtomicInteger(0);
+
+    private final Meter meterIndexedDocuments = new Meter();
+    private final Meter meterBulkRequests = new Meter();
+    private final Counter counterRetriedDocuments = new Counter();
+    private final Counter counterDeadLetterDocuments = new Counter();
+
+    private Writer deadLetterWriter = null;
+
     public static ElasticSearchAsyncIndexer getInstance(LookupConfiguration configuration) {
         if (instance == null) {
             synchronized (ElasticSearchAsyncIndexer.class) {
@@ -88,6 +139,18 @@ public class ElasticSearchAsyncIndexer {
 
         // And create the API client
         elasticsearchAsyncClient = new ElasticsearchAsyncClient(transport);
+
+        maxInFlightBulks = Math.max(1, configuration.getElastic().getMaxInFlightBulks());
+        maxBulkSizeBytes = Math.max(1, configuration.getElastic().getMaxBulkSizeBytes());
+        maxBulkRetries = Math.max(0, configuration.getElastic().getMaxBulkRetries());
+        bulkRetryDelay = Math.max(1, configuration.getElastic().getBulkRetryDelay());
+
+        inFlightBulks = new Semaphore(maxInFlightBulks);
+        retryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "elastic-bulk-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     /**
@@ -101,104 +164,338 @@ public class ElasticSearchAsyncIndexer {
      * 
      * Already existing keys are skipt if update is false.
      * 
+     * The documents are converted before returning, the call blocks while the max number of 
+     * bulk requests are in flight.
      **/
     public void asyncIndexDocuments(List<String> documents, 
                                     boolean update, 
                                     Counter counterIndexedRecords, 
                                     Counter counterFailedIndexedRecords) {
-        BulkRequest.Builder br = new BulkRequest.Builder();
+        List<IndexOperation> operations = new ArrayList<>();
         for(String document : documents) {
-            MetadataObj objToIndex = MetadataObjBuilder.createMetadataObj(document);
-            if (objToIndex != null && !MetadataObjBuilder.isFilteredType(objToIndex)) {
-                objToIndex.type = null;
-                String localIdentifier = objToIndex._id;
-                objToIndex._id = null;
-                br.operations(op -> op           
-                    .index(idx -> idx            
-                        .index(configuration.getElastic().getIndex())       
-                        .id(localIdentifier)
-                        .document(objToIndex)
-                    )
-                );
-            } 
-
-            if (objToIndex == null) {
-                // counter here for records that failed to index
-                counterFailedIndexedRecords.inc();
+            addOperation(MetadataObjBuilder.createMetadataObj(document), operations, counterFailedIndexedRecords);
+        }
+        submit(operations, counterIndexedRecords, counterFailedIndexedRecords);
+    }
+
+    /**
+     * Same as asyncIndexDocuments, the returned future is completed once all the documents are 
+     * indexed or written in the dead-letter file, e.g. for recording the progress of a reindexing
+     */
+    public CompletableFuture<Void> asyncIndexDocumentsWithCompletion(List<String> documents, 
+                                                                     Counter counterIndexedRecords, 
+                                                                     Counter counterFailedIndexedRecords) {
+        List<IndexOperation> operations = new ArrayList<>();
+        for(String document : documents) {
+            addOperation(MetadataObjBuilder.createMetadataObj(document), operations, counterFailedIndexedRecords);
+        }
+        return submit(operations, counterIndexedRecords, counterFailedIndexedRecords);
+    }
+
+    public void asyncIndexJsonObjects(List<JsonNode> documents, boolean update, Counter counterIndexedRecords, Counter counterFailedIndexedRecords) {
+        List<IndexOperation> operations = new ArrayList<>();
+        for(JsonNode document : documents) {
+            addOperation(MetadataObjBuilder.createMetadataObjFromJsonNode(document), operations, counterFailedIndexedRecords);
+        }
+        submit(operations, counterIndexedRecords, counterFailedIndexedRecords);
+    }
+
+    /**
+     * Same as asyncIndexJsonObjects, the returned future is completed once all the documents are 
+     * indexed or written in the dead-letter file
+     */
+    public CompletableFuture<Void> asyncIndexJsonObjectsWithCompletion(List<JsonNode> documents, 
+                                                                       Counter counterIndexedRecords, 
+                                                                       Counter counterFailedIndexedRecords) {
+        List<IndexOperation> operations = new ArrayList<>();
+        for(JsonNode document : documents) {
+            addOperation(MetadataObjBuilder.createMetadataObjFromJsonNode(document), operations, counterFailedIndexedRecords);
+        }
+        return submit(operations, counterIndexedRecords, counterFailedIndexedRecords);
+    }
+
+    private void addOperation(MetadataObj objToIndex, List<IndexOperation> operations, Counter counterFailedIndexedRecords) {
+        if (objToIndex == null) {
+            // counter here for records that failed to index
+            counterFailedIndexedRecords.inc();
+        } else if (!MetadataObjBuilder.isFilteredType(objToIndex)) {
+            objToIndex.type = null;
+            String localIdentifier = objToIndex._id;
+            objToIndex._id = null;
+            operations.add(new IndexOperation(localIdentifier, objToIndex));
+        }
+    }
+
+    /**
+     * Split the operations in bulk requests bounded by their estimated size, and send them
+     */
+    private CompletableFuture<Void> submit(List<IndexOperation> operations, 
+                                           Counter counterIndexedRecords, 
+                                           Counter counterFailedIndexedRecords) {
+        List<List<IndexOperation>> bulks = new ArrayList<>();
+        int start = 0;
+        long size = 0;
+        for (int i = 0; i < operations.size(); i++) {
+            if (i > start && size + operations.get(i).size > maxBulkSizeBytes) {
+                bulks.add(operations.subList(start, i));
+                start = i;
+                size = 0;
             }
+            size += operations.get(i).size;
+        }
+        if (start < operations.size())
+            bulks.add(operations.subList(start, operations.size()));
+
+        final Completion completion = new Completion(bulks.size());
+        for (List<IndexOperation> bulk : bulks) {
+            send(new Bulk(bulk, 0, completion, counterIndexedRecords, counterFailedIndexedRecords));
         }
+        return completion.future;
+    }
 
+    private void send(Bulk bulk) {
+        try {
+            inFlightBulks.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted while waiting for the bulk requests in flight");
+            deadLetter(bulk, bulk.operations, -1, "interrupted");
+            bulk.completion.bulkDone();
+            return;
+        }
+        execute(bulk);
+    }
+
+    private void execute(Bulk bulk) {
+        BulkRequest.Builder br = new BulkRequest.Builder();
+        for (IndexOperation operation : bulk.operations) {
+            br.operations(op -> op           
+                .index(idx -> idx            
+                    .index(configuration.getElastic().getIndex())       
+                    .id(operation.id)
+                    .document(operation.document)
+                )
+            );
+        }
+
+        meterBulkRequests.mark();
         try {
             this.elasticsearchAsyncClient.bulk(
                 br.build()
-            ).whenComplete((response, exception) -> {
-                if (exception != null) {
-                    logger.error("Batch indexing failed", exception);
-                } else {
-                    counterIndexedRecords.inc(documents.size());
+            ).whenComplete((response, exception) -> onResponse(bulk, response, exception));
+        } catch (Exception e) {
+            onResponse(bulk, null, e);
+        }
+    }
+
+    private void onResponse(Bulk bulk, BulkResponse response, Throwable exception) {
+        try {
+            if (exception != null) {
+                if (exception instanceof CompletionException && exception.getCause() != null)
+                    exception = exception.getCause();
+                int status = -1;
+                if (exception instanceof ElasticsearchException)
+                    status = ((ElasticsearchException) exception).status();
+                logger.warn("Bulk indexing request failed, status " + status + ": " + exception.getMessage());
+                if (status == -1 || isTransient(status)) {
+                    // connection errors are also considered as transient
+                    retry(bulk, bulk.operations, status, exception.getMessage());
+                    return;
                 }
+                deadLetter(bulk, bulk.operations, status, exception.getMessage());
+                release(bulk);
+                return;
+            }
 
-                if (response.errors()) {
-                    logger.error("Bulk had errors");
-                    for (BulkResponseItem item: response.items()) {
-                        if (item.error() != null) {
-                            logger.error(item.error().reason());
-                        }
-                    }
+            List<IndexOperation> rejected = new ArrayList<>();
+            int indexed = 0;
+            List<BulkResponseItem> items = response.items();
+            for (int i = 0; i < items.size() && i < bulk.operations.size(); i++) {
+                BulkResponseItem item = items.get(i);
+                if (item.error() == null) {
+                    indexed++;
+                } else if (isTransient(item.status())) {
+                    rejected.add(bulk.operations.get(i));
+                } else {
+                    deadLetter(bulk, Collections.singletonList(bulk.operations.get(i)), item.status(), item.error().reason());
                 }
-            });
-            
+            }
+            bulk.counterIndexedRecords.inc(indexed);
+            meterIndexedDocuments.mark(indexed);
+
+            if (!rejected.isEmpty()) {
+                retry(bulk, rejected, 429, "rejected documents");
+                return;
+            }
         } catch (Exception e) {
-            logger.error("Batch indexing failed", e);
+            logger.error("Cannot process the bulk indexing response", e);
         }
+        release(bulk);
     }
 
-    public void asyncIndexJsonObjects(List<JsonNode> documents, boolean update, Counter counterIndexedRecords, Counter counterFailedIndexedRecords) {
-        BulkRequest.Builder br = new BulkRequest.Builder();
-        for(JsonNode document : documents) {
-            MetadataObj objToIndex = MetadataObjBuilder.createMetadataObjFromJsonNode(document);
-            if (objToIndex != null && !MetadataObjBuilder.isFilteredType(objToIndex)) {
-                objToIndex.type = null;
-                String localIdentifier = objToIndex._id;
-                objToIndex._id = null;
-                br.operations(op -> op           
-                    .index(idx -> idx            
-                        .index(configuration.getElastic().getIndex())       
-                        .id(localIdentifier)
-                        .document(objToIndex)
-                    )
-                );
-            } 
-
-            if (objToIndex == null) {
-                // counter here for records that failed to index
-                counterFailedIndexedRecords.inc();
+    /**
+     * Send the operations again after an exponential delay, the permit of the bulk request is 
+     * kept until the retries are finished
+     */
+    private void retry(Bulk bulk, List<IndexOperation> operations, int status, String reason) {
+        if (bulk.attempt >= maxBulkRetries) {
+            deadLetter(bulk, operations, status, reason);
+            release(bulk);
+            return;
+        }
+
+        final Bulk retry = new Bulk(operations, bulk.attempt + 1, bulk.completion, 
+            bulk.counterIndexedRecords, bulk.counterFailedIndexedRecords);
+        final long delay = bulkRetryDelay << Math.min(bulk.attempt, 16);
+        counterRetriedDocuments.inc(operations.size());
+        pendingRetries.incrementAndGet();
+        retryScheduler.schedule(() -> {
+            pendingRetries.decrementAndGet();
+            execute(retry);
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void release(Bulk bulk) {
+        inFlightBulks.release();
+        bulk.completion.bulkDone();
+    }
+
+    private static boolean isTransient(int status) {
+        return status == 429 || status == 502 || status == 503 || status == 504;
+    }
+
+    /**
+     * Write the documents which cannot be indexed in the dead-letter file, one JSON object per line
+     */
+    private synchronized void deadLetter(Bulk bulk, List<IndexOperation> operations, int status, String reason) {
+        bulk.counterFailedIndexedRecords.inc(operations.size());
+        counterDeadLetterDocuments.inc(operations.size());
+        logger.error(operations.size() + " documents could not be indexed, status " + status + ": " + reason);
+
+        String deadLetterFile = configuration.getElastic().getDeadLetterFile();
+        if (deadLetterFile == null || deadLetterFile.isEmpty())
+            return;
+        try {
+            if (deadLetterWriter == null) {
+                Path path = Paths.get(deadLetterFile);
+                if (path.getParent() != null)
+                    Files.createDirectories(path.getParent());
+                deadLetterWriter = Files.newBufferedWriter(path, StandardCharsets.UTF_8, 
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            for (IndexOperation operation : operations) {
+                ObjectNode line = DEAD_LETTER_MAPPER.createObjectNode();
+                line.put("id", operation.id);
+                line.put("status", status);
+                line.put("reason", reason);
+                line.set("document", DEAD_LETTER_MAPPER.valueToTree(operation.document));
+                deadLetterWriter.write(DEAD_LETTER_MAPPER.writeValueAsString(line));
+                deadLetterWriter.write("\n");
             }
+            deadLetterWriter.flush();
+        } catch (IOException e) {
+            logger.error("Cannot write in the dead-letter file " + deadLetterFile, e);
         }
+    }
 
+    /**
+     * Wait until all the bulk requests sent so far are processed, including their retries, e.g.
+     * before refreshing the index or exiting a loading command
+     */
+    public void awaitPending() {
         try {
-            this.elasticsearchAsyncClient.bulk(
-                br.build()
-            ).whenComplete((response, exception) -> {
-                if (exception != null) {
-                    logger.error("Batch indexing failed", exception);
-                } else {
-                    counterIndexedRecords.inc(documents.size());
-                }
+            inFlightBulks.acquire(maxInFlightBulks);
+            inFlightBulks.release(maxInFlightBulks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while waiting for the bulk requests in flight");
+        }
+    }
+
+    /**
+     * Register the throughput, queue depth and failure metrics of the bulk indexing
+     */
+    public void registerMetrics(MetricRegistry metrics) {
+        metrics.register(MetricRegistry.name(ElasticSearchAsyncIndexer.class, "indexedDocuments"), meterIndexedDocuments);
+        metrics.register(MetricRegistry.name(ElasticSearchAsyncIndexer.class, "bulkRequests"), meterBulkRequests);
+        metrics.register(MetricRegistry.name(ElasticSearchAsyncIndexer.class, "retriedDocuments"), counterRetriedDocuments);
+        metrics.register(MetricRegistry.name(ElasticSearchAsyncIndexer.class, "deadLetterDocuments"), counterDeadLetterDocuments);
+        metrics.register(MetricRegistry.name(ElasticSearchAsyncIndexer.class, "inFlightBulks"), 
+            (Gauge<Integer>) () -> maxInFlightBulks - inFlightBulks.availablePermits());
+        metrics.register(MetricRegistry.name(ElasticSearchAsyncIndexer.class, "waitingLoaders"), 
+            (Gauge<Integer>) inFlightBulks::getQueueLength);
+        metrics.register(MetricRegistry.name(ElasticSearchAsyncIndexer.class, "pendingRetries"), 
+            (Gauge<Integer>) pendingRetries::get);
+    }
+
+    private static class IndexOperation {
+        private final String id;
+        private final MetadataObj document;
+        private final long size;
+
+        IndexOperation(String id, MetadataObj document) {
+            this.id = id;
+            this.document = document;
+            this.size = estimateSize(id, document);
+        }
+
+        private static long estimateSize(String id, MetadataObj document) {
+            long size = OPERATION_OVERHEAD + length(id) + length(document.DOI) + length(document.halId) + 
+                length(document.first_author) + length(document.author) + length(document.first_page) + 
+                length(document.volume) + length(document.issue) + length(document.year) + 
+                length(document.bibliographic) + length(document.query);
+            size += length(document.title) + length(document.journal) + length(document.abbreviated_journal);
+            return size;
+        }
+
+        private static long length(String value) {
+            return value == null ? 0 : value.length();
+        }
 
-                if (response.errors()) {
-                    logger.error("Bulk had errors");
-                    for (BulkResponseItem item: response.items()) {
-                        if (item.error() != null) {
-                            logger.error(item.error().reason());
-                        }
-                    }
+        private static long length(List<String> values) {
+            long length = 0;
+            if (values != null) {
+                for (String value : values) {
+                    length += length(value) + 3;
                 }
-            });
-            
-        } catch (Exception e) {
-            logger.error("Batch indexing failed", e);
+            }
+            return length;
         }
     }
 
+    /**
+     * Completion of the bulk requests created from a list of documents
+     */
+    private static class Completion {
+        private final AtomicInteger remainingBulks;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Completion(int bulks) {
+            remainingBulks = new AtomicInteger(bulks);
+            if (bulks == 0)
+                future.complete(null);
+        }
+
+        void bulkDone() {
+            if (remainingBulks.decrementAndGet() == 0)
+                future.complete(null);
+        }
+    }
+
+    private static class Bulk {
+        private final List<IndexOperation> operations;
+        private final int attempt;
+        private final Completion completion;
+        private final Counter counterIndexedRecords;
+        private final Counter counterFailedIndexedRecords;
+
+        Bulk(List<IndexOperation> operations, int attempt, Completion completion, 
+             Counter counterIndexedRecords, Counter counterFailedIndexedRecords) {
+            this.operations = operations;
+            this.attempt = attempt;
+            this.completion = completion;
+            this.counterIndexedRecords = counterIndexedRecords;
+            this.counterFailedIndexedRecords = counterFailedIndexedRecords;
+        }
+    }
 }
@@ -23,7 +23,7 @@ import co.elastic.clients.elasticsearch.core.bulk.*;
 
 import com.scienceminer.glutton.exception.ServiceException;
 import com.scienceminer.glutton.exception.ServiceOverloadedException;
-import com.scienceminer.glutton.utils.BinarySerialiser;
+import com.scienceminer.glutton.storage.LmdbStore;
 
 import org.apache.http.HttpHost;
 import org.apache.commons.io.FileUtils;
@@ -141,28 +141,24 @@ public class ElasticSearchIndexer {
      * 
      * Already existing keys are skipt if update is false.
      **/
-    public void indexCollection(Env<ByteBuffer> environment, Dbi<ByteBuffer> jsonMetadataDb, boolean update, Meter meter, Counter counterIndexedRecords) {
+    public void indexCollection(LmdbStore<String> jsonMetadataStore, boolean update, Meter meter, Counter counterIndexedRecords) {
         int counter = 0;
-        long total = 0;
-
-        try (final Txn<ByteBuffer> txn = environment.txnRead()) {
-            total = jsonMetadataDb.stat(txn).entries;
-        } catch (Env.ReadersFullException e) {
-            throw new ServiceOverloadedException("Not enough readers for LMDB access, increase them or reduce the parallel request rate. ", e);
-        }
+        long total = jsonMetadataStore.size();
+        final Env<ByteBuffer> environment = jsonMetadataStore.getEnvironment();
 //System.out.println("total: " + total);
         BulkRequest.Builder br = new BulkRequest.Builder();
         int bulkSize = 0;
         try (Txn<ByteBuffer> txn = environment.txnRead()) {
-            try (CursorIterable<ByteBuffer> it = jsonMetadataDb.iterate(txn, KeyRange.all())) {
+            try (CursorIterable<ByteBuffer> it = jsonMetadataStore.getDbi().iterate(txn, KeyRange.all())) {
                 for (final CursorIterable.KeyVal<ByteBuffer> kv : it) {
                     String key = null;
                     String value = null;
                     try {
-                        key = (String) BinarySerialiser.deserialize(kv.key());
-                        value = (String) BinarySerialiser.deserializeAndDecompress(kv.val());
+                        key = jsonMetadataStore.decodeKey(kv.key());
+                        value = jsonMetadataStore.decodeValue(kv.val());
 
-                        MetadataObj objToIndex = MetadataObjBuilder.createMetadataObj(value);
+                        // value is null for entries which are not JSON records (e.g. last indexed date)
+                        MetadataObj objToIndex = value == null ? null : MetadataObjBuilder.createMetadataObj(value);
                         if (objToIndex != null && !MetadataObjBuilder.isFilteredType(objToIndex)) {
                             objToIndex.type = null;
                             String localIdentifier = objToIndex._id;
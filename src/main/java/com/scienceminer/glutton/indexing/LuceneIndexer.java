@@ -0,0 +1,198 @@
+package com.scienceminer.glutton.indexing;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.scienceminer.glutton.configuration.LookupConfiguration;
+import com.scienceminer.glutton.storage.LmdbStore;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.StopFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.KeywordTokenizer;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.MMapDirectory;
+import org.lmdbjava.CursorIterable;
+import org.lmdbjava.Env;
+import org.lmdbjava.KeyRange;
+import org.lmdbjava.Txn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Build the embedded Lucene index used for the blocking when the search engine is "lucene". The
+ * indexed fields and their analysis are the same as the ones of the Elasticsearch index
+ * (config/elastic-settings.json), so that the blocking gives the same candidates with both engines.
+ */
+public class LuceneIndexer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LuceneIndexer.class);
+
+    public static final String FIELD_ID = "_id";
+
+    // the fields of the records which are stored in the index and returned with the hits
+    public static final String FIELD_DOI = "DOI";
+    public static final String FIELD_HALID = "halId";
+    public static final String FIELD_TITLE = "title";
+    public static final String FIELD_FIRST_AUTHOR = "first_author";
+    public static final String FIELD_JOURNAL = "journal";
+    public static final String FIELD_ABBREVIATED_JOURNAL = "abbreviated_journal";
+    public static final String FIELD_YEAR = "year";
+
+    public static final String FIELD_AUTHOR = "author";
+    public static final String FIELD_FIRST_PAGE = "first_page";
+    public static final String FIELD_VOLUME = "volume";
+    public static final String FIELD_ISSUE = "issue";
+    public static final String FIELD_BIBLIOGRAPHIC = "bibliographic";
+
+    private final LookupConfiguration configuration;
+    private final IndexWriter indexWriter;
+
+    /**
+     * Open the index for a full build, the existing index is replaced
+     */
+    public LuceneIndexer(LookupConfiguration configuration) throws IOException {
+        this.configuration = configuration;
+
+        final Directory directory = new MMapDirectory(Paths.get(configuration.getLucene().getPath()));
+        final IndexWriterConfig writerConfig = new IndexWriterConfig(createAnalyzer());
+        writerConfig.setOpenMode(IndexWriterConfig.OpenMode.CREATE);
+        writerConfig.setRAMBufferSizeMB(configuration.getLucene().getRamBufferSize());
+        this.indexWriter = new IndexWriter(directory, writerConfig);
+    }
+
+    /**
+     * Analyzer of the indexed fields, the equivalent of the analyzers of the Elasticsearch mapping
+     */
+    public static Analyzer createAnalyzer() {
+        final Analyzer keyword = new CustomAnalyzer(false, false, false);
+        final Analyzer foldingKeyword = new CustomAnalyzer(false, true, false);
+        final Analyzer foldingText = new CustomAnalyzer(true, true, false);
+        final Analyzer foldingTextStopwords = new CustomAnalyzer(true, true, true);
+
+        final Map<String, Analyzer> analyzers = new HashMap<>();
+        analyzers.put(FIELD_DOI, keyword);
+        analyzers.put(FIELD_HALID, keyword);
+        analyzers.put(FIELD_TITLE, foldingTextStopwords);
+        analyzers.put(FIELD_FIRST_AUTHOR, foldingKeyword);
+        analyzers.put(FIELD_AUTHOR, foldingText);
+        analyzers.put(FIELD_FIRST_PAGE, foldingKeyword);
+        analyzers.put(FIELD_JOURNAL, foldingTextStopwords);
+        analyzers.put(FIELD_ABBREVIATED_JOURNAL, foldingKeyword);
+        analyzers.put(FIELD_VOLUME, foldingKeyword);
+        analyzers.put(FIELD_ISSUE, foldingKeyword);
+        analyzers.put(FIELD_YEAR, foldingKeyword);
+        analyzers.put(FIELD_BIBLIOGRAPHIC, foldingTextStopwords);
+
+        return new PerFieldAnalyzerWrapper(foldingText, analyzers);
+    }
+
+    public void indexCollection(LmdbStore<String> jsonMetadataStore, Meter meter, Counter counterIndexedRecords) {
+        final Env<ByteBuffer> environment = jsonMetadataStore.getEnvironment();
+        try (Txn<ByteBuffer> txn = environment.txnRead();
+             CursorIterable<ByteBuffer> it = jsonMetadataStore.getDbi().iterate(txn, KeyRange.all())) {
+            for (final CursorIterable.KeyVal<ByteBuffer> kv : it) {
+                String key = null;
+                try {
+                    key = jsonMetadataStore.decodeKey(kv.key());
+                    final String value = jsonMetadataStore.decodeValue(kv.val());
+
+                    // value is null for entries which are not JSON records (e.g. last indexed date)
+                    MetadataObj objToIndex = value == null ? null : MetadataObjBuilder.createMetadataObj(value);
+                    if (objToIndex != null && !MetadataObjBuilder.isFilteredType(objToIndex)) {
+                        indexWriter.addDocument(toDocument(objToIndex));
+                        meter.mark();
+                        counterIndexedRecords.inc();
+                    }
+                } catch (IOException e) {
+                    LOGGER.error("Cannot index document with key: " + key, e);
+                }
+            }
+        }
+    }
+
+    protected static Document toDocument(MetadataObj obj) {
+        final Document document = new Document();
+        if (obj._id != null)
+            document.add(new StringField(FIELD_ID, obj._id, Field.Store.YES));
+
+        addField(document, FIELD_DOI, obj.DOI, true);
+        addField(document, FIELD_HALID, obj.halId, true);
+        addFields(document, FIELD_TITLE, obj.title, true);
+        addField(document, FIELD_FIRST_AUTHOR, obj.first_author, true);
+        addField(document, FIELD_AUTHOR, obj.author, false);
+        addField(document, FIELD_FIRST_PAGE, obj.first_page, false);
+        addFields(document, FIELD_JOURNAL, obj.journal, true);
+        addFields(document, FIELD_ABBREVIATED_JOURNAL, obj.abbreviated_journal, true);
+        addField(document, FIELD_VOLUME, obj.volume, false);
+        addField(document, FIELD_ISSUE, obj.issue, false);
+        addField(document, FIELD_YEAR, obj.year, true);
+        addField(document, FIELD_BIBLIOGRAPHIC, obj.bibliographic, false);
+
+        return document;
+    }
+
+    private static void addField(Document document, String name, String value, boolean stored) {
+        if (value != null)
+            document.add(new TextField(name, value, stored ? Field.Store.YES : Field.Store.NO));
+    }
+
+    private static void addFields(Document document, String name, List<String> values, boolean stored) {
+        if (values == null)
+            return;
+        for (String value : values) {
+            addField(document, name, value, stored);
+        }
+    }
+
+    /**
+     * Commit the indexed documents and close the index
+     */
+    public void close() throws IOException {
+        LOGGER.info("Committing the Lucene index in " + configuration.getLucene().getPath());
+        indexWriter.commit();
+        indexWriter.close();
+    }
+
+    /**
+     * Standard or keyword tokenizer, then lowercase, ASCII folding and English stop words filters
+     */
+    private static class CustomAnalyzer extends Analyzer {
+        private final boolean tokenize;
+        private final boolean folding;
+        private final boolean stopwords;
+
+        CustomAnalyzer(boolean tokenize, boolean folding, boolean stopwords) {
+            this.tokenize = tokenize;
+            this.folding = folding;
+            this.stopwords = stopwords;
+        }
+
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName) {
+            final Tokenizer tokenizer = tokenize ? new StandardTokenizer() : new KeywordTokenizer();
+            TokenStream stream = new LowerCaseFilter(tokenizer);
+            if (folding)
+                stream = new ASCIIFoldingFilter(stream);
+            if (stopwords)
+                stream = new StopFilter(stream, EnglishAnalyzer.ENGLISH_STOP_WORDS_SET);
+            return new TokenStreamComponents(tokenizer, stream);
+        }
+    }
+}
@@ -28,6 +28,9 @@ public class MetadataObjBuilder {
 
     private static ObjectMapper objectMapper = new ObjectMapper();
 
+    private static final List<String> YEAR_FIELDS = 
+        Arrays.asList("issued", "published", "published-online", "published-print", "created");
+
     public static MetadataObj createMetadataObj(String recordJson) {
         try {
             JsonNode rootNode = objectMapper.readTree(recordJson);
@@ -137,6 +140,9 @@ public class MetadataObjBuilder {
                     rank++;
                 }
 
+                if (metadataObj.author != null)
+                    metadataObj.author = metadataObj.author.trim();
+
                 if (!firstAuthorSet) {
                     // no sequence information apparently, so as fallback we use the first
                     // author in the author list
@@ -211,126 +217,21 @@ public class MetadataObjBuilder {
                 metadataObj.volume = volumeString;
         }
 
-        // year is a date part (first one) in issued or created or published-online or published-print (we follow this order)
-        JsonNode yearNode = rootNode.get("issued");
-        if (yearNode != null && (!yearNode.isMissingNode())) {
-            JsonNode datePartsNode = yearNode.get("date-parts");
-            if (datePartsNode != null && (!datePartsNode.isMissingNode())) {
-                if (datePartsNode.isArray() && ((ArrayNode)datePartsNode).size() > 0) {
-                    Iterator<JsonNode> datePartsNodeIter = ((ArrayNode)datePartsNode).elements();
-                    while (datePartsNodeIter.hasNext()) {
-                        JsonNode yearPartsNodeIterNode = datePartsNodeIter.next();
-                        String year = yearPartsNodeIterNode.asText();
-                        if (isNotBlank(year)) 
-                            metadataObj.year = year;
-                        break;
-                    }
-                }
-            }
-        }
-
-        if (metadataObj.year == null) {
-            yearNode = rootNode.get("published");
-            if (yearNode != null && (!yearNode.isMissingNode())) {
-                JsonNode datePartsNode = yearNode.get("date-parts");
-                if (datePartsNode != null && (!datePartsNode.isMissingNode())) {
-                    if (datePartsNode.isArray() && ((ArrayNode)datePartsNode).size() > 0) {
-                        Iterator<JsonNode> datePartsNodeIter = ((ArrayNode)datePartsNode).elements();
-                        while (datePartsNodeIter.hasNext()) {
-                            JsonNode yearPartsNodeIterNode = datePartsNodeIter.next();
-                            String year = yearPartsNodeIterNode.asText();
-                            if (isNotBlank(year)) 
-                                metadataObj.year = year;
-                            break;
-                        }
-                    }
-                }
-            }
-        }
-
-        if (metadataObj.year == null) {
-            yearNode = rootNode.get("published-online");
-            if (yearNode != null && (!yearNode.isMissingNode())) {
-                JsonNode datePartsNode = yearNode.get("date-parts");
-                if (datePartsNode != null && (!datePartsNode.isMissingNode())) {
-                    if (datePartsNode.isArray() && ((ArrayNode)datePartsNode).size() > 0) {
-                        Iterator<JsonNode> datePartsNodeIter = ((ArrayNode)datePartsNode).elements();
-                        while (datePartsNodeIter.hasNext()) {
-                            JsonNode yearPartsNodeIterNode = datePartsNodeIter.next();
-                            String year = yearPartsNodeIterNode.asText();
-                            if (isNotBlank(year)) 
-                                metadataObj.year = year;
-                            break;
-                        }
-                    }
-                }
-            }
-        }
-
-        if (metadataObj.year == null) {
-            yearNode = rootNode.get("published-print");
-            if (yearNode != null && (!yearNode.isMissingNode())) {
-                JsonNode datePartsNode = yearNode.get("date-parts");
-                if (datePartsNode != null && (!datePartsNode.isMissingNode())) {
-                    if (datePartsNode.isArray() && ((ArrayNode)datePartsNode).size() > 0) {
-                        Iterator<JsonNode> datePartsNodeIter = ((ArrayNode)datePartsNode).elements();
-                        while (datePartsNodeIter.hasNext()) {
-                            JsonNode yearPartsNodeIterNode = datePartsNodeIter.next();
-                            String year = yearPartsNodeIterNode.asText();
-                            if (isNotBlank(year)) 
-                                metadataObj.year = year;
-                            break;
-                        }
-                    }
-                }
-            }
-        }
-
-        // this is deposit date, normally we will never use it, but it will ensure 
-        // that we always have a date as conservative fallback
-        if (metadataObj.year == null) {
-            yearNode = rootNode.get("created");
-            if (yearNode != null && (!yearNode.isMissingNode())) {
-                JsonNode datePartsNode = yearNode.get("date-parts");
-                if (datePartsNode != null && (!datePartsNode.isMissingNode())) {
-                    if (datePartsNode.isArray() && ((ArrayNode)datePartsNode).size() > 0) {
-                        Iterator<JsonNode> datePartsNodeIter = ((ArrayNode)datePartsNode).elements();
-                        while (datePartsNodeIter.hasNext()) {
-                            JsonNode yearPartsNodeIterNode = datePartsNodeIter.next();
-                            String year = yearPartsNodeIterNode.asText();
-                            if (isNotBlank(year)) 
-                                metadataObj.year = year;
-                            break;
-                        }
-                    }
-                }
-            }
+        JsonNode issueNode = rootNode.get("issue");
+        if (issueNode != null && !issueNode.isMissingNode() && !issueNode.isNull()) {
+            String issueString = issueNode.asText();
+            if (isNotBlank(issueString))
+                metadataObj.issue = issueString;
         }
 
-        
-        /*if (data.issued) {
-            if (data.issued["date-parts"]) {
-                obj.year = data.issued["date-parts"][0][0]
-            }
+        // year is the first date part in issued or published or published-online or published-print, 
+        // we follow this order, the deposit date (created) is normally never used but ensures that we 
+        // always have a date as conservative fallback
+        for (String dateField : YEAR_FIELDS) {
+            metadataObj.year = getYear(rootNode.get(dateField));
+            if (metadataObj.year != null)
+                break;
         }
-        if (!obj.year && data["published-online"]) {
-            if (data["published-online"]["date-parts"]) {
-                obj.year = data["published-online"]["date-parts"][0][0]
-            }
-        }
-        if (!obj.year && data["published-print"]) {
-            if (data["published-print"]["date-parts"]) {
-                obj.year = data["published-print"]["date-parts"][0][0]
-            }
-        }
-        // this is deposit date, normally we will never use it, but it will ensure 
-        // that we always have a date as conservative fallback
-        if (!obj.year && data.created) {
-            if (data.created["date-parts"]) {
-                obj.year = data.created["date-parts"][0][0]
-            }
-        }*/
-        //console.log(obj.year);
 
         // bibliographic field is the concatenation of usual bibliographic metadata
         String biblio = buildBibliographicField(metadataObj);
@@ -348,6 +249,26 @@ public class MetadataObjBuilder {
         return metadataObj;
     }
 
+    /**
+     * Return the year of a Crossref date, e.g. {"date-parts": [[2020, 5, 1]]}, or null if the date is
+     * absent or has no date parts
+     */
+    private static String getYear(JsonNode dateNode) {
+        if (dateNode == null || dateNode.isMissingNode())
+            return null;
+        JsonNode datePartsNode = dateNode.get("date-parts");
+        if (datePartsNode == null || !datePartsNode.isArray() || datePartsNode.size() == 0)
+            return null;
+        JsonNode yearNode = datePartsNode.get(0);
+        // the first date part is normally itself an array starting with the year
+        if (yearNode.isArray())
+            yearNode = yearNode.size() > 0 ? yearNode.get(0) : null;
+        if (yearNode == null || yearNode.isNull())
+            return null;
+        String year = yearNode.asText();
+        return isNotBlank(year) ? year : null;
+    }
+
     public static String buildBibliographicField(MetadataObj obj) {
         StringBuilder res = new StringBuilder();
 
@@ -360,10 +281,10 @@ public class MetadataObjBuilder {
             res.append(" ").append(obj.title.get(0));
 
         if (obj.journal != null && obj.journal.size()>0)
-            res.append(" ").append(obj.journal);
+            res.append(" ").append(String.join(" ", obj.journal));
 
         if (obj.abbreviated_journal != null && obj.abbreviated_journal.size()>0)
-            res.append(" ").append(obj.abbreviated_journal);
+            res.append(" ").append(String.join(" ", obj.abbreviated_journal));
 
         if (isNotBlank(obj.volume))
             res.append(" ").append(obj.volume);
@@ -377,7 +298,7 @@ public class MetadataObjBuilder {
         if (isNotBlank(obj.year))
             res.append(" ").append(obj.year);
         
-        return res.toString();
+        return res.toString().trim();
     }
     
     public static boolean isFilteredType(MetadataObj obj) {
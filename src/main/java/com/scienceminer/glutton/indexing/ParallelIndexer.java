@@ -0,0 +1,453 @@
+package com.scienceminer.glutton.indexing;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.scienceminer.glutton.configuration.LookupConfiguration;
+import com.scienceminer.glutton.exception.ServiceOverloadedException;
+import com.scienceminer.glutton.storage.LmdbStore;
+import org.lmdbjava.CursorIterable;
+import org.lmdbjava.Env;
+import org.lmdbjava.KeyRange;
+import org.lmdbjava.Txn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Parallel indexing of a LMDB database of JSON records.
+ *
+ * The key space is divided in slices, each slice is read by a worker thread in its own read
+ * transaction, the records are converted into index documents by the worker and sent through the
+ * shared bounded bulk sender (ElasticSearchAsyncIndexer). The distribution of the keys is not
+ * known in advance (a few DOI prefixes gather a large part of the records), so a worker without
+ * slice splits the remaining key range of a running slice in two and takes the upper half.
+ *
+ * For each slice, the last key whose bulk requests are completed is saved regularly in a checkpoint
+ * file, an interrupted indexing can then be resumed from these keys.
+ */
+public class ParallelIndexer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParallelIndexer.class);
+
+    // max number of batches sent by a worker and not yet completed
+    private static final int MAX_PENDING_BATCHES = 2;
+    private static final long CHECKPOINT_INTERVAL_SECONDS = 30;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final LookupConfiguration configuration;
+    private final int threads;
+    private final boolean resume;
+    private final ElasticSearchAsyncIndexer bulkSender;
+
+    public ParallelIndexer(LookupConfiguration configuration, int threads, boolean resume) {
+        this.configuration = configuration;
+        this.threads = Math.max(1, threads);
+        this.resume = resume;
+        this.bulkSender = ElasticSearchAsyncIndexer.getInstance(configuration);
+    }
+
+    public void indexCollection(LmdbStore<String> jsonMetadataStore,
+                                Meter meter,
+                                Counter counterIndexedRecords,
+                                Counter counterFailedIndexedRecords) throws InterruptedException {
+        final File checkpointFile = getCheckpointFile(jsonMetadataStore);
+
+        final List<Slice> slices = new ArrayList<>();
+        if (resume && checkpointFile.exists()) {
+            try {
+                slices.addAll(readCheckpoint(checkpointFile));
+                LOGGER.info("Resuming the indexing of " + jsonMetadataStore.getName() + " with " + slices.size() + " remaining slices");
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot read the indexing checkpoint " + checkpointFile.getPath(), e);
+            }
+        } else {
+            slices.add(new Slice(0, null, null, null));
+        }
+
+        final Indexing indexing = new Indexing(jsonMetadataStore, slices, meter, counterIndexedRecords, counterFailedIndexedRecords);
+
+        final ScheduledExecutorService checkpointScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "indexing-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checkpointScheduler.scheduleWithFixedDelay(() -> {
+            indexing.logProgress();
+            writeCheckpoint(checkpointFile, indexing.pendingSlices());
+        }, CHECKPOINT_INTERVAL_SECONDS, CHECKPOINT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+        final AtomicInteger counter = new AtomicInteger(0);
+        final ExecutorService workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "indexing-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < threads; i++) {
+            workers.submit(indexing::work);
+        }
+        workers.shutdown();
+        workers.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        checkpointScheduler.shutdownNow();
+
+        bulkSender.awaitPending();
+        if (indexing.failed()) {
+            // the slices which were not completed can be resumed
+            writeCheckpoint(checkpointFile, indexing.pendingSlices());
+            LOGGER.error("The indexing of " + jsonMetadataStore.getName() + " is not complete, it can be resumed from " +
+                checkpointFile.getPath());
+        } else if (checkpointFile.exists() && !checkpointFile.delete()) {
+            LOGGER.warn("Cannot delete the indexing checkpoint " + checkpointFile.getPath());
+        }
+        ElasticSearchIndexer.getInstance(configuration).refreshIndex(configuration.getElastic().getIndex());
+    }
+
+    private File getCheckpointFile(LmdbStore<String> jsonMetadataStore) {
+        return new File(configuration.getStorage() + File.separator + "index-checkpoint-" + jsonMetadataStore.getName() + ".json");
+    }
+
+    /**
+     * The indexing of a database, shared by the worker threads
+     */
+    private class Indexing {
+        private final LmdbStore<String> store;
+        private final Deque<Slice> queue = new ArrayDeque<>();
+        private final List<Slice> running = new ArrayList<>();
+        private final Meter meter;
+        private final Counter counterIndexedRecords;
+        private final Counter counterFailedIndexedRecords;
+        private int nextSliceId;
+        private boolean failed = false;
+
+        Indexing(LmdbStore<String> store, List<Slice> slices, Meter meter,
+                 Counter counterIndexedRecords, Counter counterFailedIndexedRecords) {
+            this.store = store;
+            this.queue.addAll(slices);
+            this.meter = meter;
+            this.counterIndexedRecords = counterIndexedRecords;
+            this.counterFailedIndexedRecords = counterFailedIndexedRecords;
+            this.nextSliceId = slices.stream().mapToInt(slice -> slice.id).max().orElse(0) + 1;
+        }
+
+        void work() {
+            Slice slice;
+            while ((slice = nextSlice()) != null) {
+                try {
+                    indexSlice(slice);
+                    finished(slice, true);
+                } catch (Exception e) {
+                    LOGGER.error("Indexing of slice " + slice.id + " of " + store.getName() + " failed", e);
+                    finished(slice, false);
+                }
+            }
+        }
+
+        /**
+         * Take a pending slice, or split the remaining range of a running slice, return null
+         * when everything is indexed or assigned
+         */
+        private synchronized Slice nextSlice() {
+            Slice slice = queue.poll();
+            if (slice == null) {
+                for (Slice candidate : running) {
+                    slice = candidate.split(nextSliceId);
+                    if (slice != null) {
+                        nextSliceId++;
+                        break;
+                    }
+                }
+            }
+            if (slice != null)
+                running.add(slice);
+            return slice;
+        }
+
+        private synchronized void finished(Slice slice, boolean success) {
+            if (success) {
+                running.remove(slice);
+            } else {
+                failed = true;
+                slice.failed = true;
+            }
+        }
+
+        synchronized boolean failed() {
+            return failed;
+        }
+
+        /**
+         * The slices which are not completely indexed, with their completed position
+         */
+        synchronized List<Slice> pendingSlices() {
+            List<Slice> pending = new ArrayList<>(running);
+            pending.addAll(queue);
+            return pending;
+        }
+
+        synchronized void logProgress() {
+            for (Slice slice : running) {
+                LOGGER.info("Indexing " + store.getName() + ", slice " + slice.id + ": " + slice.read.get() +
+                    " records read, up to key " + slice.describePosition(store));
+            }
+        }
+
+        private void indexSlice(Slice slice) throws Exception {
+            final Deque<CompletableFuture<Void>> pendingBatches = new ArrayDeque<>();
+            final Deque<byte[]> pendingKeys = new ArrayDeque<>();
+            final int batchSize = Math.max(1, configuration.getIndexingBatchSize());
+
+            List<String> batch = new ArrayList<>(batchSize);
+            byte[] batchLastKey = null;
+
+            try (Txn<ByteBuffer> txn = store.getEnvironment().txnRead();
+                 CursorIterable<ByteBuffer> it = store.getDbi().iterate(txn, slice.startRange())) {
+                for (final CursorIterable.KeyVal<ByteBuffer> kv : it) {
+                    final byte[] key = new byte[kv.key().remaining()];
+                    kv.key().duplicate().get(key);
+                    if (!slice.advance(key))
+                        break;
+
+                    String value = null;
+                    try {
+                        // value is null for entries which are not JSON records (e.g. last indexed date)
+                        value = store.decodeValue(kv.val());
+                    } catch (IOException e) {
+                        LOGGER.error("Cannot decompress document with key: " + store.decodeKey(kv.key()), e);
+                    }
+                    meter.mark();
+                    if (value != null)
+                        batch.add(value);
+                    batchLastKey = key;
+
+                    if (batch.size() >= batchSize) {
+                        send(batch, batchLastKey, pendingBatches, pendingKeys, slice);
+                        batch = new ArrayList<>(batchSize);
+                    }
+                }
+            } catch (Env.ReadersFullException e) {
+                throw new ServiceOverloadedException("Not enough readers for LMDB access, increase them or reduce the parallel request rate. ", e);
+            }
+
+            if (batchLastKey != null)
+                send(batch, batchLastKey, pendingBatches, pendingKeys, slice);
+            while (!pendingBatches.isEmpty()) {
+                pendingBatches.poll().get();
+                slice.committed(pendingKeys.poll());
+            }
+        }
+
+        private void send(List<String> batch, byte[] lastKey, Deque<CompletableFuture<Void>> pendingBatches,
+                          Deque<byte[]> pendingKeys, Slice slice) throws InterruptedException, ExecutionException {
+            pendingBatches.add(bulkSender.asyncIndexDocumentsWithCompletion(batch, counterIndexedRecords, counterFailedIndexedRecords));
+            pendingKeys.add(lastKey);
+
+            // the position of the slice progresses in order, when the oldest batches are completed
+            while (!pendingBatches.isEmpty() &&
+                (pendingBatches.size() > MAX_PENDING_BATCHES || pendingBatches.peek().isDone())) {
+                pendingBatches.poll().get();
+                slice.committed(pendingKeys.poll());
+            }
+        }
+    }
+
+    /**
+     * A range of keys [from, to) of the database, null bounds meaning the start or end of the
+     * database. Keys are compared as unsigned bytes, as done by LMDB.
+     */
+    static class Slice {
+        private final int id;
+        private final byte[] from;
+        private byte[] to;
+        // last key read by the worker
+        private byte[] position;
+        // last key whose bulk requests are completed, the indexing is resumed after it
+        private volatile byte[] committed;
+        private final AtomicLong read = new AtomicLong(0);
+        private volatile boolean failed = false;
+
+        Slice(int id, byte[] from, byte[] to, byte[] committed) {
+            this.id = id;
+            this.from = from;
+            this.to = to;
+            this.committed = committed;
+            this.position = committed;
+        }
+
+        byte[] getFrom() {
+            return from;
+        }
+
+        KeyRange<ByteBuffer> startRange() {
+            if (committed != null)
+                return KeyRange.greaterThan(directBuffer(committed));
+            if (from != null)
+                return KeyRange.atLeast(directBuffer(from));
+            return KeyRange.all();
+        }
+
+        /**
+         * Record the key read by the worker, return false if the key is beyond the slice (the
+         * slice might have been split in the meantime)
+         */
+        synchronized boolean advance(byte[] key) {
+            if (to != null && compare(key, to) >= 0)
+                return false;
+            position = key;
+            read.incrementAndGet();
+            return true;
+        }
+
+        void committed(byte[] key) {
+            committed = key;
+        }
+
+        /**
+         * Split the range not read yet in two halves, this slice keeping the lower half, return
+         * the upper half or null if the range cannot be split
+         */
+        synchronized Slice split(int newId) {
+            if (failed)
+                return null;
+            final byte[] lower = position != null ? position : (from != null ? from : new byte[0]);
+            final byte[] middle = middle(lower, to);
+            if (middle == null)
+                return null;
+            final Slice upper = new Slice(newId, middle, to, null);
+            to = middle;
+            return upper;
+        }
+
+        synchronized String describePosition(LmdbStore<String> store) {
+            if (position == null)
+                return "-";
+            try {
+                return store.decodeKey(ByteBuffer.wrap(position));
+            } catch (Exception e) {
+                return Base64.getEncoder().encodeToString(position);
+            }
+        }
+
+        synchronized ObjectNode toJson() {
+            final ObjectNode node = MAPPER.createObjectNode();
+            node.put("id", id);
+            node.put("from", encode(from));
+            node.put("to", encode(to));
+            node.put("committed", encode(committed));
+            return node;
+        }
+
+        static Slice fromJson(JsonNode node) {
+            return new Slice(node.get("id").asInt(), decode(node.get("from")), decode(node.get("to")),
+                decode(node.get("committed")));
+        }
+    }
+
+    /**
+     * A key strictly between the two keys, null if there is none, the upper bound null meaning
+     * the end of the key space
+     */
+    static byte[] middle(byte[] lower, byte[] upper) {
+        final byte[] upperBound = upper != null ? upper : new byte[] { (byte) 0xff, (byte) 0xff };
+        if (compare(lower, upperBound) >= 0)
+            return null;
+
+        // average of the two keys as big-endian numbers, padded to the same length
+        final int length = Math.max(lower.length, upperBound.length) + 1;
+        final byte[] middle = new byte[length];
+        int carry = 0;
+        for (int i = length - 1; i >= 0; i--) {
+            int sum = byteAt(lower, i) + byteAt(upperBound, i) + carry;
+            middle[i] = (byte) sum;
+            carry = sum >> 8;
+        }
+        // division by 2, with the carry as most significant bit
+        int remainder = carry;
+        for (int i = 0; i < length; i++) {
+            int value = (remainder << 8) | (middle[i] & 0xff);
+            middle[i] = (byte) (value >> 1);
+            remainder = value & 1;
+        }
+
+        // trailing zero bytes are removed, a shorter key comes first
+        int end = length;
+        while (end > 0 && middle[end - 1] == 0)
+            end--;
+        final byte[] result = Arrays.copyOf(middle, end);
+        if (compare(lower, result) < 0 && compare(result, upperBound) < 0)
+            return result;
+        return null;
+    }
+
+    private static int byteAt(byte[] bytes, int i) {
+        return i < bytes.length ? bytes[i] & 0xff : 0;
+    }
+
+    static int compare(byte[] a, byte[] b) {
+        return Arrays.compareUnsigned(a, b);
+    }
+
+    private static ByteBuffer directBuffer(byte[] bytes) {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        return buffer;
+    }
+
+    private static String encode(byte[] bytes) {
+        return bytes == null ? null : Base64.getEncoder().encodeToString(bytes);
+    }
+
+    private static byte[] decode(JsonNode node) {
+        return node == null || node.isNull() ? null : Base64.getDecoder().decode(node.asText());
+    }
+
+    private static List<Slice> readCheckpoint(File checkpointFile) throws IOException {
+        final List<Slice> slices = new ArrayList<>();
+        final JsonNode checkpoint = MAPPER.readTree(checkpointFile);
+        for (JsonNode slice : checkpoint.get("slices")) {
+            slices.add(Slice.fromJson(slice));
+        }
+        return slices;
+    }
+
+    /**
+     * Save the pending slices, the file is replaced atomically so that an interruption during the
+     * writing does not lose the previous checkpoint
+     */
+    private static synchronized void writeCheckpoint(File checkpointFile, List<Slice> slices) {
+        final ObjectNode checkpoint = MAPPER.createObjectNode();
+        final ArrayNode slicesNode = checkpoint.putArray("slices");
+        for (Slice slice : slices) {
+            slicesNode.add(slice.toJson());
+        }
+        final File tmpFile = new File(checkpointFile.getPath() + ".tmp");
+        try {
+            MAPPER.writeValue(tmpFile, checkpoint);
+            Files.move(tmpFile.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.error("Cannot write the indexing checkpoint " + checkpointFile.getPath(), e);
+        }
+    }
+}
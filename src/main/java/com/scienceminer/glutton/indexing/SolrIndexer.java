@@ -1,14 +1,23 @@
 package com.scienceminer.glutton.indexing;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.*;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
 import com.scienceminer.glutton.configuration.LookupConfiguration;
+import com.scienceminer.glutton.exception.ServiceException;
+import com.scienceminer.glutton.storage.LmdbStore;
 
-import org.apache.solr.client.solrj.SolrClient;
+import org.apache.commons.io.FileUtils;
+import org.apache.solr.client.solrj.SolrRequest;
 import org.apache.solr.client.solrj.SolrServerException;
-import org.apache.solr.client.solrj.impl.HttpSolrClient;
+import org.apache.solr.client.solrj.impl.ConcurrentUpdateSolrClient;
+import org.apache.solr.client.solrj.request.GenericSolrRequest;
+import org.apache.solr.client.solrj.request.RequestWriter;
 import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.ModifiableSolrParams;
 
 import org.lmdbjava.*;
 import java.nio.ByteBuffer;
@@ -16,12 +25,184 @@ import java.nio.ByteBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Indexing of the metadata records in a Solr core. The documents are streamed to Solr by several
+ * concurrent update requests, taking the documents from a shared bounded queue, so that the reading
+ * of the LMDB and the conversion of the records are not blocked by the indexing.
+ *
+ * The fields and their analysis are the ones of the Elasticsearch index, they are added to the
+ * schema of the core with the schema API (config/solr-schema.json).
+ */
 public class SolrIndexer {
     protected static final Logger logger = LoggerFactory.getLogger(SolrIndexer.class);
 
     private static volatile SolrIndexer instance;
 
+    // unique key of the default Solr schema
+    public static final String FIELD_ID = "id";
+
     private LookupConfiguration configuration;
+    private ConcurrentUpdateSolrClient solrClient;
+
+    private String schemaPath = "config/solr-schema.json";
+
+    public static SolrIndexer getInstance(LookupConfiguration configuration) {
+        if (instance == null) {
+            synchronized (SolrIndexer.class) {
+                if (instance == null) {
+                    getNewInstance(configuration);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Creates a new instance.
+     */
+    private static synchronized void getNewInstance(LookupConfiguration configuration) {
+        instance = new SolrIndexer(configuration);
+    }
+
+    private SolrIndexer(LookupConfiguration configuration) {
+        this.configuration = configuration;
+        this.solrClient = new ConcurrentUpdateSolrClient.Builder(getCoreUrl(configuration))
+            .withQueueSize(configuration.getSolr().getUpdateQueueSize())
+            .withThreadCount(configuration.getSolr().getUpdateThreads())
+            .build();
+    }
+
+    /**
+     * @return the URL of the configured Solr core, e.g. http://localhost:8983/solr/glutton
+     */
+    public static String getCoreUrl(LookupConfiguration configuration) {
+        String host = configuration.getSolr().getHost();
+        if (!host.startsWith("http://") && !host.startsWith("https://"))
+            host = "http://" + host;
+        if (host.endsWith("/"))
+            host = host.substring(0, host.length() - 1);
+        return host + "/solr/" + configuration.getSolr().getCore();
+    }
+
+    /**
+     * Add the glutton fields to the schema of the core and, unless the existing documents are kept,
+     * remove all the documents of the core
+     **/
+    public void setupIndex(boolean keepExisting) {
+        String schemaJsonString;
+        try {
+            schemaJsonString = FileUtils.readFileToString(new File(schemaPath), "UTF-8");
+        } catch (IOException ioException) {
+            throw new ServiceException(500, "Reading Solr schema failed", ioException);
+        }
+
+        try {
+            GenericSolrRequest schemaRequest = new GenericSolrRequest(SolrRequest.METHOD.POST, "/schema",
+                new ModifiableSolrParams());
+            schemaRequest.setContentWriter(new RequestWriter.StringPayloadContentWriter(schemaJsonString, "application/json"));
+            solrClient.request(schemaRequest);
+            logger.info("Solr schema updated successfully");
+        } catch (IOException e) {
+            throw new ServiceException(500, "Cannot connect to Solr", e);
+        } catch (SolrServerException | RuntimeException e) {
+            // the fields are already defined when the core was already used for glutton
+            logger.warn("The Solr schema was not updated: " + e.getMessage());
+        }
+
+        if (keepExisting)
+            return;
+
+        try {
+            solrClient.deleteByQuery("*:*");
+            solrClient.commit();
+            logger.info("Existing documents removed from the Solr core " + configuration.getSolr().getCore());
+        } catch (IOException | SolrServerException e) {
+            throw new ServiceException(500, "Cannot remove the existing documents of the Solr core", e);
+        }
+    }
+
+    /**
+     * Index all the values of a LMDB storage. The expected values are JSON documents
+     * in the CrossRef format.
+     * Document identifier is the source prefixed by the main identifier of the this source:
+     * e.g. crossref:DOI, hal:HalID, pubmed:pmid
+     **/
+    public void indexCollection(LmdbStore<String> jsonMetadataStore, Meter meter, Counter counterIndexedRecords) {
+        final Env<ByteBuffer> environment = jsonMetadataStore.getEnvironment();
+        try (Txn<ByteBuffer> txn = environment.txnRead();
+             CursorIterable<ByteBuffer> it = jsonMetadataStore.getDbi().iterate(txn, KeyRange.all())) {
+            for (final CursorIterable.KeyVal<ByteBuffer> kv : it) {
+                String key = null;
+                try {
+                    key = jsonMetadataStore.decodeKey(kv.key());
+                    String value = jsonMetadataStore.decodeValue(kv.val());
+
+                    // value is null for entries which are not JSON records (e.g. last indexed date)
+                    MetadataObj objToIndex = value == null ? null : MetadataObjBuilder.createMetadataObj(value);
+                    if (objToIndex != null && !MetadataObjBuilder.isFilteredType(objToIndex)) {
+                        // queued, the call blocks only when the queue of the update requests is full
+                        solrClient.add(toSolrDocument(objToIndex));
+                        meter.mark();
+                        counterIndexedRecords.inc();
+                    }
+                } catch (IOException | SolrServerException e) {
+                    logger.error("Cannot index document with key: " + key, e);
+                }
+            }
+        }
+
+        // wait for the queued documents before reading the next storage
+        solrClient.blockUntilFinished();
+    }
+
+    protected static SolrInputDocument toSolrDocument(MetadataObj obj) {
+        SolrInputDocument document = new SolrInputDocument();
+        document.addField(FIELD_ID, obj._id);
+        addField(document, "DOI", obj.DOI);
+        addField(document, "halId", obj.halId);
+        addFields(document, "title", obj.title);
+        addField(document, "first_author", obj.first_author);
+        addField(document, "author", obj.author);
+        addField(document, "first_page", obj.first_page);
+        addFields(document, "journal", obj.journal);
+        addFields(document, "abbreviated_journal", obj.abbreviated_journal);
+        addField(document, "volume", obj.volume);
+        addField(document, "issue", obj.issue);
+        addField(document, "year", obj.year);
+        addField(document, "bibliographic", obj.bibliographic);
+        return document;
+    }
+
+    private static void addField(SolrInputDocument document, String name, String value) {
+        if (value != null)
+            document.addField(name, value);
+    }
+
+    private static void addFields(SolrInputDocument document, String name, List<String> values) {
+        if (values == null)
+            return;
+        for (String value : values) {
+            addField(document, name, value);
+        }
+    }
+
+    /**
+     * Commit the indexed documents, so that they are visible to the blocking queries
+     */
+    public void commit() {
+        try {
+            solrClient.blockUntilFinished();
+            solrClient.commit();
+        } catch (IOException | SolrServerException e) {
+            logger.error("Commit of the Solr core failed", e);
+        }
+    }
 
-    
+    public void close() {
+        try {
+            solrClient.close();
+        } catch (IOException e) {
+            logger.warn("Error when closing the Solr client", e);
+        }
+    }
 }
@@ -1,26 +1,16 @@
 package com.scienceminer.glutton.reader;
 
 import com.codahale.metrics.Counter;
-import com.codahale.metrics.Meter;
-import com.fasterxml.jackson.core.JsonGenerationException;
 import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.scienceminer.glutton.configuration.LookupConfiguration;
-import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang3.NotImplementedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.function.Consumer;
-import java.util.stream.Stream;
 
 public class CrossrefJsonArrayReader extends CrossrefJsonReader {
     private static final Logger LOGGER = LoggerFactory.getLogger(CrossrefJsonArrayReader.class);
@@ -30,34 +20,30 @@ public class CrossrefJsonArrayReader extends CrossrefJsonReader {
         this.configuration = configuration;
     }
 
-    public void load(InputStream input, Counter counterInvalidRecords, Consumer<JsonNode> closure) {
-        final JsonNode jsonMap = fromJson(input);
-        if (jsonMap != null && jsonMap.get("items") != null) {
-            for (JsonNode crossrefRawData : jsonMap.get("items")) {
-                if (isRecordIncomplete(crossrefRawData)) {
-                    counterInvalidRecords.inc();
+    /**
+     * The file is read as a stream of tokens, the records of the items array are built one at a
+     * time rather than building first the tree of the whole file.
+     */
+    public void load(InputStream input, Counter counterInvalidRecords, Consumer<JsonNode> closure) throws IOException {
+        try (JsonParser parser = MAPPER.getFactory().createParser(input)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                LOGGER.error("Null/empty content. The whole file will be ignored. ");
+                return;
+            }
+            boolean items = false;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                if (parser.nextToken() == JsonToken.START_ARRAY && "items".equals(field)) {
+                    items = true;
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        processRecord(readRecord(parser), counterInvalidRecords, closure);
+                    }
                 } else {
-                    final JsonNode crossrefData = postProcessRecord(crossrefRawData);
-                    closure.accept(crossrefData);
+                    parser.skipChildren();
                 }
             }
-        } else {
-            LOGGER.error("Null/empty content. The whole file will be ignored. ");
-        }
-    }
-
-    private JsonNode fromJson(InputStream inputLine) {
-        try {
-            ObjectMapper mapper = new ObjectMapper();
-            mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, true);
-            mapper.configure(JsonParser.Feature.ALLOW_SINGLE_QUOTES, true);
-            mapper.configure(JsonParser.Feature.AUTO_CLOSE_SOURCE, false);
-            return mapper.readTree(inputLine);
-        } catch (JsonGenerationException | JsonMappingException e) {
-            LOGGER.error("The input cannot be deserialised. ", e);
-        } catch (IOException e) {
-            LOGGER.error("Some serious error when deserialize the JSON object", e);
+            if (!items)
+                LOGGER.error("Null/empty content. The whole file will be ignored. ");
         }
-        return null;
     }
 }
@@ -2,7 +2,11 @@ package com.scienceminer.glutton.reader;
 
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.Meter;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.NullNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.scienceminer.glutton.configuration.LookupConfiguration;
 import org.apache.commons.lang3.StringUtils;
@@ -16,6 +20,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
+import java.util.HashSet;
+import java.util.Set;
 import java.util.function.Consumer;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -31,18 +37,72 @@ import static org.apache.commons.lang3.StringUtils.isBlank;
 public abstract class CrossrefJsonReader {
     private static final Logger LOGGER = LoggerFactory.getLogger(CrossrefJsonReader.class);
 
+    protected static final ObjectMapper MAPPER = new ObjectMapper()
+        .configure(JsonParser.Feature.ALLOW_SINGLE_QUOTES, true)
+        .configure(JsonParser.Feature.AUTO_CLOSE_SOURCE, false);
+
     protected LookupConfiguration configuration;
 
     // this date keeps track of the latest indexed date of the file currently read
     protected LocalDateTime lastIndexed = null; 
 
-    public CrossrefJsonReader() {}
+    // fields skipped by the parser, without being materialized
+    private final Set<String> skippedFields = new HashSet<>();
+
+    public CrossrefJsonReader() {
+        this(null);
+    }
 
     public CrossrefJsonReader(LookupConfiguration configuration) {
         this.configuration = configuration;
+
+        if (configuration != null && 
+            configuration.getCrossref() != null && 
+            configuration.getCrossref().getIgnoreCrossrefFields() != null) {
+            skippedFields.addAll(configuration.getCrossref().getIgnoreCrossrefFields());
+        }
+        skippedFields.add("_id");
+        // the indexed date is still needed for the latest indexed date, it is removed afterwards
+        skippedFields.remove("indexed");
     }
 
-    public abstract void load(InputStream input, Counter counter, Consumer<JsonNode> closure);
+    /**
+     * Read the records of the input, a malformed record is skipped but a stream which cannot be read 
+     * until its end (e.g. truncated or corrupted) fails the load, the records being only partially 
+     * read
+     */
+    public abstract void load(InputStream input, Counter counter, Consumer<JsonNode> closure) throws IOException;
+
+    /**
+     * Read a Crossref record from the parser, positioned on the start of the record object. The
+     * ignored fields, typically the large reference and abstract fields, are skipped at the token
+     * level so that their subtree is never built.
+     */
+    protected JsonNode readRecord(JsonParser parser) throws IOException {
+        final ObjectNode record = MAPPER.createObjectNode();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            parser.nextToken();
+            if (skippedFields.contains(field)) {
+                parser.skipChildren();
+            } else {
+                final JsonNode value = MAPPER.readTree(parser);
+                record.set(field, value == null ? NullNode.getInstance() : value);
+            }
+        }
+        return record;
+    }
+
+    /**
+     * Post-process and pass a record to the closure, or count it as invalid
+     */
+    protected void processRecord(JsonNode crossrefRawData, Counter counterInvalidRecords, Consumer<JsonNode> closure) {
+        if (isRecordIncomplete(crossrefRawData)) {
+            counterInvalidRecords.inc();
+        } else {
+            closure.accept(postProcessRecord(crossrefRawData));
+        }
+    }
 
     public boolean isRecordIncomplete(JsonNode crossrefData) {
         if (crossrefData == null) {
@@ -109,26 +169,4 @@ public abstract class CrossrefJsonReader {
         LocalDateTime date = LocalDateTime.ofInstant(dateInstant, ZoneId.of(ZoneOffset.UTC.getId()));
         return date;
     }
-
-    /**
-     * Check is the file is a json array or in jsonl format
-     */
-    public static boolean isJsonArray(InputStream inputStreamCrossref) {
-        boolean result = false;
-        try (BufferedReader r = new BufferedReader(new InputStreamReader(inputStreamCrossref))) {
-            String firstLine = r.readLine();
-            if (firstLine.startsWith("{\"items\":["))
-                result = true;
-            else {
-                String secondLine = r.readLine();
-                // from https://github.com/karatekaneen, NOTE: The 2023 dump has a space before ":"
-                if (StringUtils.strip(secondLine).startsWith("\"items\": [") || 
-                    StringUtils.strip(secondLine).startsWith("\"items\" : ["))
-                    result = true;
-            }
-        } catch(IOException e) {
-            LOGGER.error("cannot read input stream when trying to detect json format type", e);
-        }
-        return result;
-    }
 }
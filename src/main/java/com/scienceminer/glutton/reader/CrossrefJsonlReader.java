@@ -1,13 +1,10 @@
 package com.scienceminer.glutton.reader;
 
 import com.codahale.metrics.Counter;
-import com.codahale.metrics.Meter;
-import com.fasterxml.jackson.core.JsonGenerationException;
 import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.scienceminer.glutton.configuration.LookupConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,6 +13,8 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.util.List;
 import java.util.function.Consumer;
 
 public class CrossrefJsonlReader extends CrossrefJsonReader{
@@ -26,32 +25,39 @@ public class CrossrefJsonlReader extends CrossrefJsonReader{
         this.configuration = configuration;
     }
 
-    public void load(InputStream input, Counter counterInvalidRecords, Consumer<JsonNode> closure) {
+    public void load(InputStream input, Counter counterInvalidRecords, Consumer<JsonNode> closure) throws IOException {
         try (BufferedReader br = new BufferedReader(new InputStreamReader(input))) {
 
             //br returns as stream and convert it into a List
             br.lines().forEach(line -> {
                 final JsonNode crossrefRawData = fromJson(line);
-                if (isRecordIncomplete(crossrefRawData)) {
-                    counterInvalidRecords.inc();
-                } else {
-                    final JsonNode crossrefData = postProcessRecord(crossrefRawData);
-                    closure.accept(crossrefData);
-                }
+                processRecord(crossrefRawData, counterInvalidRecords, closure);
             });
 
-        } catch (IOException e) {
-            LOGGER.error("Some serious error when processing the input Crossref file.", e);
+        } catch (UncheckedIOException e) {
+            // the stream of lines wraps the read errors of the input
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Process records already split in lines, like the results of the Crossref REST API
+     */
+    public void load(List<String> lines, Counter counterInvalidRecords, Consumer<JsonNode> closure) {
+        for (String line : lines) {
+            processRecord(fromJson(line), counterInvalidRecords, closure);
         }
     }
 
+    /**
+     * Each line is parsed separately so that a malformed line does not stop the reading of the
+     * rest of the file
+     */
     private JsonNode fromJson(String inputLine) {
-        try {
-            ObjectMapper mapper = new ObjectMapper();
-            mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, true);
-            mapper.configure(JsonParser.Feature.ALLOW_SINGLE_QUOTES, true);
-            return mapper.readTree(inputLine);
-        } catch (JsonGenerationException | JsonMappingException e) {
+        try (JsonParser parser = MAPPER.getFactory().createParser(inputLine)) {
+            if (parser.nextToken() == JsonToken.START_OBJECT)
+                return readRecord(parser);
+        } catch (JsonProcessingException e) {
             LOGGER.error("The input line cannot be processed\n " + inputLine + "\n ", e);
         } catch (IOException e) {
             LOGGER.error("Some serious error when deserialize the JSON object: \n" + inputLine, e);
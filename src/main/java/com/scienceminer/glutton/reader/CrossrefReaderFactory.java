@@ -0,0 +1,130 @@
+package com.scienceminer.glutton.reader;
+
+import com.scienceminer.glutton.configuration.LookupConfiguration;
+import com.scienceminer.glutton.utils.ParallelXZInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Open a Crossref dump file and detect its format from the first bytes of a single stream, so that
+ * the file is decompressed only once:
+ * - the compression (gzip, xz or none) is detected from the magic bytes of the file,
+ * - the content (tar archive, json array or jsonl) is detected from the first bytes of the
+ *   decompressed stream, the stream is then reset and can be read from the start.
+ */
+public class CrossrefReaderFactory {
+
+    public enum Format {
+        JSONL,
+        JSON_ARRAY,
+        TAR
+    }
+
+    // a tar header is 512 bytes, the magic "ustar" being at offset 257
+    private static final int SNIFF_SIZE = 512;
+    private static final int TAR_MAGIC_OFFSET = 257;
+
+    private static final byte[] GZIP_MAGIC = { (byte) 0x1f, (byte) 0x8b };
+    private static final byte[] XZ_MAGIC = { (byte) 0xfd, '7', 'z', 'X', 'Z', 0x00 };
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Open a dump file, decompressed according to its magic bytes. The returned stream supports
+     * mark/reset. Multi-block xz files are decompressed with the given number of threads.
+     */
+    public static BufferedInputStream open(Path path, int xzThreads) throws IOException {
+        final byte[] magic = new byte[XZ_MAGIC.length];
+        final int length;
+        try (InputStream input = Files.newInputStream(path)) {
+            length = input.readNBytes(magic, 0, magic.length);
+        }
+
+        final InputStream input;
+        if (hasMagic(magic, length, XZ_MAGIC)) {
+            input = ParallelXZInputStream.open(path.toFile(), xzThreads);
+        } else if (hasMagic(magic, length, GZIP_MAGIC)) {
+            input = new GZIPInputStream(Files.newInputStream(path), BUFFER_SIZE);
+        } else {
+            input = Files.newInputStream(path);
+        }
+        return new BufferedInputStream(input, BUFFER_SIZE);
+    }
+
+    /**
+     * Detect the format of a decompressed dump stream, the stream is reset to its start
+     */
+    public static Format detectFormat(InputStream input) throws IOException {
+        if (!input.markSupported())
+            throw new IllegalArgumentException("The input stream must support mark/reset");
+
+        final byte[] head = new byte[SNIFF_SIZE];
+        input.mark(SNIFF_SIZE);
+        final int length;
+        try {
+            length = input.readNBytes(head, 0, SNIFF_SIZE);
+        } finally {
+            input.reset();
+        }
+        return detectFormat(head, length);
+    }
+
+    static Format detectFormat(byte[] head, int length) {
+        if (length >= TAR_MAGIC_OFFSET + 5 &&
+            new String(head, TAR_MAGIC_OFFSET, 5, StandardCharsets.US_ASCII).equals("ustar"))
+            return Format.TAR;
+
+        // a json array dump is an object with the records in an "items" array, possibly after
+        // white spaces, while a jsonl dump starts directly with the fields of the first record
+        int i = skipWhiteSpaces(head, 0, length);
+        if (i < length && head[i] == '{') {
+            i = skipWhiteSpaces(head, i + 1, length);
+            final byte[] items = "\"items\"".getBytes(StandardCharsets.US_ASCII);
+            if (i + items.length <= length && startsWith(head, i, items)) {
+                i = skipWhiteSpaces(head, i + items.length, length);
+                if (i < length && head[i] == ':') {
+                    i = skipWhiteSpaces(head, i + 1, length);
+                    if (i < length && head[i] == '[')
+                        return Format.JSON_ARRAY;
+                }
+            }
+        }
+        return Format.JSONL;
+    }
+
+    public static CrossrefJsonReader newReader(Format format, LookupConfiguration configuration) {
+        if (format == Format.JSON_ARRAY)
+            return new CrossrefJsonArrayReader(configuration);
+        else if (format == Format.JSONL)
+            return new CrossrefJsonlReader(configuration);
+        throw new IllegalArgumentException("No Crossref reader for a " + format + " stream");
+    }
+
+    private static int skipWhiteSpaces(byte[] bytes, int start, int length) {
+        int i = start;
+        // UTF-8 byte order mark
+        if (i == 0 && length >= 3 && bytes[0] == (byte) 0xef && bytes[1] == (byte) 0xbb && bytes[2] == (byte) 0xbf)
+            i = 3;
+        while (i < length && Character.isWhitespace(bytes[i]))
+            i++;
+        return i;
+    }
+
+    private static boolean hasMagic(byte[] bytes, int length, byte[] magic) {
+        return length >= magic.length && startsWith(bytes, 0, magic);
+    }
+
+    private static boolean startsWith(byte[] bytes, int offset, byte[] prefix) {
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[offset + i] != prefix[i])
+                return false;
+        }
+        return true;
+    }
+}
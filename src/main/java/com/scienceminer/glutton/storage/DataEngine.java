@@ -1,5 +1,6 @@
 package com.scienceminer.glutton.storage;
 
+import com.scienceminer.glutton.data.IdsGraphData;
 import com.scienceminer.glutton.data.IstexData;
 import com.scienceminer.glutton.data.PmidData;
 import com.scienceminer.glutton.storage.lookup.*;
@@ -19,6 +20,7 @@ public class DataEngine {
     private MetadataMatching metadataMatching = null;
     private PMIdsLookup pmidLookup = null;
     private HALLookup halLookup = null;
+    private IdsGraphLookup idsGraphLookup = null;
 
     public static Pattern DOIPattern = Pattern.compile("\"DOI\":\"(10\\.\\d{4,5}\\/[^\"\\s]+[^;,.\\s])\"");
 
@@ -31,6 +33,7 @@ public class DataEngine {
         this.crossrefMetadataLookup = CrossrefMetadataLookup.getInstance(storageFactory);
         this.pmidLookup = PMIdsLookup.getInstance(storageFactory);
         this.halLookup = HALLookup.getInstance(storageFactory);
+        this.idsGraphLookup = IdsGraphLookup.getInstance(storageFactory);
         this.metadataMatching = 
             MetadataMatching.getInstance(storageFactory.getConfiguration(), crossrefMetadataLookup, halLookup);
     }
@@ -45,6 +48,7 @@ public class DataEngine {
         returnMap.put("PMID size (LMDB)", String.valueOf(pmidLookup.getSize()));
         returnMap.put("ISTEX size (LMDB)", String.valueOf(istexLookup.getSize()));
         returnMap.put("DOI OA (Unpaywall) size (LMDB)", String.valueOf(oaDoiLookup.getSize()));
+        returnMap.put("DOI identifiers graph size (LMDB)", String.valueOf(idsGraphLookup.getSize()));
 
         return returnMap;
     }
@@ -76,6 +80,10 @@ public class DataEngine {
     public List<Pair<String, IstexData>> retrieveIstexRecords_piiToIds(Integer total) {
         return istexLookup.retrieveList_piiToIds(total);
     }
+
+    public List<Pair<String, IdsGraphData>> retrieveIdsGraph_doiToIds(Integer total) {
+        return idsGraphLookup.retrieveList(total);
+    }
     
     //Setters
 
@@ -98,4 +106,8 @@ public class DataEngine {
     protected void setPmidLookup(PMIdsLookup pmidLookup) {
         this.pmidLookup = pmidLookup;
     }
+
+    protected void setIdsGraphLookup(IdsGraphLookup idsGraphLookup) {
+        this.idsGraphLookup = idsGraphLookup;
+    }
 }
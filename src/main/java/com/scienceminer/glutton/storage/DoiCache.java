@@ -0,0 +1,196 @@
+package com.scienceminer.glutton.storage;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.scienceminer.glutton.configuration.LookupConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.apache.commons.lang3.StringUtils.lowerCase;
+
+/**
+ * Singleton class
+ * In-memory cache of the hot DOI lookups:
+ * - DOI -> Crossref metadata record,
+ * - DOI -> final record with the injected identifiers and OA link,
+ * - DOI -> OA link.
+ *
+ * The cache is bounded by the estimated size in bytes of the cached entries and the entries expire
+ * after a configured time. Missing records and OA links are also cached, so that the DOI absent from
+ * the databases are not looked up again. The entries of a DOI must be invalidated when the
+ * corresponding records are rewritten.
+ */
+public class DoiCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DoiCache.class);
+
+    private static volatile DoiCache instance;
+
+    private static final String RECORD_PREFIX = "r:";
+    private static final String ENRICHED_PREFIX = "e:";
+    private static final String OA_LINK_PREFIX = "o:";
+
+    // cached value for the missing records and OA links, as the cache does not store null values
+    private static final String MISSING = "";
+
+    // estimated memory overhead of an entry (cache node, key and value objects)
+    private static final int ENTRY_OVERHEAD = 128;
+
+    // null if the cache is disabled
+    private final Cache<String, Object> cache;
+
+    public static DoiCache getInstance(LookupConfiguration configuration) {
+        if (instance == null) {
+            synchronized (DoiCache.class) {
+                if (instance == null) {
+                    getNewInstance(configuration);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Creates a new instance.
+     */
+    private static synchronized void getNewInstance(LookupConfiguration configuration) {
+        instance = new DoiCache(configuration.getCache());
+    }
+
+    private DoiCache(LookupConfiguration.Cache configuration) {
+        if (configuration == null || configuration.getMaxSizeBytes() <= 0) {
+            cache = null;
+            return;
+        }
+
+        Caffeine<String, Object> builder = Caffeine.newBuilder()
+            .maximumWeight(configuration.getMaxSizeBytes())
+            .recordStats()
+            .weigher((String key, Object value) -> weigh(key, value));
+        if (configuration.getTtlSeconds() > 0)
+            builder.expireAfterWrite(Duration.ofSeconds(configuration.getTtlSeconds()));
+        cache = builder.build();
+
+        LOGGER.info("DOI cache enabled, max size: " + configuration.getMaxSizeBytes() + " bytes, ttl: " +
+            configuration.getTtlSeconds() + " s");
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * Return the Crossref record of a DOI, loading it with the loader if not cached. The loader
+     * returns null for a missing record.
+     */
+    public String getRecord(String doi, Function<String, String> loader) {
+        return getString(RECORD_PREFIX, lowerCase(doi), loader);
+    }
+
+    /**
+     * Return the OA link of a DOI, loading it with the loader if not cached. The loader returns
+     * null for a missing OA link.
+     */
+    public String getOaLink(String doi, Function<String, String> loader) {
+        return getString(OA_LINK_PREFIX, lowerCase(doi), loader);
+    }
+
+    /**
+     * Return the record with the injected identifiers and OA link of a DOI. The cached result is
+     * only used for the same input record, otherwise it is computed again and replaces the cached
+     * one.
+     */
+    public String getEnrichedRecord(String doi, String record, Supplier<String> enricher) {
+        if (cache == null)
+            return enricher.get();
+
+        final String key = ENRICHED_PREFIX + lowerCase(doi);
+        Object cached = cache.getIfPresent(key);
+        if (cached instanceof EnrichedRecord && Objects.equals(((EnrichedRecord) cached).input, record)) {
+            return ((EnrichedRecord) cached).output;
+        }
+
+        final String output = enricher.get();
+        cache.put(key, new EnrichedRecord(record, output));
+        return output;
+    }
+
+    private String getString(String prefix, String key, Function<String, String> loader) {
+        if (cache == null || key == null)
+            return loader.apply(key);
+
+        Object value = cache.get(prefix + key, k -> {
+            String loaded = loader.apply(key);
+            return loaded == null ? MISSING : loaded;
+        });
+        return MISSING.equals(value) ? null : (String) value;
+    }
+
+    /**
+     * Remove all the cached entries of a DOI, to be called when the records of the DOI are rewritten
+     */
+    public void invalidate(String doi) {
+        if (cache == null || doi == null)
+            return;
+
+        final String key = lowerCase(doi);
+        cache.invalidate(RECORD_PREFIX + key);
+        cache.invalidate(ENRICHED_PREFIX + key);
+        cache.invalidate(OA_LINK_PREFIX + key);
+    }
+
+    public void invalidateAll() {
+        if (cache != null)
+            cache.invalidateAll();
+    }
+
+    /**
+     * Register the hit, miss and eviction statistics of the cache in the metrics registry
+     */
+    public void registerMetrics(MetricRegistry metrics) {
+        if (cache == null)
+            return;
+
+        metrics.register(MetricRegistry.name(DoiCache.class, "hits"), (Gauge<Long>) () -> cache.stats().hitCount());
+        metrics.register(MetricRegistry.name(DoiCache.class, "misses"), (Gauge<Long>) () -> cache.stats().missCount());
+        metrics.register(MetricRegistry.name(DoiCache.class, "hitRate"), (Gauge<Double>) () -> cache.stats().hitRate());
+        metrics.register(MetricRegistry.name(DoiCache.class, "evictions"), (Gauge<Long>) () -> cache.stats().evictionCount());
+        metrics.register(MetricRegistry.name(DoiCache.class, "evictedBytes"), (Gauge<Long>) () -> cache.stats().evictionWeight());
+        metrics.register(MetricRegistry.name(DoiCache.class, "entries"), (Gauge<Long>) cache::estimatedSize);
+        metrics.register(MetricRegistry.name(DoiCache.class, "bytes"), (Gauge<Long>) () ->
+            cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L));
+    }
+
+    /**
+     * Estimated size in bytes of a cache entry, strings are counted with 2 bytes per char as upper bound
+     */
+    private static int weigh(String key, Object value) {
+        long size = ENTRY_OVERHEAD + 2L * key.length();
+        if (value instanceof String) {
+            size += 2L * ((String) value).length();
+        } else if (value instanceof EnrichedRecord) {
+            EnrichedRecord enriched = (EnrichedRecord) value;
+            if (enriched.input != null)
+                size += 2L * enriched.input.length();
+            if (enriched.output != null && enriched.output != enriched.input)
+                size += 2L * enriched.output.length();
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    private static class EnrichedRecord {
+        private final String input;
+        private final String output;
+
+        EnrichedRecord(String input, String output) {
+            this.input = input;
+            this.output = output;
+        }
+    }
+}
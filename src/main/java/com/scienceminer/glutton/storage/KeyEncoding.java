@@ -0,0 +1,84 @@
+package com.scienceminer.glutton.storage;
+
+import com.scienceminer.glutton.utils.BinarySerialiser;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encoding of the keys of a LMDB environment:
+ * - FST: FST serialized String (legacy encoding),
+ * - UTF8: plain UTF-8 bytes of the key.
+ *
+ * The encoding is recorded in the metadata database of each environment (see StorageMetadata),
+ * new environments are created with UTF-8 keys, existing environments without recorded encoding
+ * are considered as using FST keys.
+ */
+public enum KeyEncoding {
+    FST,
+    UTF8;
+
+    private static final ThreadLocal<CharsetEncoder> encoders =
+        ThreadLocal.withInitial(StandardCharsets.UTF_8::newEncoder);
+
+    private static final ThreadLocal<CharsetDecoder> decoders =
+        ThreadLocal.withInitial(StandardCharsets.UTF_8::newDecoder);
+
+    /**
+     * Write the encoded key in the target buffer, from its current position
+     */
+    public void encode(String key, ByteBuffer target) {
+        if (this == FST) {
+            target.put(BinarySerialiser.serialize(key));
+            return;
+        }
+
+        final CharsetEncoder encoder = encoders.get().reset();
+        CoderResult result = encoder.encode(CharBuffer.wrap(key), target, true);
+        if (!result.isError() && !result.isOverflow())
+            result = encoder.flush(target);
+        if (result.isOverflow()) {
+            throw new IllegalArgumentException("The key is too long for the LMDB key size: " + key);
+        }
+        if (result.isError()) {
+            throw new IllegalArgumentException("The key cannot be encoded in UTF-8: " + key);
+        }
+    }
+
+    public byte[] encode(String key) {
+        if (this == FST)
+            return BinarySerialiser.serialize(key);
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decode a key, the position of the buffer is not modified
+     */
+    public String decode(ByteBuffer key) {
+        if (this == FST)
+            return (String) BinarySerialiser.deserialize(key.duplicate());
+
+        try {
+            return decoders.get().reset().decode(key.duplicate()).toString();
+        } catch (CharacterCodingException e) {
+            throw new IllegalArgumentException("The key is not a valid UTF-8 string", e);
+        }
+    }
+
+    public String getName() {
+        return name().toLowerCase();
+    }
+
+    public static KeyEncoding fromName(String name) {
+        for (KeyEncoding encoding : values()) {
+            if (encoding.name().equalsIgnoreCase(name.trim()))
+                return encoding;
+        }
+        throw new IllegalArgumentException("Unknown key encoding: " + name + ", expected values are fst or utf8");
+    }
+}
@@ -0,0 +1,315 @@
+package com.scienceminer.glutton.storage;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnel;
+import com.google.common.hash.Funnels;
+import org.lmdbjava.CursorIterable;
+import org.lmdbjava.Dbi;
+import org.lmdbjava.Env;
+import org.lmdbjava.KeyRange;
+import org.lmdbjava.Txn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bloom filter of the keys of a LMDB database, checked by {@link LmdbStore#get(String)} before
+ * opening a read transaction, so that the lookups of absent keys (e.g. DOI unknown to a database)
+ * are answered without a B-tree descent. The keys written with {@link LmdbStore#put} are added to
+ * the filter, the deleted keys remain in it and are only false positives.
+ *
+ * The filter is saved next to the environment (&lt;environment&gt;/&lt;database&gt;.bloom) when the
+ * process stops, with the id of the last transaction it has seen and the number of entries of the
+ * database. The id is the one of the environment when the filter is loaded or built, and is only
+ * advanced by the following commits written through the filtered stores: if another transaction
+ * (e.g. a load by another process) is committed in the meantime, the filter is not saved and the
+ * saved file is deleted. A filter which is not up to date with the database or filled beyond its
+ * capacity is rebuilt from the keys of the database, in the background: all the keys are considered
+ * present until the filter is complete.
+ *
+ * The writes of another process are not seen by the running filter, the service must be restarted
+ * after loading a database while it is running.
+ */
+public class KeyFilter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(KeyFilter.class);
+
+    private static final int FORMAT_VERSION = 2;
+
+    private static final Funnel<CharSequence> FUNNEL = Funnels.stringFunnel(StandardCharsets.UTF_8);
+
+    // capacity of a new filter relative to the number of keys, for the keys added afterwards
+    private static final double GROWTH_FACTOR = 1.5;
+    private static final long MIN_EXPECTED_KEYS = 1_000_000L;
+
+    // a saved filter is rebuilt when its expected false positive rate exceeds this factor of the configured one
+    private static final double MAX_RATE_FACTOR = 2.0;
+
+    // number of keys read in a read transaction when building a filter
+    private static final int SCAN_BATCH_SIZE = 1_000_000;
+
+    // filters by file, shared by the stores of the same database
+    private static final Map<String, KeyFilter> FILTERS = new ConcurrentHashMap<>();
+    private static MetricRegistry metricRegistry;
+
+    private final String name;
+    private final File file;
+    private final Env<ByteBuffer> environment;
+    private final Dbi<ByteBuffer> db;
+    private final double falsePositiveRate;
+
+    private volatile BloomFilter<CharSequence> filter;
+    // false while the filter is built from the keys of the database
+    private volatile boolean ready = false;
+    // true if keys were added since the filter was loaded
+    private volatile boolean modified = false;
+
+    // id of the last transaction of the environment whose keys are all in the filter
+    private long seenTransactionId;
+    // true if a transaction not seen by the filter was committed after seenTransactionId
+    private boolean missedTransaction = false;
+
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder negatives = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    /**
+     * Return the filter of the keys of the database, loaded from the directory of its environment or
+     * built from the keys of the database
+     */
+    public static KeyFilter forStore(LmdbStore<?> store, File directory, double falsePositiveRate) {
+        final File file = new File(directory, store.getName() + ".bloom");
+        synchronized (KeyFilter.class) {
+            KeyFilter keyFilter = FILTERS.get(file.getAbsolutePath());
+            if (keyFilter == null) {
+                keyFilter = new KeyFilter(store, file, falsePositiveRate);
+                FILTERS.put(file.getAbsolutePath(), keyFilter);
+                Runtime.getRuntime().addShutdownHook(new Thread(keyFilter::save, "key-filter-" + store.getName()));
+                if (metricRegistry != null)
+                    keyFilter.register(metricRegistry);
+            }
+            return keyFilter;
+        }
+    }
+
+    KeyFilter(LmdbStore<?> store, File file, double falsePositiveRate) {
+        this.name = store.getName();
+        this.file = file;
+        this.environment = store.getEnvironment();
+        this.db = store.getDbi();
+        this.falsePositiveRate = falsePositiveRate;
+
+        if (!load())
+            rebuild(store);
+    }
+
+    /**
+     * Load the saved filter, return false if there is none or if it is not up to date
+     */
+    private boolean load() {
+        if (!file.exists())
+            return false;
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != FORMAT_VERSION)
+                return false;
+            final long transactionId = input.readLong();
+            final long entries = input.readLong();
+            try (Txn<ByteBuffer> txn = environment.txnRead()) {
+                if (transactionId != txn.getId() || entries != db.stat(txn).entries) {
+                    LOGGER.info("The key filter of " + name + " is older than the database, it will be rebuilt");
+                    return false;
+                }
+            }
+            final BloomFilter<CharSequence> loaded = BloomFilter.readFrom(input, FUNNEL);
+            if (loaded.expectedFpp() > MAX_RATE_FACTOR * falsePositiveRate) {
+                LOGGER.info("The key filter of " + name + " is full, it will be rebuilt");
+                return false;
+            }
+            synchronized (this) {
+                seenTransactionId = transactionId;
+            }
+            filter = loaded;
+            ready = true;
+            LOGGER.info("Key filter of " + name + " loaded, about " + loaded.approximateElementCount() + " keys");
+            return true;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Cannot read the key filter " + file.getPath() + ", it will be rebuilt", e);
+            return false;
+        }
+    }
+
+    /**
+     * Build the filter from the keys of the database in a background thread, the keys added in the
+     * meantime are added to the new filter
+     */
+    private void rebuild(LmdbStore<?> store) {
+        final long expectedKeys = Math.max(MIN_EXPECTED_KEYS, (long) (store.size() * GROWTH_FACTOR));
+        filter = BloomFilter.create(FUNNEL, expectedKeys, falsePositiveRate);
+        modified = true;
+        // the keys committed before the scan are read by the scan, the ones committed afterwards
+        // through the filtered stores are added by the stores
+        synchronized (this) {
+            seenTransactionId = environment.info().lastTransactionId;
+        }
+
+        final Thread builder = new Thread(() -> {
+            final long start = System.nanoTime();
+            long keys = 0;
+            String lastKey = null;
+            boolean completed = false;
+            try {
+                // short read transactions, a long one would prevent the reuse of the freed pages by a load
+                while (!completed) {
+                    completed = true;
+                    try (Txn<ByteBuffer> txn = environment.txnRead()) {
+                        final KeyRange<ByteBuffer> range = lastKey == null ?
+                            KeyRange.all() : KeyRange.greaterThan(store.encodeKey(lastKey));
+                        try (CursorIterable<ByteBuffer> it = store.getDbi().iterate(txn, range)) {
+                            long batchKeys = 0;
+                            for (final CursorIterable.KeyVal<ByteBuffer> kv : it) {
+                                lastKey = store.decodeKey(kv.key());
+                                filter.put(lastKey);
+                                keys++;
+                                if (++batchKeys >= SCAN_BATCH_SIZE) {
+                                    completed = false;
+                                    break;
+                                }
+                            }
+                        }
+                    }
+                }
+            } catch (RuntimeException e) {
+                LOGGER.error("Cannot build the key filter of " + name + ", the filter is not used", e);
+                return;
+            }
+            ready = true;
+            LOGGER.info("Key filter of " + name + " built with " + keys + " keys in " +
+                (System.nanoTime() - start) / 1_000_000 + " ms");
+        }, "key-filter-build-" + name);
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    /**
+     * @return false if the key is not in the database, true if it is possibly in the database
+     */
+    public boolean mightContain(String key) {
+        if (!ready)
+            return true;
+        checks.increment();
+        if (filter.mightContain(key))
+            return true;
+        negatives.increment();
+        return false;
+    }
+
+    /**
+     * Add a key written in the write transaction
+     */
+    public void put(Txn<ByteBuffer> txn, String key) {
+        observe(txn);
+        filter.put(key);
+        modified = true;
+    }
+
+    /**
+     * Record a write transaction of a filtered store. The write transactions are serialized, a 
+     * transaction following the last seen one is seen, otherwise others were committed in between.
+     */
+    public synchronized void observe(Txn<ByteBuffer> txn) {
+        final long transactionId = txn.getId();
+        if (transactionId == seenTransactionId + 1) {
+            seenTransactionId = transactionId;
+        } else if (transactionId > seenTransactionId + 1) {
+            missedTransaction = true;
+            seenTransactionId = transactionId;
+        }
+    }
+
+    boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Record a key accepted by the filter but absent from the database
+     */
+    public void recordFalsePositive() {
+        if (ready)
+            falsePositives.increment();
+    }
+
+    /**
+     * Save the filter if it was modified, with the id of the last transaction it has seen. If other
+     * transactions were committed, the filter can miss keys: it is not saved and the saved file is 
+     * deleted, so that the filter is rebuilt at the next start.
+     */
+    public synchronized void save() {
+        if (!ready)
+            return;
+
+        final File tmpFile = new File(file.getPath() + ".tmp");
+        try {
+            final long transactionId;
+            final long entries;
+            try (Txn<ByteBuffer> txn = environment.txnRead()) {
+                transactionId = txn.getId();
+                entries = db.stat(txn).entries;
+            }
+            if (missedTransaction || transactionId != seenTransactionId) {
+                Files.deleteIfExists(file.toPath());
+                LOGGER.info("The database " + name + " was written by other transactions, its key filter is not saved");
+                return;
+            }
+            if (!modified)
+                return;
+
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                output.writeInt(FORMAT_VERSION);
+                output.writeLong(transactionId);
+                output.writeLong(entries);
+                filter.writeTo(output);
+            }
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            modified = false;
+            LOGGER.info("Key filter of " + name + " saved in " + file.getPath());
+        } catch (IOException | RuntimeException e) {
+            // the filter will be rebuilt at the next start
+            LOGGER.warn("Cannot save the key filter of " + name, e);
+        }
+    }
+
+    /**
+     * Register the statistics of all the key filters, including the ones created afterwards
+     */
+    public static void registerMetrics(MetricRegistry metrics) {
+        synchronized (KeyFilter.class) {
+            metricRegistry = metrics;
+            for (KeyFilter keyFilter : FILTERS.values()) {
+                keyFilter.register(metrics);
+            }
+        }
+    }
+
+    private void register(MetricRegistry metrics) {
+        metrics.register(MetricRegistry.name(KeyFilter.class, name, "checks"), (Gauge<Long>) checks::sum);
+        metrics.register(MetricRegistry.name(KeyFilter.class, name, "negatives"), (Gauge<Long>) negatives::sum);
+        metrics.register(MetricRegistry.name(KeyFilter.class, name, "falsePositives"), (Gauge<Long>) falsePositives::sum);
+        // observed rate, among the checked keys absent from the database
+        metrics.register(MetricRegistry.name(KeyFilter.class, name, "falsePositiveRate"), (Gauge<Double>) () -> {
+            final long absent = negatives.sum() + falsePositives.sum();
+            return absent == 0 ? 0.0 : (double) falsePositives.sum() / absent;
+        });
+        metrics.register(MetricRegistry.name(KeyFilter.class, name, "expectedFalsePositiveRate"),
+            (Gauge<Double>) () -> filter.expectedFpp());
+    }
+}
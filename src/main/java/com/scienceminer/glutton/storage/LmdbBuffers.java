@@ -0,0 +1,55 @@
+package com.scienceminer.glutton.storage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Thread-local direct buffers used to pass the keys and values to LMDB, so that no direct buffer
+ * is allocated for each read or write. LMDB only reads these buffers during the get/put call, so
+ * a buffer can be reused as soon as the call returns.
+ */
+final class LmdbBuffers {
+
+    // maximum key size of LMDB with its default compilation options
+    private static final int DEFAULT_KEY_SIZE = 511;
+
+    // value buffers larger than this size are not kept by the threads
+    private static final int MAX_POOLED_VALUE_SIZE = 1024 * 1024;
+
+    private static final ThreadLocal<ByteBuffer> keyBuffers =
+        ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(DEFAULT_KEY_SIZE));
+
+    private static final ThreadLocal<ByteBuffer> valueBuffers =
+        ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(16 * 1024));
+
+    private LmdbBuffers() {
+    }
+
+    /**
+     * Return the cleared key buffer of the current thread, limited to the given maximum key size
+     */
+    static ByteBuffer keyBuffer(int maxKeySize) {
+        ByteBuffer buffer = keyBuffers.get();
+        if (buffer.capacity() < maxKeySize) {
+            buffer = ByteBuffer.allocateDirect(maxKeySize);
+            keyBuffers.set(buffer);
+        }
+        buffer.clear();
+        buffer.limit(maxKeySize);
+        return buffer;
+    }
+
+    /**
+     * Return the value buffer of the current thread filled with the given data, ready to be read
+     */
+    static ByteBuffer valueBuffer(byte[] data) {
+        ByteBuffer buffer = valueBuffers.get();
+        if (buffer.capacity() < data.length) {
+            buffer = ByteBuffer.allocateDirect(data.length);
+            if (data.length <= MAX_POOLED_VALUE_SIZE)
+                valueBuffers.set(buffer);
+        }
+        buffer.clear();
+        buffer.put(data).flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,242 @@
+package com.scienceminer.glutton.storage;
+
+import com.scienceminer.glutton.exception.ServiceOverloadedException;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.lmdbjava.CursorIterable;
+import org.lmdbjava.Dbi;
+import org.lmdbjava.DbiFlags;
+import org.lmdbjava.Env;
+import org.lmdbjava.KeyRange;
+import org.lmdbjava.Txn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Typed access to a LMDB database: String keys, encoded with the key encoding of the environment,
+ * and values serialized with a ValueCodec.
+ *
+ * Keys and values are passed to LMDB through thread-local direct buffers (see LmdbBuffers), so 
+ * reads and writes do not allocate any direct buffer. 
+ *
+ * A Bloom filter of the keys can be added to the store (see KeyFilter), the lookups of the keys 
+ * absent from the filter then return null without opening a read transaction.
+ */
+public class LmdbStore<V> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LmdbStore.class);
+
+    private final Env<ByteBuffer> environment;
+    private final Dbi<ByteBuffer> db;
+    private final String name;
+    private final KeyEncoding keyEncoding;
+    private final ValueCodec<V> codec;
+    private final int maxKeySize;
+    // null if the store has no key filter
+    private final KeyFilter keyFilter;
+
+    public LmdbStore(Env<ByteBuffer> environment, Dbi<ByteBuffer> db, String name,
+                     KeyEncoding keyEncoding, ValueCodec<V> codec) {
+        this(environment, db, name, keyEncoding, codec, null);
+    }
+
+    private LmdbStore(Env<ByteBuffer> environment, Dbi<ByteBuffer> db, String name,
+                      KeyEncoding keyEncoding, ValueCodec<V> codec, KeyFilter keyFilter) {
+        this.environment = environment;
+        this.db = db;
+        this.name = name;
+        this.keyEncoding = keyEncoding;
+        this.codec = codec;
+        this.maxKeySize = environment.getMaxKeySize();
+        this.keyFilter = keyFilter;
+    }
+
+    /**
+     * Open (and create if needed) the named database of the environment
+     */
+    public static <V> LmdbStore<V> open(Env<ByteBuffer> environment, String name,
+                                        KeyEncoding keyEncoding, ValueCodec<V> codec) {
+        Dbi<ByteBuffer> db = environment.openDbi(name, DbiFlags.MDB_CREATE);
+        return new LmdbStore<>(environment, db, name, keyEncoding, codec);
+    }
+
+    /**
+     * Access the same database with another value codec, e.g. for a few special entries stored 
+     * next to the records
+     */
+    public <W> LmdbStore<W> withCodec(ValueCodec<W> otherCodec) {
+        return new LmdbStore<>(environment, db, name, keyEncoding, otherCodec, keyFilter);
+    }
+
+    /**
+     * Access the same database with a filter of its keys, checked before the lookups
+     */
+    public LmdbStore<V> withKeyFilter(KeyFilter otherKeyFilter) {
+        return new LmdbStore<>(environment, db, name, keyEncoding, codec, otherKeyFilter);
+    }
+
+    public V get(String key) {
+        if (keyFilter != null && !keyFilter.mightContain(key))
+            return null;
+
+        final V value;
+        try (Txn<ByteBuffer> txn = environment.txnRead()) {
+            value = get(txn, key);
+        } catch (Env.ReadersFullException e) {
+            throw new ServiceOverloadedException("Not enough readers for LMDB access, increase them or reduce the parallel request rate. ", e);
+        }
+        if (value == null && keyFilter != null)
+            keyFilter.recordFalsePositive();
+        return value;
+    }
+
+    public V get(Txn<ByteBuffer> txn, String key) {
+        try {
+            final ByteBuffer data = db.get(txn, keyBuffer(key));
+            if (data == null)
+                return null;
+            return codec.decode(data);
+        } catch (Exception e) {
+            LOGGER.error("Cannot retrieve the entry " + key + " from " + name, e);
+        }
+        return null;
+    }
+
+    public boolean contains(Txn<ByteBuffer> txn, String key) {
+        try {
+            return db.get(txn, keyBuffer(key)) != null;
+        } catch (IllegalArgumentException e) {
+            LOGGER.error("Invalid key " + key + " for " + name, e);
+        }
+        return false;
+    }
+
+    /**
+     * Store an entry in the write transaction, return false if the entry cannot be stored
+     */
+    public boolean put(Txn<ByteBuffer> txn, String key, V value) {
+        try {
+            final byte[] serializedValue = codec.encode(value);
+            db.put(txn, keyBuffer(key), LmdbBuffers.valueBuffer(serializedValue));
+            if (keyFilter != null)
+                keyFilter.put(txn, key);
+            return true;
+        } catch (Exception e) {
+            LOGGER.error("Cannot store the entry " + key + " in " + name, e);
+        }
+        return false;
+    }
+
+    public boolean delete(Txn<ByteBuffer> txn, String key) {
+        if (keyFilter != null)
+            keyFilter.observe(txn);
+        try {
+            return db.delete(txn, keyBuffer(key));
+        } catch (Exception e) {
+            LOGGER.error("Cannot delete the entry " + key + " from " + name, e);
+        }
+        return false;
+    }
+
+    public long size() {
+        try (Txn<ByteBuffer> txn = environment.txnRead()) {
+            return db.stat(txn).entries;
+        } catch (Env.ReadersFullException e) {
+            throw new ServiceOverloadedException("Not enough readers for LMDB access, increase them or reduce the parallel request rate. ", e);
+        }
+    }
+
+    /**
+     * Return the first entries of the database, in key order
+     */
+    public List<Pair<String, V>> list(int total) {
+        List<Pair<String, V>> values = new ArrayList<>();
+
+        try (Txn<ByteBuffer> txn = environment.txnRead();
+             CursorIterable<ByteBuffer> it = db.iterate(txn, KeyRange.all())) {
+            for (final CursorIterable.KeyVal<ByteBuffer> kv : it) {
+                if (values.size() >= total)
+                    break;
+                String key = null;
+                try {
+                    key = decodeKey(kv.key());
+                    values.add(new ImmutablePair<>(key, decodeValue(kv.val())));
+                } catch (Exception e) {
+                    LOGGER.error("Cannot decode the entry with key: " + key + " from " + name, e);
+                }
+            }
+        } catch (Env.ReadersFullException e) {
+            throw new ServiceOverloadedException("Not enough readers for LMDB access, increase them or reduce the parallel request rate. ", e);
+        }
+
+        return values;
+    }
+
+    /**
+     * Iterate over all the entries of the database in key order, within a single read transaction.
+     * The entries which cannot be decoded are logged and skipped.
+     */
+    public void forEach(BiConsumer<String, V> consumer) {
+        try (Txn<ByteBuffer> txn = environment.txnRead();
+             CursorIterable<ByteBuffer> it = db.iterate(txn, KeyRange.all())) {
+            for (final CursorIterable.KeyVal<ByteBuffer> kv : it) {
+                String key = null;
+                V value;
+                try {
+                    key = decodeKey(kv.key());
+                    value = decodeValue(kv.val());
+                } catch (Exception e) {
+                    LOGGER.error("Cannot decode the entry with key: " + key + " from " + name, e);
+                    continue;
+                }
+                consumer.accept(key, value);
+            }
+        }
+    }
+
+    public String decodeKey(ByteBuffer key) {
+        return keyEncoding.decode(key);
+    }
+
+    public V decodeValue(ByteBuffer data) throws IOException {
+        return codec.decode(data);
+    }
+
+    /**
+     * Encode a key in a new direct buffer, for instance to be used as bound of a key range
+     */
+    public ByteBuffer encodeKey(String key) {
+        final byte[] encoded = keyEncoding.encode(key);
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(encoded.length);
+        buffer.put(encoded).flip();
+        return buffer;
+    }
+
+    private ByteBuffer keyBuffer(String key) {
+        final ByteBuffer keyBuffer = LmdbBuffers.keyBuffer(maxKeySize);
+        keyEncoding.encode(key, keyBuffer);
+        keyBuffer.flip();
+        return keyBuffer;
+    }
+
+    public Env<ByteBuffer> getEnvironment() {
+        return environment;
+    }
+
+    public Dbi<ByteBuffer> getDbi() {
+        return db;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public KeyEncoding getKeyEncoding() {
+        return keyEncoding;
+    }
+}
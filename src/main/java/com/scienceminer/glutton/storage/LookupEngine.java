@@ -1,14 +1,19 @@
 package com.scienceminer.glutton.storage;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.rockymadden.stringmetric.similarity.RatcliffObershelpMetric;
+import com.scienceminer.glutton.data.IdsGraphData;
 import com.scienceminer.glutton.data.IstexData;
 import com.scienceminer.glutton.data.MatchingDocument;
 import com.scienceminer.glutton.data.PmidData;
 import com.scienceminer.glutton.exception.NotFoundException;
+import com.scienceminer.glutton.indexing.MetadataObj;
+import com.scienceminer.glutton.indexing.MetadataObjBuilder;
 import com.scienceminer.glutton.storage.lookup.*;
 import com.scienceminer.glutton.utils.grobid.GrobidClient;
 import com.scienceminer.glutton.utils.grobid.GrobidResponseStaxHandler.GrobidResponse;
@@ -17,6 +22,11 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import scala.Option;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -41,16 +51,33 @@ public class LookupEngine {
     private MetadataMatching metadataMatching = null;
     private PMIdsLookup pmidLookup = null;
     private HALLookup halLookup = null;
+    private IdsGraphLookup idsGraphLookup = null;
+
+    private DoiCache doiCache = null;
+
+    // Grobid parsing of the raw references already seen
+    private GrobidCitationCache citationCache = null;
 
     // DOI matching regex from GROBID
     public static Pattern DOIPattern = Pattern.compile("\"DOI\"\\s?:\\s?\"(10\\.\\d{4,5}\\/[^\"\\s]+[^;,.\\s])\"");
     
     private GrobidClient grobidClient = null;
+    // max time in milliseconds to wait for the Grobid parsing of a raw reference, 0 for no limit
+    private long grobidTimeBudget = 0;
+
+    // pairwise ranking of the candidates of the biblio lookups, once the blocking and the Grobid 
+    // parsing are done
+    private static final ExecutorService rankingExecutor = createRankingExecutor();
 
     private static String ISTEX_BASE = "https://api.istex.fr/document/";
 
     private static double THRESHOLD_MATCHING = 0.7;
 
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // max number of candidates taken from the journal + volume + first page index
+    private static final int MAX_JOURNAL_CANDIDATES = 20;
+
     public LookupEngine() {
     }
 
@@ -60,8 +87,22 @@ public class LookupEngine {
         this.crossrefMetadataLookup = CrossrefMetadataLookup.getInstance(storageFactory);
         this.halLookup = HALLookup.getInstance(storageFactory);
         this.pmidLookup = PMIdsLookup.getInstance(storageFactory);
+        this.idsGraphLookup = IdsGraphLookup.getInstance(storageFactory);
+        this.idsGraphLookup.checkSources(pmidLookup, istexLookup, halLookup, oaDoiLookup);
         this.metadataMatching = 
             MetadataMatching.getInstance(storageFactory.getConfiguration(), crossrefMetadataLookup, halLookup);
+        this.doiCache = DoiCache.getInstance(storageFactory.getConfiguration());
+        this.citationCache = GrobidCitationCache.getInstance(storageFactory);
+        this.grobidTimeBudget = storageFactory.getConfiguration().getGrobid().getTimeBudget();
+    }
+
+    private static ExecutorService createRankingExecutor() {
+        final AtomicInteger counter = new AtomicInteger(0);
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+            Thread thread = new Thread(r, "biblio-ranking-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     /**
@@ -69,6 +110,10 @@ public class LookupEngine {
      */
     public String retrieveByArticleMetadata(String atitle, 
                                             String firstAuthor) {
+        final MatchingDocument exactMatch = retrieveByExactTitleAuthor(atitle, firstAuthor);
+        if (exactMatch != null)
+            return exactMatch.getFinalJsonObject();
+
         List<MatchingDocument> matchingDocuments = metadataMatching.retrieveByMetadata(atitle, firstAuthor);
         List<MatchingDocument> rankedMatchingDocuments = pairwiseRanking(atitle, firstAuthor, matchingDocuments);
 
@@ -85,6 +130,13 @@ public class LookupEngine {
     public void retrieveByArticleMetadataAsync(String atitle, 
                                                String firstAuthor, 
                                                Consumer<MatchingDocument> callback) {
+        // an exact title and first author match does not need the blocking and the ranking
+        final MatchingDocument exactMatch = retrieveByExactTitleAuthor(atitle, firstAuthor);
+        if (exactMatch != null) {
+            callback.accept(exactMatch);
+            return;
+        }
+
         metadataMatching.retrieveByMetadataAsync(atitle, firstAuthor, matchingDocuments -> {
             if (matchingDocuments == null || matchingDocuments.size() == 0) {
                 callback.accept(new MatchingDocument(new NotFoundException("No matching document found")));
@@ -110,7 +162,127 @@ public class LookupEngine {
     }
 
     /**
-     * Async blocking by journal title, volume and first page
+     * Lookup in the exact title + first author index, the record is returned only if a single 
+     * record has this title and first author (after normalization), the other cases being left
+     * to the blocking and the pairwise ranking
+     */
+    private MatchingDocument retrieveByExactTitleAuthor(String atitle, String firstAuthor) {
+        if (crossrefMetadataLookup == null)
+            return null;
+
+        final List<String> dois;
+        try {
+            dois = crossrefMetadataLookup.retrieveDoisByTitleAuthor(atitle, firstAuthor);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Cannot read the title + first author index: " + e.getMessage());
+            return null;
+        }
+        if (dois.size() != 1)
+            return null;
+
+        final String doi = dois.get(0);
+        final String jsonObject = crossrefMetadataLookup.retrieveByDoi(doi).getJsonObject();
+        // the record can have been updated since it was indexed
+        if (jsonObject == null || !isExactTitleAuthorMatch(jsonObject, atitle, firstAuthor))
+            return null;
+
+        final MatchingDocument matchingDocument = new MatchingDocument();
+        matchingDocument.setDOI(doi);
+        matchingDocument.setATitle(atitle);
+        matchingDocument.setFirstAuthor(firstAuthor);
+        matchingDocument.setJsonObject(jsonObject);
+        matchingDocument.setBlockingScore(1.0);
+        matchingDocument.setMatchingScore(1.0);
+        matchingDocument.setFinalJsonObject(injectIdsByDoi(jsonObject, doi));
+        return matchingDocument;
+    }
+
+    private static boolean isExactTitleAuthorMatch(String jsonObject, String atitle, String firstAuthor) {
+        try {
+            return TitleAuthorKeys.keys(MAPPER.readTree(jsonObject))
+                .contains(TitleAuthorKeys.key(atitle, firstAuthor));
+        } catch (Exception e) {
+            LOGGER.warn("Invalid JSON object", e);
+            return false;
+        }
+    }
+
+    /**
+     * Lookup in the journal + volume + first page index, the candidates being ranked and post-validated
+     * as the results of the blocking. Null is returned when no candidate passes the post-validation, 
+     * the request being then left to the blocking.
+     */
+    private MatchingDocument retrieveByJournalIndex(String jtitle, String volume, String firstPage,
+                                                    String atitle, String firstAuthor) {
+        if (crossrefMetadataLookup == null || isBlank(jtitle) || isBlank(volume) || isBlank(firstPage))
+            return null;
+
+        final List<String> dois;
+        try {
+            dois = crossrefMetadataLookup.retrieveDoisByJournal(jtitle, volume, firstPage);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Cannot read the journal + volume + first page index: " + e.getMessage());
+            return null;
+        }
+
+        final List<MatchingDocument> candidates = new ArrayList<>();
+        for (String doi : dois) {
+            if (candidates.size() >= MAX_JOURNAL_CANDIDATES)
+                break;
+            final String jsonObject = crossrefMetadataLookup.retrieveByDoi(doi).getJsonObject();
+            if (jsonObject == null)
+                continue;
+            final MatchingDocument candidate = toJournalCandidate(doi, jsonObject, volume, firstPage);
+            if (candidate != null)
+                candidates.add(candidate);
+        }
+        if (candidates.isEmpty())
+            return null;
+
+        final List<MatchingDocument> rankedCandidates = pairwiseRanking(atitle, firstAuthor, jtitle, 
+            null, null, volume, null, firstPage, null, candidates);
+        final MatchingDocument resultDocument = rankedCandidates.get(0);
+        if (!areMetadataMatching(resultDocument))
+            return null;
+
+        resultDocument.setFinalJsonObject(injectIdsByDoi(resultDocument.getJsonObject(), resultDocument.getDOI()));
+        return resultDocument;
+    }
+
+    /**
+     * Candidate for the pairwise ranking from a stored record, null if the record has not the
+     * requested volume and first page (it can have been updated since it was indexed)
+     */
+    private static MatchingDocument toJournalCandidate(String doi, String jsonObject, String volume, String firstPage) {
+        final MetadataObj metadata;
+        try {
+            final JsonNode record = MAPPER.readTree(jsonObject);
+            metadata = MetadataObjBuilder.createMetadataObjFromJsonNode(record);
+        } catch (Exception e) {
+            LOGGER.warn("Invalid JSON object", e);
+            return null;
+        }
+        if (metadata == null || !JournalKeys.equalsNormalized(metadata.volume, volume) || 
+            !JournalKeys.equalsNormalized(metadata.first_page, firstPage))
+            return null;
+
+        final MatchingDocument candidate = new MatchingDocument();
+        candidate.setDOI(doi);
+        candidate.setJsonObject(jsonObject);
+        candidate.setATitle(CollectionUtils.isNotEmpty(metadata.title) ? metadata.title.get(0) : "");
+        candidate.setFirstAuthor(metadata.first_author);
+        candidate.setJTitle(CollectionUtils.isNotEmpty(metadata.journal) ? metadata.journal.get(0) : "");
+        candidate.setAbbreviatedTitle(CollectionUtils.isNotEmpty(metadata.abbreviated_journal) ? 
+            metadata.abbreviated_journal.get(0) : "");
+        candidate.setYear(metadata.year);
+        // exact match of the blocking fields
+        candidate.setBlockingScore(1.0);
+        return candidate;
+    }
+
+    /**
+     * Async blocking by journal title, volume and first page, answered from the journal + volume +
+     * first page index when possible
      */
     public void retrieveByJournalMetadataAsync(String jtitle, 
                                                String volume, 
@@ -118,6 +290,12 @@ public class LookupEngine {
                                                String atitle, 
                                                String firstAuthor, 
                                                Consumer<MatchingDocument> callback) {
+        final MatchingDocument indexMatch = retrieveByJournalIndex(jtitle, volume, firstPage, atitle, firstAuthor);
+        if (indexMatch != null) {
+            callback.accept(indexMatch);
+            return;
+        }
+
         metadataMatching.retrieveByMetadataAsync(jtitle, volume, firstPage, firstAuthor, matchingDocuments -> {
             if (matchingDocuments == null || matchingDocuments.size() == 0) {
                 callback.accept(new MatchingDocument(new NotFoundException("No matching document found")));
@@ -154,97 +332,10 @@ public class LookupEngine {
                                       final String year,
                                       Boolean parseReference, 
                                       Consumer<MatchingDocument> callback) {
-        metadataMatching.retrieveByBiblioAsync(biblio, matchingDocuments -> {
-            if (matchingDocuments == null || matchingDocuments.size() == 0) {
-                callback.accept(new MatchingDocument(new NotFoundException("No matching document found")));
-                return;
-            }
-
-            MatchingDocument resultDocument = matchingDocuments.get(0);
-            if (!resultDocument.isException()) {
-                //if (isBlank(firstAuthor) && parseReference) {
-                if (parseReference) {
-                    try {
-                        grobidClient.ping();
-                        // no consolidation when calling Grobid !!
-                        GrobidResponse response = grobidClient.processCitation(biblio, "0");
-
-                        // TBD: extract more metadata from Grobid result to improve the pairwise ranking
-                        String firstAuthor1 = null;
-                        if (!isBlank(firstAuthor))
-                            firstAuthor1 = firstAuthor;
-                        else
-                            firstAuthor1 = isNotBlank(response.getFirstAuthor()) ? response.getFirstAuthor() : response.getFirstAuthorMonograph();
-
-                        String atitle1 = null;
-                        if (!isBlank(atitle))
-                            atitle1 = atitle;
-                        else
-                            atitle1 = response.getAtitle();
-                        
-                        String year1 = null;
-                        if (!isBlank(year))
-                            year1 = year;
-                        else
-                            year1 = response.getYear();
-
-                        String jtitle1 = null;
-                        if (!isBlank(year))
-                            jtitle1 = jtitle;
-                        else
-                            jtitle1 = response.getJtitle();
-
-//System.out.println(biblio + " -> " + firstAuthor1 + " | " + atitle1 + " | " + year1 + " | " + jtitle1);
-                        List<MatchingDocument> rankedMatchingDocuments = pairwiseRanking(atitle1, firstAuthor1, jtitle1, 
-                                    null, year1, null, null, null, null, matchingDocuments);
-
-                        final MatchingDocument localResultDocument = rankedMatchingDocuments.get(0);
-
-                        //no title and author, extract with grobid. if grobid unavailable... it will fail.
-                        if (!isBlank(firstAuthor1)) {
-                            if (!areMetadataMatching(localResultDocument)) {
-                                callback.accept(new MatchingDocument(new NotFoundException("Best bibliographical record did not passed the post-validation")));
-                                return;
-                            }
-                             
-                            final String s = injectIdsByDoi(localResultDocument.getJsonObject(), localResultDocument.getDOI());
-                            localResultDocument.setFinalJsonObject(s);
-                            callback.accept(localResultDocument);
-                            return;
-                        }
-                        
-                    } catch (Exception e) {
-                        //LOGGER.error("grobid place failure", e);
-                        LOGGER.warn("GROBID not available, no extra metadata available for pairwise ranking");
-                    }
-                }
-
-                // pairwise ranking with whatever is available
-                List<MatchingDocument> rankedMatchingDocuments = //pairwiseRanking(atitle, firstAuthor, year, matchingDocuments);
-                    pairwiseRanking(atitle, firstAuthor, jtitle, 
-                                    null, year, null, null, null, null, matchingDocuments);
-                final MatchingDocument localResultDocument = rankedMatchingDocuments.get(0);
-                if (!isBlank(firstAuthor)) {
+        final CompletableFuture<List<MatchingDocument>> blocking = new CompletableFuture<>();
+        metadataMatching.retrieveByBiblioAsync(biblio, blocking::complete);
 
-                    if (!areMetadataMatching(localResultDocument)) {                         
-                        callback.accept(new MatchingDocument(new NotFoundException("Best bibliographical record did not passed the post-validation")));
-                        return;
-                    }
-
-                    final String s = injectIdsByDoi(localResultDocument.getJsonObject(), localResultDocument.getDOI());
-                    localResultDocument.setFinalJsonObject(s);
-                    callback.accept(localResultDocument);
-                    return;
-                } else {
-                    // we cannot post validate
-                    callback.accept(new MatchingDocument(new NotFoundException("No metadata available for post-validation")));
-                    return;
-                }
-
-                //resultDocument = localResultDocument;
-            }
-            callback.accept(resultDocument);
-        });
+        rankBiblioCandidates(biblio, firstAuthor, atitle, jtitle, year, parseReference, blocking, callback);
     }
 
     /**
@@ -266,97 +357,153 @@ public class LookupEngine {
                                       final List<String> sources, 
                                       final String toIgnore,
                                       Consumer<MatchingDocument> callback) {
-        metadataMatching.retrieveByBiblioAsyncConditional(biblio, sources, toIgnore, matchingDocuments -> {
-            if (matchingDocuments == null || matchingDocuments.size() == 0) {
-                callback.accept(new MatchingDocument(new NotFoundException("No matching document found")));
-                return;
-            }
+        final CompletableFuture<List<MatchingDocument>> blocking = new CompletableFuture<>();
+        metadataMatching.retrieveByBiblioAsyncConditional(biblio, sources, toIgnore, blocking::complete);
 
-            MatchingDocument resultDocument = matchingDocuments.get(0);
-            if (!resultDocument.isException()) {
-                //if (isBlank(firstAuthor) && parseReference) {
-                if (parseReference) {
-                    try {
-                        grobidClient.ping();
-                        // no consolidation when calling Grobid !!
-                        GrobidResponse response = grobidClient.processCitation(biblio, "0");
-
-                        // TBD: extract more metadata from Grobid result to improve the pairwise ranking
-                        String firstAuthor1 = null;
-                        if (!isBlank(firstAuthor))
-                            firstAuthor1 = firstAuthor;
-                        else
-                            firstAuthor1 = isNotBlank(response.getFirstAuthor()) ? response.getFirstAuthor() : response.getFirstAuthorMonograph();
-
-                        String atitle1 = null;
-                        if (!isBlank(atitle))
-                            atitle1 = atitle;
-                        else
-                            atitle1 = response.getAtitle();
-                        
-                        String year1 = null;
-                        if (!isBlank(year))
-                            year1 = year;
-                        else
-                            year1 = response.getYear();
-
-                        String jtitle1 = null;
-                        if (!isBlank(year))
-                            jtitle1 = jtitle;
-                        else
-                            jtitle1 = response.getJtitle();
-
-//System.out.println(biblio + " -> " + firstAuthor1 + " | " + atitle1 + " | " + year1 + " | " + jtitle1);
-                        List<MatchingDocument> rankedMatchingDocuments = pairwiseRanking(atitle1, firstAuthor1, jtitle1, 
-                                    null, year1, null, null, null, null, matchingDocuments);
-
-                        final MatchingDocument localResultDocument = rankedMatchingDocuments.get(0);
-
-                        //no title and author, extract with grobid. if grobid unavailable... it will fail.
-                        if (!isBlank(firstAuthor1)) {
-                            if (!areMetadataMatching(localResultDocument)) {
-                                callback.accept(new MatchingDocument(new NotFoundException("Best bibliographical record did not passed the post-validation")));
-                                return;
-                            }
-                             
-                            final String s = injectIdsByDoi(localResultDocument.getJsonObject(), localResultDocument.getDOI());
-                            localResultDocument.setFinalJsonObject(s);
-                            callback.accept(localResultDocument);
-                            return;
-                        }
-                        
-                    } catch (Exception e) {
-                        //LOGGER.error("grobid place failure", e);
-                        LOGGER.warn("GROBID not available, no extra metadata available for pairwise ranking");
-                    }
-                }
+        rankBiblioCandidates(biblio, firstAuthor, atitle, jtitle, year, parseReference, blocking, callback);
+    }
+
+    /**
+     * The raw reference is parsed by Grobid while the blocking is running in the search engine, the 
+     * pairwise ranking starts when both are done, on the ranking executor so that the I/O threads 
+     * of the clients are not used for it. If Grobid is not available or does not answer within the 
+     * time budget, the ranking is done with the metadata provided with the query only.
+     */
+    private void rankBiblioCandidates(String biblio, 
+                                      final String firstAuthor, 
+                                      final String atitle, 
+                                      final String jtitle, 
+                                      final String year,
+                                      Boolean parseReference, 
+                                      CompletableFuture<List<MatchingDocument>> blocking,
+                                      Consumer<MatchingDocument> callback) {
+        final CompletableFuture<GrobidResponse> parsing = parseReference(biblio, parseReference);
+
+        blocking.thenCombineAsync(parsing, (matchingDocuments, response) -> 
+                rankBiblioCandidates(firstAuthor, atitle, jtitle, year, response, matchingDocuments), rankingExecutor)
+            .exceptionally(throwable -> {
+                LOGGER.error("Failure when ranking the bibliographical candidates", throwable);
+                return new MatchingDocument(throwable.getCause() != null ? throwable.getCause() : throwable);
+            })
+            .thenAccept(callback);
+    }
+
+    /**
+     * @return the future Grobid parsing of the raw reference, completed with null if the reference is 
+     * not to be parsed, if Grobid is not available or if the time budget is exceeded
+     */
+    private CompletableFuture<GrobidResponse> parseReference(String biblio, Boolean parseReference) {
+        if (!Boolean.TRUE.equals(parseReference)) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        if (citationCache != null) {
+            final GrobidResponse cached = citationCache.get(biblio);
+            if (cached != null)
+                return CompletableFuture.completedFuture(cached);
+        }
+
+        if (grobidClient == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // no consolidation when calling Grobid !!
+        final CompletableFuture<GrobidResponse> grobidParsing = grobidClient.processCitationAsync(biblio, "0");
+        if (citationCache != null) {
+            // cached even if the response comes after the time budget
+            grobidParsing.thenAccept(response -> citationCache.put(biblio, response));
+        }
+        CompletableFuture<GrobidResponse> parsing = grobidParsing;
+        if (grobidTimeBudget > 0) {
+            // the time budget completes a copy, not the Grobid parsing itself
+            parsing = grobidParsing.copy().completeOnTimeout(null, grobidTimeBudget, TimeUnit.MILLISECONDS);
+        }
+        return parsing.exceptionally(throwable -> {
+            LOGGER.warn("GROBID not available, no extra metadata available for pairwise ranking");
+            return null;
+        });
+    }
+
+    private MatchingDocument rankBiblioCandidates(final String firstAuthor, 
+                                                  final String atitle, 
+                                                  final String jtitle, 
+                                                  final String year,
+                                                  GrobidResponse response,
+                                                  List<MatchingDocument> matchingDocuments) {
+        if (matchingDocuments == null || matchingDocuments.size() == 0) {
+            return new MatchingDocument(new NotFoundException("No matching document found"));
+        }
+
+        MatchingDocument resultDocument = matchingDocuments.get(0);
+        if (resultDocument.isException()) {
+            return resultDocument;
+        }
+
+        if (response != null) {
+            try {
+                // TBD: extract more metadata from Grobid result to improve the pairwise ranking
+                String firstAuthor1 = null;
+                if (!isBlank(firstAuthor))
+                    firstAuthor1 = firstAuthor;
+                else
+                    firstAuthor1 = isNotBlank(response.getFirstAuthor()) ? response.getFirstAuthor() : response.getFirstAuthorMonograph();
+
+                String atitle1 = null;
+                if (!isBlank(atitle))
+                    atitle1 = atitle;
+                else
+                    atitle1 = response.getAtitle();
+                
+                String year1 = null;
+                if (!isBlank(year))
+                    year1 = year;
+                else
+                    year1 = response.getYear();
+
+                String jtitle1 = null;
+                if (!isBlank(jtitle))
+                    jtitle1 = jtitle;
+                else
+                    jtitle1 = response.getJtitle();
+
+                List<MatchingDocument> rankedMatchingDocuments = pairwiseRanking(atitle1, firstAuthor1, jtitle1, 
+                            null, year1, null, null, null, null, matchingDocuments);
 
-                // pairwise ranking with whatever is available
-                List<MatchingDocument> rankedMatchingDocuments = //pairwiseRanking(atitle, firstAuthor, year, matchingDocuments);
-                    pairwiseRanking(atitle, firstAuthor, jtitle, 
-                                    null, year, null, null, null, null, matchingDocuments);
                 final MatchingDocument localResultDocument = rankedMatchingDocuments.get(0);
-                if (!isBlank(firstAuthor)) {
 
-                    if (!areMetadataMatching(localResultDocument)) {                         
-                        callback.accept(new MatchingDocument(new NotFoundException("Best bibliographical record did not passed the post-validation")));
-                        return;
+                //no title and author, extract with grobid. if grobid unavailable... it will fail.
+                if (!isBlank(firstAuthor1)) {
+                    if (!areMetadataMatching(localResultDocument)) {
+                        return new MatchingDocument(new NotFoundException("Best bibliographical record did not passed the post-validation"));
                     }
-
+                     
                     final String s = injectIdsByDoi(localResultDocument.getJsonObject(), localResultDocument.getDOI());
                     localResultDocument.setFinalJsonObject(s);
-                    callback.accept(localResultDocument);
-                    return;
-                } else {
-                    // we cannot post validate
-                    callback.accept(new MatchingDocument(new NotFoundException("No metadata available for post-validation")));
-                    return;
+                    return localResultDocument;
                 }
+                
+            } catch (Exception e) {
+                LOGGER.warn("Pairwise ranking with the GROBID metadata failed, ranking with the query metadata only", e);
+            }
+        }
 
-                //resultDocument = localResultDocument;
+        // pairwise ranking with whatever is available
+        List<MatchingDocument> rankedMatchingDocuments = pairwiseRanking(atitle, firstAuthor, jtitle, 
+                            null, year, null, null, null, null, matchingDocuments);
+        final MatchingDocument localResultDocument = rankedMatchingDocuments.get(0);
+        if (!isBlank(firstAuthor)) {
+
+            if (!areMetadataMatching(localResultDocument)) {                         
+                return new MatchingDocument(new NotFoundException("Best bibliographical record did not passed the post-validation"));
             }
-            callback.accept(resultDocument);
-        });
+
+            final String s = injectIdsByDoi(localResultDocument.getJsonObject(), localResultDocument.getDOI());
+            localResultDocument.setFinalJsonObject(s);
+            return localResultDocument;
+        } else {
+            // we cannot post validate
+            return new MatchingDocument(new NotFoundException("No metadata available for post-validation"));
+        }
     }
 
 
@@ -481,7 +628,7 @@ public class LookupEngine {
 
             outputData = validateJsonBody(firstAuthor, atitle, outputData);
 
-            final String oaLink = oaDoiLookup.retrieveOaLinkByDoi(doi);
+            final String oaLink = retrieveOaLinkByDoi(doi);
             return injectIdsAndOALink(outputData.getJsonObject(), doi, istexData, oaLink, null);
         }
 
@@ -497,7 +644,7 @@ public class LookupEngine {
 
             outputData = validateJsonBody(firstAuthor, atitle, outputData);
 
-            final String oaLink = oaDoiLookup.retrieveOaLinkByDoi(doi);
+            final String oaLink = retrieveOaLinkByDoi(doi);
             return injectIdsAndOALink(outputData.getJsonObject(), doi, istexData, oaLink, null);
         }
 
@@ -528,7 +675,7 @@ public class LookupEngine {
 
     public String retrieveOAUrlByDoi(String doi) {
 
-        final String output = oaDoiLookup.retrieveOaLinkByDoi(doi);
+        final String output = retrieveOaLinkByDoi(doi);
 
         if (isBlank(output)) {
             throw new NotFoundException("Open Access URL was not found for DOI " + doi);
@@ -539,7 +686,7 @@ public class LookupEngine {
 
     public Pair<String,String> retrieveOaIstexUrlByDoi(String doi) {
 
-        final String oaLink = oaDoiLookup.retrieveOaLinkByDoi(doi);
+        final String oaLink = retrieveOaLinkByDoi(doi);
         final IstexData istexRecord = istexLookup.retrieveByDoi(doi);
         String url = null;
 
@@ -559,7 +706,7 @@ public class LookupEngine {
         final PmidData pmidData = pmidLookup.retrieveIdsByPmid(pmid);
 
         if (pmidData != null && isNotBlank(pmidData.getDoi())) {
-            return oaDoiLookup.retrieveOaLinkByDoi(pmidData.getDoi());
+            return retrieveOaLinkByDoi(pmidData.getDoi());
         }
 
         throw new NotFoundException("Open Access URL was not found for PM ID " + pmid);
@@ -573,7 +720,7 @@ public class LookupEngine {
             throw new NotFoundException("Open Access and Istex URL were not found for PMID " + pmid);
         }        
 
-        final String oaLink = oaDoiLookup.retrieveOaLinkByDoi(pmidData.getDoi());
+        final String oaLink = retrieveOaLinkByDoi(pmidData.getDoi());
         final IstexData istexRecord = istexLookup.retrieveByDoi(pmidData.getDoi());
         String url = null;
 
@@ -593,7 +740,7 @@ public class LookupEngine {
         final PmidData pmidData = pmidLookup.retrieveIdsByPmc(pmc);
 
         if (pmidData != null && isNotBlank(pmidData.getDoi())) {
-            return oaDoiLookup.retrieveOaLinkByDoi(pmidData.getDoi());
+            return retrieveOaLinkByDoi(pmidData.getDoi());
         }
 
         throw new NotFoundException("Open Access URL was not found for PMC ID " + pmc);
@@ -607,7 +754,7 @@ public class LookupEngine {
             throw new NotFoundException("Open Access and Istex URL were not found for PMC " + pmc);
         }        
 
-        final String oaLink = oaDoiLookup.retrieveOaLinkByDoi(pmidData.getDoi());
+        final String oaLink = retrieveOaLinkByDoi(pmidData.getDoi());
         final IstexData istexRecord = istexLookup.retrieveByDoi(pmidData.getDoi());
         String url = null;
 
@@ -628,7 +775,7 @@ public class LookupEngine {
 
         if (istexData != null && CollectionUtils.isNotEmpty(istexData.getDoi())) {
             // TBD: we might want to iterate to several DOI
-            return oaDoiLookup.retrieveOaLinkByDoi(istexData.getDoi().get(0));
+            return retrieveOaLinkByDoi(istexData.getDoi().get(0));
         }
 
         throw new NotFoundException("Open Access URL was not found for pii " + pii);
@@ -643,7 +790,7 @@ public class LookupEngine {
         }        
 
         // TBD: we might want to iterate to several DOI
-        final String oaLink = oaDoiLookup.retrieveOaLinkByDoi(istexData.getDoi().get(0));
+        final String oaLink = retrieveOaLinkByDoi(istexData.getDoi().get(0));
         String istexId = istexData.getIstexId();
         String url = ISTEX_BASE + istexId + "/fulltext/pdf";
 
@@ -675,7 +822,7 @@ public class LookupEngine {
         return pairwiseRanking(atitle, firstAuthor, null, null, year, null, null, null, null, matchingDocuments);
     }
 
-    private List<MatchingDocument> pairwiseRanking(String atitle, 
+    List<MatchingDocument> pairwiseRanking(String atitle, 
                                            String firstAuthor, 
                                            String jtitle,
                                            String btitle, 
@@ -734,7 +881,7 @@ public class LookupEngine {
      * Compute a distance score between a candidate matching document and a reference document with target
      * metadata. score is in [0,1], with 1 perfect match
      */
-    private double recordDistance(MatchingDocument matchingDocument, MatchingDocument referenceDocument) {
+    double recordDistance(MatchingDocument matchingDocument, MatchingDocument referenceDocument) {
 
         int nbCriteria = 0;
         double accumulatedScore = 0.0;
@@ -906,14 +1053,69 @@ public class LookupEngine {
         if (doi.startsWith("crossref:"))
             doi = doi.replace("crossref:", "");
 
+        if (doiCache == null)
+            return injectIds(jsonobj, doi);
+
+        final String finalDoi = doi;
+        return doiCache.getEnrichedRecord(doi, jsonobj, () -> injectIds(jsonobj, finalDoi));
+    }
+
+    private String injectIds(String jsonobj, String doi) {
+        // when available, all the identifiers of the DOI are obtained with a single lookup
+        if (idsGraphLookup != null && idsGraphLookup.isAvailable())
+            return injectIdsGraph(jsonobj, idsGraphLookup.retrieveByDoi(doi));
+
         final IstexData istexData = istexLookup.retrieveByDoi(doi);
-        final String oaLink = oaDoiLookup.retrieveOaLinkByDoi(doi);
+        final String oaLink = retrieveOaLinkByDoi(doi);
         String halId = halLookup.retrieveHalIdByDoi(doi);
         if (halId != null && halId.startsWith("hal:"))
             halId = halId.replace("hal:", "");
         return injectIdsAndOALink(jsonobj, doi, istexData, oaLink, halId);
     }
 
+    private String retrieveOaLinkByDoi(String doi) {
+        if (doiCache == null)
+            return oaDoiLookup.retrieveOaLinkByDoi(doi);
+
+        return doiCache.getOaLink(doi, oaDoiLookup::retrieveOaLinkByDoi);
+    }
+
+    protected String injectIdsGraph(String jsonobj, IdsGraphData ids) {
+        if (ids == null)
+            return jsonobj;
+
+        StringBuilder sb = new StringBuilder();
+        if (isBlank(jsonobj)) {
+            sb.append("{");
+        } else {
+            sb.append(jsonobj, 0, length(jsonobj) - 1);
+        }
+        final int initialLength = sb.length();
+
+        appendId(sb, "istexId", ids.getIstexId());
+        appendId(sb, "ark", ids.getArk());
+        appendId(sb, "pmid", ids.getPmid());
+        appendId(sb, "pmcid", ids.getPmcid());
+        appendId(sb, "mesh", ids.getMesh());
+        appendId(sb, "pii", ids.getPii());
+        appendId(sb, "halId", ids.getHalId());
+        appendId(sb, "oaLink", ids.getOaLink());
+
+        if (sb.length() == initialLength)
+            return jsonobj;
+
+        sb.append("}");
+        return sb.toString();
+    }
+
+    private static void appendId(StringBuilder sb, String name, String value) {
+        if (isBlank(value))
+            return;
+        if (sb.charAt(sb.length() - 1) != '{')
+            sb.append(", ");
+        sb.append("\"").append(name).append("\":\"").append(value).append("\"");
+    }
+
     protected String injectIdsAndOALink(String jsonobj, String doi, IstexData istexData, String oaLink, String halId) {
         boolean pmid = false;
         boolean pmc = false;
@@ -1068,4 +1270,12 @@ public class LookupEngine {
     public void setGrobidClient(GrobidClient grobidClient) {
         this.grobidClient = grobidClient;
     }
+
+    public void setIdsGraphLookup(IdsGraphLookup idsGraphLookup) {
+        this.idsGraphLookup = idsGraphLookup;
+    }
+
+    public void setDoiCache(DoiCache doiCache) {
+        this.doiCache = doiCache;
+    }
 }
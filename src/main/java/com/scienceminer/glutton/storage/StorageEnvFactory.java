@@ -28,6 +28,8 @@ public class StorageEnvFactory {
         if (!thePath.exists()) {
             thePath.mkdirs();
         }
+        // a new environment has no data file yet
+        boolean newEnv = !new File(thePath, "data.mdb").exists();
 
         environment = Env.create()
                 .setMapSize(1024L * 1024L * 1024L * 1024L)
@@ -35,9 +37,42 @@ public class StorageEnvFactory {
                 .setMaxDbs(10)
                 .open(thePath, EnvFlags.MDB_NOTLS);
 
+        // new environments use plain UTF-8 keys, existing ones keep their key encoding
+        if (newEnv) {
+            new StorageMetadata(environment).setKeyEncoding(KeyEncoding.UTF8);
+        }
+
         return environment;
     }
 
+    /**
+     * Encoding of the keys of the given environment, as recorded in its metadata
+     */
+    public KeyEncoding getKeyEncoding(Env<ByteBuffer> environment) {
+        return new StorageMetadata(environment).getKeyEncoding();
+    }
+
+    /**
+     * Format of the JSON records to be written in the given environment, as indicated in the configuration
+     */
+    public StorageFormat getStorageFormat(String envName) {
+        if (configuration.getStorageFormats() == null)
+            return StorageFormat.FST;
+        return StorageFormat.fromName(configuration.getStorageFormats().get(envName));
+    }
+
+    /**
+     * Add the Bloom filter of its keys to a database of the given environment, if the key filters
+     * are enabled
+     */
+    public <V> LmdbStore<V> withKeyFilter(String envName, LmdbStore<V> store) {
+        final LookupConfiguration.KeyFilters keyFilters = configuration.getKeyFilters();
+        if (!keyFilters.isEnabled())
+            return store;
+        final File directory = new File(this.storagePath + File.separator + envName);
+        return store.withKeyFilter(KeyFilter.forStore(store, directory, keyFilters.getFalsePositiveRate()));
+    }
+
     public LookupConfiguration getConfiguration() {
         return configuration;
     }
@@ -0,0 +1,38 @@
+package com.scienceminer.glutton.storage;
+
+import com.scienceminer.glutton.utils.BinarySerialiser;
+import com.scienceminer.glutton.utils.JsonRecordSerialiser;
+
+import java.io.IOException;
+
+/**
+ * Format of the JSON records stored in a LMDB environment:
+ * - FST: FST serialized String compressed with Snappy (legacy format),
+ * - JSON: raw UTF-8 JSON compressed with Snappy, with a small header, see JsonRecordSerialiser.
+ * 
+ * The stored records are always readable whatever the selected format, the format applies to the 
+ * new written records and to the migration of the existing ones. 
+ */
+public enum StorageFormat {
+    FST,
+    JSON;
+
+    /**
+     * Serialize a JSON record in this format
+     */
+    public byte[] serializeRecord(String json) throws IOException {
+        if (this == JSON)
+            return JsonRecordSerialiser.serialize(json, true);
+        return BinarySerialiser.serializeAndCompress(json);
+    }
+
+    public static StorageFormat fromName(String name) {
+        if (name == null)
+            return FST;
+        for (StorageFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name.trim()))
+                return format;
+        }
+        throw new IllegalArgumentException("Unknown storage format: " + name + ", expected values are fst or json");
+    }
+}
@@ -0,0 +1,86 @@
+package com.scienceminer.glutton.storage;
+
+import com.scienceminer.glutton.exception.ServiceOverloadedException;
+import org.lmdbjava.Dbi;
+import org.lmdbjava.DbiFlags;
+import org.lmdbjava.Env;
+import org.lmdbjava.Txn;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Small database of a LMDB environment keeping information about the environment itself, such as 
+ * the encoding of its keys. Keys and values are plain UTF-8 strings.
+ */
+public class StorageMetadata {
+
+    public static final String NAME_METADATA = "glutton_meta";
+
+    public static final String KEY_ENCODING = "key-encoding";
+
+    private final Env<ByteBuffer> environment;
+    private final Dbi<ByteBuffer> db;
+
+    public StorageMetadata(Env<ByteBuffer> environment) {
+        this.environment = environment;
+        this.db = environment.openDbi(NAME_METADATA, DbiFlags.MDB_CREATE);
+    }
+
+    public String get(String key) {
+        try (Txn<ByteBuffer> txn = environment.txnRead()) {
+            return get(txn, key);
+        } catch (Env.ReadersFullException e) {
+            throw new ServiceOverloadedException("Not enough readers for LMDB access, increase them or reduce the parallel request rate. ", e);
+        }
+    }
+
+    public String get(Txn<ByteBuffer> txn, String key) {
+        final ByteBuffer keyBuffer = LmdbBuffers.keyBuffer(environment.getMaxKeySize());
+        KeyEncoding.UTF8.encode(key, keyBuffer);
+        keyBuffer.flip();
+        final ByteBuffer data = db.get(txn, keyBuffer);
+        if (data == null)
+            return null;
+        return StandardCharsets.UTF_8.decode(data).toString();
+    }
+
+    public void put(String key, String value) {
+        try (Txn<ByteBuffer> txn = environment.txnWrite()) {
+            put(txn, key, value);
+            txn.commit();
+        }
+    }
+
+    public void put(Txn<ByteBuffer> txn, String key, String value) {
+        final ByteBuffer keyBuffer = LmdbBuffers.keyBuffer(environment.getMaxKeySize());
+        KeyEncoding.UTF8.encode(key, keyBuffer);
+        keyBuffer.flip();
+        db.put(txn, keyBuffer, LmdbBuffers.valueBuffer(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public void delete(String key) {
+        try (Txn<ByteBuffer> txn = environment.txnWrite()) {
+            final ByteBuffer keyBuffer = LmdbBuffers.keyBuffer(environment.getMaxKeySize());
+            KeyEncoding.UTF8.encode(key, keyBuffer);
+            keyBuffer.flip();
+            db.delete(txn, keyBuffer);
+            txn.commit();
+        }
+    }
+
+    /**
+     * Encoding of the keys of the environment, environments created before the key encoding was 
+     * recorded use FST keys
+     */
+    public KeyEncoding getKeyEncoding() {
+        String encoding = get(KEY_ENCODING);
+        if (encoding == null)
+            return KeyEncoding.FST;
+        return KeyEncoding.fromName(encoding);
+    }
+
+    public void setKeyEncoding(KeyEncoding encoding) {
+        put(KEY_ENCODING, encoding.getName());
+    }
+}
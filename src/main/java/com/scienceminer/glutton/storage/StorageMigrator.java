@@ -0,0 +1,185 @@
+package com.scienceminer.glutton.storage;
+
+import com.codahale.metrics.Meter;
+import com.scienceminer.glutton.utils.BinarySerialiser;
+import com.scienceminer.glutton.utils.JsonRecordSerialiser;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.lmdbjava.CursorIterable;
+import org.lmdbjava.Dbi;
+import org.lmdbjava.DbiFlags;
+import org.lmdbjava.Env;
+import org.lmdbjava.KeyRange;
+import org.lmdbjava.Txn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.ByteBuffer.allocateDirect;
+
+/**
+ * Rewrite the stored JSON records of a database in a given storage format, or copy the databases
+ * of an environment to a new environment with another key encoding.
+ *
+ * The database is processed by batches of keys: each batch is read with a short read transaction
+ * and the converted records are then written with a write transaction, so the migration does not
+ * keep a read transaction open on the whole database. Records already in the target format and
+ * entries which are not JSON records (e.g. the last indexed date) are left untouched, so an
+ * interrupted migration can simply be launched again.
+ */
+public class StorageMigrator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StorageMigrator.class);
+
+    public static long migrateJsonRecords(Env<ByteBuffer> environment,
+                                          Dbi<ByteBuffer> db,
+                                          StorageFormat format,
+                                          int batchSize,
+                                          Meter meter) {
+        long migrated = 0;
+        ByteBuffer lastKey = null;
+        boolean completed = false;
+
+        while (!completed) {
+            List<Pair<byte[], byte[]>> updates = new ArrayList<>();
+            byte[] lastKeyBytes = null;
+            int seen = 0;
+            completed = true;
+
+            try (Txn<ByteBuffer> txn = environment.txnRead()) {
+                KeyRange<ByteBuffer> range = lastKey == null ? KeyRange.all() : KeyRange.greaterThan(lastKey);
+                try (CursorIterable<ByteBuffer> it = db.iterate(txn, range)) {
+                    for (final CursorIterable.KeyVal<ByteBuffer> kv : it) {
+                        lastKeyBytes = new byte[kv.key().remaining()];
+                        kv.key().duplicate().get(lastKeyBytes);
+
+                        byte[] newValue = convert(kv.val(), format);
+                        if (newValue != null)
+                            updates.add(new ImmutablePair<>(lastKeyBytes, newValue));
+
+                        seen++;
+                        meter.mark();
+                        if (seen >= batchSize) {
+                            completed = false;
+                            break;
+                        }
+                    }
+                }
+            }
+
+            if (!updates.isEmpty()) {
+                try (Txn<ByteBuffer> txn = environment.txnWrite()) {
+                    for (Pair<byte[], byte[]> update : updates) {
+                        final ByteBuffer keyBuffer = allocateDirect(update.getLeft().length);
+                        keyBuffer.put(update.getLeft()).flip();
+                        final ByteBuffer valBuffer = allocateDirect(update.getRight().length);
+                        valBuffer.put(update.getRight()).flip();
+                        db.put(txn, keyBuffer, valBuffer);
+                    }
+                    txn.commit();
+                }
+                migrated += updates.size();
+            }
+
+            if (lastKeyBytes != null) {
+                lastKey = allocateDirect(lastKeyBytes.length);
+                lastKey.put(lastKeyBytes).flip();
+            }
+        }
+
+        LOGGER.info(migrated + " records rewritten in " + format + " format");
+        return migrated;
+    }
+
+    /**
+     * Copy all the databases of the source environment into the target environment, re-encoding the
+     * keys with the target key encoding. Values are copied unchanged. The metadata database is not
+     * copied, the target environment keeps its own metadata.
+     */
+    public static long migrateKeys(Env<ByteBuffer> source,
+                                   KeyEncoding sourceEncoding,
+                                   Env<ByteBuffer> target,
+                                   KeyEncoding targetEncoding,
+                                   int batchSize,
+                                   Meter meter) {
+        long migrated = 0;
+        final int maxKeySize = target.getMaxKeySize();
+
+        for (byte[] name : source.getDbiNames()) {
+            final String dbName = new String(name, StandardCharsets.UTF_8);
+            if (dbName.equals(StorageMetadata.NAME_METADATA))
+                continue;
+
+            LOGGER.info("Copying database " + dbName);
+            final Dbi<ByteBuffer> sourceDb = source.openDbi(name);
+            final Dbi<ByteBuffer> targetDb = target.openDbi(name, DbiFlags.MDB_CREATE);
+
+            // the source environment is not modified, so a single read transaction is used
+            try (Txn<ByteBuffer> readTxn = source.txnRead();
+                 CursorIterable<ByteBuffer> it = sourceDb.iterate(readTxn, KeyRange.all())) {
+                Txn<ByteBuffer> writeTxn = target.txnWrite();
+                int counter = 0;
+                try {
+                    for (final CursorIterable.KeyVal<ByteBuffer> kv : it) {
+                        String key = null;
+                        try {
+                            key = sourceEncoding.decode(kv.key());
+                            final ByteBuffer keyBuffer = LmdbBuffers.keyBuffer(maxKeySize);
+                            targetEncoding.encode(key, keyBuffer);
+                            keyBuffer.flip();
+                            final ByteBuffer value = kv.val();
+                            byte[] valueBytes = new byte[value.remaining()];
+                            value.duplicate().get(valueBytes);
+                            targetDb.put(writeTxn, keyBuffer, LmdbBuffers.valueBuffer(valueBytes));
+                            migrated++;
+                        } catch (Exception e) {
+                            LOGGER.error("Cannot copy the entry " + key + " of " + dbName, e);
+                        }
+
+                        meter.mark();
+                        counter++;
+                        if (counter == batchSize) {
+                            writeTxn.commit();
+                            writeTxn.close();
+                            writeTxn = target.txnWrite();
+                            counter = 0;
+                        }
+                    }
+                    writeTxn.commit();
+                } finally {
+                    writeTxn.close();
+                }
+            }
+        }
+
+        LOGGER.info(migrated + " entries copied with " + targetEncoding.getName() + " keys");
+        return migrated;
+    }
+
+    /**
+     * Return the value converted to the target format, or null if the value does not need to be
+     * rewritten
+     */
+    private static byte[] convert(ByteBuffer value, StorageFormat format) {
+        try {
+            if (JsonRecordSerialiser.isJsonRecord(value)) {
+                if (format == StorageFormat.JSON)
+                    return null;
+                return format.serializeRecord(JsonRecordSerialiser.deserialize(value));
+            }
+
+            if (format == StorageFormat.FST)
+                return null;
+            Object object = BinarySerialiser.deserializeAndDecompress(value.duplicate());
+            if (!(object instanceof String))
+                return null;
+            return format.serializeRecord((String) object);
+        } catch (Exception e) {
+            LOGGER.error("Cannot convert a stored record", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.scienceminer.glutton.storage;
+
+import com.scienceminer.glutton.data.IdsGraphData;
+import com.scienceminer.glutton.utils.BinarySerialiser;
+import com.scienceminer.glutton.utils.IdsGraphSerialiser;
+import com.scienceminer.glutton.utils.JsonRecordSerialiser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Serialization of the values stored in a LMDB database.
+ */
+public interface ValueCodec<V> {
+
+    byte[] encode(V value) throws IOException;
+
+    /**
+     * Decode a stored value, the data buffer is only valid during the transaction
+     */
+    V decode(ByteBuffer data) throws IOException;
+
+    /**
+     * Java objects serialized with FST, without compression
+     */
+    @SuppressWarnings("unchecked")
+    static <V> ValueCodec<V> fst() {
+        return new ValueCodec<V>() {
+            @Override
+            public byte[] encode(V value) {
+                return BinarySerialiser.serialize(value);
+            }
+
+            @Override
+            public V decode(ByteBuffer data) {
+                return (V) BinarySerialiser.deserialize(data);
+            }
+        };
+    }
+
+    /**
+     * Java objects serialized with FST and compressed with Snappy
+     */
+    @SuppressWarnings("unchecked")
+    static <V> ValueCodec<V> compressedFst() {
+        return new ValueCodec<V>() {
+            @Override
+            public byte[] encode(V value) throws IOException {
+                return BinarySerialiser.serializeAndCompress(value);
+            }
+
+            @Override
+            public V decode(ByteBuffer data) throws IOException {
+                return (V) BinarySerialiser.deserializeAndDecompress(data);
+            }
+        };
+    }
+
+    /**
+     * JSON records written in the given storage format and read whatever their format, non JSON
+     * values of the same database are decoded as null
+     */
+    static ValueCodec<String> jsonRecord(final StorageFormat format) {
+        return new ValueCodec<String>() {
+            @Override
+            public byte[] encode(String value) throws IOException {
+                return format.serializeRecord(value);
+            }
+
+            @Override
+            public String decode(ByteBuffer data) throws IOException {
+                return JsonRecordSerialiser.deserializeRecord(data);
+            }
+        };
+    }
+
+    /**
+     * Identifiers of a DOI in the compact format of IdsGraphSerialiser
+     */
+    static ValueCodec<IdsGraphData> idsGraph() {
+        return new ValueCodec<IdsGraphData>() {
+            @Override
+            public byte[] encode(IdsGraphData value) {
+                return IdsGraphSerialiser.serialize(value);
+            }
+
+            @Override
+            public IdsGraphData decode(ByteBuffer data) throws IOException {
+                return IdsGraphSerialiser.deserialize(data);
+            }
+        };
+    }
+}
@@ -0,0 +1,67 @@
+package com.scienceminer.glutton.storage.lookup;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Progress of the loading of a Crossref dump, made persistent in the crossref LMDB environment so
+ * that an interrupted loading can be resumed:
+ * - the dump files which are fully stored and indexed,
+ * - for the files not yet completed, the number of completed tar entries, from the start of the
+ *   archive (only tar archives can be resumed in the middle of a file),
+ * - the latest indexed date of the records of the completed work.
+ */
+public class CrossrefLoadCheckpoint implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final Set<String> completedFiles = new HashSet<>();
+    private final Map<String, Integer> completedEntries = new HashMap<>();
+    private LocalDateTime lastIndexed = null;
+
+    public synchronized boolean isCompleted(String file) {
+        return completedFiles.contains(file);
+    }
+
+    public synchronized int getCompletedEntries(String file) {
+        return completedEntries.getOrDefault(file, 0);
+    }
+
+    public synchronized void entryCompleted(String file, int completed, LocalDateTime entryLastIndexed) {
+        completedEntries.put(file, completed);
+        updateLastIndexed(entryLastIndexed);
+    }
+
+    public synchronized void fileCompleted(String file, LocalDateTime fileLastIndexed) {
+        completedEntries.remove(file);
+        completedFiles.add(file);
+        updateLastIndexed(fileLastIndexed);
+    }
+
+    public synchronized int getCompletedFileCount() {
+        return completedFiles.size();
+    }
+
+    public synchronized LocalDateTime getLastIndexed() {
+        return lastIndexed;
+    }
+
+    private void updateLastIndexed(LocalDateTime date) {
+        if (date != null && (lastIndexed == null || lastIndexed.isBefore(date)))
+            lastIndexed = date;
+    }
+
+    /**
+     * Copy of the checkpoint, to be serialized while the loading goes on
+     */
+    public synchronized CrossrefLoadCheckpoint copy() {
+        final CrossrefLoadCheckpoint copy = new CrossrefLoadCheckpoint();
+        copy.completedFiles.addAll(completedFiles);
+        copy.completedEntries.putAll(completedEntries);
+        copy.lastIndexed = lastIndexed;
+        return copy;
+    }
+}
@@ -0,0 +1,372 @@
+package com.scienceminer.glutton.storage.lookup;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.scienceminer.glutton.configuration.LookupConfiguration;
+import com.scienceminer.glutton.indexing.ElasticSearchAsyncIndexer;
+import com.scienceminer.glutton.indexing.ElasticSearchIndexer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import static org.apache.commons.lang3.StringUtils.lowerCase;
+
+/**
+ * Pipelined loading of a set of Crossref dump files:
+ * - N worker threads decompress and parse the files, one file at a time per worker, and group the
+ *   records by batches of the storing batch size,
+ * - a single writer thread stores each batch in one LMDB write transaction (LMDB has a single
+ *   writer anyway), the batches are received through a bounded queue so that the parsing does not
+ *   run ahead of the storage,
+ * - the stored batches are then handed to a separate indexing stage, which creates the bulk
+ *   indexing requests.
+ *
+ * The latest indexed date of the records is the one of the completed work in the checkpoint, it is
+ * only recorded once all the files are completed: the daily incremental update then starts from
+ * this date, and a partial loading must not make it skip the records of the files not loaded.
+ *
+ * The progress is recorded in a checkpoint: a tar entry or a file is completed once all its records 
+ * are stored and their bulk indexing requests are processed. The checkpoint is saved regularly 
+ * by the writer thread, so that an interrupted loading can be resumed by skipping the completed 
+ * work.
+ */
+public class CrossrefLoadingPipeline {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CrossrefLoadingPipeline.class);
+
+    /**
+     * A dump file, parsed by a worker thread
+     */
+    public interface DumpFile {
+        String getName();
+
+        /**
+         * Parse the records of the file and return the latest indexed date of the records. For a 
+         * tar archive, the given number of first entries are skipped and the completion of each 
+         * entry is notified with the number of entries completed so far and the latest indexed 
+         * date of its records. An entry which cannot be loaded is not notified, nor the following
+         * ones, and the file is then not completed: an exception is thrown once the other entries 
+         * are loaded.
+         */
+        LocalDateTime load(int firstEntry, 
+                           Counter counterInvalidRecords, 
+                           Consumer<JsonNode> closure, 
+                           BiConsumer<Integer, LocalDateTime> entryCompleted) throws IOException;
+    }
+
+    private static final RecordBatch END = new RecordBatch(null, 0);
+
+    // minimum delay between two saves of the checkpoint
+    private static final long CHECKPOINT_INTERVAL_MS = 10000;
+
+    private final CrossrefMetadataLookup metadataLookup;
+    private final LookupConfiguration configuration;
+    private final int threads;
+    private final int batchStoringSize;
+    private final int batchIndexingSize;
+
+    private final Meter meterValidRecord;
+    private final Counter counterInvalidRecords;
+    private final Counter counterIndexedRecords;
+    private final Counter counterFailedIndexedRecords;
+
+    private CrossrefLoadCheckpoint checkpoint;
+    private final AtomicBoolean checkpointChanged = new AtomicBoolean(false);
+    private final AtomicInteger completedFiles = new AtomicInteger(0);
+
+    public CrossrefLoadingPipeline(CrossrefMetadataLookup metadataLookup,
+                                   LookupConfiguration configuration,
+                                   int threads,
+                                   Meter meterValidRecord,
+                                   Counter counterInvalidRecords,
+                                   Counter counterIndexedRecords,
+                                   Counter counterFailedIndexedRecords) {
+        this.metadataLookup = metadataLookup;
+        this.configuration = configuration;
+        this.threads = Math.max(1, threads);
+        this.batchStoringSize = Math.max(1, configuration.getStoringBatchSize());
+        this.batchIndexingSize = Math.max(1, configuration.getIndexingBatchSize());
+        this.meterValidRecord = meterValidRecord;
+        this.counterInvalidRecords = counterInvalidRecords;
+        this.counterIndexedRecords = counterIndexedRecords;
+        this.counterFailedIndexedRecords = counterFailedIndexedRecords;
+    }
+
+    /**
+     * Load the files, the work already completed according to the checkpoint is skipped. The 
+     * checkpoint is removed when all the files are completed.
+     */
+    public void load(List<DumpFile> files, CrossrefLoadCheckpoint checkpoint) throws InterruptedException {
+        this.checkpoint = checkpoint;
+        final List<DumpFile> remainingFiles = new ArrayList<>();
+        for (DumpFile file : files) {
+            if (checkpoint.isCompleted(file.getName()))
+                LOGGER.info("Skipping " + file.getName() + ", already loaded");
+            else
+                remainingFiles.add(file);
+        }
+        final int alreadyCompleted = files.size() - remainingFiles.size();
+        LOGGER.info("Loading " + remainingFiles.size() + " Crossref files with " + threads + " parsing threads");
+
+        final BlockingQueue<RecordBatch> storingQueue = new ArrayBlockingQueue<>(2 * threads);
+
+        // the writer waits for the indexing stage when it is late
+        final ThreadPoolExecutor indexingExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(4 * Math.max(1, batchStoringSize / batchIndexingSize)),
+            namedThreadFactory("crossref-indexing"), new ThreadPoolExecutor.CallerRunsPolicy());
+
+        final Thread writer = new Thread(() -> writeBatches(storingQueue, indexingExecutor), "crossref-writer");
+        writer.start();
+
+        final ExecutorService parsingExecutor = Executors.newFixedThreadPool(threads, namedThreadFactory("crossref-parsing"));
+        final AtomicInteger processedFiles = new AtomicInteger(0);
+        final List<FileProgress> progresses = new ArrayList<>();
+        for (DumpFile file : remainingFiles) {
+            final FileProgress progress = new FileProgress(file.getName());
+            progresses.add(progress);
+            parsingExecutor.submit(() -> {
+                parseFile(file, progress, storingQueue);
+                int processed = processedFiles.incrementAndGet();
+                if (processed % 100 == 0)
+                    LOGGER.info(processed + " / " + remainingFiles.size() + " Crossref files parsed");
+            });
+        }
+        parsingExecutor.shutdown();
+        parsingExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+
+        storingQueue.put(END);
+        writer.join();
+
+        indexingExecutor.shutdown();
+        indexingExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        ElasticSearchAsyncIndexer.getInstance(configuration).awaitPending();
+        for (FileProgress progress : progresses) {
+            progress.completion.join();
+        }
+        ElasticSearchIndexer.getInstance(configuration).refreshIndex(configuration.getElastic().getIndex());
+
+        if (alreadyCompleted + completedFiles.get() == files.size()) {
+            // all the records are stored, the latest indexed date can be made persistent, including 
+            // the records loaded by a previous interrupted run
+            final LocalDateTime latest = checkpoint.getLastIndexed();
+            if (latest != null && (metadataLookup.getLastIndexed() == null || metadataLookup.getLastIndexed().isBefore(latest)))
+                metadataLookup.setLastIndexed(latest);
+            metadataLookup.clearLoadCheckpoint();
+        } else {
+            metadataLookup.saveLoadCheckpoint(checkpoint);
+            LOGGER.warn((files.size() - alreadyCompleted - completedFiles.get()) + " Crossref files are not " +
+                "completely loaded, the loading can be resumed with the --resume option");
+        }
+    }
+
+    private void parseFile(DumpFile file, FileProgress progress, BlockingQueue<RecordBatch> storingQueue) {
+        try {
+            final RecordBatch[] batch = { new RecordBatch(progress, batchStoringSize) };
+            final LocalDateTime fileLastIndexed = file.load(checkpoint.getCompletedEntries(file.getName()), 
+                counterInvalidRecords, 
+                crossrefData -> {
+                    batch[0].add(lowerCase(crossrefData.get("DOI").asText()), crossrefData);
+                    if (batch[0].size() == batchStoringSize) {
+                        put(storingQueue, batch[0]);
+                        batch[0] = new RecordBatch(progress, batchStoringSize);
+                    }
+                },
+                (completedEntries, entryLastIndexed) -> {
+                    if (batch[0].size() > 0) {
+                        put(storingQueue, batch[0]);
+                        batch[0] = new RecordBatch(progress, batchStoringSize);
+                    }
+                    put(storingQueue, RecordBatch.marker(progress, completedEntries, entryLastIndexed));
+                });
+            if (batch[0].size() > 0)
+                put(storingQueue, batch[0]);
+            put(storingQueue, RecordBatch.marker(progress, RecordBatch.FILE_COMPLETED, fileLastIndexed));
+        } catch (Exception e) {
+            LOGGER.error("Error while processing " + file.getName(), e);
+        }
+    }
+
+    private static void put(BlockingQueue<RecordBatch> queue, RecordBatch batch) {
+        try {
+            queue.put(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the LMDB writer", e);
+        }
+    }
+
+    private void writeBatches(BlockingQueue<RecordBatch> storingQueue, ExecutorService indexingExecutor) {
+        long lastCheckpointSave = System.currentTimeMillis();
+        while (true) {
+            final RecordBatch batch;
+            try {
+                batch = storingQueue.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOGGER.error("The LMDB writer has been interrupted");
+                return;
+            }
+            if (batch == END)
+                return;
+
+            // the checkpoint is saved by the writer thread, as LMDB has a single writer
+            if (System.currentTimeMillis() - lastCheckpointSave > CHECKPOINT_INTERVAL_MS && 
+                checkpointChanged.getAndSet(false)) {
+                metadataLookup.saveLoadCheckpoint(checkpoint);
+                lastCheckpointSave = System.currentTimeMillis();
+            }
+            if (batch == null)
+                continue;
+
+            if (batch.isMarker()) {
+                markCompleted(batch);
+                continue;
+            }
+
+            try {
+                metadataLookup.storeRecords(batch.keys, batch.records, batch.indexKeys, meterValidRecord);
+            } catch (Exception e) {
+                LOGGER.error("Cannot store a batch of " + batch.size() + " Crossref records", e);
+                // the file cannot be completed anymore in this run
+                batch.file.failed = true;
+                continue;
+            }
+
+            for (int i = 0; i < batch.size(); i += batchIndexingSize) {
+                final List<JsonNode> documents =
+                    new ArrayList<>(batch.documents.subList(i, Math.min(i + batchIndexingSize, batch.size())));
+                final CompletableFuture<Void> indexed = new CompletableFuture<>();
+                batch.file.pendingIndexing.add(indexed);
+                indexingExecutor.execute(() -> {
+                    try {
+                        metadataLookup.indexDocumentsWithCompletion(documents, counterIndexedRecords, 
+                            counterFailedIndexedRecords).whenComplete((result, throwable) -> {
+                                if (throwable != null) {
+                                    LOGGER.error("Cannot index a batch of " + documents.size() + " Crossref records", throwable);
+                                    counterFailedIndexedRecords.inc(documents.size());
+                                    // the file cannot be completed anymore in this run
+                                    batch.file.failed = true;
+                                }
+                                indexed.complete(null);
+                            });
+                    } catch (Exception e) {
+                        LOGGER.error("Cannot index a batch of " + documents.size() + " Crossref records", e);
+                        batch.file.failed = true;
+                        indexed.complete(null);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * All the records of the completed entry or file are stored, the checkpoint is updated when 
+     * their indexing is completed too. The completions of a file are chained so that they are 
+     * recorded in order.
+     */
+    private void markCompleted(RecordBatch marker) {
+        final FileProgress file = marker.file;
+        final CompletableFuture<?>[] indexed = file.pendingIndexing.toArray(new CompletableFuture<?>[0]);
+        file.pendingIndexing.clear();
+        file.completion = CompletableFuture.allOf(file.completion, CompletableFuture.allOf(indexed)).thenRun(() -> {
+            if (file.failed)
+                return;
+            if (marker.completedEntries == RecordBatch.FILE_COMPLETED) {
+                checkpoint.fileCompleted(file.name, marker.lastIndexed);
+                completedFiles.incrementAndGet();
+            } else {
+                checkpoint.entryCompleted(file.name, marker.completedEntries, marker.lastIndexed);
+            }
+            checkpointChanged.set(true);
+        });
+    }
+
+    private static ThreadFactory namedThreadFactory(String name) {
+        final AtomicInteger counter = new AtomicInteger(0);
+        return r -> {
+            Thread thread = new Thread(r, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Progress of a dump file in the current run, the indexing futures are only accessed by the 
+     * writer thread
+     */
+    private static class FileProgress {
+        private final String name;
+        private final List<CompletableFuture<Void>> pendingIndexing = new ArrayList<>();
+        private CompletableFuture<Void> completion = CompletableFuture.completedFuture(null);
+        private volatile boolean failed = false;
+
+        FileProgress(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * Records parsed from a dump file, with their key and serialized JSON, or a marker of the 
+     * completion of a tar entry or of the whole file when there are no records
+     */
+    private static class RecordBatch {
+        private static final int NO_MARKER = -1;
+        private static final int FILE_COMPLETED = -2;
+
+        private final FileProgress file;
+        private final List<String> keys;
+        private final List<String> records;
+        private final List<JsonNode> documents;
+        private final List<RecordIndexKeys> indexKeys;
+
+        private int completedEntries = NO_MARKER;
+        private LocalDateTime lastIndexed = null;
+
+        RecordBatch(FileProgress file, int capacity) {
+            this.file = file;
+            keys = new ArrayList<>(capacity);
+            records = new ArrayList<>(capacity);
+            documents = new ArrayList<>(capacity);
+            indexKeys = new ArrayList<>(capacity);
+        }
+
+        static RecordBatch marker(FileProgress file, int completedEntries, LocalDateTime lastIndexed) {
+            final RecordBatch marker = new RecordBatch(file, 0);
+            marker.completedEntries = completedEntries;
+            marker.lastIndexed = lastIndexed;
+            return marker;
+        }
+
+        boolean isMarker() {
+            return completedEntries != NO_MARKER;
+        }
+
+        void add(String key, JsonNode document) {
+            keys.add(key);
+            // the serialization is done by the parsing thread, not by the LMDB writer
+            records.add(document.toString());
+            documents.add(document);
+            indexKeys.add(RecordIndexKeys.of(document));
+        }
+
+        int size() {
+            return keys.size();
+        }
+    }
+}
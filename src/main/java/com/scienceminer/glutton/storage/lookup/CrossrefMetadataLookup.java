@@ -5,26 +5,29 @@ import com.codahale.metrics.Meter;
 import com.scienceminer.glutton.configuration.LookupConfiguration;
 import com.scienceminer.glutton.data.MatchingDocument;
 import com.scienceminer.glutton.exception.ServiceException;
-import com.scienceminer.glutton.exception.ServiceOverloadedException;
-import com.scienceminer.glutton.reader.CrossrefJsonReader;
 import com.scienceminer.glutton.indexing.ElasticSearchIndexer;
+import com.scienceminer.glutton.indexing.LuceneIndexer;
+import com.scienceminer.glutton.indexing.SolrIndexer;
 import com.scienceminer.glutton.indexing.ElasticSearchAsyncIndexer;
+import com.scienceminer.glutton.indexing.ParallelIndexer;
+import com.scienceminer.glutton.storage.DoiCache;
 import com.scienceminer.glutton.storage.StorageEnvFactory;
-import com.scienceminer.glutton.utils.BinarySerialiser;
-import org.apache.commons.lang3.tuple.ImmutablePair;
+import com.scienceminer.glutton.storage.KeyEncoding;
+import com.scienceminer.glutton.storage.LmdbStore;
+import com.scienceminer.glutton.storage.StorageFormat;
+import com.scienceminer.glutton.storage.StorageMigrator;
+import com.scienceminer.glutton.storage.ValueCodec;
 import org.apache.commons.lang3.tuple.Pair;
 import org.lmdbjava.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CompletableFuture;
 import java.time.LocalDateTime;
 
 import com.fasterxml.jackson.databind.node.*;
@@ -32,7 +35,6 @@ import com.fasterxml.jackson.core.*;
 import com.fasterxml.jackson.databind.*;
 
 import static com.scienceminer.glutton.web.resource.DataController.DEFAULT_MAX_SIZE_LIST;
-import static java.nio.ByteBuffer.allocateDirect;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.lowerCase;
 
@@ -47,20 +49,39 @@ public class CrossrefMetadataLookup {
     private static volatile CrossrefMetadataLookup instance;
 
     private Env<ByteBuffer> environment;
-    private Dbi<ByteBuffer> dbCrossrefJson;
+    private LmdbStore<String> dbCrossrefJson;
+    private LmdbStore<LocalDateTime> dbLastIndexed;
+    private LmdbStore<CrossrefLoadCheckpoint> dbLoadCheckpoint;
+    // exact title + first author key -> DOIs of the records
+    private LmdbStore<List<String>> dbTitleAuthor;
+    // journal + volume + first page key -> DOIs of the records
+    private LmdbStore<List<String>> dbJournalVolumePage;
+    // journal titles and abbreviations -> ISSNs
+    private JournalDictionary journalDictionary;
 
     public static final String ENV_NAME = "crossref";
 
     public static final String NAME_CROSSREF_JSON = ENV_NAME + "_Jsondoc";
+    public static final String NAME_TITLE_AUTHOR = ENV_NAME + "_titleAuthor";
+    public static final String NAME_JOURNAL_VOLUME_PAGE = ENV_NAME + "_journalVolumePage";
+    public static final String NAME_JOURNALS = ENV_NAME + "_journals";
     
     private final int batchStoringSize;
     private final int batchIndexingSize;
 
     private LookupConfiguration configuration;
 
+    // format of the written JSON records
+    private StorageFormat storageFormat;
+
+    // cache of the hot DOI lookups, the rewritten records are invalidated after each commit
+    private DoiCache doiCache;
+
     // this date keeps track of the latest indexed date of the metadata database
     private LocalDateTime lastIndexed = null; 
 
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
     public static CrossrefMetadataLookup getInstance(StorageEnvFactory storageEnvFactory) {
         if (instance == null) {
             synchronized (CrossrefMetadataLookup.class) {
@@ -83,75 +104,233 @@ public class CrossrefMetadataLookup {
         this.environment = storageEnvFactory.getEnv(ENV_NAME);
 
         configuration = storageEnvFactory.getConfiguration();
+        storageFormat = storageEnvFactory.getStorageFormat(ENV_NAME);
         batchStoringSize = configuration.getStoringBatchSize();
         batchIndexingSize = configuration.getIndexingBatchSize();
-        dbCrossrefJson = this.environment.openDbi(NAME_CROSSREF_JSON, DbiFlags.MDB_CREATE);
+        doiCache = DoiCache.getInstance(configuration);
+        final KeyEncoding keyEncoding = storageEnvFactory.getKeyEncoding(environment);
+        dbCrossrefJson = storageEnvFactory.withKeyFilter(ENV_NAME, 
+            LmdbStore.open(environment, NAME_CROSSREF_JSON, keyEncoding, ValueCodec.jsonRecord(storageFormat)));
+        // the last indexed date is stored in the same database as the records
+        dbLastIndexed = dbCrossrefJson.withCodec(ValueCodec.compressedFst());
+        // same for the checkpoint of an interrupted loading, these entries are not JSON records and
+        // are ignored when indexing the database
+        dbLoadCheckpoint = dbCrossrefJson.withCodec(ValueCodec.compressedFst());
+        dbTitleAuthor = LmdbStore.open(environment, NAME_TITLE_AUTHOR, keyEncoding, ValueCodec.fst());
+        dbJournalVolumePage = LmdbStore.open(environment, NAME_JOURNAL_VOLUME_PAGE, keyEncoding, ValueCodec.fst());
+        journalDictionary = new JournalDictionary(
+            LmdbStore.open(environment, NAME_JOURNALS, keyEncoding, ValueCodec.fst()));
     }
 
-    public void loadFromFile(InputStream is, 
-                            CrossrefJsonReader reader, 
-                            Meter meterValidRecord, 
-                            Counter counterInvalidRecords, 
-                            Counter counterIndexedRecords,
-                            Counter counterFailedIndexedRecords) {
-        final TransactionWrapper transactionWrapper = new TransactionWrapper(environment.txnWrite());
-        final AtomicInteger counterStoring = new AtomicInteger(0);
-        final AtomicInteger counterIndexing = new AtomicInteger(0);
-        final List<JsonNode> documents = new ArrayList<>();
-
-        reader.load(is, counterInvalidRecords, crossrefData -> {
-            if (counterStoring.get() == batchStoringSize) {
-                transactionWrapper.tx.commit();
-                transactionWrapper.tx.close();
-                transactionWrapper.tx = environment.txnWrite();
-                counterStoring.set(0);
+    /**
+     * Remove the rewritten records from the DOI cache, once they are committed so that a concurrent
+     * lookup cannot cache again the previous version
+     */
+    private void invalidateCache(List<String> dois) {
+        if (doiCache.isEnabled()) {
+            for (String doi : dois) {
+                doiCache.invalidate(doi);
             }
-            if (counterIndexing.get() == batchIndexingSize) {
-                indexDocuments(documents, true, counterIndexedRecords, counterFailedIndexedRecords);
-                counterIndexing.set(0);
-                documents.clear();
+        }
+    }
+
+    /**
+     * Store a batch of records in a single write transaction, the keys being the lower case DOI of
+     * the records. LMDB allows only one write transaction at a time, so the batches are expected to
+     * be stored by a single writer thread.
+     * The index keys of the records, computed by the parsing threads, are added in the same 
+     * transaction to the exact lookup indexes, the journal dictionary in memory being updated once
+     * the transaction is committed. When a record replaces a stored one, its DOI is first removed 
+     * from the index keys of the replaced record which are not keys of the new one (e.g. after a 
+     * correction of its title or of its pages).
+     */
+    public void storeRecords(List<String> keys, List<String> records, List<RecordIndexKeys> indexKeys, 
+                             Meter meterValidRecord) {
+        final JournalDictionary.Changes journalChanges = new JournalDictionary.Changes();
+        try (Txn<ByteBuffer> txn = environment.txnWrite()) {
+            for (int i = 0; i < keys.size(); i++) {
+                removeReplacedIndexKeys(txn, indexKeys.get(i), keys.get(i));
+                dbCrossrefJson.put(txn, keys.get(i), records.get(i));
+                addIndexKeys(txn, journalChanges, indexKeys.get(i), keys.get(i));
+                meterValidRecord.mark();
             }
+            txn.commit();
+        }
+        journalDictionary.apply(journalChanges);
+        invalidateCache(keys);
+    }
+
+    private void addIndexKeys(Txn<ByteBuffer> txn, JournalDictionary.Changes journalChanges, 
+                              RecordIndexKeys indexKeys, String doi) {
+        for (String titleAuthorKey : indexKeys.getTitleAuthorKeys()) {
+            addDoi(txn, dbTitleAuthor, titleAuthorKey, doi);
+        }
+        for (String journalKey : indexKeys.getJournalKeys()) {
+            addDoi(txn, dbJournalVolumePage, journalKey, doi);
+        }
+        journalDictionary.add(txn, journalChanges, indexKeys.getJournalTitles(), indexKeys.getIssns());
+    }
+
+    /**
+     * Remove the DOI from the index keys of the stored record it replaces, the keys shared with the 
+     * new record being kept
+     */
+    private void removeReplacedIndexKeys(Txn<ByteBuffer> txn, RecordIndexKeys indexKeys, String doi) {
+        final String replaced = dbCrossrefJson.get(txn, doi);
+        if (replaced == null)
+            return;
+        final RecordIndexKeys replacedIndexKeys;
+        try {
+            replacedIndexKeys = RecordIndexKeys.of(MAPPER.readTree(replaced));
+        } catch (Exception e) {
+            LOGGER.warn("Cannot read the replaced record with key: " + doi, e);
+            return;
+        }
+        for (String titleAuthorKey : replacedIndexKeys.getTitleAuthorKeys()) {
+            if (!indexKeys.getTitleAuthorKeys().contains(titleAuthorKey))
+                removeDoi(txn, dbTitleAuthor, titleAuthorKey, doi);
+        }
+        for (String journalKey : replacedIndexKeys.getJournalKeys()) {
+            if (!indexKeys.getJournalKeys().contains(journalKey))
+                removeDoi(txn, dbJournalVolumePage, journalKey, doi);
+        }
+    }
 
-            String key = lowerCase(crossrefData.get("DOI").asText());
-            String crossrefDataJsonString = crossrefData.toString();
-            store(key, crossrefDataJsonString, dbCrossrefJson, transactionWrapper.tx);
-            meterValidRecord.mark();
-            documents.add(crossrefData);
-            counterStoring.incrementAndGet();
-            counterIndexing.incrementAndGet();
-        });
+    private static void removeDoi(Txn<ByteBuffer> txn, LmdbStore<List<String>> db, String key, String doi) {
+        final List<String> dois = db.get(txn, key);
+        if (dois == null || !dois.remove(doi))
+            return;
+        if (dois.isEmpty())
+            db.delete(txn, key);
+        else
+            db.put(txn, key, dois);
+    }
 
-        // last batch
-        transactionWrapper.tx.commit();
-        transactionWrapper.tx.close();
+    private static void addDoi(Txn<ByteBuffer> txn, LmdbStore<List<String>> db, String key, String doi) {
+        List<String> dois = db.get(txn, key);
+        if (dois == null) {
+            dois = new ArrayList<>(1);
+        } else if (dois.contains(doi)) {
+            return;
+        }
+        dois.add(doi);
+        db.put(txn, key, dois);
+    }
 
-        indexDocuments(documents, true, counterIndexedRecords, counterFailedIndexedRecords);
+    /**
+     * Lookup of the DOIs of the records with exactly the given title and first author, after
+     * normalization. The records can have changed since they were indexed, the candidates are to 
+     * be checked against the stored record.
+     */
+    public List<String> retrieveDoisByTitleAuthor(String atitle, String firstAuthor) {
+        final String titleAuthorKey = TitleAuthorKeys.key(atitle, firstAuthor);
+        if (titleAuthorKey == null)
+            return new ArrayList<>();
 
-        // finally refresh the index
-        ElasticSearchIndexer.getInstance(configuration).refreshIndex(configuration.getElastic().getIndex());
+        final List<String> dois = dbTitleAuthor.get(titleAuthorKey);
+        return dois == null ? new ArrayList<>() : dois;
     }
 
-    private void store(String key, String value, Dbi<ByteBuffer> db, Txn<ByteBuffer> tx) {
-        try {
-            final ByteBuffer keyBuffer = allocateDirect(environment.getMaxKeySize());
-            keyBuffer.put(BinarySerialiser.serialize(key)).flip();
-            final byte[] serializedValue = BinarySerialiser.serializeAndCompress(value);
-            final ByteBuffer valBuffer = allocateDirect(serializedValue.length);
-            valBuffer.put(serializedValue).flip();
-            db.put(tx, keyBuffer, valBuffer);
-        } catch (Exception e) {
-            LOGGER.error("Cannot store the entry " + key, e);
+    /**
+     * Lookup of the DOIs of the records published in the given journal, volume and first page. The
+     * journal title is resolved to ISSNs with the journal dictionary, the records without ISSN being
+     * indexed with their journal title. As for the title + first author index, the candidates are 
+     * to be checked against the stored records.
+     */
+    public List<String> retrieveDoisByJournal(String jtitle, String volume, String firstPage) {
+        final List<String> dois = new ArrayList<>();
+        final String normalizedTitle = TitleAuthorKeys.normalize(jtitle);
+        if (isBlank(normalizedTitle))
+            return dois;
+
+        final List<String> journals = new ArrayList<>(journalDictionary.getIssns(jtitle));
+        journals.add(JournalKeys.titlePart(normalizedTitle));
+        for (String journal : journals) {
+            final String journalKey = JournalKeys.key(journal, volume, firstPage);
+            if (journalKey == null)
+                return dois;
+            final List<String> journalDois = dbJournalVolumePage.get(journalKey);
+            if (journalDois == null)
+                continue;
+            for (String doi : journalDois) {
+                if (!dois.contains(doi))
+                    dois.add(doi);
+            }
         }
+        return dois;
+    }
+
+    /**
+     * Build the exact lookup indexes (title + first author, journal + volume + first page and the
+     * journal dictionary) from all the stored records, for records loaded before the indexes 
+     * existed. The indexes are rebuilt from scratch, by batches of records read in a read 
+     * transaction and added in a write transaction.
+     */
+    public long buildLookupIndexes(Meter meter) {
+        final JournalDictionary.Changes clearing = new JournalDictionary.Changes();
+        try (Txn<ByteBuffer> txn = environment.txnWrite()) {
+            dbTitleAuthor.getDbi().drop(txn);
+            dbJournalVolumePage.getDbi().drop(txn);
+            journalDictionary.clear(txn, clearing);
+            txn.commit();
+        }
+        journalDictionary.apply(clearing);
+
+        final ObjectMapper mapper = new ObjectMapper();
+        long indexed = 0;
+        String lastKey = null;
+        boolean completed = false;
+        while (!completed) {
+            final List<Pair<String, RecordIndexKeys>> batch = new ArrayList<>();
+            completed = true;
+
+            try (Txn<ByteBuffer> txn = environment.txnRead()) {
+                final KeyRange<ByteBuffer> range = lastKey == null ? 
+                    KeyRange.all() : KeyRange.greaterThan(dbCrossrefJson.encodeKey(lastKey));
+                try (CursorIterable<ByteBuffer> it = dbCrossrefJson.getDbi().iterate(txn, range)) {
+                    for (final CursorIterable.KeyVal<ByteBuffer> kv : it) {
+                        lastKey = dbCrossrefJson.decodeKey(kv.key());
+                        try {
+                            // value is null for entries which are not JSON records (e.g. last indexed date)
+                            final String value = dbCrossrefJson.decodeValue(kv.val());
+                            if (value != null)
+                                batch.add(Pair.of(lastKey, RecordIndexKeys.of(mapper.readTree(value))));
+                        } catch (Exception e) {
+                            LOGGER.warn("Cannot read the record with key: " + lastKey, e);
+                        }
+                        meter.mark();
+                        if (batch.size() >= batchStoringSize) {
+                            completed = false;
+                            break;
+                        }
+                    }
+                }
+            }
+
+            final JournalDictionary.Changes journalChanges = new JournalDictionary.Changes();
+            try (Txn<ByteBuffer> txn = environment.txnWrite()) {
+                for (Pair<String, RecordIndexKeys> record : batch) {
+                    addIndexKeys(txn, journalChanges, record.getRight(), record.getLeft());
+                }
+                txn.commit();
+            }
+            journalDictionary.apply(journalChanges);
+            indexed += batch.size();
+        }
+
+        LOGGER.info(indexed + " records added to the lookup indexes, " + dbTitleAuthor.size() + 
+            " title + first author keys, " + dbJournalVolumePage.size() + " journal + volume + first page keys, " + 
+            journalDictionary.size() + " journal titles");
+        return indexed;
     }
 
     public Map<String, Long> getSize() {
 
         Map<String, Long> sizes = new HashMap<>();
-        try (final Txn<ByteBuffer> txn = this.environment.txnRead()) {
-            sizes.put(NAME_CROSSREF_JSON, dbCrossrefJson.stat(txn).entries);
-        } catch (Env.ReadersFullException e) {
-            throw new ServiceOverloadedException("Not enough readers for LMDB access, increase them or reduce the parallel request rate. ", e);
-        }
+        sizes.put(NAME_CROSSREF_JSON, dbCrossrefJson.size());
+        sizes.put(NAME_TITLE_AUTHOR, dbTitleAuthor.size());
+        sizes.put(NAME_JOURNAL_VOLUME_PAGE, dbJournalVolumePage.size());
+        sizes.put(NAME_JOURNALS, journalDictionary.size());
 
         return sizes;
     }
@@ -166,22 +345,7 @@ public class CrossrefMetadataLookup {
     }
 
     public String retrieveJsonDocument(String doi) {
-        final ByteBuffer keyBuffer = allocateDirect(environment.getMaxKeySize());
-        ByteBuffer cachedData = null;
-        String record = null;
-        try (Txn<ByteBuffer> tx = environment.txnRead()) {
-            keyBuffer.put(BinarySerialiser.serialize(doi)).flip();
-            cachedData = dbCrossrefJson.get(tx, keyBuffer);
-            if (cachedData != null) {
-                record = (String) BinarySerialiser.deserializeAndDecompress(cachedData);
-            }
-        } catch (Env.ReadersFullException e) {
-            throw new ServiceOverloadedException("Not enough readers for LMDB access, increase them or reduce the parallel request rate. ", e);
-        } catch (Exception e) {
-            LOGGER.error("Cannot retrieve Crossref document by DOI:  " + doi, e);
-        }
-
-        return record;
+        return dbCrossrefJson.get(doi);
     }
 
     /**
@@ -191,7 +355,7 @@ public class CrossrefMetadataLookup {
         if (isBlank(doi)) {
             throw new ServiceException(400, "The supplied DOI is null.");
         }
-        final String jsonDocument = retrieveJsonDocument(lowerCase(doi));
+        final String jsonDocument = doiCache.getRecord(doi, this::retrieveJsonDocument);
 
         return new MatchingDocument("crossref:"+doi, jsonDocument);
     }
@@ -200,36 +364,12 @@ public class CrossrefMetadataLookup {
         return retrieveList(total, dbCrossrefJson);
     }
 
-    public List<Pair<String, String>> retrieveList(Integer total, Dbi<ByteBuffer> db) {
+    public List<Pair<String, String>> retrieveList(Integer total, LmdbStore<String> db) {
         if (total == null || total == 0) {
             total = DEFAULT_MAX_SIZE_LIST;
         }
 
-        List<Pair<String, String>> values = new ArrayList<>();
-        int counter = 0;
-
-        try (Txn<ByteBuffer> txn = environment.txnRead()) {
-            try (CursorIterable<ByteBuffer> it = db.iterate(txn, KeyRange.all())) {
-                for (final CursorIterable.KeyVal<ByteBuffer> kv : it) {
-                    String key = null;
-                    try {
-                        key = (String) BinarySerialiser.deserialize(kv.key());
-                        values.add(new ImmutablePair<>(key, (String) BinarySerialiser.deserializeAndDecompress(kv.val())));
-                    } catch (IOException e) {
-                        LOGGER.error("Cannot decompress document with key: " + key, e);
-                    }
-                    if (counter == total) {
-                        txn.close();
-                        break;
-                    }
-                    counter++;
-                }
-            }
-        } catch (Env.ReadersFullException e) {
-            throw new ServiceOverloadedException("Not enough readers for LMDB access, increase them or reduce the parallel request rate. ", e);
-        }
-
-        return values;
+        return db.list(total);
     }
 
     public synchronized LocalDateTime getLastIndexed() {
@@ -237,19 +377,7 @@ public class CrossrefMetadataLookup {
             return lastIndexed;
         else {
             // get a possible value made persistent in the db
-            final ByteBuffer keyBuffer = allocateDirect(environment.getMaxKeySize());
-            ByteBuffer cachedData = null;
-            try (Txn<ByteBuffer> tx = environment.txnRead()) {
-                keyBuffer.put(BinarySerialiser.serialize("last-indexed-date")).flip();
-                cachedData = dbCrossrefJson.get(tx, keyBuffer);
-                if (cachedData != null) {
-                    lastIndexed = (LocalDateTime) BinarySerialiser.deserializeAndDecompress(cachedData);
-                }
-            } catch (Env.ReadersFullException e) {
-                throw new ServiceOverloadedException("Not enough readers for LMDB access, increase them or reduce the parallel request rate. ", e);
-            } catch (Exception e) {
-                LOGGER.error("Cannot retrieve the persistent last indexed date object", e);
-            }
+            lastIndexed = dbLastIndexed.get("last-indexed-date");
             return lastIndexed;
         }
     }
@@ -260,14 +388,38 @@ public class CrossrefMetadataLookup {
         // persistent store of this date
         final TransactionWrapper transactionWrapper = new TransactionWrapper(environment.txnWrite());
         try {
-            final ByteBuffer keyBuffer = allocateDirect(environment.getMaxKeySize());
-            keyBuffer.put(BinarySerialiser.serialize("last-indexed-date")).flip();
-            final byte[] serializedValue = BinarySerialiser.serializeAndCompress(this.lastIndexed);
-            final ByteBuffer valBuffer = allocateDirect(serializedValue.length);
-            valBuffer.put(serializedValue).flip();
-            dbCrossrefJson.put(transactionWrapper.tx, keyBuffer, valBuffer);
-        } catch (Exception e) {
-            LOGGER.error("Cannot store the last-indexed-date", e);
+            if (!dbLastIndexed.put(transactionWrapper.tx, "last-indexed-date", this.lastIndexed)) {
+                LOGGER.error("Cannot store the last-indexed-date");
+            }
+        } finally {
+            transactionWrapper.tx.commit();
+            transactionWrapper.tx.close();
+        }
+    }
+
+    /**
+     * Return the checkpoint of a previous interrupted loading, or null if there is none
+     */
+    public CrossrefLoadCheckpoint getLoadCheckpoint() {
+        return dbLoadCheckpoint.get("load-checkpoint");
+    }
+
+    public void saveLoadCheckpoint(CrossrefLoadCheckpoint checkpoint) {
+        final TransactionWrapper transactionWrapper = new TransactionWrapper(environment.txnWrite());
+        try {
+            if (!dbLoadCheckpoint.put(transactionWrapper.tx, "load-checkpoint", checkpoint.copy())) {
+                LOGGER.error("Cannot store the load-checkpoint");
+            }
+        } finally {
+            transactionWrapper.tx.commit();
+            transactionWrapper.tx.close();
+        }
+    }
+
+    public void clearLoadCheckpoint() {
+        final TransactionWrapper transactionWrapper = new TransactionWrapper(environment.txnWrite());
+        try {
+            dbLoadCheckpoint.delete(transactionWrapper.tx, "load-checkpoint");
         } finally {
             transactionWrapper.tx.commit();
             transactionWrapper.tx.close();
@@ -279,8 +431,38 @@ public class CrossrefMetadataLookup {
             .asyncIndexJsonObjects(documents, update, counterIndexedRecords, counterFailedIndexedRecords);
     }
 
+    /**
+     * Index the documents, the returned future is completed once the bulk requests are processed
+     */
+    public CompletableFuture<Void> indexDocumentsWithCompletion(List<JsonNode> documents, 
+                                                                Counter counterIndexedRecords, 
+                                                                Counter counterFailedIndexedRecords) {
+        return ElasticSearchAsyncIndexer.getInstance(configuration)
+            .asyncIndexJsonObjectsWithCompletion(documents, counterIndexedRecords, counterFailedIndexedRecords);
+    }
+
     public void indexMetadata(ElasticSearchIndexer indexer, Meter meter, Counter counterIndexedRecords) {
-        indexer.indexCollection(environment, dbCrossrefJson, false, meter, counterIndexedRecords);
+        indexer.indexCollection(dbCrossrefJson, false, meter, counterIndexedRecords);
+    }
+
+    public void indexMetadata(SolrIndexer indexer, Meter meter, Counter counterIndexedRecords) {
+        indexer.indexCollection(dbCrossrefJson, meter, counterIndexedRecords);
+    }
+
+    public void indexMetadata(LuceneIndexer indexer, Meter meter, Counter counterIndexedRecords) {
+        indexer.indexCollection(dbCrossrefJson, meter, counterIndexedRecords);
+    }
+
+    public void indexMetadata(ParallelIndexer indexer, Meter meter, Counter counterIndexedRecords, 
+                              Counter counterFailedIndexedRecords) throws InterruptedException {
+        indexer.indexCollection(dbCrossrefJson, meter, counterIndexedRecords, counterFailedIndexedRecords);
+    }
+
+    /**
+     * Rewrite the stored JSON records in the given format
+     */
+    public void migrateStorage(StorageFormat format, Meter meter) {
+        StorageMigrator.migrateJsonRecords(environment, dbCrossrefJson.getDbi(), format, batchStoringSize, meter);
     }
 
     public void close() {
@@ -0,0 +1,251 @@
+package com.scienceminer.glutton.storage.lookup;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.scienceminer.glutton.storage.KeyEncoding;
+import com.scienceminer.glutton.storage.LmdbStore;
+import com.scienceminer.glutton.storage.StorageEnvFactory;
+import com.scienceminer.glutton.storage.ValueCodec;
+import com.scienceminer.glutton.utils.grobid.GrobidResponseStaxHandler.GrobidResponse;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.lmdbjava.Cursor;
+import org.lmdbjava.Env;
+import org.lmdbjava.Txn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.apache.commons.lang3.StringUtils.normalizeSpace;
+
+/**
+ * Singleton class
+ * Persistent cache of the citations parsed by GROBID: hash of the normalized raw reference string
+ * -> metadata extracted by GROBID (first author, titles, year). The same references are cited by
+ * many documents, a reference already parsed does not need a new call to GROBID.
+ *
+ * The cache is bounded by a max number of entries, the oldest entries being evicted first (the
+ * insertion order is kept in a second database). The parsed citations are written by a background
+ * thread, in batches, so that the lookups never wait for a LMDB write transaction.
+ */
+public class GrobidCitationCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(GrobidCitationCache.class);
+
+    private static volatile GrobidCitationCache instance;
+
+    public static final String ENV_NAME = "grobid";
+
+    public static final String NAME_CITATIONS = ENV_NAME + "_citations";
+    public static final String NAME_INSERTION_ORDER = ENV_NAME + "_insertionOrder";
+
+    // max number of parsed citations waiting to be written, beyond they are not cached
+    private static final int MAX_PENDING_WRITES = 10000;
+    private static final int MAX_BATCH_WRITES = 1000;
+
+    // 0 if the cache is disabled
+    private final long maxEntries;
+
+    private Env<ByteBuffer> environment;
+    private LmdbStore<GrobidResponse> dbCitations;
+    // zero-padded insertion sequence number -> hash of the citation
+    private LmdbStore<String> dbInsertionOrder;
+
+    private BlockingQueue<Pair<String, GrobidResponse>> pendingWrites;
+    // only used by the writer thread
+    private long nextSequence = 0;
+
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong evictions = new AtomicLong(0);
+    private final AtomicLong droppedWrites = new AtomicLong(0);
+
+    public static GrobidCitationCache getInstance(StorageEnvFactory storageEnvFactory) {
+        if (instance == null) {
+            synchronized (GrobidCitationCache.class) {
+                if (instance == null) {
+                    getNewInstance(storageEnvFactory);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Creates a new instance.
+     */
+    private static synchronized void getNewInstance(StorageEnvFactory storageEnvFactory) {
+        instance = new GrobidCitationCache(storageEnvFactory);
+    }
+
+    private GrobidCitationCache(StorageEnvFactory storageEnvFactory) {
+        this.maxEntries = storageEnvFactory.getConfiguration().getGrobid().getCacheMaxEntries();
+        if (maxEntries <= 0)
+            return;
+
+        this.environment = storageEnvFactory.getEnv(ENV_NAME);
+        final KeyEncoding keyEncoding = storageEnvFactory.getKeyEncoding(environment);
+        dbCitations = LmdbStore.open(environment, NAME_CITATIONS, keyEncoding, ValueCodec.fst());
+        dbInsertionOrder = LmdbStore.open(environment, NAME_INSERTION_ORDER, keyEncoding, ValueCodec.fst());
+        nextSequence = readLastSequence() + 1;
+
+        pendingWrites = new ArrayBlockingQueue<>(MAX_PENDING_WRITES);
+        final Thread writer = new Thread(this::writeLoop, "grobid-citation-cache-writer");
+        writer.setDaemon(true);
+        writer.start();
+
+        LOGGER.info("GROBID citation cache enabled, max entries: " + maxEntries + ", current entries: " +
+            dbCitations.size());
+    }
+
+    public boolean isEnabled() {
+        return maxEntries > 0;
+    }
+
+    /**
+     * @return the cached parsing of the raw reference string, null if not cached
+     */
+    public GrobidResponse get(String biblio) {
+        if (!isEnabled())
+            return null;
+
+        GrobidResponse response = null;
+        try {
+            response = dbCitations.get(key(biblio));
+        } catch (RuntimeException e) {
+            // e.g. no more LMDB reader available, the citation is then parsed again
+            LOGGER.warn("Cannot read the GROBID citation cache: " + e.getMessage());
+        }
+        if (response != null)
+            hits.incrementAndGet();
+        else
+            misses.incrementAndGet();
+        return response;
+    }
+
+    /**
+     * Cache the parsing of the raw reference string, the entry is written asynchronously
+     */
+    public void put(String biblio, GrobidResponse response) {
+        if (!isEnabled() || response == null)
+            return;
+
+        if (!pendingWrites.offer(new ImmutablePair<>(key(biblio), response)))
+            droppedWrites.incrementAndGet();
+    }
+
+    private void writeLoop() {
+        final List<Pair<String, GrobidResponse>> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(pendingWrites.take());
+                pendingWrites.drainTo(batch, MAX_BATCH_WRITES - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                LOGGER.error("Cannot write the parsed citations in the GROBID citation cache", e);
+            }
+            batch.clear();
+        }
+    }
+
+    private void write(List<Pair<String, GrobidResponse>> batch) {
+        try (Txn<ByteBuffer> txn = environment.txnWrite()) {
+            for (Pair<String, GrobidResponse> entry : batch) {
+                if (dbCitations.contains(txn, entry.getLeft()))
+                    continue;
+                if (dbCitations.put(txn, entry.getLeft(), entry.getRight()))
+                    dbInsertionOrder.put(txn, sequenceKey(nextSequence++), entry.getLeft());
+            }
+            evict(txn);
+            txn.commit();
+        }
+    }
+
+    /**
+     * Remove the oldest entries beyond the max number of entries
+     */
+    private void evict(Txn<ByteBuffer> txn) {
+        long entries = dbCitations.getDbi().stat(txn).entries;
+        if (entries <= maxEntries)
+            return;
+
+        try (Cursor<ByteBuffer> cursor = dbInsertionOrder.getDbi().openCursor(txn)) {
+            while (entries > maxEntries && cursor.first()) {
+                String hash = null;
+                try {
+                    hash = dbInsertionOrder.decodeValue(cursor.val());
+                } catch (Exception e) {
+                    LOGGER.warn("Cannot decode an entry of the insertion order of the GROBID citation cache", e);
+                }
+                cursor.delete();
+                if (hash != null && dbCitations.delete(txn, hash)) {
+                    entries--;
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    private long readLastSequence() {
+        try (Txn<ByteBuffer> txn = environment.txnRead();
+             Cursor<ByteBuffer> cursor = dbInsertionOrder.getDbi().openCursor(txn)) {
+            if (cursor.last())
+                return Long.parseLong(dbInsertionOrder.decodeKey(cursor.key()));
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Invalid insertion order in the GROBID citation cache", e);
+        }
+        return 0;
+    }
+
+    /**
+     * Zero-padded so that the key order is the insertion order
+     */
+    private static String sequenceKey(long sequence) {
+        return String.format("%019d", sequence);
+    }
+
+    /**
+     * Hash of the raw reference string, normalized for case and spaces
+     */
+    protected static String key(String biblio) {
+        final String normalized = normalizeSpace(biblio).toLowerCase(Locale.ROOT);
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(normalized.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder key = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is available in every JVM
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void registerMetrics(MetricRegistry metrics) {
+        if (!isEnabled())
+            return;
+
+        metrics.register(MetricRegistry.name(GrobidCitationCache.class, "hits"), (Gauge<Long>) hits::get);
+        metrics.register(MetricRegistry.name(GrobidCitationCache.class, "misses"), (Gauge<Long>) misses::get);
+        metrics.register(MetricRegistry.name(GrobidCitationCache.class, "hitRate"), (Gauge<Double>) () -> {
+            final long requests = hits.get() + misses.get();
+            return requests == 0 ? 0.0 : (double) hits.get() / requests;
+        });
+        metrics.register(MetricRegistry.name(GrobidCitationCache.class, "evictions"), (Gauge<Long>) evictions::get);
+        metrics.register(MetricRegistry.name(GrobidCitationCache.class, "droppedWrites"), (Gauge<Long>) droppedWrites::get);
+        metrics.register(MetricRegistry.name(GrobidCitationCache.class, "entries"), (Gauge<Long>) dbCitations::size);
+    }
+}
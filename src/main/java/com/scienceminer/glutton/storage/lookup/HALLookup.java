@@ -13,10 +13,13 @@ import com.scienceminer.glutton.exception.ServiceOverloadedException;
 import com.scienceminer.glutton.serialization.BiblioSerializer;
 import com.scienceminer.glutton.storage.StorageEnvFactory;
 import com.scienceminer.glutton.indexing.*;
-import com.scienceminer.glutton.utils.BinarySerialiser;
+import com.scienceminer.glutton.storage.KeyEncoding;
+import com.scienceminer.glutton.storage.LmdbStore;
+import com.scienceminer.glutton.storage.StorageFormat;
+import com.scienceminer.glutton.storage.StorageMigrator;
+import com.scienceminer.glutton.storage.ValueCodec;
 import com.scienceminer.glutton.storage.LookupEngine;
 
-import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 import org.lmdbjava.*;
 
@@ -42,7 +45,6 @@ import java.nio.channels.AsynchronousFileChannel;
 import java.nio.file.StandardOpenOption;
 
 import static com.scienceminer.glutton.web.resource.DataController.DEFAULT_MAX_SIZE_LIST;
-import static java.nio.ByteBuffer.allocateDirect;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import static org.apache.commons.lang3.StringUtils.lowerCase;
@@ -59,8 +61,9 @@ public class HALLookup {
     private static volatile HALLookup instance;
 
     private Env<ByteBuffer> environment;
-    private Dbi<ByteBuffer> dbHALJson;
-    private Dbi<ByteBuffer> dbDoiToHal;
+    private LmdbStore<String> dbHALJson;
+    private LmdbStore<LocalDateTime> dbLastIndexed;
+    protected LmdbStore<String> dbDoiToHal;
 
     public static final String ENV_NAME = "hal";
 
@@ -72,6 +75,9 @@ public class HALLookup {
 
     private LookupConfiguration configuration;
 
+    // format of the written JSON records
+    private StorageFormat storageFormat;
+
     // this date keeps track of the latest indexed date of the metadata database
     private LocalDateTime lastIndexed = null; 
 
@@ -97,11 +103,16 @@ public class HALLookup {
         this.environment = storageEnvFactory.getEnv(ENV_NAME);
 
         configuration = storageEnvFactory.getConfiguration();
+        storageFormat = storageEnvFactory.getStorageFormat(ENV_NAME);
         batchStoringSize = configuration.getStoringBatchSize();
         batchIndexingSize = configuration.getIndexingBatchSize();
 
-        dbHALJson = this.environment.openDbi(NAME_HAL_JSON, DbiFlags.MDB_CREATE);
-        dbDoiToHal = this.environment.openDbi(NAME_DOI2HAL, DbiFlags.MDB_CREATE);
+        final KeyEncoding keyEncoding = storageEnvFactory.getKeyEncoding(environment);
+        dbHALJson = LmdbStore.open(environment, NAME_HAL_JSON, keyEncoding, ValueCodec.jsonRecord(storageFormat));
+        // the last indexed date is stored in the same database as the records
+        dbLastIndexed = dbHALJson.withCodec(ValueCodec.compressedFst());
+        dbDoiToHal = storageEnvFactory.withKeyFilter(ENV_NAME, 
+            LmdbStore.open(environment, NAME_DOI2HAL, keyEncoding, ValueCodec.fst()));
     }
 
     public void loadFromHALAPI(Meter meterValidRecord, 
@@ -114,6 +125,8 @@ public class HALLookup {
         HALAPIHarvester harvester = new HALAPIHarvester(transactionWrapper);
         harvester.fetchAllDocuments(this, meterValidRecord, counterInvalidRecords, 
             counterIndexedRecords, counterFailedIndexedRecords);
+        // wait for the last bulk requests before refreshing the index
+        ElasticSearchAsyncIndexer.getInstance(configuration).awaitPending();
         ElasticSearchIndexer.getInstance(configuration).refreshIndex(configuration.getElastic().getIndex());
     }
 
@@ -130,40 +143,14 @@ public class HALLookup {
         try {
             String dbBiblioJson = BiblioSerializer.serializeJson(biblio, null, this);
 //System.out.println(dbBiblioJson);
-            store(lowerCase(biblio.getHalId()), dbBiblioJson, dbHALJson, tx);
+            dbHALJson.put(tx, lowerCase(biblio.getHalId()), dbBiblioJson);
             if (!isBlank(biblio.getDoi()))
-                storeNoCompression(lowerCase(biblio.getDoi()), lowerCase(biblio.getHalId()), dbDoiToHal, tx);
+                dbDoiToHal.put(tx, lowerCase(biblio.getDoi()), lowerCase(biblio.getHalId()));
         } catch (Exception e) {
             LOGGER.error("Cannot serialize the metadata", e);
         }
     }
 
-    private void store(String key, String value, Dbi<ByteBuffer> db, Txn<ByteBuffer> tx) {
-        try {
-            final ByteBuffer keyBuffer = allocateDirect(environment.getMaxKeySize());
-            keyBuffer.put(BinarySerialiser.serialize(key)).flip();
-            final byte[] serializedValue = BinarySerialiser.serializeAndCompress(value);
-            final ByteBuffer valBuffer = allocateDirect(serializedValue.length);
-            valBuffer.put(serializedValue).flip();
-            db.put(tx, keyBuffer, valBuffer);
-        } catch (Exception e) {
-            LOGGER.error("Cannot store the entry " + key, e);
-        }
-    }
-
-    private void storeNoCompression(String key, String value, Dbi<ByteBuffer> db, Txn<ByteBuffer> tx) {
-        try {
-            final ByteBuffer keyBuffer = allocateDirect(environment.getMaxKeySize());
-            keyBuffer.put(BinarySerialiser.serialize(key)).flip();
-            final byte[] serializedValue = BinarySerialiser.serialize(value);
-            final ByteBuffer valBuffer = allocateDirect(serializedValue.length);
-            valBuffer.put(serializedValue).flip();
-            db.put(tx, keyBuffer, valBuffer);
-        } catch (Exception e) {
-            LOGGER.error("Cannot store the entry " + key, e);
-        }
-    }
-
     public void commitTransactions(TransactionWrapper transactionWrapper) {       
         transactionWrapper.tx.commit();
         transactionWrapper.tx.close();
@@ -173,11 +160,7 @@ public class HALLookup {
     public Map<String, Long> getSize() {
 
         Map<String, Long> sizes = new HashMap<>();
-        try (final Txn<ByteBuffer> txn = this.environment.txnRead()) {
-            sizes.put(NAME_HAL_JSON, dbHALJson.stat(txn).entries);
-        } catch (Env.ReadersFullException e) {
-            throw new ServiceOverloadedException("Not enough readers for LMDB access, increase them or reduce the parallel request rate. ", e);
-        }
+        sizes.put(NAME_HAL_JSON, dbHALJson.size());
 
         return sizes;
     }
@@ -192,22 +175,7 @@ public class HALLookup {
     }
 
     public String retrieveJsonDocument(String halID) {
-        final ByteBuffer keyBuffer = allocateDirect(environment.getMaxKeySize());
-        ByteBuffer cachedData = null;
-        String theRecord = null;
-        try (Txn<ByteBuffer> tx = environment.txnRead()) {
-            keyBuffer.put(BinarySerialiser.serialize(lowerCase(halID))).flip();
-            cachedData = dbHALJson.get(tx, keyBuffer);
-            if (cachedData != null) {
-                theRecord = (String) BinarySerialiser.deserializeAndDecompress(cachedData);
-            }
-        } catch (Env.ReadersFullException e) {
-            throw new ServiceOverloadedException("Not enough readers for LMDB access, increase them or reduce the parallel request rate. ", e);
-        } catch (Exception e) {
-            LOGGER.error("Cannot retrieve HAL metadata by HAL ID:  " + halID, e);
-        }
-
-        return theRecord;
+        return dbHALJson.get(lowerCase(halID));
     }
 
     /**
@@ -223,58 +191,19 @@ public class HALLookup {
     }
 
     public String retrieveHalIdByDoi(String doi) {
-        final ByteBuffer keyBuffer = allocateDirect(environment.getMaxKeySize());
-        ByteBuffer cachedData = null;
-        String halId = null;
-        try (Txn<ByteBuffer> tx = environment.txnRead()) {
-            keyBuffer.put(BinarySerialiser.serialize(lowerCase(doi))).flip();
-            cachedData = dbDoiToHal.get(tx, keyBuffer);
-            if (cachedData != null) {
-                halId = (String) BinarySerialiser.deserialize(cachedData);
-            }
-        } catch (Env.ReadersFullException e) {
-            throw new ServiceOverloadedException("Not enough readers for LMDB access, increase them or reduce the parallel request rate. ", e);
-        } catch (Exception e) {
-            LOGGER.error("Cannot retrieve HAL ID by DOI: " + doi, e);
-        }
-
-        return halId;
+        return dbDoiToHal.get(lowerCase(doi));
     }
 
     public List<Pair<String, String>> retrieveList(Integer total) {
         return retrieveList(total, dbHALJson);
     }
 
-    public List<Pair<String, String>> retrieveList(Integer total, Dbi<ByteBuffer> db) {
+    public List<Pair<String, String>> retrieveList(Integer total, LmdbStore<String> db) {
         if (total == null || total == 0) {
             total = DEFAULT_MAX_SIZE_LIST;
         }
 
-        List<Pair<String, String>> values = new ArrayList<>();
-        int counter = 0;
-
-        try (Txn<ByteBuffer> txn = environment.txnRead()) {
-            try (CursorIterable<ByteBuffer> it = db.iterate(txn, KeyRange.all())) {
-                for (final CursorIterable.KeyVal<ByteBuffer> kv : it) {
-                    String key = null;
-                    try {
-                        key = (String) BinarySerialiser.deserialize(kv.key());
-                        values.add(new ImmutablePair<>(key, (String) BinarySerialiser.deserializeAndDecompress(kv.val())));
-                    } catch (IOException e) {
-                        LOGGER.error("Cannot decompress document with key: " + key, e);
-                    }
-                    if (counter == total) {
-                        txn.close();
-                        break;
-                    }
-                    counter++;
-                }
-            }
-        } catch (Env.ReadersFullException e) {
-            throw new ServiceOverloadedException("Not enough readers for LMDB access, increase them or reduce the parallel request rate. ", e);
-        }
-
-        return values;
+        return db.list(total);
     }
 
     public synchronized LocalDateTime getLastIndexed() {
@@ -282,19 +211,7 @@ public class HALLookup {
             return lastIndexed;
         else {
             // get a possible value made persistent in the db
-            final ByteBuffer keyBuffer = allocateDirect(environment.getMaxKeySize());
-            ByteBuffer cachedData = null;
-            try (Txn<ByteBuffer> tx = environment.txnRead()) {
-                keyBuffer.put(BinarySerialiser.serialize("last-indexed-date")).flip();
-                cachedData = dbHALJson.get(tx, keyBuffer);
-                if (cachedData != null) {
-                    lastIndexed = (LocalDateTime) BinarySerialiser.deserializeAndDecompress(cachedData);
-                }
-            } catch (Env.ReadersFullException e) {
-                throw new ServiceOverloadedException("Not enough readers for LMDB access, increase them or reduce the parallel request rate. ", e);
-            } catch (Exception e) {
-                LOGGER.error("Cannot retrieve the persistent last indexed date object", e);
-            }
+            lastIndexed = dbLastIndexed.get("last-indexed-date");
             return lastIndexed;
         }
     }
@@ -305,14 +222,9 @@ public class HALLookup {
         // persistent store of this date
         final TransactionWrapper transactionWrapper = new TransactionWrapper(environment.txnWrite());
         try {
-            final ByteBuffer keyBuffer = allocateDirect(environment.getMaxKeySize());
-            keyBuffer.put(BinarySerialiser.serialize("last-indexed-date")).flip();
-            final byte[] serializedValue = BinarySerialiser.serializeAndCompress(this.lastIndexed);
-            final ByteBuffer valBuffer = allocateDirect(serializedValue.length);
-            valBuffer.put(serializedValue).flip();
-            dbHALJson.put(transactionWrapper.tx, keyBuffer, valBuffer);
-        } catch (Exception e) {
-            LOGGER.error("Cannot store the last-indexed-date", e);
+            if (!dbLastIndexed.put(transactionWrapper.tx, "last-indexed-date", this.lastIndexed)) {
+                LOGGER.error("Cannot store the last-indexed-date");
+            }
         } finally {
             transactionWrapper.tx.commit();
             transactionWrapper.tx.close();
@@ -321,7 +233,20 @@ public class HALLookup {
 
     public void indexMetadata(ElasticSearchIndexer indexer, Meter meter, Counter counterIndexedRecords) {
         ElasticSearchIndexer.getInstance(configuration)
-            .indexCollection(environment, dbHALJson, true, meter, counterIndexedRecords);
+            .indexCollection(dbHALJson, true, meter, counterIndexedRecords);
+    }
+
+    public void indexMetadata(SolrIndexer indexer, Meter meter, Counter counterIndexedRecords) {
+        indexer.indexCollection(dbHALJson, meter, counterIndexedRecords);
+    }
+
+    public void indexMetadata(LuceneIndexer indexer, Meter meter, Counter counterIndexedRecords) {
+        indexer.indexCollection(dbHALJson, meter, counterIndexedRecords);
+    }
+
+    public void indexMetadata(ParallelIndexer indexer, Meter meter, Counter counterIndexedRecords, 
+                              Counter counterFailedIndexedRecords) throws InterruptedException {
+        indexer.indexCollection(dbHALJson, meter, counterIndexedRecords, counterFailedIndexedRecords);
     }
 
     public void indexDocuments(List<Biblio> documents, boolean update, Counter counterIndexedRecords, Counter counterFailedIndexedRecords) {
@@ -364,12 +289,12 @@ public class HALLookup {
         final List<String> duplicateReportRows = new ArrayList<>();
 
         try (Txn<ByteBuffer> txn = environment.txnRead()) {
-            try (CursorIterable<ByteBuffer> it = dbHALJson.iterate(txn, KeyRange.all())) {
+            try (CursorIterable<ByteBuffer> it = dbHALJson.getDbi().iterate(txn, KeyRange.all())) {
                 for (final CursorIterable.KeyVal<ByteBuffer> kv : it) {
                     String key = null;
                     try {
-                        key = (String) BinarySerialiser.deserialize(kv.key());
-                        String recordJson = (String) BinarySerialiser.deserializeAndDecompress(kv.val());
+                        key = dbHALJson.decodeKey(kv.key());
+                        String recordJson = dbHALJson.decodeValue(kv.val());
 
                         try {
                             MetadataObj metadataObj = MetadataObjBuilder.createMetadataObj(recordJson);
@@ -540,6 +465,13 @@ public class HALLookup {
         });
     }
 
+    /**
+     * Rewrite the stored JSON records in the given format
+     */
+    public void migrateStorage(StorageFormat format, Meter meter) {
+        StorageMigrator.migrateJsonRecords(environment, dbHALJson.getDbi(), format, batchStoringSize, meter);
+    }
+
     public void close() {
         this.environment.close();
     }
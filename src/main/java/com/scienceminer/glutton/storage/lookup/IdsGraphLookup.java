@@ -0,0 +1,279 @@
+package com.scienceminer.glutton.storage.lookup;
+
+import com.codahale.metrics.Meter;
+import com.scienceminer.glutton.data.IdsGraphData;
+import com.scienceminer.glutton.storage.KeyEncoding;
+import com.scienceminer.glutton.storage.LmdbStore;
+import com.scienceminer.glutton.storage.StorageEnvFactory;
+import com.scienceminer.glutton.storage.StorageMetadata;
+import com.scienceminer.glutton.storage.ValueCodec;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.lmdbjava.Env;
+import org.lmdbjava.Txn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+
+import static com.scienceminer.glutton.web.resource.DataController.DEFAULT_MAX_SIZE_LIST;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+import static org.apache.commons.lang3.StringUtils.lowerCase;
+
+/**
+ * Singleton class
+ * Lookup doi -> all the identifiers and OA link of the DOI (PMID, PMCID, ISTEX ID, ARK, MeSH, PII,
+ * HAL ID and OA link) in one compact record.
+ *
+ * This database is derived from the PMID, ISTEX, HAL and Unpaywall databases and must be built again
+ * after these databases are updated. The build records the last transaction id of the environment of
+ * each source: if a source has been written since (e.g. loaded again), the database is not used and
+ * the identifiers are taken from the separate databases until the next build.
+ */
+public class IdsGraphLookup {
+    private static final Logger LOGGER = LoggerFactory.getLogger(IdsGraphLookup.class);
+
+    private static volatile IdsGraphLookup instance;
+
+    public static final String ENV_NAME = "ids";
+
+    public static final String NAME_DOI2IDS = ENV_NAME + "_doi2ids";
+
+    // metadata entry with the date of the last complete build
+    public static final String KEY_BUILT = "built";
+    // prefix of the metadata entries with the last transaction id of each source at the last build
+    public static final String KEY_BUILT_SOURCE = "built-source.";
+
+    private Env<ByteBuffer> environment;
+    private LmdbStore<IdsGraphData> dbDoiToIds;
+    private StorageMetadata metadata;
+
+    private final int batchSize;
+
+    // true if the database has been completely built when the lookup was opened, and its sources
+    // have not been written since
+    private volatile boolean available;
+
+    public static IdsGraphLookup getInstance(StorageEnvFactory storageEnvFactory) {
+        if (instance == null) {
+            synchronized (IdsGraphLookup.class) {
+                if (instance == null) {
+                    getNewInstance(storageEnvFactory);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Creates a new instance.
+     */
+    private static synchronized void getNewInstance(StorageEnvFactory storageEnvFactory) {
+        instance = new IdsGraphLookup(storageEnvFactory);
+    }
+
+    private IdsGraphLookup(StorageEnvFactory storageEnvFactory) {
+        this.environment = storageEnvFactory.getEnv(ENV_NAME);
+        batchSize = storageEnvFactory.getConfiguration().getStoringBatchSize();
+
+        final KeyEncoding keyEncoding = storageEnvFactory.getKeyEncoding(environment);
+        dbDoiToIds = storageEnvFactory.withKeyFilter(ENV_NAME, 
+            LmdbStore.open(environment, NAME_DOI2IDS, keyEncoding, ValueCodec.idsGraph()));
+        metadata = new StorageMetadata(environment);
+        available = metadata.get(KEY_BUILT) != null;
+    }
+
+    /**
+     * Check that the sources have not been written since the last build, otherwise the database is
+     * not used for the lookups
+     */
+    public boolean checkSources(PMIdsLookup pmidLookup,
+                                IstexIdsLookup istexLookup,
+                                HALLookup halLookup,
+                                OALookup oaLookup) {
+        if (!available)
+            return false;
+        for (LmdbStore<?> source : List.of(pmidLookup.dbDoiToIds, istexLookup.dbDoiToIds, halLookup.dbDoiToHal, oaLookup.dbDoiOAUrl)) {
+            final String builtTransactionId = metadata.get(KEY_BUILT_SOURCE + source.getName());
+            final long transactionId = source.getEnvironment().info().lastTransactionId;
+            if (builtTransactionId == null || Long.parseLong(builtTransactionId) != transactionId) {
+                LOGGER.warn(source.getName() + " has been updated since the build of " + NAME_DOI2IDS 
+                    + ", the identifiers are taken from the separate databases until it is built again");
+                available = false;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return true if the database can be used for the lookups, i.e. it has been built
+     */
+    public boolean isAvailable() {
+        return available;
+    }
+
+    public LocalDateTime getBuildDate() {
+        final String built = metadata.get(KEY_BUILT);
+        return built == null ? null : LocalDateTime.parse(built);
+    }
+
+    public IdsGraphData retrieveByDoi(String doi) {
+        return dbDoiToIds.get(lowerCase(doi));
+    }
+
+    /**
+     * Build the database from scratch with the content of the identifier databases. The sources are
+     * merged in sequence, an ISTEX PMID or PMCID takes precedence over the PMID database one, as
+     * when the identifiers are injected from the separate databases.
+     */
+    public long build(PMIdsLookup pmidLookup,
+                      IstexIdsLookup istexLookup,
+                      HALLookup halLookup,
+                      OALookup oaLookup,
+                      Meter meter) {
+        // an interrupted build must not be used for the lookups
+        metadata.delete(KEY_BUILT);
+        try (Txn<ByteBuffer> txn = environment.txnWrite()) {
+            dbDoiToIds.getDbi().drop(txn);
+            txn.commit();
+        }
+
+        long updated = 0;
+
+        LOGGER.info("Adding the PMID identifiers from " + PMIdsLookup.NAME_DOI2IDS);
+        updated += merge(pmidLookup.dbDoiToIds, (ids, pmidData) -> {
+            boolean changed = false;
+            if (isNotBlank(pmidData.getPmid())) {
+                ids.setPmid(pmidData.getPmid());
+                changed = true;
+            }
+            if (isNotBlank(pmidData.getPmcid())) {
+                ids.setPmcid(pmidData.getPmcid());
+                changed = true;
+            }
+            return changed;
+        }, meter);
+
+        LOGGER.info("Adding the ISTEX identifiers from " + IstexIdsLookup.NAME_DOI2IDS);
+        updated += merge(istexLookup.dbDoiToIds, (ids, istexData) -> {
+            boolean changed = false;
+            if (isNotBlank(istexData.getIstexId())) {
+                ids.setIstexId(istexData.getIstexId());
+                changed = true;
+            }
+            changed |= setFirst(istexData.getArk(), ids::setArk);
+            changed |= setFirst(istexData.getPmid(), ids::setPmid);
+            changed |= setFirst(istexData.getPmc(), ids::setPmcid);
+            changed |= setFirst(istexData.getMesh(), ids::setMesh);
+            changed |= setFirst(istexData.getPii(), ids::setPii);
+            return changed;
+        }, meter);
+
+        LOGGER.info("Adding the HAL identifiers from " + HALLookup.NAME_DOI2HAL);
+        updated += merge(halLookup.dbDoiToHal, (ids, halId) -> {
+            if (isBlank(halId))
+                return false;
+            ids.setHalId(halId.startsWith("hal:") ? halId.replace("hal:", "") : halId);
+            return true;
+        }, meter);
+
+        LOGGER.info("Adding the OA links from " + OALookup.NAME_DOI_OA_URL);
+        updated += merge(oaLookup.dbDoiOAUrl, (ids, oaLink) -> {
+            if (isBlank(oaLink))
+                return false;
+            ids.setOaLink(oaLink);
+            return true;
+        }, meter);
+
+        // the sources are only read by the build, their last transaction is the one merged
+        for (LmdbStore<?> source : List.of(pmidLookup.dbDoiToIds, istexLookup.dbDoiToIds, halLookup.dbDoiToHal, oaLookup.dbDoiOAUrl)) {
+            metadata.put(KEY_BUILT_SOURCE + source.getName(), 
+                String.valueOf(source.getEnvironment().info().lastTransactionId));
+        }
+        metadata.put(KEY_BUILT, LocalDateTime.now().toString());
+        LOGGER.info(updated + " identifiers merged, " + dbDoiToIds.size() + " DOI in " + NAME_DOI2IDS);
+
+        return updated;
+    }
+
+    private static boolean setFirst(List<String> values, Consumer<String> setter) {
+        if (CollectionUtils.isNotEmpty(values) && isNotBlank(values.get(0))) {
+            setter.accept(values.get(0));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Merge all the entries of a source database keyed by DOI into the identifiers of the DOI,
+     * the updater returns true if the identifiers have been modified
+     */
+    private <V> long merge(LmdbStore<V> source, BiPredicate<IdsGraphData, V> updater, Meter meter) {
+        final TransactionWrapper transactionWrapper = new TransactionWrapper(environment.txnWrite());
+        final AtomicInteger counter = new AtomicInteger(0);
+        final AtomicLong updated = new AtomicLong(0);
+
+        try {
+            source.forEach((doi, value) -> {
+                if (isBlank(doi) || value == null)
+                    return;
+
+                if (counter.get() == batchSize) {
+                    transactionWrapper.tx.commit();
+                    transactionWrapper.tx.close();
+                    transactionWrapper.tx = environment.txnWrite();
+                    counter.set(0);
+                }
+
+                final String key = lowerCase(doi);
+                IdsGraphData ids = dbDoiToIds.get(transactionWrapper.tx, key);
+                if (ids == null)
+                    ids = new IdsGraphData();
+
+                if (updater.test(ids, value)) {
+                    if (dbDoiToIds.put(transactionWrapper.tx, key, ids)) {
+                        updated.incrementAndGet();
+                        counter.incrementAndGet();
+                    } else {
+                        LOGGER.warn("Some serious issues when writing on LMDB database "
+                            + NAME_DOI2IDS + " key: " + key);
+                    }
+                }
+                meter.mark();
+            });
+            transactionWrapper.tx.commit();
+        } finally {
+            transactionWrapper.tx.close();
+        }
+
+        return updated.get();
+    }
+
+    public Map<String, Long> getSize() {
+        Map<String, Long> size = new HashMap<>();
+        size.put(NAME_DOI2IDS, dbDoiToIds.size());
+        return size;
+    }
+
+    public List<Pair<String, IdsGraphData>> retrieveList(Integer total) {
+        if (total == null || total == 0) {
+            total = DEFAULT_MAX_SIZE_LIST;
+        }
+
+        return dbDoiToIds.list(total);
+    }
+
+    public void close() {
+        this.environment.close();
+    }
+}
@@ -3,11 +3,11 @@ package com.scienceminer.glutton.storage.lookup;
 import com.codahale.metrics.Meter;
 import com.google.inject.servlet.ServletScopes;
 import com.scienceminer.glutton.data.IstexData;
-import com.scienceminer.glutton.exception.ServiceOverloadedException;
 import com.scienceminer.glutton.reader.IstexIdsReader;
+import com.scienceminer.glutton.storage.KeyEncoding;
+import com.scienceminer.glutton.storage.LmdbStore;
 import com.scienceminer.glutton.storage.StorageEnvFactory;
-import com.scienceminer.glutton.utils.BinarySerialiser;
-import org.apache.commons.lang3.tuple.ImmutablePair;
+import com.scienceminer.glutton.storage.ValueCodec;
 import org.apache.commons.lang3.tuple.Pair;
 import org.lmdbjava.*;
 import org.slf4j.Logger;
@@ -15,14 +15,12 @@ import org.slf4j.LoggerFactory;
 
 import java.io.InputStream;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.scienceminer.glutton.web.resource.DataController.DEFAULT_MAX_SIZE_LIST;
-import static java.nio.ByteBuffer.allocateDirect;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import static org.apache.commons.lang3.StringUtils.lowerCase;
 
@@ -37,9 +35,9 @@ public class IstexIdsLookup {
     private static final Logger LOGGER = LoggerFactory.getLogger(IstexIdsLookup.class);
 
     protected Env<ByteBuffer> environment;
-    protected Dbi<ByteBuffer> dbDoiToIds;
-    protected Dbi<ByteBuffer> dbIstexToIds;
-    protected Dbi<ByteBuffer> dbPiiToIds;
+    protected LmdbStore<IstexData> dbDoiToIds;
+    protected LmdbStore<IstexData> dbIstexToIds;
+    protected LmdbStore<IstexData> dbPiiToIds;
 
     public static final String ENV_NAME = "istex";
 
@@ -53,9 +51,11 @@ public class IstexIdsLookup {
         this.environment = storageEnvFactory.getEnv(ENV_NAME);
         batchSize = storageEnvFactory.getConfiguration().getStoringBatchSize();
 
-        dbDoiToIds = this.environment.openDbi(NAME_DOI2IDS, DbiFlags.MDB_CREATE);
-        dbIstexToIds = this.environment.openDbi(NAME_ISTEX2IDS, DbiFlags.MDB_CREATE);
-        dbPiiToIds = this.environment.openDbi(NAME_PII2IDS, DbiFlags.MDB_CREATE);
+        final KeyEncoding keyEncoding = storageEnvFactory.getKeyEncoding(environment);
+        dbDoiToIds = storageEnvFactory.withKeyFilter(ENV_NAME, 
+            LmdbStore.open(environment, NAME_DOI2IDS, keyEncoding, ValueCodec.fst()));
+        dbIstexToIds = LmdbStore.open(environment, NAME_ISTEX2IDS, keyEncoding, ValueCodec.fst());
+        dbPiiToIds = LmdbStore.open(environment, NAME_PII2IDS, keyEncoding, ValueCodec.fst());
     }
 
     public void loadFromFile(InputStream is, IstexIdsReader reader, Meter metric) {
@@ -138,87 +138,30 @@ public class IstexIdsLookup {
 
     public Map<String, Long> getSize() {
         Map<String, Long> size = new HashMap<>();
-        try (final Txn<ByteBuffer> txn = this.environment.txnRead()) {
-            size.put(NAME_DOI2IDS, dbDoiToIds.stat(txn).entries);
-            size.put(NAME_ISTEX2IDS, dbIstexToIds.stat(txn).entries);
-            size.put(NAME_PII2IDS, dbPiiToIds.stat(txn).entries);
-        } catch (Env.ReadersFullException e) {
-            throw new ServiceOverloadedException("Not enough readers for LMDB access, increase them or reduce the parallel request rate. ", e);
-        }
+        size.put(NAME_DOI2IDS, dbDoiToIds.size());
+        size.put(NAME_ISTEX2IDS, dbIstexToIds.size());
+        size.put(NAME_PII2IDS, dbPiiToIds.size());
 
         return size;
     }
 
-    private void store(Dbi<ByteBuffer> db, String key, IstexData value, Txn<ByteBuffer> tx) {
-        try {
-            final ByteBuffer keyBuffer = allocateDirect(environment.getMaxKeySize());
-            keyBuffer.put(BinarySerialiser.serialize(key)).flip();
-            final byte[] serializedValue = BinarySerialiser.serialize(value);
-            final ByteBuffer valBuffer = allocateDirect(serializedValue.length);
-            valBuffer.put(serializedValue).flip();
-            db.put(tx, keyBuffer, valBuffer);
-        } catch (Exception e) {
+    private void store(LmdbStore<IstexData> db, String key, IstexData value, Txn<ByteBuffer> tx) {
+        if (!db.put(tx, key, value)) {
             LOGGER.warn("Some serious issues when writing on LMDB database "
-                    + db.toString() + " key: " + key + ", value: " + value, e);
+                    + db.getName() + " key: " + key + ", value: " + value);
         }
     }
 
     public IstexData retrieveByDoi(String doi) {
-        final ByteBuffer keyBuffer = allocateDirect(environment.getMaxKeySize());
-        ByteBuffer cachedData = null;
-        IstexData record = null;
-        try (Txn<ByteBuffer> tx = environment.txnRead()) {
-            keyBuffer.put(BinarySerialiser.serialize(lowerCase(doi))).flip();
-            cachedData = dbDoiToIds.get(tx, keyBuffer);
-            if (cachedData != null) {
-                record = (IstexData) BinarySerialiser.deserialize(cachedData);
-            }
-        } catch (Env.ReadersFullException e) {
-            throw new ServiceOverloadedException("Not enough readers for LMDB access, increase them or reduce the parallel request rate. ", e);
-        } catch (Exception e) {
-            LOGGER.error("Cannot retrieve ISTEX identifiers by doi:  " + doi, e);
-        }
-
-        return record;
-
+        return dbDoiToIds.get(lowerCase(doi));
     }
 
     public IstexData retrieveByIstexId(String istexId) {
-        final ByteBuffer keyBuffer = allocateDirect(environment.getMaxKeySize());
-        ByteBuffer cachedData = null;
-        IstexData record = null;
-        try (Txn<ByteBuffer> tx = environment.txnRead()) {
-            keyBuffer.put(BinarySerialiser.serialize(istexId)).flip();
-            cachedData = dbIstexToIds.get(tx, keyBuffer);
-            if (cachedData != null) {
-                record = (IstexData) BinarySerialiser.deserialize(cachedData);
-            }
-        } catch (Env.ReadersFullException e) {
-            throw new ServiceOverloadedException("Not enough readers for LMDB access, increase them or reduce the parallel request rate. ", e);
-        } catch (Exception e) {
-            LOGGER.error("Cannot retrieve ISTEX identifiers by istexId:  " + istexId, e);
-        }
-
-        return record;
+        return dbIstexToIds.get(istexId);
     }
 
     public IstexData retrieveByPii(String pii) {
-        final ByteBuffer keyBuffer = allocateDirect(environment.getMaxKeySize());
-        ByteBuffer cachedData = null;
-        IstexData record = null;
-        try (Txn<ByteBuffer> tx = environment.txnRead()) {
-            keyBuffer.put(BinarySerialiser.serialize(lowerCase(pii))).flip();
-            cachedData = dbPiiToIds.get(tx, keyBuffer);
-            if (cachedData != null) {
-                record = (IstexData) BinarySerialiser.deserialize(cachedData);
-            }
-        } catch (Env.ReadersFullException e) {
-            throw new ServiceOverloadedException("Not enough readers for LMDB access, increase them or reduce the parallel request rate. ", e);
-        } catch (Exception e) {
-            LOGGER.error("Cannot retrieve ISTEX identifiers by pii:  " + pii, e);
-        }
-
-        return record;
+        return dbPiiToIds.get(lowerCase(pii));
     }
 
     public List<Pair<String, IstexData>> retrieveList_doiToIds(Integer total) {
@@ -234,30 +177,12 @@ public class IstexIdsLookup {
         return retrieveList(total, dbIstexToIds);
     }
 
-    public List<Pair<String, IstexData>> retrieveList(Integer total, Dbi<ByteBuffer> db) {
+    public List<Pair<String, IstexData>> retrieveList(Integer total, LmdbStore<IstexData> db) {
         if (total == null || total == 0) {
             total = DEFAULT_MAX_SIZE_LIST;
         }
 
-        List<Pair<String, IstexData>> values = new ArrayList<>();
-        int counter = 0;
-
-        try (Txn<ByteBuffer> txn = environment.txnRead()) {
-            try (CursorIterable<ByteBuffer> it = db.iterate(txn, KeyRange.all())) {
-                for (final CursorIterable.KeyVal<ByteBuffer> kv : it) {
-                    values.add(new ImmutablePair<>((String) BinarySerialiser.deserialize(kv.key()), (IstexData) BinarySerialiser.deserialize(kv.val())));
-                    if (counter == total) {
-                        txn.close();
-                        break;
-                    }
-                    counter++;
-                }
-            }
-        } catch (Env.ReadersFullException e) {
-            throw new ServiceOverloadedException("Not enough readers for LMDB access, increase them or reduce the parallel request rate. ", e);
-        }
-
-        return values;
+        return db.list(total);
     }
 
     public void close() {
@@ -0,0 +1,105 @@
+package com.scienceminer.glutton.storage.lookup;
+
+import com.scienceminer.glutton.storage.LmdbStore;
+import org.lmdbjava.Txn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary of the journal titles and abbreviated titles of the Crossref records, normalized as in
+ * {@link JournalKeys}, to the ISSNs of the journals. The dictionary is persisted in the LMDB and
+ * kept in memory, the number of journals being small compared to the number of records.
+ *
+ * The entries are added by the single writer of the records, in its write transaction, and read
+ * concurrently by the lookups. The changes of a write transaction are collected in a {@link Changes} 
+ * and applied to the dictionary in memory only once the transaction is committed, so that the 
+ * dictionary does not keep the entries of an aborted transaction.
+ */
+public class JournalDictionary {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JournalDictionary.class);
+
+    private final LmdbStore<List<String>> dbJournals;
+    private final Map<String, List<String>> issnsByTitle = new ConcurrentHashMap<>();
+
+    public JournalDictionary(LmdbStore<List<String>> dbJournals) {
+        this.dbJournals = dbJournals;
+        dbJournals.forEach((title, issns) -> {
+            if (issns != null)
+                issnsByTitle.put(title, Collections.unmodifiableList(issns));
+        });
+        LOGGER.info(issnsByTitle.size() + " journal titles loaded from " + dbJournals.getName());
+    }
+
+    /**
+     * @return the ISSNs of the journals with this title or abbreviated title, empty if the title
+     * is unknown
+     */
+    public List<String> getIssns(String title) {
+        final String normalizedTitle = TitleAuthorKeys.normalize(title);
+        if (normalizedTitle == null)
+            return Collections.emptyList();
+        return issnsByTitle.getOrDefault(normalizedTitle, Collections.emptyList());
+    }
+
+    /**
+     * Add the ISSNs of a record to its normalized titles in the write transaction, only the new 
+     * associations being written. The new entries are collected in the changes of the transaction.
+     */
+    public void add(Txn<ByteBuffer> txn, Changes changes, List<String> titles, List<String> issns) {
+        if (issns.isEmpty())
+            return;
+        for (String title : titles) {
+            final List<String> knownIssns = changes.issnsByTitle.containsKey(title) || changes.cleared ?
+                changes.issnsByTitle.getOrDefault(title, Collections.emptyList()) :
+                issnsByTitle.getOrDefault(title, Collections.emptyList());
+            if (knownIssns.containsAll(issns))
+                continue;
+
+            final List<String> mergedIssns = new ArrayList<>(knownIssns);
+            for (String issn : issns) {
+                if (!mergedIssns.contains(issn))
+                    mergedIssns.add(issn);
+            }
+            dbJournals.put(txn, title, mergedIssns);
+            changes.issnsByTitle.put(title, Collections.unmodifiableList(mergedIssns));
+        }
+    }
+
+    /**
+     * Remove all the entries in the write transaction, before rebuilding the dictionary
+     */
+    public void clear(Txn<ByteBuffer> txn, Changes changes) {
+        dbJournals.getDbi().drop(txn);
+        changes.cleared = true;
+        changes.issnsByTitle.clear();
+    }
+
+    /**
+     * Apply the changes of a committed write transaction to the dictionary in memory
+     */
+    public void apply(Changes changes) {
+        if (changes.cleared)
+            issnsByTitle.clear();
+        issnsByTitle.putAll(changes.issnsByTitle);
+    }
+
+    public long size() {
+        return issnsByTitle.size();
+    }
+
+    /**
+     * Changes of the dictionary in a write transaction, not yet visible by the lookups
+     */
+    public static class Changes {
+        private final Map<String, List<String>> issnsByTitle = new HashMap<>();
+        private boolean cleared = false;
+    }
+}
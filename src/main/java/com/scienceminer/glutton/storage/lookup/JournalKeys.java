@@ -0,0 +1,133 @@
+package com.scienceminer.glutton.storage.lookup;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * Keys of the journal + volume + first page index. The journal is identified by its ISSN, or by its
+ * normalized title for the records without ISSN, and the volume and the first page are normalized
+ * as the titles (see {@link TitleAuthorKeys}). The key is the SHA-256 hash of the three parts.
+ *
+ * A journal title given in a query is resolved to the ISSNs with the {@link JournalDictionary}.
+ */
+public class JournalKeys {
+
+    // prefix of the journal parts which are a normalized title and not an ISSN
+    private static final String TITLE_PREFIX = "t:";
+
+    private static final Pattern ISSN_PATTERN = Pattern.compile("[0-9]{7}[0-9X]");
+    private static final Pattern PAGE_SEPARATOR = Pattern.compile(",|-| ");
+
+    /**
+     * @return the key of a journal (ISSN or title part, see {@link #titlePart(String)}), a volume and
+     * a first page, null if one of them is empty after normalization
+     */
+    public static String key(String journal, String volume, String firstPage) {
+        final String normalizedVolume = TitleAuthorKeys.normalize(volume);
+        final String normalizedPage = TitleAuthorKeys.normalize(firstPage);
+        if (isBlank(journal) || isBlank(normalizedVolume) || isBlank(normalizedPage))
+            return null;
+        return DigestUtils.sha256Hex(journal + "|" + normalizedVolume + "|" + normalizedPage);
+    }
+
+    /**
+     * @return the keys of a Crossref record, one for each ISSN of the record, or one for each
+     * journal title when the record has no ISSN
+     */
+    public static List<String> keys(JsonNode record) {
+        final List<String> keys = new ArrayList<>();
+        final String volume = record.path("volume").asText(null);
+        final String firstPage = firstPage(record);
+        if (isBlank(volume) || isBlank(firstPage))
+            return keys;
+
+        List<String> journals = issns(record);
+        if (journals.isEmpty()) {
+            for (String title : titles(record)) {
+                journals.add(TITLE_PREFIX + title);
+            }
+        }
+
+        for (String journal : journals) {
+            final String key = key(journal, volume, firstPage);
+            if (key != null && !keys.contains(key))
+                keys.add(key);
+        }
+        return keys;
+    }
+
+    /**
+     * @return the journal part of the key for a journal title, used for the records without ISSN
+     */
+    public static String titlePart(String normalizedTitle) {
+        return TITLE_PREFIX + normalizedTitle;
+    }
+
+    /**
+     * @return the normalized ISSNs of a Crossref record (print and electronic)
+     */
+    public static List<String> issns(JsonNode record) {
+        final List<String> issns = new ArrayList<>();
+        for (JsonNode issnNode : record.path("ISSN")) {
+            final String issn = normalizeIssn(issnNode.asText());
+            if (issn != null && !issns.contains(issn))
+                issns.add(issn);
+        }
+        return issns;
+    }
+
+    /**
+     * @return the normalized journal titles and abbreviated titles of a Crossref record
+     */
+    public static List<String> titles(JsonNode record) {
+        final List<String> titles = new ArrayList<>();
+        addTitles(record.path("container-title"), titles);
+        addTitles(record.path("short-container-title"), titles);
+        return titles;
+    }
+
+    private static void addTitles(JsonNode titleNodes, List<String> titles) {
+        for (JsonNode titleNode : titleNodes) {
+            final String title = TitleAuthorKeys.normalize(titleNode.asText());
+            if (!isBlank(title) && !titles.contains(title))
+                titles.add(title);
+        }
+    }
+
+    /**
+     * First page of the page range of the record, as indexed in the search engine
+     * (see MetadataObjBuilder)
+     */
+    protected static String firstPage(JsonNode record) {
+        final String page = record.path("page").asText(null);
+        if (isBlank(page))
+            return null;
+        final String[] pieces = PAGE_SEPARATOR.split(page);
+        return pieces.length == 0 ? null : pieces[0];
+    }
+
+    /**
+     * @return true if the two volumes or the two pages are the same after normalization
+     */
+    public static boolean equalsNormalized(String value, String otherValue) {
+        final String normalizedValue = TitleAuthorKeys.normalize(value);
+        return !isBlank(normalizedValue) && normalizedValue.equals(TitleAuthorKeys.normalize(otherValue));
+    }
+
+    /**
+     * @return the ISSN without hyphen and upper cased, null if it is not a valid ISSN
+     */
+    public static String normalizeIssn(String issn) {
+        if (issn == null)
+            return null;
+        final String normalized = issn.replaceAll("[^0-9xX]", "").toUpperCase(Locale.ROOT);
+        return ISSN_PATTERN.matcher(normalized).matches() ? normalized : null;
+    }
+}
@@ -4,26 +4,13 @@ import com.scienceminer.glutton.configuration.LookupConfiguration;
 import com.scienceminer.glutton.data.MatchingDocument;
 import com.scienceminer.glutton.exception.NotFoundException;
 import com.scienceminer.glutton.exception.ServiceException;
-import com.scienceminer.glutton.storage.lookup.async.ESClientWrapper;
+import com.scienceminer.glutton.storage.lookup.search.BlockingHit;
+import com.scienceminer.glutton.storage.lookup.search.BlockingQuery;
+import com.scienceminer.glutton.storage.lookup.search.ElasticSearchBackend;
+import com.scienceminer.glutton.storage.lookup.search.LuceneSearchBackend;
+import com.scienceminer.glutton.storage.lookup.search.SearchBackend;
+import com.scienceminer.glutton.storage.lookup.search.SolrSearchBackend;
 import org.apache.commons.collections4.CollectionUtils;
-import org.apache.http.HttpHost;
-import org.elasticsearch.ElasticsearchException;
-import org.elasticsearch.action.search.SearchRequest;
-import org.elasticsearch.action.search.SearchResponse;
-import org.elasticsearch.action.search.SearchType;
-import org.elasticsearch.client.core.CountRequest;
-import org.elasticsearch.client.core.CountResponse;
-import org.elasticsearch.client.RequestOptions;
-import org.elasticsearch.client.RestClient;
-import org.elasticsearch.client.RestHighLevelClient;
-import org.elasticsearch.client.WarningsHandler;
-import org.elasticsearch.index.query.BoolQueryBuilder;
-import org.elasticsearch.index.query.MatchQueryBuilder;
-import org.elasticsearch.index.query.QueryBuilder;
-import org.elasticsearch.index.query.QueryBuilders;
-import org.elasticsearch.search.SearchHit;
-import org.elasticsearch.search.SearchHits;
-import org.elasticsearch.search.builder.SearchSourceBuilder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,7 +31,7 @@ public class MetadataMatching {
     private static volatile MetadataMatching instance;
 
     private final LookupConfiguration configuration;
-    private final ESClientWrapper esClient;
+    private final SearchBackend searchBackend;
     private final CrossrefMetadataLookup crossrefMetadataLookup;
     private final HALLookup halLookup;
 
@@ -92,23 +79,13 @@ public class MetadataMatching {
                              CrossrefMetadataLookup crossrefMetadataLookup,
                              HALLookup halLookup) {
         this.configuration = configuration;
-        RestHighLevelClient esClient = new RestHighLevelClient(
-                RestClient.builder(
-                                HttpHost.create(configuration.getElastic().getHost()))
-                        .setRequestConfigCallback(
-                                requestConfigBuilder -> requestConfigBuilder
-                                        .setConnectTimeout(30000)
-                                        .setSocketTimeout(60000))
-                        .setHttpClientConfigCallback(
-                                httpAsyncClientBuilder -> httpAsyncClientBuilder
-                                        .setMaxConnPerRoute(configuration.getElastic().getMaxConnections())
-                                        .setMaxConnTotal(configuration.getElastic().getMaxConnections())));
-
-        // note: maxRetryTimeoutMillis is deprecated in ES 7 due to implementation issue 
-        // https://github.com/elastic/elasticsearch/pull/38085
-        //                .setMaxRetryTimeoutMillis(120000));
-
-        this.esClient = new ESClientWrapper(esClient, configuration.getMaxAcceptedRequests());
+        if (SearchBackend.LUCENE.equalsIgnoreCase(configuration.getSearchEngine())) {
+            this.searchBackend = new LuceneSearchBackend(configuration);
+        } else if (SearchBackend.SOLR.equalsIgnoreCase(configuration.getSearchEngine())) {
+            this.searchBackend = new SolrSearchBackend(configuration);
+        } else {
+            this.searchBackend = new ElasticSearchBackend(configuration);
+        }
 
         this.crossrefMetadataLookup = crossrefMetadataLookup;
         this.halLookup = halLookup;
@@ -117,23 +94,17 @@ public class MetadataMatching {
     public long getSize() {
         long count = 0L;
         try {
-            CountRequest countRequest = new CountRequest();
-            SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
-            searchSourceBuilder.query(QueryBuilders.matchAllQuery());
-            countRequest.source(searchSourceBuilder);
-
-            CountResponse countResponse = esClient.count(countRequest, RequestOptions.DEFAULT);
-            count = countResponse.getCount();
-        } catch (IOException | ElasticsearchException e) {
-            LOGGER.error("Error while contacting Elasticsearch to fetch the size of "
-                    + configuration.getElastic().getIndex() + " index.", e);
+            count = searchBackend.count();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Error while contacting the search engine to fetch the size of "
+                    + searchBackend.getIndexName() + " index.", e);
         }
 
         return count;
     }
 
     public String getIndexName() {
-        return this.configuration.getElastic().getIndex();
+        return searchBackend.getIndexName();
     }
 
     /**
@@ -143,9 +114,9 @@ public class MetadataMatching {
                                                      String firstAuthor) {
         validateInput(atitle, firstAuthor);
 
-        final BoolQueryBuilder query = QueryBuilders.boolQuery()
-                .should(QueryBuilders.matchQuery(INDEX_FIELD_NAME_ATITLE, atitle))
-                .should(QueryBuilders.matchQuery(INDEX_FIELD_NAME_FIRST_AUTHOR, firstAuthor));
+        final BlockingQuery query = new BlockingQuery()
+                .shouldMatch(INDEX_FIELD_NAME_ATITLE, atitle)
+                .shouldMatch(INDEX_FIELD_NAME_FIRST_AUTHOR, firstAuthor);
 
         return executeQuery(query);
     }
@@ -158,9 +129,9 @@ public class MetadataMatching {
                                         Consumer<List<MatchingDocument>> callback) {
         validateInput(atitle, firstAuthor);
 
-        final BoolQueryBuilder query = QueryBuilders.boolQuery()
-                .should(QueryBuilders.matchQuery(INDEX_FIELD_NAME_ATITLE, atitle))
-                .should(QueryBuilders.matchQuery(INDEX_FIELD_NAME_FIRST_AUTHOR, firstAuthor));
+        final BlockingQuery query = new BlockingQuery()
+                .shouldMatch(INDEX_FIELD_NAME_ATITLE, atitle)
+                .shouldMatch(INDEX_FIELD_NAME_FIRST_AUTHOR, firstAuthor);
 
         executeQueryAsync(query, callback);
     }
@@ -191,7 +162,7 @@ public class MetadataMatching {
 
         validateInput(jtitle, volume, firstPage);
 
-        final BoolQueryBuilder query = getQueryBuilderJournal(jtitle, volume, firstPage, firstAuthor);
+        final BlockingQuery query = getQueryJournal(jtitle, volume, firstPage, firstAuthor);
 
         return executeQuery(query);
     }
@@ -207,26 +178,26 @@ public class MetadataMatching {
 
         validateInput(jtitle, volume, firstPage);
 
-        final BoolQueryBuilder query = getQueryBuilderJournal(jtitle, volume, firstPage, firstAuthor);
+        final BlockingQuery query = getQueryJournal(jtitle, volume, firstPage, firstAuthor);
 
         executeQueryAsync(query, callback);
     }
 
-    private BoolQueryBuilder getQueryBuilderJournal(String jtitle,
-                                                    String volume,
-                                                    String firstPage,
-                                                    String firstAuthor) {
-        BoolQueryBuilder queryBuilder = QueryBuilders.boolQuery()
-                .should(QueryBuilders.matchQuery(INDEX_FIELD_NAME_JTITLE, jtitle))
-                .should(QueryBuilders.matchQuery(INDEX_FIELD_ABBREVIATED_JOURNAL_TITLE, jtitle))
-                .must(QueryBuilders.termQuery(INDEX_FIELD_NAME_VOLUME, volume))
-                .must(QueryBuilders.termQuery(INDEX_FIELD_NAME_FIRST_PAGE, firstPage));
+    private BlockingQuery getQueryJournal(String jtitle,
+                                          String volume,
+                                          String firstPage,
+                                          String firstAuthor) {
+        BlockingQuery query = new BlockingQuery()
+                .shouldMatch(INDEX_FIELD_NAME_JTITLE, jtitle)
+                .shouldMatch(INDEX_FIELD_ABBREVIATED_JOURNAL_TITLE, jtitle)
+                .mustTerm(INDEX_FIELD_NAME_VOLUME, volume)
+                .mustTerm(INDEX_FIELD_NAME_FIRST_PAGE, firstPage);
 
         if (!isBlank(firstAuthor)) {
-            queryBuilder = queryBuilder.should(QueryBuilders.termQuery(INDEX_FIELD_NAME_FIRST_AUTHOR, firstAuthor));
+            query = query.shouldTerm(INDEX_FIELD_NAME_FIRST_AUTHOR, firstAuthor);
         }
 
-        return queryBuilder;
+        return query;
     }
 
     /**
@@ -237,7 +208,7 @@ public class MetadataMatching {
             throw new ServiceException(400, "Supplied bibliographical string is empty.");
         }
 
-        final MatchQueryBuilder query = QueryBuilders.matchQuery(INDEX_FIELD_NAME_BIBLIOGRAPHIC, biblio);
+        final BlockingQuery query = new BlockingQuery().shouldMatch(INDEX_FIELD_NAME_BIBLIOGRAPHIC, biblio);
 
         return executeQuery(query);
     }
@@ -250,7 +221,7 @@ public class MetadataMatching {
         if (isBlank(biblio)) {
             throw new ServiceException(400, "Supplied bibliographical string is empty.");
         }
-        final MatchQueryBuilder query = QueryBuilders.matchQuery(INDEX_FIELD_NAME_BIBLIOGRAPHIC, biblio);
+        final BlockingQuery query = new BlockingQuery().shouldMatch(INDEX_FIELD_NAME_BIBLIOGRAPHIC, biblio);
 
         executeQueryAsync(query, callback);
     }
@@ -265,31 +236,27 @@ public class MetadataMatching {
         if (isBlank(biblio)) {
             throw new ServiceException(400, "Supplied bibliographical string is empty.");
         }
-        //MatchQueryBuilder query = null;
-        BoolQueryBuilder query = null;
+        BlockingQuery query = null;
         if (toIgnore == null) {
             // usual case
-            //query = QueryBuilders.matchQuery(INDEX_FIELD_NAME_BIBLIOGRAPHIC, biblio);
-            query = QueryBuilders.boolQuery()
-                    .must(QueryBuilders.existsQuery("DOI"))
-                    .should(QueryBuilders.matchQuery(INDEX_FIELD_NAME_BIBLIOGRAPHIC, biblio));
+            query = new BlockingQuery()
+                    .mustExist("DOI")
+                    .shouldMatch(INDEX_FIELD_NAME_BIBLIOGRAPHIC, biblio);
         } else {
-            //query = QueryBuilders.matchQuery(INDEX_FIELD_NAME_BIBLIOGRAPHIC, biblio);
-            query = QueryBuilders.boolQuery()
-                    .should(QueryBuilders.matchQuery(INDEX_FIELD_NAME_BIBLIOGRAPHIC, biblio))
-                    .mustNot(QueryBuilders.termQuery("_id", toIgnore));
+            query = new BlockingQuery()
+                    .shouldMatch(INDEX_FIELD_NAME_BIBLIOGRAPHIC, biblio)
+                    .mustNotTerm("_id", toIgnore);
         }
 
         executeQueryAsync(query, callback);
     }
 
-    private List<MatchingDocument> executeQuery(QueryBuilder query) {
-        SearchRequest request = prepareQueryExecution(query);
+    private List<MatchingDocument> executeQuery(BlockingQuery query) {
         final List<MatchingDocument> matchingDocuments;
         try {
-            final SearchResponse searchResponse = esClient.searchSync(request, RequestOptions.DEFAULT);
+            final List<BlockingHit> hits = searchBackend.search(query, configuration.getBlockSize());
 
-            matchingDocuments = processResponse(searchResponse);
+            matchingDocuments = processResponse(hits);
 
             if (matchingDocuments.size() == 0) {
                 // It should not be the case, in case of search failure we have one MatchingDocument
@@ -303,23 +270,19 @@ public class MetadataMatching {
                 throw (Exception) matchingDocuments.get(0).getException();
             }
         } catch (IOException e) {
-            throw new ServiceException(500, "No response from Elasticsearch. ", e);
+            throw new ServiceException(500, "No response from the search engine. ", e);
         } catch (Exception e) {
-            throw new ServiceException(500, "Elasticsearch server error. ", e);
+            throw new ServiceException(500, "Search engine error. ", e);
         }
 
         return matchingDocuments;
     }
 
-    private void executeQueryAsync(QueryBuilder query, Consumer<List<MatchingDocument>> callback) {
-        SearchRequest searchRequest = prepareQueryExecution(query);
+    private void executeQueryAsync(BlockingQuery query, Consumer<List<MatchingDocument>> callback) {
         try {
-            RequestOptions options = RequestOptions.DEFAULT;
-            RequestOptions.Builder builder = options.toBuilder();
-            builder.setWarningsHandler(WarningsHandler.PERMISSIVE);
-            esClient.searchAsync(searchRequest, builder.build(), (response, exception) -> {
+            searchBackend.searchAsync(query, configuration.getBlockSize(), (hits, exception) -> {
                 if (exception == null) {
-                    callback.accept(processResponse(response));
+                    callback.accept(processResponse(hits));
                 } else {
                     List<MatchingDocument> matchingDocuments = new ArrayList<>();
                     matchingDocuments.add(new MatchingDocument(exception));
@@ -333,34 +296,8 @@ public class MetadataMatching {
         }
     }
 
-    private SearchRequest prepareQueryExecution(QueryBuilder query) {
-        SearchSourceBuilder builder = new SearchSourceBuilder();
-        builder.query(query);
-        builder.from(0);
-        builder.size(configuration.getBlockSize());
-
-        String[] includeFields = new String[]
-                {
-                        INDEX_FIELD_NAME_ID,
-                        INDEX_FIELD_NAME_DOI,
-                        INDEX_FIELD_NAME_HALID,
-                        INDEX_FIELD_NAME_FIRST_AUTHOR,
-                        INDEX_FIELD_NAME_ATITLE,
-                        INDEX_FIELD_NAME_JTITLE,
-                        INDEX_FIELD_NAME_YEAR
-                };
-        //String[] excludeFields = new String[]{"*"};
-        builder.fetchSource(includeFields, null);
-
-        final SearchRequest searchRequest = new SearchRequest(configuration.getElastic().getIndex());
-        searchRequest.searchType(SearchType.DFS_QUERY_THEN_FETCH);
-        searchRequest.source(builder);
-        return searchRequest;
-    }
-
-    private List<MatchingDocument> processResponse(SearchResponse response) {
-        SearchHits hits = response.getHits();
-        Iterator<SearchHit> it = hits.iterator();
+    private List<MatchingDocument> processResponse(List<BlockingHit> hits) {
+        Iterator<BlockingHit> it = hits.iterator();
         final List<MatchingDocument> matchingDocuments = new ArrayList<>();
 
         double scoreMin = 1.0;
@@ -369,37 +306,32 @@ public class MetadataMatching {
         while (it.hasNext() && matchingDocuments.size() < configuration.getBlockSize()) {
             MatchingDocument matchingDocument = new MatchingDocument();
 
-            SearchHit hit = it.next();
+            BlockingHit hit = it.next();
 
-            String id = (String) hit.getSourceAsMap().get(INDEX_FIELD_NAME_ID);
-            String DOI = (String) hit.getSourceAsMap().get(INDEX_FIELD_NAME_DOI);
-            String halId = (String) hit.getSourceAsMap().get(INDEX_FIELD_NAME_HALID);
-            //String pmid = (String) hit.getSourceAsMap().get(INDEX_FIELD_NAME_PMID);
-            String firstAuthor = (String) hit.getSourceAsMap().get(INDEX_FIELD_NAME_FIRST_AUTHOR);
+            String id = hit.getId();
+            String DOI = hit.getDOI();
+            String halId = hit.getHalId();
+            String firstAuthor = hit.getFirstAuthor();
 
-            final List<String> atitles = (List<String>) hit.getSourceAsMap().get(INDEX_FIELD_NAME_ATITLE);
+            final List<String> atitles = hit.getAtitles();
             String atitle = "";
             if (CollectionUtils.isNotEmpty(atitles)) {
                 atitle = atitles.get(0);
             }
 
-            final List<String> jtitles = (List<String>) hit.getSourceAsMap().get(INDEX_FIELD_NAME_JTITLE);
+            final List<String> jtitles = hit.getJtitles();
             String jtitle = "";
             if (CollectionUtils.isNotEmpty(jtitles)) {
                 jtitle = jtitles.get(0);
             }
 
-            final List<String> abbrevTtitles = (List<String>) hit.getSourceAsMap().get(INDEX_FIELD_NAME_ABBREV_TITLE);
+            final List<String> abbrevTtitles = hit.getAbbreviatedTitles();
             String abbreviatedTitle = "";
             if (CollectionUtils.isNotEmpty(abbrevTtitles)) {
                 abbreviatedTitle = abbrevTtitles.get(0);
             }
 
-            final String year = (String) hit.getSourceAsMap().get(INDEX_FIELD_NAME_YEAR);
-            String yearStr = null;
-            if (year != null) {
-                yearStr = "" + year;
-            }
+            String yearStr = hit.getYear();
 
             matchingDocument.setId(id);
             matchingDocument.setDOI(DOI);
@@ -477,6 +409,7 @@ public class MetadataMatching {
     }
 
     public void close() {
+        this.searchBackend.close();
         this.crossrefMetadataLookup.close();
     }
 }
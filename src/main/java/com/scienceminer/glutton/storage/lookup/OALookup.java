@@ -1,11 +1,10 @@
 package com.scienceminer.glutton.storage.lookup;
 
 import com.codahale.metrics.Meter;
-import com.scienceminer.glutton.exception.ServiceOverloadedException;
 import com.scienceminer.glutton.reader.UnpayWallReader;
+import com.scienceminer.glutton.storage.LmdbStore;
 import com.scienceminer.glutton.storage.StorageEnvFactory;
-import com.scienceminer.glutton.utils.BinarySerialiser;
-import org.apache.commons.lang3.tuple.ImmutablePair;
+import com.scienceminer.glutton.storage.ValueCodec;
 import org.apache.commons.lang3.tuple.Pair;
 import org.lmdbjava.*;
 import org.slf4j.Logger;
@@ -13,14 +12,12 @@ import org.slf4j.LoggerFactory;
 
 import java.io.InputStream;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.scienceminer.glutton.web.resource.DataController.DEFAULT_MAX_SIZE_LIST;
-import static java.nio.ByteBuffer.allocateDirect;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import static org.apache.commons.lang3.StringUtils.lowerCase;
 
@@ -31,7 +28,7 @@ public class OALookup {
     private static final Logger LOGGER = LoggerFactory.getLogger(OALookup.class);
 
     private Env<ByteBuffer> environment;
-    private Dbi<ByteBuffer> dbDoiOAUrl;
+    protected LmdbStore<String> dbDoiOAUrl;
 
     public static final String ENV_NAME = "unpayWall";
 
@@ -43,16 +40,13 @@ public class OALookup {
         this.environment = storageEnvFactory.getEnv(ENV_NAME);
         batchSize = storageEnvFactory.getConfiguration().getStoringBatchSize();
 
-        dbDoiOAUrl = this.environment.openDbi(NAME_DOI_OA_URL, DbiFlags.MDB_CREATE);
+        dbDoiOAUrl = storageEnvFactory.withKeyFilter(ENV_NAME, LmdbStore.open(environment, NAME_DOI_OA_URL,
+            storageEnvFactory.getKeyEncoding(environment), ValueCodec.fst()));
     }
 
     public Map<String, Long> getSize() {
         Map<String, Long> size = new HashMap<>();
-        try (final Txn<ByteBuffer> txn = this.environment.txnRead()) {
-            size.put(NAME_DOI_OA_URL, dbDoiOAUrl.stat(txn).entries);
-        } catch (Env.ReadersFullException e) {
-            throw new ServiceOverloadedException("Not enough readers for LMDB access, increase them or reduce the parallel request rate. ", e);
-        }
+        size.put(NAME_DOI_OA_URL, dbDoiOAUrl.size());
 
         return size;
     }
@@ -62,45 +56,12 @@ public class OALookup {
             total = DEFAULT_MAX_SIZE_LIST;
         }
 
-        List<Pair<String, String>> values = new ArrayList<>();
-
-        int counter = 0;
-
-        try (Txn<ByteBuffer> txn = environment.txnRead()) {
-            try (CursorIterable<ByteBuffer> it = dbDoiOAUrl.iterate(txn, KeyRange.all())) {
-                for (final CursorIterable.KeyVal<ByteBuffer> kv : it) {
-                    values.add(new ImmutablePair(BinarySerialiser.deserialize(kv.key()), BinarySerialiser.deserialize(kv.val())));
-                    if (counter == total) {
-                        txn.close();
-                        break;
-                    }
-                    counter++;
-                }
-            }
-        } catch (Env.ReadersFullException e) {
-            throw new ServiceOverloadedException("Not enough readers for LMDB access, increase them or reduce the parallel request rate. ", e);
-        }
-        return values;
+        return dbDoiOAUrl.list(total);
     }
 
 
     public String retrieveOaLinkByDoi(String doi) {
-        final ByteBuffer keyBuffer = allocateDirect(environment.getMaxKeySize());
-        ByteBuffer cachedData = null;
-        String record = null;
-        try (Txn<ByteBuffer> tx = environment.txnRead()) {
-            keyBuffer.put(BinarySerialiser.serialize(lowerCase(doi))).flip();
-            cachedData = dbDoiOAUrl.get(tx, keyBuffer);
-            if (cachedData != null) {
-                record = (String) BinarySerialiser.deserialize(cachedData);
-            }
-        } catch (Env.ReadersFullException e) {
-            throw new ServiceOverloadedException("Not enough readers for LMDB access, increase them or reduce the parallel request rate. ", e);
-        } catch (Exception e) {
-            LOGGER.error("Cannot retrieve OA url having doi: " + doi, e);
-        }
-
-        return record;
+        return dbDoiOAUrl.get(lowerCase(doi));
     }
 
     public void loadFromFile(InputStream is, UnpayWallReader reader, Meter meter) {
@@ -118,7 +79,7 @@ public class OALookup {
             if (unpayWallMetadata.getBestOALocation() != null) {
                 String value = unpayWallMetadata.getBestOALocation().getPdfUrl();
                 if (isNotBlank(value)) {
-                    store(key, value, dbDoiOAUrl, transactionWrapper.tx);
+                    dbDoiOAUrl.put(transactionWrapper.tx, key, value);
                     meter.mark();
                     counter.incrementAndGet();
                 }
@@ -130,19 +91,6 @@ public class OALookup {
         LOGGER.info("Cross checking number of records processed: " + meter.getCount());
     }
 
-    private void store(String key, String value, Dbi<ByteBuffer> db, Txn<ByteBuffer> tx) {
-        try {
-            final ByteBuffer keyBuffer = allocateDirect(environment.getMaxKeySize());
-            keyBuffer.put(BinarySerialiser.serialize(key)).flip();
-            final byte[] serializedValue = BinarySerialiser.serialize(value);
-            final ByteBuffer valBuffer = allocateDirect(serializedValue.length);
-            valBuffer.put(serializedValue).flip();
-            db.put(tx, keyBuffer, valBuffer);
-        } catch (Exception e) {
-            LOGGER.error("Error when storing the entry " + key + ", " + value, e);
-        }
-    }
-
     public void close() {
         this.environment.close();
     }
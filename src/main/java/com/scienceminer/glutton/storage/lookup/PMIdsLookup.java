@@ -2,11 +2,11 @@ package com.scienceminer.glutton.storage.lookup;
 
 import com.codahale.metrics.Meter;
 import com.scienceminer.glutton.data.PmidData;
-import com.scienceminer.glutton.exception.ServiceOverloadedException;
 import com.scienceminer.glutton.reader.PmidReader;
+import com.scienceminer.glutton.storage.KeyEncoding;
+import com.scienceminer.glutton.storage.LmdbStore;
 import com.scienceminer.glutton.storage.StorageEnvFactory;
-import com.scienceminer.glutton.utils.BinarySerialiser;
-import org.apache.commons.lang3.tuple.ImmutablePair;
+import com.scienceminer.glutton.storage.ValueCodec;
 import org.apache.commons.lang3.tuple.Pair;
 import org.lmdbjava.*;
 import org.slf4j.Logger;
@@ -17,14 +17,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.scienceminer.glutton.web.resource.DataController.DEFAULT_MAX_SIZE_LIST;
-import static java.nio.ByteBuffer.allocateDirect;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import static org.apache.commons.lang3.StringUtils.lowerCase;
 import org.apache.commons.lang3.StringUtils;
@@ -41,9 +39,9 @@ public class PMIdsLookup {
     public static final String NAME_PMC2IDS = ENV_NAME + "_pmc2ids";
 
     protected Env<ByteBuffer> environment;
-    protected Dbi<ByteBuffer> dbDoiToIds;
-    protected Dbi<ByteBuffer> dbPmidToIds;
-    protected Dbi<ByteBuffer> dbPmcToIds;
+    protected LmdbStore<PmidData> dbDoiToIds;
+    protected LmdbStore<PmidData> dbPmidToIds;
+    protected LmdbStore<PmidData> dbPmcToIds;
 
     private final int batchSize;
 
@@ -69,9 +67,11 @@ public class PMIdsLookup {
         this.environment = storageEnvFactory.getEnv(ENV_NAME);
         batchSize = storageEnvFactory.getConfiguration().getStoringBatchSize();
 
-        dbDoiToIds = this.environment.openDbi(NAME_DOI2IDS, DbiFlags.MDB_CREATE);
-        dbPmidToIds = this.environment.openDbi(NAME_PMID2IDS, DbiFlags.MDB_CREATE);
-        dbPmcToIds = this.environment.openDbi(NAME_PMC2IDS, DbiFlags.MDB_CREATE);
+        final KeyEncoding keyEncoding = storageEnvFactory.getKeyEncoding(environment);
+        dbDoiToIds = storageEnvFactory.withKeyFilter(ENV_NAME, 
+            LmdbStore.open(environment, NAME_DOI2IDS, keyEncoding, ValueCodec.fst()));
+        dbPmidToIds = LmdbStore.open(environment, NAME_PMID2IDS, keyEncoding, ValueCodec.fst());
+        dbPmcToIds = LmdbStore.open(environment, NAME_PMC2IDS, keyEncoding, ValueCodec.fst());
     }
 
     public void loadFromFile(InputStream is, PmidReader reader, Meter metric) {
@@ -175,84 +175,30 @@ public class PMIdsLookup {
 
 
     public PmidData retrieveIdsByDoi(String doi) {
-        final ByteBuffer keyBuffer = allocateDirect(environment.getMaxKeySize());
-        ByteBuffer cachedData = null;
-        PmidData record = null;
-        try (Txn<ByteBuffer> tx = environment.txnRead()) {
-            keyBuffer.put(BinarySerialiser.serialize(lowerCase(doi))).flip();
-            cachedData = dbDoiToIds.get(tx, keyBuffer);
-            if (cachedData != null) {
-                record = (PmidData) BinarySerialiser.deserialize(cachedData);
-            }
-        } catch (Env.ReadersFullException e) {
-            throw new ServiceOverloadedException("Not enough readers for LMDB access, increase them or reduce the parallel request rate. ", e);
-        } catch (Exception e) {
-            LOGGER.error("Cannot retrieve PubMed Ids by DOI: " + doi, e);
-        }
-
-        return record;
+        return dbDoiToIds.get(lowerCase(doi));
     }
 
     public PmidData retrieveIdsByPmid(String pmid) {
-        final ByteBuffer keyBuffer = allocateDirect(environment.getMaxKeySize());
-        ByteBuffer cachedData = null;
-        PmidData record = null;
-        try (Txn<ByteBuffer> tx = environment.txnRead()) {
-            keyBuffer.put(BinarySerialiser.serialize(pmid)).flip();
-            cachedData = dbPmidToIds.get(tx, keyBuffer);
-            if (cachedData != null) {
-                record = (PmidData) BinarySerialiser.deserialize(cachedData);
-            }
-        } catch (Env.ReadersFullException e) {
-            throw new ServiceOverloadedException("Not enough readers for LMDB access, increase them or reduce the parallel request rate. ", e);
-        } catch (Exception e) {
-            LOGGER.error("Cannot retrieve PubMed Ids by PMID: " + pmid, e);
-        }
-
-        return record;
+        return dbPmidToIds.get(pmid);
     }
 
     public PmidData retrieveIdsByPmc(String pmc) {
-        final ByteBuffer keyBuffer = allocateDirect(environment.getMaxKeySize());
-        ByteBuffer cachedData = null;
-        PmidData record = null;
-        try (Txn<ByteBuffer> tx = environment.txnRead()) {
-            keyBuffer.put(BinarySerialiser.serialize(pmc)).flip();
-            cachedData = dbPmcToIds.get(tx, keyBuffer);
-            if (cachedData != null) {
-                record = (PmidData) BinarySerialiser.deserialize(cachedData);
-            }
-        } catch (Env.ReadersFullException e) {
-            throw new ServiceOverloadedException("Not enough readers for LMDB access, increase them or reduce the parallel request rate. ", e);
-        } catch (Exception e) {
-            LOGGER.error("Cannot retrieve PubMed Ids by PMC ID: " + pmc, e);
-        }
-
-        return record;
+        return dbPmcToIds.get(pmc);
     }
 
     public Map<String, Long> getSize() {
         Map<String, Long> size = new HashMap<>();
-        try (final Txn<ByteBuffer> txn = this.environment.txnRead()) {
-            size.put(NAME_DOI2IDS, dbDoiToIds.stat(txn).entries);
-            size.put(NAME_PMID2IDS, dbPmidToIds.stat(txn).entries);
-            size.put(NAME_PMC2IDS, dbPmcToIds.stat(txn).entries);
-        }
+        size.put(NAME_DOI2IDS, dbDoiToIds.size());
+        size.put(NAME_PMID2IDS, dbPmidToIds.size());
+        size.put(NAME_PMC2IDS, dbPmcToIds.size());
 
         return size;
     }
 
-    private void store(Dbi<ByteBuffer> db, String key, PmidData value, Txn<ByteBuffer> tx) {
-        try {
-            final ByteBuffer keyBuffer = allocateDirect(environment.getMaxKeySize());
-            keyBuffer.put(BinarySerialiser.serialize(key)).flip();
-            final byte[] serializedValue = BinarySerialiser.serialize(value);
-            final ByteBuffer valBuffer = allocateDirect(serializedValue.length);
-            valBuffer.put(serializedValue).flip();
-            db.put(tx, keyBuffer, valBuffer);
-        } catch (Exception e) {
+    private void store(LmdbStore<PmidData> db, String key, PmidData value, Txn<ByteBuffer> tx) {
+        if (!db.put(tx, key, value)) {
             LOGGER.warn("Some serious issues when writing on LMDB database "
-                    + db.toString() + " key: " + key + ", value: " + value, e);
+                    + db.getName() + " key: " + key + ", value: " + value);
         }
     }
 
@@ -265,30 +211,12 @@ public class PMIdsLookup {
         return retrieveList(total, dbDoiToIds);
     }
 
-    public List<Pair<String, PmidData>> retrieveList(Integer total, Dbi<ByteBuffer> db) {
+    public List<Pair<String, PmidData>> retrieveList(Integer total, LmdbStore<PmidData> db) {
         if (total == null || total == 0) {
             total = DEFAULT_MAX_SIZE_LIST;
         }
 
-        List<Pair<String, PmidData>> values = new ArrayList<>();
-        int counter = 0;
-
-        try (Txn<ByteBuffer> txn = environment.txnRead()) {
-            try (CursorIterable<ByteBuffer> it = db.iterate(txn, KeyRange.all())) {
-                for (final CursorIterable.KeyVal<ByteBuffer> kv : it) {
-                    values.add(new ImmutablePair<>((String) BinarySerialiser.deserialize(kv.key()), (PmidData) BinarySerialiser.deserialize(kv.val())));
-                    if (counter == total) {
-                        txn.close();
-                        break;
-                    }
-                    counter++;
-                }
-            }
-        } catch (Env.ReadersFullException e) {
-            throw new ServiceOverloadedException("Not enough readers for LMDB access, increase them or reduce the parallel request rate. ", e);
-        }
-
-        return values;
+        return db.list(total);
     }
 
     public void close() {
@@ -0,0 +1,47 @@
+package com.scienceminer.glutton.storage.lookup;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.List;
+
+/**
+ * Keys of a Crossref record in the exact lookup indexes stored with the records: the title + first
+ * author index, the journal + volume + first page index and the journal dictionary. They are
+ * computed by the parsing threads, so that the LMDB writer only has to write them.
+ */
+public class RecordIndexKeys {
+
+    private final List<String> titleAuthorKeys;
+    private final List<String> journalKeys;
+    private final List<String> journalTitles;
+    private final List<String> issns;
+
+    private RecordIndexKeys(List<String> titleAuthorKeys, List<String> journalKeys,
+                            List<String> journalTitles, List<String> issns) {
+        this.titleAuthorKeys = titleAuthorKeys;
+        this.journalKeys = journalKeys;
+        this.journalTitles = journalTitles;
+        this.issns = issns;
+    }
+
+    public static RecordIndexKeys of(JsonNode record) {
+        return new RecordIndexKeys(TitleAuthorKeys.keys(record), JournalKeys.keys(record),
+            JournalKeys.titles(record), JournalKeys.issns(record));
+    }
+
+    public List<String> getTitleAuthorKeys() {
+        return titleAuthorKeys;
+    }
+
+    public List<String> getJournalKeys() {
+        return journalKeys;
+    }
+
+    public List<String> getJournalTitles() {
+        return journalTitles;
+    }
+
+    public List<String> getIssns() {
+        return issns;
+    }
+}
@@ -0,0 +1,85 @@
+package com.scienceminer.glutton.storage.lookup;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * Keys of the exact title + first author index: the article title and the family name of the first
+ * author are folded to ASCII, lower cased and stripped of punctuation and spaces, so that the same
+ * title written with different case, accents or punctuation gives the same key. The key is the
+ * SHA-256 hash of the normalized strings, the LMDB keys being limited in size.
+ */
+public class TitleAuthorKeys {
+
+    /**
+     * @return the key of a title and a first author family name, null if one of them is empty
+     * after normalization
+     */
+    public static String key(String title, String firstAuthor) {
+        final String normalizedTitle = normalize(title);
+        final String normalizedAuthor = normalize(firstAuthor);
+        if (isBlank(normalizedTitle) || isBlank(normalizedAuthor))
+            return null;
+        return DigestUtils.sha256Hex(normalizedAuthor + "|" + normalizedTitle);
+    }
+
+    /**
+     * @return the keys of a Crossref record, one for each of its titles
+     */
+    public static List<String> keys(JsonNode record) {
+        final List<String> keys = new ArrayList<>();
+        final String firstAuthor = firstAuthor(record);
+        if (firstAuthor == null)
+            return keys;
+
+        for (JsonNode title : record.path("title")) {
+            final String key = key(title.asText(), firstAuthor);
+            if (key != null && !keys.contains(key))
+                keys.add(key);
+        }
+        return keys;
+    }
+
+    /**
+     * Family name of the author with the "first" sequence, or of the first author of the list
+     */
+    protected static String firstAuthor(JsonNode record) {
+        String firstAuthor = null;
+        for (JsonNode author : record.path("author")) {
+            final JsonNode family = author.get("family");
+            if (family == null || family.isNull())
+                continue;
+            if ("first".equals(author.path("sequence").asText()))
+                return family.asText();
+            if (firstAuthor == null)
+                firstAuthor = family.asText();
+        }
+        return firstAuthor;
+    }
+
+    protected static String normalize(String text) {
+        if (text == null)
+            return null;
+        final char[] input = text.toCharArray();
+        // a folded character can be expanded up to 4 characters
+        final char[] folded = new char[input.length * 4];
+        final int length = ASCIIFoldingFilter.foldToASCII(input, 0, folded, 0, input.length);
+
+        final StringBuilder normalized = new StringBuilder(length);
+        int i = 0;
+        while (i < length) {
+            final int codePoint = Character.codePointAt(folded, i, length);
+            if (Character.isLetterOrDigit(codePoint))
+                normalized.appendCodePoint(codePoint);
+            i += Character.charCount(codePoint);
+        }
+        return normalized.toString().toLowerCase(Locale.ROOT);
+    }
+}
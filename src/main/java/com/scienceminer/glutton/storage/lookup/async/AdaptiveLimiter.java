@@ -0,0 +1,84 @@
+package com.scienceminer.glutton.storage.lookup.async;
+
+/**
+ * Concurrency limit adapted to the measured latency of the requests (AIMD):
+ * - when a request completes within the latency threshold while the limit is actually used, the
+ *   limit is increased by 1/limit, so roughly by one after a full round of requests,
+ * - when a request is slower than the threshold or fails because a backend is overloaded, the
+ *   limit is multiplied by the backoff ratio, at most once per round of requests: the slow 
+ *   requests admitted before the last decrease were in flight during the same load peak and do
+ *   not decrease the limit again.
+ *
+ * The limit stays between the min and max limits. A request beyond the current limit is rejected
+ * immediately instead of being queued.
+ */
+public class AdaptiveLimiter {
+
+    public static final long REJECTED = -1;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdMillis;
+    private final double backoffRatio;
+
+    private double limit;
+    private int inFlight = 0;
+    // number of admitted requests, giving the admission number of each request
+    private long admissions = 0;
+    // number of admitted requests at the last decrease of the limit
+    private long lastDecreaseAdmissions = 0;
+
+    public AdaptiveLimiter(String name, int minLimit, int maxLimit, long latencyThresholdMillis, double backoffRatio) {
+        this.name = name;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.latencyThresholdMillis = latencyThresholdMillis;
+        this.backoffRatio = backoffRatio;
+        this.limit = Math.max(this.minLimit, this.maxLimit / 2);
+    }
+
+    /**
+     * @return the admission number of the request, or REJECTED if it is not admitted. The limiter
+     * must be notified of the completion of an admitted request with its admission number.
+     */
+    public synchronized long tryAcquire() {
+        if (inFlight >= (int) limit)
+            return REJECTED;
+        inFlight++;
+        return ++admissions;
+    }
+
+    /**
+     * Completion of an admitted request
+     *
+     * @param admission admission number of the request, returned by tryAcquire()
+     * @param latencyMillis time between the admission and the completion of the request
+     * @param overloaded true if the request failed because a backend is overloaded
+     */
+    public synchronized void release(long admission, long latencyMillis, boolean overloaded) {
+        if (overloaded || latencyMillis > latencyThresholdMillis) {
+            if (admission > lastDecreaseAdmissions) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+                lastDecreaseAdmissions = admissions;
+            }
+        } else if (inFlight * 2 >= limit) {
+            // the limit is only increased when it is actually used, otherwise it would grow
+            // without bound when the load is low
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+        inFlight--;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
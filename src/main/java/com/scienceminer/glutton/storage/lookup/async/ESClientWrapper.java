@@ -12,26 +12,37 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
 import java.util.function.BiConsumer;
 
 public class ESClientWrapper {
     private static final Logger LOGGER = LoggerFactory.getLogger(ESClientWrapper.class);
 
-    private final ExecutorService executorService;
     private RestHighLevelClient esClient;
 
-    private final AtomicInteger counter;
+    // max number of search requests in flight, the client is already asynchronous so no thread 
+    // is used while waiting for the responses
+    private final Semaphore inFlightSearches;
+
+    // when not null, concurrent search requests are grouped into multi search requests
+    private MultiSearchBatcher multiSearchBatcher = null;
 
     public ESClientWrapper(RestHighLevelClient esClient, int poolSize) {
+        this(esClient, poolSize, 0, 0);
+    }
+
+    /**
+     * @param multiSearchWindow time window in milliseconds for grouping concurrent search requests into
+     *                          a multi search request, 0 to send every search request individually
+     * @param multiSearchMaxQueries max number of search requests in a multi search request
+     */
+    public ESClientWrapper(RestHighLevelClient esClient, int poolSize, long multiSearchWindow, int multiSearchMaxQueries) {
         this.esClient = esClient;
-        this.counter = new AtomicInteger(poolSize);
-        this.executorService = new ThreadPoolExecutor(poolSize, poolSize,
-                0L, TimeUnit.MILLISECONDS,
-                new LinkedBlockingQueue<>(poolSize), (r, executor) -> {
-            throw new ServiceException(503, "Rejected request, try later");
-        });
+        if (multiSearchWindow > 0 && multiSearchMaxQueries > 1) {
+            this.multiSearchBatcher = new MultiSearchBatcher(esClient, multiSearchWindow, multiSearchMaxQueries);
+        }
+        this.inFlightSearches = new Semaphore(poolSize);
     }
 
     public SearchResponse searchSync(final SearchRequest request, final RequestOptions options) throws IOException {
@@ -49,18 +60,18 @@ public class ESClientWrapper {
 
             @Override
             public void onResponse(SearchResponse searchResponse) {
-                final int i = counter.incrementAndGet();
+                inFlightSearches.release();
                 if (LOGGER.isDebugEnabled()) {
-                    LOGGER.debug("Got a response, freeing a spot: " + i);
+                    LOGGER.debug("Got a response, freeing a spot: " + inFlightSearches.availablePermits());
                 }
                 callback.accept(searchResponse, null);
             }
 
             @Override
             public void onFailure(Exception e) {
-                final int i = counter.incrementAndGet();
+                inFlightSearches.release();
                 if (LOGGER.isDebugEnabled()) {
-                    LOGGER.debug("Got an error, freeing a spot: " + i);
+                    LOGGER.debug("Got an error, freeing a spot: " + inFlightSearches.availablePermits());
                 }
 
                 Exception returnException = e;
@@ -71,21 +82,32 @@ public class ESClientWrapper {
                 callback.accept(null, returnException);
             }
         };
-        synchronized (counter) {
-            if (counter.get() <= 0) {
-                throw new ServiceException(503, "Cannot get more requests. Retry the request later.");
+        if (!inFlightSearches.tryAcquire()) {
+            throw new ServiceException(503, "Cannot get more requests. Retry the request later.");
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Ready to call, occupying a spot: " + inFlightSearches.availablePermits());
+        }
+
+        try {
+            if (multiSearchBatcher != null) {
+                // the batcher sends the request asynchronously
+                multiSearchBatcher.add(request, options, listener);
+            } else {
+                // the client sends the request without blocking, the listener being called by the 
+                // client I/O threads
+                esClient.searchAsync(request, options, listener);
             }
-            final int i = counter.decrementAndGet();
-            LOGGER.debug("Ready to call, occupying a spot: " + i);
+        } catch (RuntimeException e) {
+            inFlightSearches.release();
+            throw new ServiceException(500, "Error when sending the search request", e);
         }
-        final CompletableFuture<Void> searchResponseCompletableFuture = CompletableFuture
-                .runAsync(() -> esClient.searchAsync(request, options, listener), executorService);
 
-        searchResponseCompletableFuture.exceptionally(throwable -> {
-            throw new ServiceException(500, "Error when completing the task", throwable);
-        });
-//        searchResponseCompletableFuture.thenAccept(callback::accept);
+        return CompletableFuture.completedFuture(null);
+    }
 
-        return searchResponseCompletableFuture;
+    public void close() {
+        if (multiSearchBatcher != null)
+            multiSearchBatcher.close();
     }
 }
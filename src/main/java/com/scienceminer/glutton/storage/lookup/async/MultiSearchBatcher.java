@@ -0,0 +1,164 @@
+package com.scienceminer.glutton.storage.lookup.async;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collect the search requests submitted concurrently during a short time window and send them
+ * together as a single multi search request (_msearch). The batch is sent when the window expires
+ * or when the maximum number of queries in a batch is reached, whichever comes first. Each response
+ * of the multi search is then dispatched to the listener of the corresponding search request.
+ */
+public class MultiSearchBatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MultiSearchBatcher.class);
+
+    private final RestHighLevelClient esClient;
+    private final long windowMillis;
+    private final int maxQueries;
+    private final ScheduledExecutorService scheduler;
+
+    private List<PendingSearch> pending = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush = null;
+
+    public MultiSearchBatcher(RestHighLevelClient esClient, long windowMillis, int maxQueries) {
+        this.esClient = esClient;
+        this.windowMillis = windowMillis;
+        this.maxQueries = Math.max(1, maxQueries);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "es-msearch-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void add(final SearchRequest request, final RequestOptions options,
+                    final ActionListener<SearchResponse> listener) {
+        List<PendingSearch> batch = null;
+        synchronized (this) {
+            pending.add(new PendingSearch(request, options, listener));
+            if (pending.size() >= maxQueries) {
+                batch = takePending();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = scheduler.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (batch != null)
+            send(batch);
+    }
+
+    public void flush() {
+        List<PendingSearch> batch;
+        synchronized (this) {
+            batch = takePending();
+        }
+        if (!batch.isEmpty())
+            send(batch);
+    }
+
+    private List<PendingSearch> takePending() {
+        List<PendingSearch> batch = pending;
+        pending = new ArrayList<>();
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    private void send(final List<PendingSearch> batch) {
+        try {
+            sendBatch(batch);
+        } catch (Exception e) {
+            LOGGER.error("Cannot send the multi search", e);
+            notifyFailure(batch, e);
+        }
+    }
+
+    private void sendBatch(final List<PendingSearch> batch) {
+        // all the requests of a batch are sent with the options of the first one
+        final RequestOptions options = batch.get(0).options;
+
+        if (batch.size() == 1) {
+            // no need for a multi search
+            esClient.searchAsync(batch.get(0).request, options, batch.get(0).listener);
+            return;
+        }
+
+        MultiSearchRequest multiSearchRequest = new MultiSearchRequest();
+        for (PendingSearch search : batch) {
+            multiSearchRequest.add(search.request);
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Sending a multi search of " + batch.size() + " queries");
+        }
+
+        esClient.msearchAsync(multiSearchRequest, options, new ActionListener<MultiSearchResponse>() {
+            @Override
+            public void onResponse(MultiSearchResponse multiSearchResponse) {
+                MultiSearchResponse.Item[] items = multiSearchResponse.getResponses();
+                for (int i = 0; i < batch.size(); i++) {
+                    ActionListener<SearchResponse> listener = batch.get(i).listener;
+                    try {
+                        if (i >= items.length) {
+                            listener.onFailure(new IllegalStateException("Missing response in the multi search result"));
+                        } else if (items[i].isFailure()) {
+                            listener.onFailure(items[i].getFailure());
+                        } else {
+                            listener.onResponse(items[i].getResponse());
+                        }
+                    } catch (Exception e) {
+                        LOGGER.error("Error when dispatching a multi search response", e);
+                    }
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                notifyFailure(batch, e);
+            }
+        });
+    }
+
+    private void notifyFailure(List<PendingSearch> batch, Exception e) {
+        for (PendingSearch search : batch) {
+            try {
+                search.listener.onFailure(e);
+            } catch (Exception e2) {
+                LOGGER.error("Error when dispatching a multi search failure", e2);
+            }
+        }
+    }
+
+    public void close() {
+        flush();
+        scheduler.shutdown();
+    }
+
+    private static class PendingSearch {
+        private final SearchRequest request;
+        private final RequestOptions options;
+        private final ActionListener<SearchResponse> listener;
+
+        PendingSearch(SearchRequest request, RequestOptions options, ActionListener<SearchResponse> listener) {
+            this.request = request;
+            this.options = options;
+            this.listener = listener;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.scienceminer.glutton.storage.lookup.async;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.scienceminer.glutton.configuration.LookupConfiguration;
+import com.scienceminer.glutton.exception.ServiceException;
+import com.scienceminer.glutton.exception.ServiceOverloadedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Execution of the lookup requests, with an admission control in front of the processing. The 
+ * requests are divided in two classes, each one with its own adaptive concurrency limit (see 
+ * {@link AdaptiveLimiter}) based on the measured latency of its requests:
+ * - the cheap lookups by strong identifier, served by LMDB,
+ * - the expensive lookups by bibliographical metadata, served by the search engine and possibly 
+ *   GROBID for parsing a raw reference string.
+ * A flood of expensive lookups then cannot starve the strong identifier lookups. Beyond the 
+ * current limit of its class, a request is rejected immediately with a 503 status, before any 
+ * work is queued.
+ *
+ * With the "virtual" execution mode, a request is processed on a virtual thread when the JVM
+ * supports them (Java 21 and later), and on a small pool of carrier threads otherwise. The HTTP
+ * server threads are then only used to dispatch the requests, and a request waiting for LMDB or
+ * for the search engine does not hold a platform thread. With the "default" mode, the requests
+ * are processed directly by the HTTP server threads, as before.
+ *
+ * The queries of a batch lookup are submitted with {@link #submit}: they wait for their admission
+ * instead of being rejected, and are always processed off the thread streaming the batch.
+ */
+public class RequestExecutor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RequestExecutor.class);
+
+    public static final String MODE_DEFAULT = "default";
+    public static final String MODE_VIRTUAL = "virtual";
+
+    private static volatile RequestExecutor instance;
+
+    public enum RequestClass {
+        STRONG_ID,
+        BIBLIO
+    }
+
+    /**
+     * Admission of a request, to be released once the request is completed
+     */
+    public interface Permit {
+        /**
+         * Release the admission, with the failure of the request or null. The permit can be
+         * released several times, only the first call has an effect.
+         */
+        void release(Throwable failure);
+    }
+
+    private final Map<RequestClass, AdaptiveLimiter> limiters = new EnumMap<>(RequestClass.class);
+    // null when the requests are processed by the calling thread
+    private final ExecutorService executor;
+    // executor of the batch queries when the requests are processed by the calling thread, its
+    // number of threads is bounded by the limits of the request classes
+    private ExecutorService batchExecutor;
+
+    // backoff between two admission attempts of a batch query
+    private static final long MIN_ADMISSION_BACKOFF_MILLIS = 5;
+    private static final long MAX_ADMISSION_BACKOFF_MILLIS = 200;
+
+    public static RequestExecutor getInstance(LookupConfiguration configuration) {
+        if (instance == null) {
+            synchronized (RequestExecutor.class) {
+                if (instance == null) {
+                    getNewInstance(configuration);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Creates a new instance.
+     */
+    private static synchronized void getNewInstance(LookupConfiguration configuration) {
+        instance = new RequestExecutor(configuration);
+    }
+
+    private RequestExecutor(LookupConfiguration configuration) {
+        final LookupConfiguration.Admission admission = configuration.getAdmission();
+        limiters.put(RequestClass.STRONG_ID, new AdaptiveLimiter("strongId", admission.getMinConcurrency(), 
+            admission.getStrongIdMaxConcurrency(), admission.getStrongIdLatencyThreshold(), admission.getBackoffRatio()));
+        limiters.put(RequestClass.BIBLIO, new AdaptiveLimiter("biblio", admission.getMinConcurrency(), 
+            admission.getBiblioMaxConcurrency(), admission.getBiblioLatencyThreshold(), admission.getBackoffRatio()));
+        if (MODE_VIRTUAL.equalsIgnoreCase(configuration.getRequestExecution())) {
+            this.executor = createExecutor(configuration.getRequestCarrierThreads());
+        } else {
+            this.executor = null;
+        }
+    }
+
+    /**
+     * Virtual threads are created by reflection as the project is still compiled for Java 11
+     */
+    private static ExecutorService createExecutor(int carrierThreads) {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            ExecutorService virtualExecutor = (ExecutorService) method.invoke(null);
+            LOGGER.info("Lookup requests processed on virtual threads");
+            return virtualExecutor;
+        } catch (ReflectiveOperationException e) {
+            final int threads = carrierThreads > 0 ? carrierThreads : Runtime.getRuntime().availableProcessors();
+            LOGGER.info("Virtual threads are not available, lookup requests processed on a pool of " + threads + " threads");
+            final AtomicInteger counter = new AtomicInteger(0);
+            return Executors.newFixedThreadPool(threads, r -> {
+                Thread thread = new Thread(r, "lookup-request-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Run a request if it can be admitted. The task receives the permit of the request, to be 
+     * released once the request is completed, possibly from another thread (e.g. a search engine 
+     * callback). The time until the release is the latency used to adapt the limit.
+     *
+     * @throws ServiceOverloadedException if the limit of the request class is reached
+     */
+    public void execute(RequestClass requestClass, Consumer<Permit> task) {
+        final AdaptiveLimiter limiter = limiters.get(requestClass);
+        final long admission = limiter.tryAcquire();
+        if (admission == AdaptiveLimiter.REJECTED) {
+            throw new ServiceOverloadedException("Too many " + limiter.getName() + 
+                " lookups in progress, retry the request later");
+        }
+        final long start = System.nanoTime();
+        final AtomicBoolean released = new AtomicBoolean(false);
+        final Permit permit = failure -> {
+            if (released.compareAndSet(false, true))
+                limiter.release(admission, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), isOverload(failure));
+        };
+
+        if (executor == null) {
+            runTask(task, permit);
+            return;
+        }
+        try {
+            executor.execute(() -> runTask(task, permit));
+        } catch (RejectedExecutionException e) {
+            permit.release(e);
+            throw new ServiceOverloadedException("The request cannot be processed, retry the request later", e);
+        }
+    }
+
+    /**
+     * Run a batch query off the calling thread. If the limit of its class is reached, the calling
+     * thread waits for the completion of requests in progress, retrying the admission with a
+     * growing backoff, so that a batch progresses at the pace admitted by the limiter.
+     *
+     * @throws ServiceOverloadedException if the query is still not admitted after maxWaitMillis
+     */
+    public void submit(RequestClass requestClass, Consumer<Permit> task, long maxWaitMillis) throws InterruptedException {
+        final ExecutorService detachedExecutor = getBatchExecutor();
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        long backoff = MIN_ADMISSION_BACKOFF_MILLIS;
+        while (true) {
+            try {
+                execute(requestClass, permit -> {
+                    if (executor != null) {
+                        // already off the calling thread
+                        task.accept(permit);
+                        return;
+                    }
+                    try {
+                        detachedExecutor.execute(() -> runTask(task, permit));
+                    } catch (RejectedExecutionException e) {
+                        permit.release(e);
+                        throw new ServiceOverloadedException("The request cannot be processed, retry the request later", e);
+                    }
+                });
+                return;
+            } catch (ServiceOverloadedException e) {
+                final long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0)
+                    throw e;
+                Thread.sleep(Math.min(backoff, remaining));
+                backoff = Math.min(backoff * 2, MAX_ADMISSION_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    private synchronized ExecutorService getBatchExecutor() {
+        if (executor != null)
+            return executor;
+        if (batchExecutor == null) {
+            final AtomicInteger counter = new AtomicInteger(0);
+            batchExecutor = Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "lookup-batch-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return batchExecutor;
+    }
+
+    private static void runTask(Consumer<Permit> task, Permit permit) {
+        try {
+            task.accept(permit);
+        } catch (RuntimeException e) {
+            // the task failed before handing over its completion
+            permit.release(e);
+            throw e;
+        }
+    }
+
+    /**
+     * A backend rejecting the request because of its load (e.g. too many LMDB readers or search 
+     * requests) is a sign of overload, like a high latency
+     */
+    private static boolean isOverload(Throwable failure) {
+        if (failure instanceof ServiceOverloadedException)
+            return true;
+        return failure instanceof ServiceException && ((ServiceException) failure).getStatusCode() == 503;
+    }
+
+    /**
+     * @return true if the requests are not processed by the calling thread
+     */
+    public boolean isDetached() {
+        return executor != null;
+    }
+
+    public void registerMetrics(MetricRegistry metrics) {
+        for (AdaptiveLimiter limiter : limiters.values()) {
+            metrics.register(MetricRegistry.name(RequestExecutor.class, limiter.getName(), "limit"), 
+                (Gauge<Integer>) limiter::getLimit);
+            metrics.register(MetricRegistry.name(RequestExecutor.class, limiter.getName(), "inFlight"), 
+                (Gauge<Integer>) limiter::getInFlight);
+        }
+    }
+
+    public synchronized void close() {
+        if (executor != null)
+            executor.shutdown();
+        if (batchExecutor != null)
+            batchExecutor.shutdown();
+    }
+}
@@ -0,0 +1,91 @@
+package com.scienceminer.glutton.storage.lookup.search;
+
+import java.util.List;
+
+/**
+ * Candidate record returned by the blocking, with the indexed fields needed for the matching
+ */
+public class BlockingHit {
+
+    private String id;
+    private String DOI;
+    private String halId;
+    private String firstAuthor;
+    private List<String> atitles;
+    private List<String> jtitles;
+    private List<String> abbreviatedTitles;
+    private String year;
+    private double score;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getDOI() {
+        return DOI;
+    }
+
+    public void setDOI(String DOI) {
+        this.DOI = DOI;
+    }
+
+    public String getHalId() {
+        return halId;
+    }
+
+    public void setHalId(String halId) {
+        this.halId = halId;
+    }
+
+    public String getFirstAuthor() {
+        return firstAuthor;
+    }
+
+    public void setFirstAuthor(String firstAuthor) {
+        this.firstAuthor = firstAuthor;
+    }
+
+    public List<String> getAtitles() {
+        return atitles;
+    }
+
+    public void setAtitles(List<String> atitles) {
+        this.atitles = atitles;
+    }
+
+    public List<String> getJtitles() {
+        return jtitles;
+    }
+
+    public void setJtitles(List<String> jtitles) {
+        this.jtitles = jtitles;
+    }
+
+    public List<String> getAbbreviatedTitles() {
+        return abbreviatedTitles;
+    }
+
+    public void setAbbreviatedTitles(List<String> abbreviatedTitles) {
+        this.abbreviatedTitles = abbreviatedTitles;
+    }
+
+    public String getYear() {
+        return year;
+    }
+
+    public void setYear(String year) {
+        this.year = year;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public void setScore(double score) {
+        this.score = score;
+    }
+}
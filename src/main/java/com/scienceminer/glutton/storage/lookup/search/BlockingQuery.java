@@ -0,0 +1,88 @@
+package com.scienceminer.glutton.storage.lookup.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Blocking query independent of the search backend: a boolean combination of clauses on the 
+ * indexed fields, each clause being
+ * - a match of an analyzed text (any of its terms),
+ * - a term, compared to the indexed value of a keyword field,
+ * - the existence of a field.
+ */
+public class BlockingQuery {
+
+    public enum Occur {
+        SHOULD,
+        MUST,
+        MUST_NOT
+    }
+
+    public enum Type {
+        MATCH,
+        TERM,
+        EXISTS
+    }
+
+    public static class Clause {
+        private final Occur occur;
+        private final Type type;
+        private final String field;
+        private final String value;
+
+        Clause(Occur occur, Type type, String field, String value) {
+            this.occur = occur;
+            this.type = type;
+            this.field = field;
+            this.value = value;
+        }
+
+        public Occur getOccur() {
+            return occur;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        public String getValue() {
+            return value;
+        }
+    }
+
+    private final List<Clause> clauses = new ArrayList<>();
+
+    public BlockingQuery shouldMatch(String field, String text) {
+        clauses.add(new Clause(Occur.SHOULD, Type.MATCH, field, text));
+        return this;
+    }
+
+    public BlockingQuery shouldTerm(String field, String term) {
+        clauses.add(new Clause(Occur.SHOULD, Type.TERM, field, term));
+        return this;
+    }
+
+    public BlockingQuery mustTerm(String field, String term) {
+        clauses.add(new Clause(Occur.MUST, Type.TERM, field, term));
+        return this;
+    }
+
+    public BlockingQuery mustNotTerm(String field, String term) {
+        clauses.add(new Clause(Occur.MUST_NOT, Type.TERM, field, term));
+        return this;
+    }
+
+    public BlockingQuery mustExist(String field) {
+        clauses.add(new Clause(Occur.MUST, Type.EXISTS, field, null));
+        return this;
+    }
+
+    public List<Clause> getClauses() {
+        return Collections.unmodifiableList(clauses);
+    }
+}
@@ -0,0 +1,176 @@
+package com.scienceminer.glutton.storage.lookup.search;
+
+import com.scienceminer.glutton.configuration.LookupConfiguration;
+import com.scienceminer.glutton.storage.lookup.async.ESClientWrapper;
+import org.apache.http.HttpHost;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.WarningsHandler;
+import org.elasticsearch.client.core.CountRequest;
+import org.elasticsearch.client.core.CountResponse;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import static com.scienceminer.glutton.storage.lookup.MetadataMatching.*;
+
+/**
+ * Blocking with the Elasticsearch index, the searches are sent asynchronously through the
+ * {@link ESClientWrapper}
+ */
+public class ElasticSearchBackend implements SearchBackend {
+
+    private final LookupConfiguration configuration;
+    private final ESClientWrapper esClient;
+
+    public ElasticSearchBackend(LookupConfiguration configuration) {
+        this.configuration = configuration;
+        RestHighLevelClient esClient = new RestHighLevelClient(
+                RestClient.builder(
+                                HttpHost.create(configuration.getElastic().getHost()))
+                        .setRequestConfigCallback(
+                                requestConfigBuilder -> requestConfigBuilder
+                                        .setConnectTimeout(30000)
+                                        .setSocketTimeout(60000))
+                        .setHttpClientConfigCallback(
+                                httpAsyncClientBuilder -> httpAsyncClientBuilder
+                                        .setMaxConnPerRoute(configuration.getElastic().getMaxConnections())
+                                        .setMaxConnTotal(configuration.getElastic().getMaxConnections())));
+
+        // note: maxRetryTimeoutMillis is deprecated in ES 7 due to implementation issue
+        // https://github.com/elastic/elasticsearch/pull/38085
+        //                .setMaxRetryTimeoutMillis(120000));
+
+        this.esClient = new ESClientWrapper(esClient, configuration.getMaxAcceptedRequests(),
+            configuration.getElastic().getMultiSearchWindow(), configuration.getElastic().getMultiSearchMaxQueries());
+    }
+
+    @Override
+    public List<BlockingHit> search(BlockingQuery query, int size) throws IOException {
+        final SearchResponse searchResponse = esClient.searchSync(prepareQueryExecution(query, size), RequestOptions.DEFAULT);
+        return toHits(searchResponse);
+    }
+
+    @Override
+    public void searchAsync(BlockingQuery query, int size, BiConsumer<List<BlockingHit>, Throwable> callback) {
+        RequestOptions options = RequestOptions.DEFAULT;
+        RequestOptions.Builder builder = options.toBuilder();
+        builder.setWarningsHandler(WarningsHandler.PERMISSIVE);
+        esClient.searchAsync(prepareQueryExecution(query, size), builder.build(), (response, exception) -> {
+            if (exception == null) {
+                callback.accept(toHits(response), null);
+            } else {
+                callback.accept(null, exception);
+            }
+        });
+    }
+
+    @Override
+    public long count() throws IOException {
+        CountRequest countRequest = new CountRequest();
+        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
+        searchSourceBuilder.query(QueryBuilders.matchAllQuery());
+        countRequest.source(searchSourceBuilder);
+
+        CountResponse countResponse = esClient.count(countRequest, RequestOptions.DEFAULT);
+        return countResponse.getCount();
+    }
+
+    @Override
+    public String getIndexName() {
+        return configuration.getElastic().getIndex();
+    }
+
+    private static QueryBuilder toQueryBuilder(BlockingQuery query) {
+        final BoolQueryBuilder queryBuilder = QueryBuilders.boolQuery();
+        for (BlockingQuery.Clause clause : query.getClauses()) {
+            QueryBuilder clauseBuilder;
+            switch (clause.getType()) {
+                case MATCH:
+                    clauseBuilder = QueryBuilders.matchQuery(clause.getField(), clause.getValue());
+                    break;
+                case TERM:
+                    clauseBuilder = QueryBuilders.termQuery(clause.getField(), clause.getValue());
+                    break;
+                default:
+                    clauseBuilder = QueryBuilders.existsQuery(clause.getField());
+            }
+
+            switch (clause.getOccur()) {
+                case MUST:
+                    queryBuilder.must(clauseBuilder);
+                    break;
+                case MUST_NOT:
+                    queryBuilder.mustNot(clauseBuilder);
+                    break;
+                default:
+                    queryBuilder.should(clauseBuilder);
+            }
+        }
+        return queryBuilder;
+    }
+
+    private SearchRequest prepareQueryExecution(BlockingQuery query, int size) {
+        SearchSourceBuilder builder = new SearchSourceBuilder();
+        builder.query(toQueryBuilder(query));
+        builder.from(0);
+        builder.size(size);
+
+        String[] includeFields = new String[]
+                {
+                        INDEX_FIELD_NAME_ID,
+                        INDEX_FIELD_NAME_DOI,
+                        INDEX_FIELD_NAME_HALID,
+                        INDEX_FIELD_NAME_FIRST_AUTHOR,
+                        INDEX_FIELD_NAME_ATITLE,
+                        INDEX_FIELD_NAME_JTITLE,
+                        INDEX_FIELD_NAME_YEAR
+                };
+        //String[] excludeFields = new String[]{"*"};
+        builder.fetchSource(includeFields, null);
+
+        final SearchRequest searchRequest = new SearchRequest(configuration.getElastic().getIndex());
+        searchRequest.searchType(SearchType.DFS_QUERY_THEN_FETCH);
+        searchRequest.source(builder);
+        return searchRequest;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<BlockingHit> toHits(SearchResponse response) {
+        final List<BlockingHit> hits = new ArrayList<>();
+        for (SearchHit searchHit : response.getHits()) {
+            final Map<String, Object> source = searchHit.getSourceAsMap();
+            final BlockingHit hit = new BlockingHit();
+            hit.setId((String) source.get(INDEX_FIELD_NAME_ID));
+            hit.setDOI((String) source.get(INDEX_FIELD_NAME_DOI));
+            hit.setHalId((String) source.get(INDEX_FIELD_NAME_HALID));
+            hit.setFirstAuthor((String) source.get(INDEX_FIELD_NAME_FIRST_AUTHOR));
+            hit.setAtitles((List<String>) source.get(INDEX_FIELD_NAME_ATITLE));
+            hit.setJtitles((List<String>) source.get(INDEX_FIELD_NAME_JTITLE));
+            hit.setAbbreviatedTitles((List<String>) source.get(INDEX_FIELD_NAME_ABBREV_TITLE));
+            final Object year = source.get(INDEX_FIELD_NAME_YEAR);
+            if (year != null)
+                hit.setYear("" + year);
+            hit.setScore(searchHit.getScore());
+            hits.add(hit);
+        }
+        return hits;
+    }
+
+    @Override
+    public void close() {
+        esClient.close();
+    }
+}
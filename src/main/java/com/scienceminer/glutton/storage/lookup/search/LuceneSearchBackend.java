@@ -0,0 +1,175 @@
+package com.scienceminer.glutton.storage.lookup.search;
+
+import com.scienceminer.glutton.configuration.LookupConfiguration;
+import com.scienceminer.glutton.exception.ServiceException;
+import com.scienceminer.glutton.indexing.LuceneIndexer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.NormsFieldExistsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.QueryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Blocking with an embedded Lucene index, searched in-process through memory mapped files, built
+ * with the lucene_index command ({@link LuceneIndexer}). There is no network round trip, the
+ * searches are then executed directly by the calling thread.
+ */
+public class LuceneSearchBackend implements SearchBackend {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LuceneSearchBackend.class);
+
+    private final String indexPath;
+    private final Directory directory;
+    private final SearcherManager searcherManager;
+    // analysis of the query texts, same as the one of the indexed fields
+    private final QueryBuilder queryBuilder;
+
+    public LuceneSearchBackend(LookupConfiguration configuration) {
+        this.indexPath = configuration.getLucene().getPath();
+        try {
+            this.directory = new MMapDirectory(Paths.get(indexPath));
+            if (!DirectoryReader.indexExists(directory)) {
+                throw new ServiceException(500, "No Lucene index found in " + indexPath +
+                    ", the index must be built first with the lucene_index command.");
+            }
+            this.searcherManager = new SearcherManager(directory, null);
+        } catch (IOException e) {
+            throw new ServiceException(500, "Cannot open the Lucene index in " + indexPath, e);
+        }
+        this.queryBuilder = new QueryBuilder(LuceneIndexer.createAnalyzer());
+
+        LOGGER.info("Lucene index opened in " + indexPath);
+    }
+
+    @Override
+    public List<BlockingHit> search(BlockingQuery query, int size) throws IOException {
+        final IndexSearcher searcher = searcherManager.acquire();
+        try {
+            final TopDocs topDocs = searcher.search(toQuery(query), size);
+            final List<BlockingHit> hits = new ArrayList<>();
+            for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                hits.add(toHit(searcher.doc(scoreDoc.doc), scoreDoc.score));
+            }
+            return hits;
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    @Override
+    public void searchAsync(BlockingQuery query, int size, BiConsumer<List<BlockingHit>, Throwable> callback) {
+        List<BlockingHit> hits;
+        try {
+            hits = search(query, size);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Lucene query processing failure", e);
+            callback.accept(null, new ServiceException(500, "Cannot search the Lucene index", e));
+            return;
+        }
+        callback.accept(hits, null);
+    }
+
+    @Override
+    public long count() throws IOException {
+        final IndexSearcher searcher = searcherManager.acquire();
+        try {
+            return searcher.count(new MatchAllDocsQuery());
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    @Override
+    public String getIndexName() {
+        return indexPath;
+    }
+
+    private Query toQuery(BlockingQuery query) {
+        final BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        for (BlockingQuery.Clause clause : query.getClauses()) {
+            final BooleanClause.Occur occur = toOccur(clause.getOccur());
+            Query clauseQuery;
+            switch (clause.getType()) {
+                case MATCH:
+                    clauseQuery = queryBuilder.createBooleanQuery(clause.getField(), clause.getValue());
+                    break;
+                case TERM:
+                    if (LuceneIndexer.FIELD_ID.equals(clause.getField())) {
+                        clauseQuery = new TermQuery(new Term(LuceneIndexer.FIELD_ID, clause.getValue()));
+                    } else {
+                        // the keyword fields are indexed lowercased and folded, the term is then
+                        // normalized in the same way
+                        clauseQuery = queryBuilder.createBooleanQuery(clause.getField(), clause.getValue(),
+                            BooleanClause.Occur.MUST);
+                    }
+                    break;
+                default:
+                    clauseQuery = new NormsFieldExistsQuery(clause.getField());
+            }
+
+            if (clauseQuery == null) {
+                // nothing left after the analysis, e.g. only stop words
+                if (occur != BooleanClause.Occur.MUST)
+                    continue;
+                clauseQuery = new MatchNoDocsQuery();
+            }
+            builder.add(clauseQuery, occur);
+        }
+        return builder.build();
+    }
+
+    private static BooleanClause.Occur toOccur(BlockingQuery.Occur occur) {
+        switch (occur) {
+            case MUST:
+                return BooleanClause.Occur.MUST;
+            case MUST_NOT:
+                return BooleanClause.Occur.MUST_NOT;
+            default:
+                return BooleanClause.Occur.SHOULD;
+        }
+    }
+
+    private static BlockingHit toHit(Document document, float score) {
+        final BlockingHit hit = new BlockingHit();
+        hit.setId(document.get(LuceneIndexer.FIELD_ID));
+        hit.setDOI(document.get(LuceneIndexer.FIELD_DOI));
+        hit.setHalId(document.get(LuceneIndexer.FIELD_HALID));
+        hit.setFirstAuthor(document.get(LuceneIndexer.FIELD_FIRST_AUTHOR));
+        hit.setAtitles(Arrays.asList(document.getValues(LuceneIndexer.FIELD_TITLE)));
+        hit.setJtitles(Arrays.asList(document.getValues(LuceneIndexer.FIELD_JOURNAL)));
+        hit.setAbbreviatedTitles(Arrays.asList(document.getValues(LuceneIndexer.FIELD_ABBREVIATED_JOURNAL)));
+        hit.setYear(document.get(LuceneIndexer.FIELD_YEAR));
+        hit.setScore(score);
+        return hit;
+    }
+
+    @Override
+    public void close() {
+        try {
+            searcherManager.close();
+            directory.close();
+        } catch (IOException e) {
+            LOGGER.warn("Error when closing the Lucene index", e);
+        }
+    }
+}
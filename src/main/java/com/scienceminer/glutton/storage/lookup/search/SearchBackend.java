@@ -0,0 +1,37 @@
+package com.scienceminer.glutton.storage.lookup.search;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Search engine used for the blocking of the metadata lookups, i.e. for retrieving the candidate 
+ * records to be matched against the query metadata. The hits are returned ordered by decreasing 
+ * score.
+ */
+public interface SearchBackend {
+
+    String ELASTIC_SEARCH = "elasticSearch";
+    String SOLR = "solr";
+    String LUCENE = "lucene";
+
+    List<BlockingHit> search(BlockingQuery query, int size) throws IOException;
+
+    /**
+     * Search without blocking the caller when the backend supports it, the callback receives the 
+     * hits or the failure of the search
+     */
+    void searchAsync(BlockingQuery query, int size, BiConsumer<List<BlockingHit>, Throwable> callback);
+
+    /**
+     * @return the number of indexed records
+     */
+    long count() throws IOException;
+
+    /**
+     * @return the name of the index, for information
+     */
+    String getIndexName();
+
+    void close();
+}
@@ -0,0 +1,265 @@
+package com.scienceminer.glutton.storage.lookup.search;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.scienceminer.glutton.configuration.LookupConfiguration;
+import com.scienceminer.glutton.exception.ServiceException;
+import com.scienceminer.glutton.indexing.SolrIndexer;
+import org.apache.http.Consts;
+import org.apache.http.HttpResponse;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
+import org.apache.solr.client.solrj.util.ClientUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiConsumer;
+
+import static com.scienceminer.glutton.storage.lookup.MetadataMatching.*;
+
+/**
+ * Blocking with a Solr core indexed with {@link SolrIndexer}. The select requests are sent without
+ * blocking with a pool of keep-alive connections, the responses being processed by the I/O threads
+ * of the client, as with the Elasticsearch client.
+ *
+ * The blocking queries are translated into the standard Solr query syntax, the texts of the match
+ * clauses and the terms being analyzed with the analyzer of their field.
+ */
+public class SolrSearchBackend implements SearchBackend {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SolrSearchBackend.class);
+
+    private static final int CONNECT_TIMEOUT = 30000;
+    private static final int SOCKET_TIMEOUT = 60000;
+
+    private static final String RETURNED_FIELDS = String.join(",", SolrIndexer.FIELD_ID, INDEX_FIELD_NAME_DOI,
+        INDEX_FIELD_NAME_HALID, INDEX_FIELD_NAME_FIRST_AUTHOR, INDEX_FIELD_NAME_ATITLE, INDEX_FIELD_NAME_JTITLE,
+        INDEX_FIELD_NAME_ABBREV_TITLE, INDEX_FIELD_NAME_YEAR, "score");
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final LookupConfiguration configuration;
+    private final String selectUrl;
+    private final CloseableHttpAsyncClient httpClient;
+
+    // max number of search requests in flight
+    private final Semaphore inFlightSearches;
+
+    public SolrSearchBackend(LookupConfiguration configuration) {
+        this.configuration = configuration;
+        this.selectUrl = SolrIndexer.getCoreUrl(configuration) + "/select";
+
+        final RequestConfig requestConfig = RequestConfig.custom()
+            .setConnectTimeout(CONNECT_TIMEOUT)
+            .setSocketTimeout(SOCKET_TIMEOUT)
+            .build();
+        this.httpClient = HttpAsyncClients.custom()
+            .setMaxConnTotal(configuration.getSolr().getMaxConnections())
+            .setMaxConnPerRoute(configuration.getSolr().getMaxConnections())
+            .setDefaultRequestConfig(requestConfig)
+            .build();
+        httpClient.start();
+
+        this.inFlightSearches = new Semaphore(configuration.getMaxAcceptedRequests());
+    }
+
+    @Override
+    public List<BlockingHit> search(BlockingQuery query, int size) throws IOException {
+        final CompletableFuture<List<BlockingHit>> result = new CompletableFuture<>();
+        searchAsync(query, size, (hits, throwable) -> {
+            if (throwable != null)
+                result.completeExceptionally(throwable);
+            else
+                result.complete(hits);
+        });
+        return await(result);
+    }
+
+    @Override
+    public void searchAsync(BlockingQuery query, int size, BiConsumer<List<BlockingHit>, Throwable> callback) {
+        if (!inFlightSearches.tryAcquire()) {
+            throw new ServiceException(503, "Cannot get more requests. Retry the request later.");
+        }
+
+        select(toSolrQuery(query), size).whenComplete((response, throwable) -> {
+            inFlightSearches.release();
+            if (throwable != null) {
+                callback.accept(null, throwable);
+                return;
+            }
+            final List<BlockingHit> hits;
+            try {
+                hits = toHits(response);
+            } catch (RuntimeException e) {
+                callback.accept(null, new ServiceException(500, "Cannot parse the response from Solr", e));
+                return;
+            }
+            callback.accept(hits, null);
+        });
+    }
+
+    @Override
+    public long count() throws IOException {
+        final JsonNode response = await(select("*:*", 0));
+        return response.path("response").path("numFound").asLong();
+    }
+
+    @Override
+    public String getIndexName() {
+        return configuration.getSolr().getCore();
+    }
+
+    /**
+     * Translate the blocking query in the standard query syntax, the default operator being OR
+     */
+    protected static String toSolrQuery(BlockingQuery query) {
+        final StringBuilder solrQuery = new StringBuilder();
+        for (BlockingQuery.Clause clause : query.getClauses()) {
+            if (solrQuery.length() > 0)
+                solrQuery.append(' ');
+
+            switch (clause.getOccur()) {
+                case MUST:
+                    solrQuery.append('+');
+                    break;
+                case MUST_NOT:
+                    solrQuery.append('-');
+                    break;
+                default:
+            }
+
+            // the unique key of the Solr core is "id"
+            final String field = "_id".equals(clause.getField()) ? SolrIndexer.FIELD_ID : clause.getField();
+            solrQuery.append(field).append(':');
+            switch (clause.getType()) {
+                case MATCH:
+                    solrQuery.append('(').append(ClientUtils.escapeQueryChars(clause.getValue())).append(')');
+                    break;
+                case TERM:
+                    solrQuery.append(ClientUtils.escapeQueryChars(clause.getValue()));
+                    break;
+                default:
+                    solrQuery.append("[* TO *]");
+            }
+        }
+        return solrQuery.toString();
+    }
+
+    private CompletableFuture<JsonNode> select(String solrQuery, int rows) {
+        final List<NameValuePair> params = new ArrayList<>();
+        params.add(new BasicNameValuePair("q", solrQuery));
+        params.add(new BasicNameValuePair("q.op", "OR"));
+        // the whole text of a clause is given to the analyzer of the field, as for Elasticsearch
+        params.add(new BasicNameValuePair("sow", "false"));
+        params.add(new BasicNameValuePair("rows", String.valueOf(rows)));
+        params.add(new BasicNameValuePair("fl", RETURNED_FIELDS));
+        params.add(new BasicNameValuePair("wt", "json"));
+
+        final HttpPost request = new HttpPost(selectUrl);
+        request.setEntity(new UrlEncodedFormEntity(params, Consts.UTF_8));
+
+        final CompletableFuture<JsonNode> result = new CompletableFuture<>();
+        try {
+            httpClient.execute(request, new FutureCallback<HttpResponse>() {
+                @Override
+                public void completed(HttpResponse response) {
+                    final int status = response.getStatusLine().getStatusCode();
+                    try {
+                        if (status != HttpURLConnection.HTTP_OK) {
+                            EntityUtils.consume(response.getEntity());
+                            result.completeExceptionally(new ServiceException(500,
+                                "Solr query processing failure. Error code: " + status));
+                        } else {
+                            try (InputStream content = response.getEntity().getContent()) {
+                                result.complete(MAPPER.readTree(content));
+                            }
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        result.completeExceptionally(new ServiceException(500, "Cannot parse the response from Solr", e));
+                    }
+                }
+
+                @Override
+                public void failed(Exception ex) {
+                    LOGGER.error("solr query processing failure", ex);
+                    result.completeExceptionally(new ServiceException(500, "Cannot connect to Solr", ex));
+                }
+
+                @Override
+                public void cancelled() {
+                    result.completeExceptionally(new ServiceException(500, "The request to Solr was cancelled"));
+                }
+            });
+        } catch (RuntimeException e) {
+            result.completeExceptionally(new ServiceException(500, "Error when sending the search request", e));
+        }
+        return result;
+    }
+
+    private static List<BlockingHit> toHits(JsonNode response) {
+        final List<BlockingHit> hits = new ArrayList<>();
+        for (JsonNode doc : response.path("response").path("docs")) {
+            final BlockingHit hit = new BlockingHit();
+            hit.setId(textValue(doc, SolrIndexer.FIELD_ID));
+            hit.setDOI(textValue(doc, INDEX_FIELD_NAME_DOI));
+            hit.setHalId(textValue(doc, INDEX_FIELD_NAME_HALID));
+            hit.setFirstAuthor(textValue(doc, INDEX_FIELD_NAME_FIRST_AUTHOR));
+            hit.setAtitles(textValues(doc, INDEX_FIELD_NAME_ATITLE));
+            hit.setJtitles(textValues(doc, INDEX_FIELD_NAME_JTITLE));
+            hit.setAbbreviatedTitles(textValues(doc, INDEX_FIELD_NAME_ABBREV_TITLE));
+            hit.setYear(textValue(doc, INDEX_FIELD_NAME_YEAR));
+            hit.setScore(doc.path("score").asDouble());
+            hits.add(hit);
+        }
+        return hits;
+    }
+
+    private static String textValue(JsonNode doc, String field) {
+        final JsonNode value = doc.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    private static List<String> textValues(JsonNode doc, String field) {
+        final List<String> values = new ArrayList<>();
+        for (JsonNode value : doc.path(field)) {
+            values.add(value.asText());
+        }
+        return values;
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ServiceException)
+                throw (ServiceException) e.getCause();
+            throw new IOException("Solr query processing failure", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while querying Solr", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            LOGGER.warn("Error when closing the Solr client", e);
+        }
+    }
+}
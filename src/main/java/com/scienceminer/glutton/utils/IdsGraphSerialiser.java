@@ -0,0 +1,125 @@
+package com.scienceminer.glutton.utils;
+
+import com.scienceminer.glutton.data.IdsGraphData;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact binary format of the identifiers of a DOI:
+ * - the version of the format,
+ * - a byte with one bit per identifier, set if the identifier is present,
+ * - for each present identifier, in the order of the bits, its length in bytes as a varint followed
+ *   by its UTF-8 bytes.
+ *
+ * The record is decoded directly from the LMDB buffer, without the class descriptions and object
+ * graph handling of the FST serialization.
+ */
+public class IdsGraphSerialiser {
+
+    public static final byte VERSION = 0x01;
+
+    private static final int PMID = 0;
+    private static final int PMCID = 1;
+    private static final int ISTEX_ID = 2;
+    private static final int ARK = 3;
+    private static final int MESH = 4;
+    private static final int PII = 5;
+    private static final int HAL_ID = 6;
+    private static final int OA_LINK = 7;
+
+    private static final int NB_FIELDS = 8;
+
+    public static byte[] serialize(IdsGraphData data) {
+        final String[] fields = new String[NB_FIELDS];
+        fields[PMID] = data.getPmid();
+        fields[PMCID] = data.getPmcid();
+        fields[ISTEX_ID] = data.getIstexId();
+        fields[ARK] = data.getArk();
+        fields[MESH] = data.getMesh();
+        fields[PII] = data.getPii();
+        fields[HAL_ID] = data.getHalId();
+        fields[OA_LINK] = data.getOaLink();
+
+        int mask = 0;
+        for (int i = 0; i < NB_FIELDS; i++) {
+            if (fields[i] != null)
+                mask |= 1 << i;
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream(64);
+        output.write(VERSION);
+        output.write(mask);
+        for (int i = 0; i < NB_FIELDS; i++) {
+            if (fields[i] == null)
+                continue;
+            byte[] bytes = fields[i].getBytes(StandardCharsets.UTF_8);
+            writeVarint(output, bytes.length);
+            output.write(bytes, 0, bytes.length);
+        }
+        return output.toByteArray();
+    }
+
+    public static IdsGraphData deserialize(ByteBuffer data) throws IOException {
+        final ByteBuffer buffer = data.duplicate();
+        if (buffer.remaining() < 2)
+            throw new IOException("Truncated identifiers record");
+
+        final byte version = buffer.get();
+        if (version != VERSION)
+            throw new IOException("Unknown version of the identifiers record: " + version);
+
+        final int mask = buffer.get() & 0xFF;
+        final IdsGraphData result = new IdsGraphData();
+        for (int i = 0; i < NB_FIELDS; i++) {
+            if ((mask & (1 << i)) == 0)
+                continue;
+            final String value = readString(buffer);
+            switch (i) {
+                case PMID: result.setPmid(value); break;
+                case PMCID: result.setPmcid(value); break;
+                case ISTEX_ID: result.setIstexId(value); break;
+                case ARK: result.setArk(value); break;
+                case MESH: result.setMesh(value); break;
+                case PII: result.setPii(value); break;
+                case HAL_ID: result.setHalId(value); break;
+                case OA_LINK: result.setOaLink(value); break;
+            }
+        }
+        return result;
+    }
+
+    public static IdsGraphData deserialize(byte[] data) throws IOException {
+        return deserialize(ByteBuffer.wrap(data));
+    }
+
+    private static void writeVarint(ByteArrayOutputStream output, int value) {
+        while ((value & ~0x7F) != 0) {
+            output.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.write(value);
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        int length = 0;
+        int shift = 0;
+        while (true) {
+            if (!buffer.hasRemaining() || shift > 28)
+                throw new IOException("Truncated identifiers record");
+            final byte b = buffer.get();
+            length |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                break;
+            shift += 7;
+        }
+        if (length > buffer.remaining())
+            throw new IOException("Truncated identifiers record");
+
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
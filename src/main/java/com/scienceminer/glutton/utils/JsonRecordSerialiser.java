@@ -0,0 +1,146 @@
+package com.scienceminer.glutton.utils;
+
+import org.xerial.snappy.Snappy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Storage format of the JSON records as raw UTF-8 JSON, compressed or not with Snappy, prefixed
+ * by a small header:
+ * - a marker byte 0, which is never the first byte of a legacy FST+Snappy record (Snappy starts with
+ *   the varint length of the uncompressed data, which is never 0 for a serialized String),
+ * - the version of the format,
+ * - the codec of the payload (raw or Snappy).
+ *
+ * Decoding works directly on the LMDB buffer: Snappy decompresses from the direct buffer into a
+ * pooled direct buffer, so the only copy is the final one into the String.
+ */
+public class JsonRecordSerialiser {
+
+    public static final byte MARKER = 0x00;
+    public static final byte VERSION = 0x01;
+    public static final byte CODEC_RAW = 0x00;
+    public static final byte CODEC_SNAPPY = 0x01;
+
+    public static final int HEADER_SIZE = 3;
+
+    // pooled buffers larger than this size are not kept by the threads
+    private static final int MAX_POOLED_SIZE = 1024 * 1024;
+
+    private static final ThreadLocal<ByteBuffer> uncompressedBuffers =
+        ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(16 * 1024));
+
+    private static final ThreadLocal<byte[]> byteArrays =
+        ThreadLocal.withInitial(() -> new byte[16 * 1024]);
+
+    public static byte[] serialize(String json, boolean compress) throws IOException {
+        byte[] data = json.getBytes(StandardCharsets.UTF_8);
+        if (!compress) {
+            byte[] result = new byte[HEADER_SIZE + data.length];
+            writeHeader(result, CODEC_RAW);
+            System.arraycopy(data, 0, result, HEADER_SIZE, data.length);
+            return result;
+        }
+
+        byte[] result = new byte[HEADER_SIZE + Snappy.maxCompressedLength(data.length)];
+        writeHeader(result, CODEC_SNAPPY);
+        int compressedLength = Snappy.compress(data, 0, data.length, result, HEADER_SIZE);
+        return Arrays.copyOf(result, HEADER_SIZE + compressedLength);
+    }
+
+    private static void writeHeader(byte[] data, byte codec) {
+        data[0] = MARKER;
+        data[1] = VERSION;
+        data[2] = codec;
+    }
+
+    /**
+     * Return true if the data starts with the header of this format, the position of the buffer
+     * is not modified
+     */
+    public static boolean isJsonRecord(ByteBuffer data) {
+        int pos = data.position();
+        return data.remaining() >= HEADER_SIZE && data.get(pos) == MARKER && data.get(pos + 1) == VERSION;
+    }
+
+    public static boolean isJsonRecord(byte[] data) {
+        return data.length >= HEADER_SIZE && data[0] == MARKER && data[1] == VERSION;
+    }
+
+    /**
+     * Decode a record in this format
+     */
+    public static String deserialize(ByteBuffer data) throws IOException {
+        if (!isJsonRecord(data)) {
+            throw new IOException("The data is not a JSON record");
+        }
+
+        final byte codec = data.get(data.position() + 2);
+        final ByteBuffer payload = data.duplicate();
+        payload.position(data.position() + HEADER_SIZE);
+
+        if (codec == CODEC_RAW) {
+            return toUTF8String(payload);
+        } else if (codec == CODEC_SNAPPY) {
+            if (payload.isDirect()) {
+                int length = Snappy.uncompressedLength(payload);
+                ByteBuffer uncompressed = getUncompressedBuffer(length);
+                Snappy.uncompress(payload, uncompressed);
+                return toUTF8String(uncompressed);
+            } else {
+                byte[] compressed = new byte[payload.remaining()];
+                payload.get(compressed);
+                return new String(Snappy.uncompress(compressed), StandardCharsets.UTF_8);
+            }
+        } else {
+            throw new IOException("Unknown codec for the JSON record: " + codec);
+        }
+    }
+
+    public static String deserialize(byte[] data) throws IOException {
+        return deserialize(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Decode a stored JSON record, whatever its format: this format or the legacy FST+Snappy format.
+     * Return null if the stored value is not a String (e.g. the last indexed date stored in the same
+     * database).
+     */
+    public static String deserializeRecord(ByteBuffer data) throws IOException {
+        if (isJsonRecord(data)) {
+            return deserialize(data);
+        }
+
+        Object object = BinarySerialiser.deserializeAndDecompress(data);
+        if (object instanceof String) {
+            return (String) object;
+        }
+        return null;
+    }
+
+    private static ByteBuffer getUncompressedBuffer(int length) {
+        ByteBuffer buffer = uncompressedBuffers.get();
+        if (buffer.capacity() < length) {
+            buffer = ByteBuffer.allocateDirect(length);
+            if (length <= MAX_POOLED_SIZE)
+                uncompressedBuffers.set(buffer);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    private static String toUTF8String(ByteBuffer buffer) {
+        int length = buffer.remaining();
+        byte[] bytes = byteArrays.get();
+        if (bytes.length < length) {
+            bytes = new byte[length];
+            if (length <= MAX_POOLED_SIZE)
+                byteArrays.set(bytes);
+        }
+        buffer.get(bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+}
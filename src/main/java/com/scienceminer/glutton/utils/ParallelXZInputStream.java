@@ -0,0 +1,150 @@
+package com.scienceminer.glutton.utils;
+
+import org.tukaani.xz.SeekableFileInputStream;
+import org.tukaani.xz.SeekableXZInputStream;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decompression of a multi-block xz file (as produced by xz -T or pixz) with several threads. The
+ * blocks are decompressed independently and returned in order, a few blocks ahead of the reader.
+ *
+ * A single-block xz file cannot be decompressed in parallel, it is then read sequentially.
+ */
+public class ParallelXZInputStream extends InputStream {
+
+    private final File file;
+    private final int blockCount;
+    private final int prefetch;
+    private final ExecutorService executor;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+
+    private int nextBlock = 0;
+    private byte[] current = new byte[0];
+    private int position = 0;
+    private boolean closed = false;
+
+    private ParallelXZInputStream(File file, int blockCount, int threads) {
+        this.file = file;
+        this.blockCount = blockCount;
+        this.prefetch = 2 * threads;
+        final AtomicInteger counter = new AtomicInteger(0);
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "xz-decompression-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Open an xz file, with parallel decompression when the file has several blocks and more than
+     * one thread is given
+     */
+    public static InputStream open(File file, int threads) throws IOException {
+        final SeekableXZInputStream input = new SeekableXZInputStream(new SeekableFileInputStream(file));
+        final int blockCount = input.getBlockCount();
+        if (threads <= 1 || blockCount <= 1)
+            return input;
+
+        for (int i = 0; i < blockCount; i++) {
+            if (input.getBlockSize(i) > Integer.MAX_VALUE - 8) {
+                // blocks that cannot be buffered, read sequentially
+                return input;
+            }
+        }
+        input.close();
+        return new ParallelXZInputStream(file, blockCount, threads);
+    }
+
+    private void fill() throws IOException {
+        while (pending.size() < prefetch && nextBlock < blockCount) {
+            final int block = nextBlock++;
+            pending.add(executor.submit(() -> decompressBlock(block)));
+        }
+    }
+
+    private byte[] decompressBlock(int block) throws IOException {
+        // each task has its own stream, the index at the end of the file is read again but this
+        // is small compared to the decompression of a block
+        try (SeekableXZInputStream input = new SeekableXZInputStream(new SeekableFileInputStream(file))) {
+            input.seekToBlock(block);
+            final byte[] data = new byte[(int) input.getBlockSize(block)];
+            int offset = 0;
+            while (offset < data.length) {
+                int len = input.read(data, offset, data.length - offset);
+                if (len == -1)
+                    throw new IOException("Truncated xz block " + block + " in " + file.getName());
+                offset += len;
+            }
+            return data;
+        }
+    }
+
+    private boolean nextBuffer() throws IOException {
+        if (closed)
+            throw new IOException("Stream closed");
+        fill();
+        final Future<byte[]> future = pending.poll();
+        if (future == null)
+            return false;
+        try {
+            current = future.get();
+            position = 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while decompressing " + file.getName(), e);
+        } catch (ExecutionException e) {
+            throw new IOException("Cannot decompress " + file.getName(), e.getCause());
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        while (position == current.length) {
+            if (!nextBuffer())
+                return -1;
+        }
+        return current[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+        while (position == current.length) {
+            if (!nextBuffer())
+                return -1;
+        }
+        final int n = Math.min(len, current.length - position);
+        System.arraycopy(current, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return current.length - position;
+    }
+
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        for (Future<byte[]> future : pending) {
+            future.cancel(true);
+        }
+        pending.clear();
+        executor.shutdownNow();
+    }
+}
@@ -9,7 +9,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.scienceminer.glutton.storage.lookup.CrossrefMetadataLookup;
-import com.scienceminer.glutton.storage.lookup.MetadataMatching;
+import com.scienceminer.glutton.storage.lookup.RecordIndexKeys;
+import com.scienceminer.glutton.indexing.ElasticSearchAsyncIndexer;
+import com.scienceminer.glutton.indexing.ElasticSearchIndexer;
 import com.scienceminer.glutton.configuration.LookupConfiguration;
 import com.scienceminer.glutton.reader.CrossrefJsonlReader;
 
@@ -21,27 +23,51 @@ import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.*;  
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.charset.StandardCharsets;
-import java.util.zip.GZIPInputStream;
-import java.util.function.Consumer;
 
 import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
 
 import static org.apache.commons.lang3.StringUtils.isNotEmpty;
+import static org.apache.commons.lang3.StringUtils.lowerCase;
 
 /**
  * Load incrementally updates based on last indexed date information. 
- * When the incremental load operations are realized, be sure to call the close() method
- * to ensure that all Executors are terminated.
  *
+ * The update is a pipeline of stages, each stage running in its own thread and the stages being 
+ * linked by bounded queues, so that a slow stage makes the previous ones wait:
+ * - the fetching stage sends the Crossref REST API requests one after the other following the 
+ *   cursor, a few pages of results ahead of the parsing,
+ * - the parsing stage parses the records of each page and optionally writes the page in an 
+ *   incremental dump file,
+ * - the storing stage writes the records of each page in a single LMDB write transaction,
+ * - the indexing stage sends the stored records to the search index (optional).
+ * The number of pages waiting in front of each stage is exposed as a metric.
+ *
+ * The task returns when all the records are stored and indexed. The last indexed date is advanced
+ * only when all the stages completed without failure, otherwise the next daily update starts again
+ * from the previous last indexed date, so that the records of this update are not skipped.
  */
 public class IncrementalLoaderTask implements Runnable {
     private static final Logger LOGGER = LoggerFactory.getLogger(IncrementalLoaderTask.class);
 
+    // max number of pages of results waiting in front of a stage
+    private static final int QUEUE_CAPACITY = 2;
+
+    // max number of days of updates caught up by a daily update after failed updates
+    private static final int MAX_CATCH_UP_DAYS = 7;
+
+    private static final Page END_OF_PAGES = new Page(0, Collections.emptyList());
+    private static final RecordBatch END_OF_RECORDS = new RecordBatch(0);
+
     private CrossrefMetadataLookup metadataLookup;
     private LocalDateTime lastIndexed; 
     private LookupConfiguration configuration;
@@ -52,17 +78,26 @@ public class IncrementalLoaderTask implements Runnable {
     private Counter counterIndexedRecords;
     private Counter counterFailedIndexedRecords;
 
-    // if true, we will also index the incremental dump files in elasticsearch during the task via 
-    // the external indexing module
+    // if true, we will also index the incremental records in elasticsearch during the task, the 
+    // records parsed for the storage being directly indexed
     private boolean indexing = false;
     private boolean daily = false;
 
-    private DateTimeFormatter formatter = DateTimeFormatter.ofPattern("YYYY-MM-dd");
-    private LocalDate today;
+    private DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    // the queues are kept from one run to the next (they are empty at the end of a run), so that 
+    // the metrics are registered once
+    private final BlockingQueue<Page> parsingQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final BlockingQueue<RecordBatch> storingQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final BlockingQueue<RecordBatch> indexingQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+    // true if a stage failed during the current run, some records being then not loaded
+    private final AtomicBoolean failed = new AtomicBoolean(false);
 
     public IncrementalLoaderTask(CrossrefMetadataLookup metadataLookup, 
                                 LocalDateTime lastIndexed, 
                                 LookupConfiguration configuration,
+                                MetricRegistry metrics,
                                 Meter meter,
                                 Counter counterInvalidRecords,
                                 Counter counterIndexedRecords,
@@ -83,47 +118,121 @@ public class IncrementalLoaderTask implements Runnable {
 
         this.indexing = indexing;
         this.daily = daily;
-        this.today = LocalDate.now();
 
-        if (this.daily) {
-            // the last indexed time need to be ajusted to the previous day
-            LocalDate yesterday = today.minusDays(1);
-            this.lastIndexed = yesterday.atStartOfDay();;
-        }
+        metrics.register(MetricRegistry.name(IncrementalLoaderTask.class, "parsingLag"), 
+            (Gauge<Integer>) parsingQueue::size);
+        metrics.register(MetricRegistry.name(IncrementalLoaderTask.class, "storingLag"), 
+            (Gauge<Integer>) storingQueue::size);
+        metrics.register(MetricRegistry.name(IncrementalLoaderTask.class, "indexingLag"), 
+            (Gauge<Integer>) indexingQueue::size);
     }
 
     public void run()  {
-        /**
-         * Requests are sent one after the other and cursors are used to obtain the next set of updated records.
-         * After each request: 
-         * - a new request using the next-cursor field is submitted to the pool
-         * - the set of results is written in an external file to augment the incremental
-         * dump files and to be indexed by ES (as it is done by an external node.js script).  
-         * - the crossref records will be loaded when an incremental dump file is completed, in parallel
-         *
-         * Request pool to get data from api.crossref.org without exceeding provided time limits.
-         *
-         **/
-
         // "from-index-date" but we get > 1 million per day, or "from-update-date" (a few hundred thousands)
         // &cursor=* for first query then use "next-cursor" field as value
         // rows=20 by default, max is 1000
 
-        boolean responseEmpty = false;
-        String cursorValue = "*";
-        int nbFiles = 1000000;
+        final LocalDate today = LocalDate.now();
+        if (this.daily) {
+            // the last indexed time need to be ajusted to the previous day, at each scheduled run, 
+            // unless a previous run failed and did not advance the recorded last indexed date
+            LocalDate yesterday = today.minusDays(1);
+            this.lastIndexed = yesterday.atStartOfDay();
+            final LocalDateTime recordedLastIndexed = metadataLookup.getLastIndexed();
+            if (recordedLastIndexed != null && recordedLastIndexed.isBefore(this.lastIndexed)) {
+                if (recordedLastIndexed.isBefore(yesterday.minusDays(MAX_CATCH_UP_DAYS).atStartOfDay())) {
+                    // e.g. a snapshot loaded without gap update, too long for a daily update
+                    LOGGER.warn("The last indexed date " + recordedLastIndexed.format(formatter) + 
+                        " is too old for the daily update, the gap update must be run to cover it");
+                } else {
+                    LOGGER.info("The previous update did not complete, updating from " + recordedLastIndexed.format(formatter));
+                    this.lastIndexed = recordedLastIndexed;
+                }
+            }
+        }
+        failed.set(false);
         System.out.println(this.lastIndexed.format(formatter));
 
-        String todayStr = this.today.format(DateTimeFormatter.ISO_DATE);
+        String todayStr = today.format(DateTimeFormatter.ISO_DATE);
+
+        File crossrefFileDirectory = null;
+        if (configuration.getCrossref().getWriteProcessFiles()) {
+            crossrefFileDirectory = new File(configuration.getCrossref().getDumpPath() + 
+                File.separator + todayStr);
+            if (!crossrefFileDirectory.mkdirs()) {
+                LOGGER.error("Error when creating the directory for storing crossref incremental file: " + 
+                    crossrefFileDirectory.getPath());
+            }
+        }
+
+        if (indexing) {
+            // create the index with its settings and mapping if it does not exist yet
+            ElasticSearchIndexer.getInstance(configuration).setupIndex(true);
+        }
+
+        final AtomicInteger threadCounter = new AtomicInteger(0);
+        final ExecutorService stages = Executors.newFixedThreadPool(indexing ? 3 : 2, r -> {
+            Thread thread = new Thread(r, "crossref-update-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        final File pageDirectory = crossrefFileDirectory;
+        stages.execute(() -> parsePages(pageDirectory));
+        stages.execute(this::storeRecords);
+        if (indexing)
+            stages.execute(this::indexRecords);
+        stages.shutdown();
+
+        try {
+            fetchPages();
+        } finally {
+            // the other stages stop once the pages already fetched are processed
+            putUninterruptibly(parsingQueue, END_OF_PAGES);
+        }
+
+        // waiting that no more loading and no more indexing take place
+        System.out.println("Waiting that loading and indexing tasks are completed...");
+        try {
+            stages.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("Interrupted while waiting for the loading of the incremental records");
+            return;
+        }
+        if (indexing) {
+            ElasticSearchAsyncIndexer.getInstance(configuration).awaitPending();
+            ElasticSearchIndexer.getInstance(configuration).refreshIndex(configuration.getElastic().getIndex());
+        }
 
-        File crossrefFileDirectory = new File(configuration.getCrossref().getDumpPath() + 
-            File.separator + todayStr);
-        if (!crossrefFileDirectory.mkdirs()) {
-            LOGGER.error("Error when creating the directory for storing crossref incremental file: " + 
-                crossrefFileDirectory.getPath());
+        // the update is complete only if no stage failed, the next update would otherwise skip the
+        // records not loaded
+        if (failed.get()) {
+            LOGGER.error("The Crossref update did not complete, the last indexed date is not updated");
+        } else {
+            metadataLookup.setLastIndexed(LocalDateTime.now());  
         }
 
-        while(!responseEmpty) {
+        // optionally clean the directory of incremental files
+        if (crossrefFileDirectory != null && configuration.getCrossref().getCleanProcessFiles()) {
+            System.out.println("Cleaning incremental files...");        
+            try {
+                FileUtils.deleteDirectory(crossrefFileDirectory);
+            } catch(IOException e) {
+                LOGGER.error("Fail to delete directory of incremental crossref files: " + 
+                    crossrefFileDirectory.getPath());
+            }
+        }
+    }
+
+    /**
+     * Fetching stage: requests are sent one after the other and cursors are used to obtain the 
+     * next set of updated records, the fetching waits when the parsing is late.
+     */
+    private void fetchPages() {
+        String cursorValue = "*";
+        int nbFiles = 1000000;
+
+        while (true) {
             Map<String, String> arguments = new HashMap<String,String>();
         
             arguments.put("cursor", cursorValue);
@@ -149,195 +258,208 @@ public class IncrementalLoaderTask implements Runnable {
 
                 jsonObjectsStr = response.results;
                 cursorValue = response.nextCursor;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOGGER.error("Crossref update interrupted");
+                failed.set(true);
+                return;
             } catch (Exception e) {
                 LOGGER.error("Crossref update call failed", e);
+                failed.set(true);
             }
 
             if (jsonObjectsStr == null || jsonObjectsStr.size() == 0)
-                break;
+                return;
 
-            String crossrefFileName = configuration.getCrossref().getDumpPath() + 
-                File.separator + todayStr + File.separator;
-            if (daily) {
-                crossrefFileName += "D";
-            } else {
-                crossrefFileName += "G";
+            try {
+                parsingQueue.put(new Page(nbFiles++, jsonObjectsStr));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOGGER.error("Crossref update interrupted");
+                failed.set(true);
+                return;
             }
-            crossrefFileName += nbFiles + ".json.gz";
-            File crossrefFile = new File(crossrefFileName);
+        }
+    }
 
-            // write the file synchronously
-            try {
-                Writer writer = new OutputStreamWriter(new GZIPOutputStream(
-                    new FileOutputStream(crossrefFile)), StandardCharsets.UTF_8);
-                boolean first = true;
-                for(String result : jsonObjectsStr) {
-                    if (first)
-                        first = false;
-                    else 
-                        writer.write("\n");
-                    writer.write(result);
+    /**
+     * Parsing stage, the pages are optionally written as incremental dump files
+     */
+    private void parsePages(File crossrefFileDirectory) {
+        final CrossrefJsonlReader reader = new CrossrefJsonlReader(configuration);
+        try {
+            while (true) {
+                final Page page = parsingQueue.take();
+                if (page == END_OF_PAGES)
+                    return;
+
+                if (crossrefFileDirectory != null)
+                    writePage(crossrefFileDirectory, page);
+
+                final RecordBatch batch = new RecordBatch(page.results.size());
+                try {
+                    reader.load(page.results, counterInvalidRecords, crossrefData -> batch.add(crossrefData));
+                } catch (Exception e) {
+                    LOGGER.error("Error while parsing the page " + page.number + " of Crossref results", e);
+                    failed.set(true);
                 }
-                writer.close();
-            } catch (Exception e) {
-                LOGGER.error("Writing incremental dump file failed: " + crossrefFile.getPath(), e);
-            } 
-
-            // load in another thread
-            ExecutorService executorLoading = Executors.newSingleThreadExecutor();
-            Runnable taskLoading = new LoadCrossrefFile(crossrefFile, 
-                jsonObjectsStr, this.configuration, meter, counterInvalidRecords, counterIndexedRecords, counterFailedIndexedRecords);
-            executorLoading.submit(taskLoading);
-
-            nbFiles++;
-            
-            /*if (indexing) {
-                // index in another thread 
-                ExecutorService executorIndexing = Executors.newSingleThreadExecutor();
-                Runnable taskIndexing = new IndexCrossrefFile(crossrefFile, configuration);
-                executorIndexing.submit(taskIndexing);
-            }*/
-
-            if (jsonObjectsStr == null || jsonObjectsStr.size() == 0)
-                responseEmpty = true;
+                if (batch.size() > 0)
+                    storingQueue.put(batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("Crossref update parsing interrupted");
+            failed.set(true);
+            // the fetching stage must not wait for the parsing anymore
+            parsingQueue.clear();
+        } finally {
+            putUninterruptibly(storingQueue, END_OF_RECORDS);
         }
+    }
 
-        // possibly update with the lastest indexed date obtained from this file
-        metadataLookup.setLastIndexed(LocalDateTime.now());  
-
-        // waiting that no more loading and no more indexing take place to optionally clean the
-        // directory of incremental files
-        // note: rather than managing termination of threads, we look at storage/index size
-        // for convenience
-        MetadataMatching metadataMatching = 
-            MetadataMatching.getInstance(this.configuration, this.metadataLookup, null);
-
-        if (configuration.getCrossref().getCleanProcessFiles()) {
-
-            long currentSize = metadataLookup.getFullSize();
-            long esIndexSize = metadataMatching.getSize();
+    private void writePage(File crossrefFileDirectory, Page page) {
+        String crossrefFileName = crossrefFileDirectory.getPath() + File.separator;
+        if (daily) {
+            crossrefFileName += "D";
+        } else {
+            crossrefFileName += "G";
+        }
+        crossrefFileName += page.number + ".json.gz";
+        File crossrefFile = new File(crossrefFileName);
+
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(
+                new FileOutputStream(crossrefFile)), StandardCharsets.UTF_8)) {
+            boolean first = true;
+            for(String result : page.results) {
+                if (first)
+                    first = false;
+                else 
+                    writer.write("\n");
+                writer.write(result);
+            }
+        } catch (Exception e) {
+            LOGGER.error("Writing incremental dump file failed: " + crossrefFile.getPath(), e);
+        } 
+    }
 
-            boolean isChanging = true;
+    /**
+     * Storing stage, the records of a page are stored in a single LMDB write transaction
+     */
+    private void storeRecords() {
+        try {
+            while (true) {
+                final RecordBatch batch = storingQueue.take();
+                if (batch == END_OF_RECORDS)
+                    return;
 
-            System.out.println("Waiting that loading and indexing tasks are completed...");
-            while(isChanging) {
                 try {
-                    TimeUnit.SECONDS.sleep(5);
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                }
-
-                long newCurrentSize = metadataLookup.getFullSize();
-                long newEsIndexSize = metadataMatching.getSize();
-
-                if (newCurrentSize == currentSize && newEsIndexSize == esIndexSize) {
-                    isChanging = false;
+                    metadataLookup.storeRecords(batch.keys, batch.records, batch.indexKeys, meter);
+                } catch (Exception e) {
+                    LOGGER.error("Cannot store a batch of " + batch.size() + " Crossref records", e);
+                    failed.set(true);
+                    continue;
                 }
-
-                currentSize = newCurrentSize;
-                esIndexSize = newEsIndexSize;
+                if (indexing)
+                    indexingQueue.put(batch);
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("Crossref update storing interrupted");
+            failed.set(true);
+            storingQueue.clear();
+        } finally {
+            if (indexing)
+                putUninterruptibly(indexingQueue, END_OF_RECORDS);
+        }
+    }
 
-            System.out.println("Cleaning incremental files...");        
-            try {
-                FileUtils.deleteDirectory(crossrefFileDirectory);
-            } catch(IOException e) {
-                LOGGER.error("Fail to delete directory of incremental crossref files: " + 
-                    crossrefFileDirectory.getPath());
+    /**
+     * Indexing stage, the bulk requests are sent asynchronously, this stage waits when the max 
+     * number of bulk requests are in flight
+     */
+    private void indexRecords() {
+        final int batchIndexingSize = Math.max(1, configuration.getIndexingBatchSize());
+        try {
+            while (true) {
+                final RecordBatch batch = indexingQueue.take();
+                if (batch == END_OF_RECORDS)
+                    return;
+
+                for (int i = 0; i < batch.size(); i += batchIndexingSize) {
+                    try {
+                        metadataLookup.indexDocuments(
+                            new ArrayList<>(batch.documents.subList(i, Math.min(i + batchIndexingSize, batch.size()))), 
+                            true, counterIndexedRecords, counterFailedIndexedRecords);
+                    } catch (RuntimeException e) {
+                        LOGGER.error("Cannot index a batch of Crossref records", e);
+                        failed.set(true);
+                    }
+                }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("Crossref update indexing interrupted");
+            failed.set(true);
+            indexingQueue.clear();
         }
     }
 
-    class LoadCrossrefFile implements Runnable { 
-        private File crossrefFile;
-        private List<String> results;
-        private LookupConfiguration configuration;
-        private Meter meter;
-        private Counter counterInvalidRecords;
-        private Counter counterIndexedRecords;
-        private Counter counterFailedIndexedRecords;
-
-        public LoadCrossrefFile(File crossrefFile, 
-                                List<String> results, 
-                                LookupConfiguration configuration, 
-                                Meter meter,
-                                Counter counterInvalidRecords,
-                                Counter counterIndexedRecords,
-                                Counter counterFailedIndexedRecords) { 
-            this.crossrefFile = crossrefFile;
-            this.results = results;
-            this.configuration = configuration;
-            this.meter = meter;
-            this.counterInvalidRecords = counterInvalidRecords;
-            this.counterIndexedRecords = counterIndexedRecords;
-            this.counterFailedIndexedRecords = counterFailedIndexedRecords;
-        } 
-
-        @Override
-        public void run() { 
-            CrossrefJsonlReader reader = new CrossrefJsonlReader(configuration);
-            if (StringUtils.endsWithIgnoreCase(crossrefFile.getName().toString(), ".json.gz")) {
-                try (InputStream inputStreamCrossref = new GZIPInputStream(new FileInputStream(crossrefFile))) {
-                    metadataLookup.loadFromFile(inputStreamCrossref, 
-                        reader, meter, counterInvalidRecords, counterIndexedRecords, counterFailedIndexedRecords);
-                } catch (Exception e) {
-                    LOGGER.error("Error while processing " + crossrefFile.getPath(), e);
-                }  
+    /**
+     * Put an end marker in a queue, even if the current thread is interrupted, as the next stage
+     * would otherwise wait forever
+     */
+    private static <T> void putUninterruptibly(BlockingQueue<T> queue, T marker) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(marker);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
             }
         }
+        if (interrupted)
+            Thread.currentThread().interrupt();
     }
 
-    @Deprecated
-    class IndexCrossrefFile implements Runnable { 
-        /** 
-         * Index a crossref incremental file via a background external process
-         **/ 
-        private File crossrefFile;
-        private LookupConfiguration configuration;
-
-        public IndexCrossrefFile(File crossrefFile, LookupConfiguration configuration) { 
-            this.crossrefFile = crossrefFile;
-            this.configuration = configuration;
-        } 
-
-        @Override
-        public void run() { 
-            System.out.println("indexing: " + crossrefFile.getPath());
+    /**
+     * A page of results of the Crossref REST API, one JSON record per string
+     */
+    private static class Page {
+        private final int number;
+        private final List<String> results;
 
-            ProcessBuilder builder = new ProcessBuilder();
-            // command is: node main -dump ~/tmp/crossref_public_data_file_2021_01 index
-            builder.command("node", "main", "-dump", crossrefFile.getAbsolutePath(), "extend");            
-            builder.directory(new File("../indexing"));
-
-            try {
-                Process process = builder.start();
-                StreamGobbler streamGobbler = new StreamGobbler(process.getInputStream(), System.out::println);
-                Executors.newSingleThreadExecutor().submit(streamGobbler);
-                
-                int exitCode = process.waitFor();
-                if (exitCode != 0)
-                    LOGGER.warn("Indexing script leave with exit code: " + exitCode);
-            } catch(java.io.IOException ioe) {
-                LOGGER.error("IO error when executing external command: " + builder.command().toString(), ioe);
-            } catch(java.lang.InterruptedException ie) {
-                LOGGER.error("External process unexpected interruption", ie);
-            }
+        Page(int number, List<String> results) {
+            this.number = number;
+            this.results = results;
         }
     }
 
-    private static class StreamGobbler implements Runnable {
-        private InputStream inputStream;
-        private Consumer<String> consumer;
+    /**
+     * Parsed records, with their key and serialized JSON for the storage
+     */
+    private static class RecordBatch {
+        private final List<String> keys;
+        private final List<String> records;
+        private final List<JsonNode> documents;
+        private final List<RecordIndexKeys> indexKeys;
+
+        RecordBatch(int capacity) {
+            keys = new ArrayList<>(capacity);
+            records = new ArrayList<>(capacity);
+            documents = new ArrayList<>(capacity);
+            indexKeys = new ArrayList<>(capacity);
+        }
 
-        public StreamGobbler(InputStream inputStream, Consumer<String> consumer) {
-            this.inputStream = inputStream;
-            this.consumer = consumer;
+        void add(JsonNode document) {
+            keys.add(lowerCase(document.get("DOI").asText()));
+            records.add(document.toString());
+            documents.add(document);
+            indexKeys.add(RecordIndexKeys.of(document));
         }
 
-        @Override
-        public void run() {
-            new BufferedReader(new InputStreamReader(inputStream)).lines()
-              .forEach(consumer);
+        int size() {
+            return keys.size();
         }
     }
-}   
+}
@@ -0,0 +1,181 @@
+package com.scienceminer.glutton.utils.grobid;
+
+import com.scienceminer.glutton.utils.grobid.GrobidResponseStaxHandler.GrobidResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collect the raw citations submitted concurrently during a short time window and send them
+ * together to GROBID as a single processCitationList request. The batch is sent when the window
+ * expires or when the maximum number of citations in a batch is reached, whichever comes first.
+ * Identical citations of a batch are parsed only once. Each parsed citation is then dispatched to
+ * the future of the corresponding request.
+ *
+ * If GROBID answers the list request with an error (e.g. a GROBID version without the list
+ * service) or with an unexpected number of citations, the citations of the batch are sent again
+ * individually.
+ */
+public class GrobidCitationBatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(GrobidCitationBatcher.class);
+
+    private final GrobidClientAsync grobidClient;
+    private final long windowMillis;
+    private final int maxCitations;
+    private final ScheduledExecutorService scheduler;
+
+    private List<PendingCitation> pending = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush = null;
+
+    private final AtomicLong sentBatches = new AtomicLong(0);
+    private final AtomicLong sentCitations = new AtomicLong(0);
+
+    public GrobidCitationBatcher(GrobidClientAsync grobidClient, long windowMillis, int maxCitations) {
+        this.grobidClient = grobidClient;
+        this.windowMillis = windowMillis;
+        this.maxCitations = Math.max(1, maxCitations);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "grobid-citation-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public CompletableFuture<GrobidResponse> add(String rawCitation, String consolidation) {
+        final PendingCitation citation = new PendingCitation(rawCitation, consolidation);
+        List<PendingCitation> batch = null;
+        synchronized (this) {
+            pending.add(citation);
+            if (pending.size() >= maxCitations) {
+                batch = takePending();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = scheduler.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (batch != null)
+            send(batch);
+        return citation.result;
+    }
+
+    public void flush() {
+        List<PendingCitation> batch;
+        synchronized (this) {
+            batch = takePending();
+        }
+        if (!batch.isEmpty())
+            send(batch);
+    }
+
+    private List<PendingCitation> takePending() {
+        List<PendingCitation> batch = pending;
+        pending = new ArrayList<>();
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    private void send(final List<PendingCitation> batch) {
+        // the citations are grouped by consolidation mode, then by identical raw string
+        final Map<String, Map<String, List<PendingCitation>>> groups = new LinkedHashMap<>();
+        for (PendingCitation citation : batch) {
+            groups.computeIfAbsent(citation.consolidation, k -> new LinkedHashMap<>())
+                .computeIfAbsent(citation.rawCitation, k -> new ArrayList<>())
+                .add(citation);
+        }
+
+        for (Map.Entry<String, Map<String, List<PendingCitation>>> group : groups.entrySet()) {
+            try {
+                sendGroup(group.getKey(), group.getValue());
+            } catch (Exception e) {
+                LOGGER.error("Cannot send the citations to GROBID", e);
+                for (List<PendingCitation> citations : group.getValue().values()) {
+                    notify(citations, null, e);
+                }
+            }
+        }
+    }
+
+    private void sendGroup(final String consolidation, final Map<String, List<PendingCitation>> citations) {
+        final List<String> rawCitations = new ArrayList<>(citations.keySet());
+        sentBatches.incrementAndGet();
+        sentCitations.addAndGet(rawCitations.size());
+
+        if (rawCitations.size() == 1) {
+            // no need for a list request
+            sendIndividually(consolidation, citations);
+            return;
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Sending a list of " + rawCitations.size() + " citations to GROBID");
+        }
+
+        grobidClient.processCitationList(rawCitations, consolidation).whenComplete((responses, throwable) -> {
+            if (throwable == null && responses.size() == rawCitations.size()) {
+                for (int i = 0; i < rawCitations.size(); i++) {
+                    notify(citations.get(rawCitations.get(i)), responses.get(i), null);
+                }
+            } else if (throwable != null && GrobidClientAsync.isConnectionFailure(throwable)) {
+                for (List<PendingCitation> pendingCitations : citations.values()) {
+                    notify(pendingCitations, null, throwable);
+                }
+            } else {
+                LOGGER.warn("The list of citations could not be parsed by GROBID, the citations are sent individually");
+                sendIndividually(consolidation, citations);
+            }
+        });
+    }
+
+    private void sendIndividually(final String consolidation, final Map<String, List<PendingCitation>> citations) {
+        for (Map.Entry<String, List<PendingCitation>> citation : citations.entrySet()) {
+            grobidClient.processCitation(citation.getKey(), consolidation).whenComplete((response, throwable) ->
+                notify(citation.getValue(), response, throwable));
+        }
+    }
+
+    private static void notify(List<PendingCitation> citations, GrobidResponse response, Throwable throwable) {
+        for (PendingCitation citation : citations) {
+            if (throwable != null)
+                citation.result.completeExceptionally(throwable);
+            else
+                citation.result.complete(response);
+        }
+    }
+
+    public long getSentBatches() {
+        return sentBatches.get();
+    }
+
+    public long getSentCitations() {
+        return sentCitations.get();
+    }
+
+    public void close() {
+        flush();
+        scheduler.shutdown();
+    }
+
+    private static class PendingCitation {
+        private final String rawCitation;
+        private final String consolidation;
+        private final CompletableFuture<GrobidResponse> result = new CompletableFuture<>();
+
+        PendingCitation(String rawCitation, String consolidation) {
+            this.rawCitation = rawCitation;
+            this.consolidation = consolidation;
+        }
+    }
+}
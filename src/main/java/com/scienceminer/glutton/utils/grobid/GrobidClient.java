@@ -1,105 +1,181 @@
 package com.scienceminer.glutton.utils.grobid;
 
-import com.ctc.wstx.stax.WstxInputFactory;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.scienceminer.glutton.configuration.LookupConfiguration;
 import com.scienceminer.glutton.exception.ServiceException;
-import com.scienceminer.glutton.utils.xml.StaxUtils;
 import com.scienceminer.glutton.utils.grobid.GrobidResponseStaxHandler.GrobidResponse;
-import org.apache.http.client.ClientProtocolException;
-import org.apache.http.Consts;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.ResponseHandler;
-import org.apache.http.NameValuePair;
-import org.apache.http.client.HttpClient;
-import org.apache.http.client.entity.UrlEncodedFormEntity;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.concurrent.FutureCallback;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.message.BasicNameValuePair;
-import org.codehaus.stax2.XMLStreamReader2;
-import org.apache.commons.io.IOUtils;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.xml.stream.XMLStreamException;
-import java.io.IOException;
-import java.net.HttpURLConnection;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
-import java.util.function.Consumer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
 
 /**
- * Synchronous grobid client
+ * Singleton class
+ * Grobid client shared by all the lookups, on top of the async client and its pool of keep-alive
+ * connections:
+ * - the availability of GROBID is checked in the background at regular interval, so that a lookup
+ *   does not pay an extra round trip to know if GROBID can be called, and does not wait for an
+ *   unavailable GROBID,
+ * - when batching is enabled, the citations parsed concurrently are sent together to GROBID as a
+ *   single processCitationList request (see {@link GrobidCitationBatcher}).
  */
 public class GrobidClient {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(GrobidClient.class);
 
-    //private ClosableHttpClient httpClient;
-    private String grobidPath;
-    private WstxInputFactory inputFactory = new WstxInputFactory();
-    //private GrobidResponseStaxHandler grobidResponseStaxHandler = new GrobidResponseStaxHandler();
+    private static volatile GrobidClient instance;
+
+    // null if no GROBID service is configured
+    private final GrobidClientAsync asyncClient;
+    // null if batching is disabled
+    private final GrobidCitationBatcher batcher;
+    private final ScheduledExecutorService healthProbe;
+    private final int healthCheckInterval;
+
+    private volatile boolean alive;
+
+    public static GrobidClient getInstance(LookupConfiguration configuration) {
+        if (instance == null) {
+            synchronized (GrobidClient.class) {
+                if (instance == null) {
+                    getNewInstance(configuration);
+                }
+            }
+        }
+        return instance;
+    }
 
-    public GrobidClient(String grobidPath) {
-        this.grobidPath = grobidPath;
-        //this.httpClient = HttpClients.createDefault();
+    /**
+     * Creates a new instance.
+     */
+    private static synchronized void getNewInstance(LookupConfiguration configuration) {
+        instance = new GrobidClient(configuration.getGrobidHost(), configuration.getGrobid());
     }
 
+    private GrobidClient(String grobidPath, LookupConfiguration.Grobid configuration) {
+        this.healthCheckInterval = Math.max(1, configuration.getHealthCheckInterval());
+        if (isBlank(grobidPath)) {
+            LOGGER.warn("No GROBID service configured, the raw references will not be parsed");
+            this.asyncClient = null;
+            this.batcher = null;
+            this.healthProbe = null;
+            this.alive = false;
+            return;
+        }
+
+        this.asyncClient = new GrobidClientAsync(grobidPath, configuration.getMaxConnections());
+        if (configuration.getBatchWindow() > 0 && configuration.getBatchMaxCitations() > 1) {
+            this.batcher = new GrobidCitationBatcher(asyncClient, configuration.getBatchWindow(),
+                configuration.getBatchMaxCitations());
+        } else {
+            this.batcher = null;
+        }
+
+        // GROBID is considered as available until the first check says otherwise
+        this.alive = true;
+        this.healthProbe = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "grobid-health-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+        healthProbe.scheduleWithFixedDelay(this::checkHealth, 0, healthCheckInterval, TimeUnit.SECONDS);
+    }
+
+    private void checkHealth() {
+        boolean available;
+        try {
+            asyncClient.ping().get(healthCheckInterval, TimeUnit.SECONDS);
+            available = true;
+        } catch (ExecutionException | TimeoutException e) {
+            available = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        setAlive(available);
+    }
+
+    private void setAlive(boolean available) {
+        if (available != alive) {
+            if (available)
+                LOGGER.info("GROBID service available");
+            else
+                LOGGER.warn("GROBID service not available");
+        }
+        alive = available;
+    }
+
+    public boolean isAlive() {
+        return alive;
+    }
+
+    /**
+     * Check the last known availability of GROBID, without calling the service
+     */
     public void ping() throws ServiceException {
-        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
-            final HttpGet httpGet = new HttpGet(grobidPath + "/isalive");
-            HttpResponse response = httpClient.execute(httpGet);
-            if (response.getStatusLine().getStatusCode() != HttpURLConnection.HTTP_OK) {
-                throw new ServiceException(502, "Error while connecting to GROBID service. Error code: " + response.getStatusLine().getStatusCode());
-            }
-        } catch (Exception e) {
-            throw new ServiceException(502, "Error while connecting to GROBID service", e);
+        if (!alive) {
+            throw new ServiceException(502, "GROBID service not available");
         }
     }
 
+    /**
+     * Parse a raw citation, blocking until the response of GROBID
+     */
     public GrobidResponse processCitation(String rawCitation, String consolidation) throws ServiceException {
-        GrobidResponse grobidResponse = null;
-
-        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
-            final HttpPost request = new HttpPost(grobidPath + "/processCitation");
-
-            List<NameValuePair> formparams = new ArrayList<>();
-            formparams.add(new BasicNameValuePair("citations", rawCitation));
-            formparams.add(new BasicNameValuePair("consolidateCitation", consolidation));
-            UrlEncodedFormEntity entity = new UrlEncodedFormEntity(formparams, Consts.UTF_8);
-            request.setEntity(entity);
-
-            ResponseHandler<GrobidResponse> responseHandler = new ResponseHandler<GrobidResponse>() {
-
-                @Override
-                public GrobidResponse handleResponse(HttpResponse response) throws ClientProtocolException, IOException {
-                    if (response.getStatusLine().getStatusCode() != HttpURLConnection.HTTP_OK) {
-                        throw new ServiceException(502, "Error while connecting to GROBID service. Error code: " + response.getStatusLine().getStatusCode());
-                    } else {
-                        try {
-                            XMLStreamReader2 reader = (XMLStreamReader2) inputFactory.createXMLStreamReader(response.getEntity().getContent());
-                            GrobidResponseStaxHandler grobidResponseStaxHandler = new GrobidResponseStaxHandler();
-
-                            StaxUtils.traverse(reader, grobidResponseStaxHandler);
-
-                            return grobidResponseStaxHandler.getResponse();
-                        } catch (IOException | XMLStreamException e) {
-                            throw new ServiceException(502, "Cannot parse the response from GROBID", e);
-                        }
-                    }
-                }
-            };
-            
-            grobidResponse = httpClient.execute(request, responseHandler);
-        } catch(IOException e) {
-            throw new ServiceException(502, "Error calling GROBID", e);
+        try {
+            return processCitationAsync(rawCitation, consolidation).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ServiceException)
+                throw (ServiceException) e.getCause();
+            throw new ServiceException(502, "Error calling GROBID", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceException(502, "Interrupted while calling GROBID", e);
         }
+    }
+
+    /**
+     * Parse a raw citation without blocking, the future fails with a ServiceException if GROBID is
+     * not available
+     */
+    public CompletableFuture<GrobidResponse> processCitationAsync(String rawCitation, String consolidation) {
+        if (!alive) {
+            CompletableFuture<GrobidResponse> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new ServiceException(502, "GROBID service not available"));
+            return failed;
+        }
+
+        final CompletableFuture<GrobidResponse> response = batcher != null ?
+            batcher.add(rawCitation, consolidation) : asyncClient.processCitation(rawCitation, consolidation);
+        return response.whenComplete((r, throwable) -> {
+            // GROBID cannot be reached, no need to wait for the next check to stop calling it
+            if (throwable != null && GrobidClientAsync.isConnectionFailure(throwable))
+                setAlive(false);
+        });
+    }
+
+    public void registerMetrics(MetricRegistry metrics) {
+        metrics.register(MetricRegistry.name(GrobidClient.class, "alive"), (Gauge<Integer>) () -> alive ? 1 : 0);
+        if (batcher != null) {
+            metrics.register(MetricRegistry.name(GrobidClient.class, "batches"), (Gauge<Long>) batcher::getSentBatches);
+            metrics.register(MetricRegistry.name(GrobidClient.class, "batchedCitations"), (Gauge<Long>) batcher::getSentCitations);
+        }
+    }
 
-        return grobidResponse;
+    public void close() {
+        if (healthProbe != null)
+            healthProbe.shutdownNow();
+        if (batcher != null)
+            batcher.close();
+        if (asyncClient != null)
+            asyncClient.close();
     }
 }
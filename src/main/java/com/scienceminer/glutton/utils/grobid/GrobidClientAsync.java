@@ -4,103 +4,182 @@ import com.ctc.wstx.stax.WstxInputFactory;
 import com.scienceminer.glutton.exception.ServiceException;
 import com.scienceminer.glutton.utils.xml.StaxUtils;
 import com.scienceminer.glutton.utils.grobid.GrobidResponseStaxHandler.GrobidResponse;
-import org.apache.http.client.ClientProtocolException;
 import org.apache.http.Consts;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse;
-import org.apache.http.client.ResponseHandler;
 import org.apache.http.NameValuePair;
-import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.concurrent.FutureCallback;
-import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.conn.ConnectTimeoutException;
 import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
 import org.apache.http.impl.nio.client.HttpAsyncClients;
 import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
 import org.codehaus.stax2.XMLStreamReader2;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.xml.stream.XMLStreamException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
 import java.net.HttpURLConnection;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
-import java.util.function.Consumer;
+import java.util.concurrent.CompletableFuture;
 
 /**
- * Async Grobid client
+ * Async Grobid client, with a pool of keep-alive connections shared by all the requests. The
+ * requests are sent without blocking, the responses are parsed by the I/O threads of the client
+ * and returned as futures.
  */
 public class GrobidClientAsync {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(GrobidClientAsync.class);
 
-    private CloseableHttpAsyncClient httpClient;
-    private String grobidPath;
-    private WstxInputFactory inputFactory = new WstxInputFactory();
-    //private GrobidResponseStaxHandler grobidResponseStaxHandler = new GrobidResponseStaxHandler();
+    private static final int CONNECT_TIMEOUT = 5000;
+    private static final int SOCKET_TIMEOUT = 30000;
 
-    public GrobidClientAsync(String grobidPath) {
+    private final CloseableHttpAsyncClient httpClient;
+    private final String grobidPath;
+    private final WstxInputFactory inputFactory = new WstxInputFactory();
+
+    public GrobidClientAsync(String grobidPath, int maxConnections) {
         this.grobidPath = grobidPath;
-        this.httpClient = HttpAsyncClients.createDefault();
+        final RequestConfig requestConfig = RequestConfig.custom()
+            .setConnectTimeout(CONNECT_TIMEOUT)
+            .setSocketTimeout(SOCKET_TIMEOUT)
+            .build();
+        // all the requests go to the same GROBID route
+        this.httpClient = HttpAsyncClients.custom()
+            .setMaxConnTotal(maxConnections)
+            .setMaxConnPerRoute(maxConnections)
+            .setDefaultRequestConfig(requestConfig)
+            .build();
         httpClient.start();
     }
 
-    public void ping() throws ServiceException {
-        try {
-            final HttpGet httpGet = new HttpGet(grobidPath + "/isalive");
-            final Future<HttpResponse> futureResponse = httpClient.execute(httpGet, null);
-            HttpResponse response = futureResponse.get();
-            if (response.getStatusLine().getStatusCode() != HttpURLConnection.HTTP_OK) {
-                throw new ServiceException(502, "Error while connecting to GROBID service. Error code: " + response.getStatusLine().getStatusCode());
-            }
-        } catch (InterruptedException | ExecutionException e) {
-            throw new ServiceException(502, "Error while connecting to GROBID service", e);
-        }
+    public CompletableFuture<Void> ping() {
+        final HttpGet request = new HttpGet(grobidPath + "/isalive");
+        return execute(request, response -> {
+            // consume the content, so that the connection is released to the pool
+            EntityUtils.consume(response.getEntity());
+            return null;
+        });
     }
 
-    public void processCitation(String rawCitation, String consolidation, Consumer<GrobidResponseStaxHandler.GrobidResponse> callback) throws ServiceException {
-        final HttpPost request = new HttpPost(grobidPath + "/processCitation");
-
+    public CompletableFuture<GrobidResponse> processCitation(String rawCitation, String consolidation) {
         List<NameValuePair> formparams = new ArrayList<>();
         formparams.add(new BasicNameValuePair("citations", rawCitation));
-        formparams.add(new BasicNameValuePair("consolidateCitation", consolidation));
-        UrlEncodedFormEntity entity = new UrlEncodedFormEntity(formparams, Consts.UTF_8);
-        request.setEntity(entity);
-
-        final Future<HttpResponse> response = httpClient.execute(request, new FutureCallback<HttpResponse>() {
-            @Override
-            public void completed(HttpResponse response) {
-                if (response.getStatusLine().getStatusCode() != HttpURLConnection.HTTP_OK) {
-                    throw new ServiceException(502, "Error while connecting to GROBID service. Error code: " + response.getStatusLine().getStatusCode());
-                } else {
-                    try {
-                        XMLStreamReader2 reader = (XMLStreamReader2) inputFactory.createXMLStreamReader(response.getEntity().getContent());
-                        GrobidResponseStaxHandler grobidResponseStaxHandler = new GrobidResponseStaxHandler();
+        formparams.add(new BasicNameValuePair("consolidateCitations", consolidation));
+
+        return execute(createPost("/processCitation", formparams), response -> parse(response).getResponse());
+    }
+
+    /**
+     * Parse several raw citations with a single request, the responses are returned in the order
+     * of the citations
+     */
+    public CompletableFuture<List<GrobidResponse>> processCitationList(List<String> rawCitations, String consolidation) {
+        List<NameValuePair> formparams = new ArrayList<>();
+        for (String rawCitation : rawCitations) {
+            formparams.add(new BasicNameValuePair("citations", rawCitation));
+        }
+        formparams.add(new BasicNameValuePair("consolidateCitations", consolidation));
+
+        return execute(createPost("/processCitationList", formparams), response -> parse(response).getResponses());
+    }
+
+    private HttpPost createPost(String service, List<NameValuePair> formparams) {
+        final HttpPost request = new HttpPost(grobidPath + service);
+        request.setHeader(HttpHeaders.ACCEPT, "application/xml");
+        request.setEntity(new UrlEncodedFormEntity(formparams, Consts.UTF_8));
+        return request;
+    }
+
+    private GrobidResponseStaxHandler parse(HttpResponse response) throws IOException {
+        try (InputStream content = response.getEntity().getContent()) {
+            XMLStreamReader2 reader = (XMLStreamReader2) inputFactory.createXMLStreamReader(content);
+            GrobidResponseStaxHandler grobidResponseStaxHandler = new GrobidResponseStaxHandler();
 
-                        StaxUtils.traverse(reader, grobidResponseStaxHandler);
+            StaxUtils.traverse(reader, grobidResponseStaxHandler);
 
-                        callback.accept(grobidResponseStaxHandler.getResponse());
-                    } catch (XMLStreamException | IOException e) {
-                        throw new ServiceException(502, "Cannot parse the response from GROBID", e);
+            return grobidResponseStaxHandler;
+        } catch (XMLStreamException e) {
+            throw new ServiceException(502, "Cannot parse the response from GROBID", e);
+        }
+    }
+
+    private <T> CompletableFuture<T> execute(HttpUriRequest request, ResponseParser<T> parser) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            httpClient.execute(request, new FutureCallback<HttpResponse>() {
+                @Override
+                public void completed(HttpResponse response) {
+                    final int status = response.getStatusLine().getStatusCode();
+                    try {
+                        if (status != HttpURLConnection.HTTP_OK) {
+                            EntityUtils.consume(response.getEntity());
+                            result.completeExceptionally(new ServiceException(502,
+                                "Error while connecting to GROBID service. Error code: " + status));
+                        } else {
+                            result.complete(parser.parse(response));
+                        }
+                    } catch (ServiceException e) {
+                        result.completeExceptionally(e);
+                    } catch (IOException | RuntimeException e) {
+                        result.completeExceptionally(new ServiceException(502, "Cannot parse the response from GROBID", e));
                     }
                 }
-            }
 
-            @Override
-            public void failed(Exception ex) {
-                throw new ServiceException(502, "Cannot parse the response from GROBID", ex);
-            }
+                @Override
+                public void failed(Exception ex) {
+                    result.completeExceptionally(new ServiceException(502, "Error while connecting to GROBID service", ex));
+                }
 
-            @Override
-            public void cancelled() {
-                throw new ServiceException(502, "Cannot parse the response from GROBID");
-            }
-        });
+                @Override
+                public void cancelled() {
+                    result.completeExceptionally(new ServiceException(502, "The request to GROBID was cancelled"));
+                }
+            });
+        } catch (RuntimeException e) {
+            // e.g. the client is closed
+            result.completeExceptionally(new ServiceException(502, "Error calling GROBID", e));
+        }
+        return result;
+    }
+
+    /**
+     * @return true if the request failed because GROBID cannot be reached (connection refused, no 
+     * route to the host or connection timeout), false for the other failures, in particular a 
+     * response timeout of a slow request
+     */
+    static boolean isConnectionFailure(Throwable throwable) {
+        Throwable failure = throwable;
+        while (failure != null) {
+            if (failure instanceof ConnectException || failure instanceof NoRouteToHostException || 
+                failure instanceof UnknownHostException || failure instanceof ConnectTimeoutException)
+                return true;
+            failure = failure.getCause();
+        }
+        return false;
+    }
 
+    public void close() {
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            LOGGER.warn("Error when closing the GROBID client", e);
+        }
     }
 
+    private interface ResponseParser<T> {
+        T parse(HttpResponse response) throws IOException;
+    }
 }
@@ -11,6 +11,7 @@ import javax.xml.stream.XMLEventWriter;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.events.XMLEvent;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
@@ -18,14 +19,23 @@ import java.util.Objects;
 import static org.apache.commons.lang3.StringUtils.isEmpty;
 import static org.apache.commons.lang3.StringUtils.trim;
 
-
+/**
+ * Extract the first author, titles and year of the parsed citations from a GROBID TEI response. 
+ * The response can contain a single biblStruct element (processCitation) or a list of biblStruct 
+ * elements (processCitationList), one response is produced for each biblStruct, in the order of 
+ * the document.
+ */
 public class GrobidResponseStaxHandler implements StaxParserContentHandler {
     private static Logger LOGGER = LoggerFactory.getLogger(GrobidResponseStaxHandler.class);
 
     StackTags stackTags = new StackTags();
     StringBuffer accumulator = new StringBuffer();
 
-    private GrobidResponse response = new GrobidResponse();
+    private List<GrobidResponse> responses = new ArrayList<>();
+    // response of the current biblStruct
+    private GrobidResponse response = null;
+    // depth of the current biblStruct element in the stack of tags, -1 outside of a biblStruct
+    private int biblStructDepth = -1;
 
     private int indentLevel = 0;
 
@@ -55,7 +65,12 @@ public class GrobidResponseStaxHandler implements StaxParserContentHandler {
     public void onStartElement(XMLStreamReader2 reader) {
         final String localName = reader.getName().getLocalPart();
         stackTags.append(localName);
-        final StaxTag currentTag = new StaxTag(localName, stackTags.toString());
+        if ("biblStruct".equals(localName) && biblStructDepth < 0) {
+            biblStructDepth = stackTags.size() - 1;
+            response = new GrobidResponse();
+            responses.add(response);
+        }
+        final StaxTag currentTag = new StaxTag(localName, stackTags.toString(biblStructDepth));
 
         if (currentTag.equals(title) &&
                 (getAttributeValue(reader, "level").equals("a") &&
@@ -87,7 +102,7 @@ public class GrobidResponseStaxHandler implements StaxParserContentHandler {
     @Override
     public void onEndElement(XMLStreamReader2 reader) {
         final String localName = reader.getName().getLocalPart();
-        final StaxTag currentTag = new StaxTag(localName, stackTags.toString());
+        final StaxTag currentTag = new StaxTag(localName, stackTags.toString(biblStructDepth));
         if (fetchText) {
             if (title.equals(currentTag)) {
                 if (response.getAtitle() == null)
@@ -116,6 +131,11 @@ public class GrobidResponseStaxHandler implements StaxParserContentHandler {
         }
 
         stackTags.peek();
+        if (stackTags.size() == biblStructDepth) {
+            // end of the current biblStruct
+            biblStructDepth = -1;
+            response = null;
+        }
         indentLevel--;
     }
 
@@ -202,13 +222,30 @@ public class GrobidResponseStaxHandler implements StaxParserContentHandler {
             return stackTags.remove(stackTags.size() - 1);
         }
 
+        public int size() {
+            return stackTags.size();
+        }
+
         public String toString() {
             return "/" + StringUtils.join(stackTags, "/");
         }
 
+        /**
+         * Path from the tag at the given depth, the full path if the depth is negative
+         */
+        public String toString(int fromDepth) {
+            if (fromDepth <= 0)
+                return toString();
+            return "/" + StringUtils.join(stackTags.subList(fromDepth, stackTags.size()), "/");
+        }
+
     }
 
-    public class GrobidResponse {
+    /**
+     * Metadata extracted from a parsed citation, serializable as it can be stored in the citation cache
+     */
+    public static class GrobidResponse implements Serializable {
+        private static final long serialVersionUID = 1L;
 
         private String atitle;
 
@@ -271,7 +308,19 @@ public class GrobidResponseStaxHandler implements StaxParserContentHandler {
         }
     }
 
+    /**
+     * @return the response of the first citation, empty if the document contains no citation
+     */
     public GrobidResponse getResponse() {
-        return response;
+        if (responses.isEmpty())
+            return new GrobidResponse();
+        return responses.get(0);
+    }
+
+    /**
+     * @return the responses of all the citations of the document, in the order of the document
+     */
+    public List<GrobidResponse> getResponses() {
+        return responses;
     }
 }
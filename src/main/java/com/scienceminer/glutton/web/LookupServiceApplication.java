@@ -12,6 +12,12 @@ import com.scienceminer.glutton.web.module.ServiceExceptionMapper;
 import com.scienceminer.glutton.web.module.ServiceOverloadedExceptionMapper;
 import com.scienceminer.glutton.utils.crossrefclient.IncrementalLoaderTask;
 import com.scienceminer.glutton.storage.lookup.CrossrefMetadataLookup;
+import com.scienceminer.glutton.storage.lookup.GrobidCitationCache;
+import com.scienceminer.glutton.storage.DoiCache;
+import com.scienceminer.glutton.storage.KeyFilter;
+import com.scienceminer.glutton.indexing.ElasticSearchAsyncIndexer;
+import com.scienceminer.glutton.storage.lookup.async.RequestExecutor;
+import com.scienceminer.glutton.utils.grobid.GrobidClient;
 import com.scienceminer.glutton.storage.StorageEnvFactory;
 
 import io.dropwizard.forms.MultiPartBundle;
@@ -61,7 +67,9 @@ public final class LookupServiceApplication extends Application<LookupConfigurat
         return "lookup-service";
     }
 
-    private void scheduleDailyUpdate(LookupConfiguration configuration, StorageEnvFactory storageEnvFactory) throws Exception {
+    private void scheduleDailyUpdate(LookupConfiguration configuration, 
+                                     StorageEnvFactory storageEnvFactory, 
+                                     MetricRegistry metrics) throws Exception {
         ZonedDateTime now = ZonedDateTime.now(ZoneId.of(configuration.getTimeZone()));
         String dailyTime = configuration.getDailyUpdateTime();
 
@@ -91,7 +99,7 @@ public final class LookupServiceApplication extends Application<LookupConfigurat
         //StorageEnvFactory storageEnvFactory = new StorageEnvFactory(configuration);
         CrossrefMetadataLookup metadataLookup = CrossrefMetadataLookup.getInstance(storageEnvFactory);
 
-        final MetricRegistry metrics = new MetricRegistry();
+        // the progress and the lag of the stages of the update are reported with the metrics of the service
         final Meter meter = metrics.meter("crossref_daily_update_loading");
         final Counter counterInvalidRecords = metrics.counter("crossref_daily_update_rejected_records");
         final Counter counterIndexedRecords = metrics.counter("crossref_gap_update_indexed_records");
@@ -101,6 +109,7 @@ public final class LookupServiceApplication extends Application<LookupConfigurat
         Runnable task = new IncrementalLoaderTask(metadataLookup, 
                                                   metadataLookup.getLastIndexed(), 
                                                   configuration, 
+                                                  metrics, 
                                                   meter, 
                                                   counterInvalidRecords,
                                                   counterIndexedRecords,
@@ -143,7 +152,19 @@ public final class LookupServiceApplication extends Application<LookupConfigurat
         final LookupHealthCheck healthCheck = new LookupHealthCheck(configuration, storageEnvFactory);
         environment.healthChecks().register("HealthCheck", healthCheck);
 
-        scheduleDailyUpdate(configuration, storageEnvFactory);
+        // statistics of the DOI cache, if enabled
+        DoiCache.getInstance(configuration).registerMetrics(environment.metrics());
+        // bulk indexing of the daily incremental updates
+        ElasticSearchAsyncIndexer.getInstance(configuration).registerMetrics(environment.metrics());
+        RequestExecutor.getInstance(configuration).registerMetrics(environment.metrics());
+        // availability and batching of the GROBID citation parsing
+        GrobidClient.getInstance(configuration).registerMetrics(environment.metrics());
+        // persistent cache of the citations parsed by GROBID, if enabled
+        GrobidCitationCache.getInstance(storageEnvFactory).registerMetrics(environment.metrics());
+        // checks and false positives of the key filters of the DOI databases, if enabled
+        KeyFilter.registerMetrics(environment.metrics());
+
+        scheduleDailyUpdate(configuration, storageEnvFactory, environment.metrics());
     }
 
     /*private List<? extends Module> getGuiceModules() {
@@ -173,7 +194,11 @@ public final class LookupServiceApplication extends Application<LookupConfigurat
         bootstrap.addCommand(new GapUpdateCrossrefCommand());
         bootstrap.addCommand(new LoadHALCommand());
         bootstrap.addCommand(new IndexCommand());
+        bootstrap.addCommand(new LuceneIndexCommand());
         bootstrap.addCommand(new HALAuditCommand());
+        bootstrap.addCommand(new MigrateStorageCommand());
+        bootstrap.addCommand(new BuildIdsGraphCommand());
+        bootstrap.addCommand(new BuildLookupIndexesCommand());
     }
 
     public static void main(String... args) throws Exception {
@@ -4,6 +4,7 @@ import com.codahale.metrics.annotation.Timed;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.scienceminer.glutton.configuration.LookupConfiguration;
+import com.scienceminer.glutton.data.IdsGraphData;
 import com.scienceminer.glutton.data.IstexData;
 import com.scienceminer.glutton.data.PmidData;
 import com.scienceminer.glutton.storage.DataEngine;
@@ -69,6 +70,13 @@ public class DataController {
         return storage.retrieveIstexRecords_piiToIds(total);
     }
     
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/ids/doi")
+    public List<Pair<String, IdsGraphData>> getIdsGraph_doiToIds(@QueryParam("total") Integer total) {
+        return storage.retrieveIdsGraph_doiToIds(total);
+    }
+
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     @Path("/oa")
@@ -1,12 +1,18 @@
 package com.scienceminer.glutton.web.resource;
 
 import com.codahale.metrics.annotation.Timed;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.scienceminer.glutton.configuration.LookupConfiguration;
+import com.scienceminer.glutton.data.LookupQuery;
 import com.scienceminer.glutton.data.MatchingDocument;
 import com.scienceminer.glutton.exception.NotFoundException;
 import com.scienceminer.glutton.exception.ServiceException;
+import com.scienceminer.glutton.exception.ServiceOverloadedException;
+import com.scienceminer.glutton.storage.lookup.async.RequestExecutor;
 import com.scienceminer.glutton.storage.LookupEngine;
 import com.scienceminer.glutton.storage.StorageEnvFactory;
 import com.scienceminer.glutton.utils.grobid.GrobidClient;
@@ -22,7 +28,18 @@ import jakarta.ws.rs.container.AsyncResponse;
 import jakarta.ws.rs.container.Suspended;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
@@ -47,12 +64,19 @@ public class LookupController {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(LookupController.class);
 
+    private static final String BATCH_MEDIA_TYPE = "application/x-ndjson";
+
+    // max time waited for the admission and for the result of a batch query
+    private static final long BATCH_QUERY_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(2);
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
     @Inject
     public LookupController(LookupConfiguration configuration, StorageEnvFactory storageEnvFactory) {
         this.configuration = configuration;
         this.storageEnvFactory = storageEnvFactory;
         this.lookupEngine = new LookupEngine(storageEnvFactory);
-        this.lookupEngine.setGrobidClient(new GrobidClient(configuration.getGrobidHost()));
+        this.lookupEngine.setGrobidClient(GrobidClient.getInstance(configuration));
     }
 
     @GET
@@ -124,6 +148,170 @@ public class LookupController {
             jtitle, volume, firstPage, year, biblio, parseReference, asyncResponse);
     }
 
+    /**
+     * Batch lookup: the body is a JSON array or a JSONL list of lookup queries, each query having the
+     * same fields as the parameters of the single lookup. The results are streamed back as JSONL in 
+     * the order of the queries, one line per query with the index of the query, a status code and 
+     * either the matched record or an error message. 
+     */
+    @POST
+    @Produces(BATCH_MEDIA_TYPE)
+    @Consumes({MediaType.APPLICATION_JSON, BATCH_MEDIA_TYPE, MediaType.TEXT_PLAIN})
+    @Path("/batch")
+    public Response postBatch(InputStream input) {
+        final List<LookupQuery> queries = readBatchQueries(input);
+        StreamingOutput stream = output -> processBatch(queries, output);
+        return Response.ok(stream, BATCH_MEDIA_TYPE).build();
+    }
+
+    /**
+     * Read the batch queries, either as a JSON array or as JSONL (one JSON query per line)
+     */
+    protected List<LookupQuery> readBatchQueries(InputStream input) {
+        List<LookupQuery> queries = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            // look at the first non blank character to select the format
+            int c;
+            do {
+                reader.mark(1);
+                c = reader.read();
+            } while (c != -1 && Character.isWhitespace(c));
+
+            if (c == -1) {
+                throw new ServiceException(400, "The batch does not contain any query");
+            }
+            reader.reset();
+
+            if (c == '[') {
+                queries = mapper.readValue(reader, new TypeReference<List<LookupQuery>>() {});
+            } else {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (isBlank(line))
+                        continue;
+                    queries.add(mapper.readValue(line, LookupQuery.class));
+                    if (queries.size() > configuration.getMaxBatchSize())
+                        break;
+                }
+            }
+        } catch (IOException e) {
+            throw new ServiceException(400, "Cannot parse the batch queries: " + e.getMessage(), e);
+        }
+
+        if (queries.size() > configuration.getMaxBatchSize()) {
+            throw new ServiceException(400, "Too many queries in the batch, the maximum is " 
+                + configuration.getMaxBatchSize());
+        }
+        return queries;
+    }
+
+    /**
+     * Process the batch queries with a bounded number of queries in progress, and write the results
+     * in the order of the queries as soon as they are available
+     */
+    protected void processBatch(List<LookupQuery> queries, OutputStream output) throws IOException {
+        int maxConcurrency = Math.max(1, configuration.getBatchConcurrency());
+        Deque<CompletableFuture<String>> pending = new ArrayDeque<>();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+
+        int index = 0;
+        int written = 0;
+        for (LookupQuery query : queries) {
+            if (pending.size() >= maxConcurrency) {
+                writeBatchResult(writer, pending, written++);
+            }
+            pending.add(processBatchQuery(index, query));
+            index++;
+        }
+        while (!pending.isEmpty()) {
+            writeBatchResult(writer, pending, written++);
+        }
+        writer.flush();
+    }
+
+    /**
+     * Submit a batch query to the request executor with the limit of its class, the query waiting 
+     * for its admission rather than being rejected, and being processed off the streaming thread
+     */
+    private CompletableFuture<String> processBatchQuery(int index, LookupQuery query) {
+        final CompletableFuture<String> result = new CompletableFuture<>();
+        final Boolean parseReference = query.getParseReference() == null ? Boolean.TRUE : query.getParseReference();
+        final RequestExecutor.RequestClass requestClass = requestClass(query.getDoi(), query.getHalid(), 
+            query.getPmid(), query.getPmc(), query.getPii(), query.getIstexid());
+
+        try {
+            RequestExecutor.getInstance(configuration).submit(requestClass, permit -> {
+                try {
+                    processByQuery(query.getDoi(), query.getHalid(), query.getPmid(), query.getPmc(), query.getPii(), 
+                        query.getIstexid(), query.getFirstAuthor(), query.getAtitle(), query.getJtitle(), query.getVolume(), 
+                        query.getFirstPage(), query.getYear(), query.getBiblio(), parseReference, (response, exception) -> {
+                            permit.release(exception);
+                            if (exception != null) {
+                                result.complete(batchErrorLine(index, exception));
+                            } else {
+                                result.complete(batchResultLine(index, response));
+                            }
+                        });
+                } catch (RuntimeException e) {
+                    permit.release(e);
+                    result.complete(batchErrorLine(index, e));
+                }
+            }, BATCH_QUERY_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.complete(batchErrorLine(index, new ServiceOverloadedException("Batch lookup interrupted")));
+        } catch (Exception e) {
+            result.complete(batchErrorLine(index, e));
+        }
+        return result;
+    }
+
+    /**
+     * Write the result of the oldest pending query, flush the output when the next result is not 
+     * available yet so that the client gets the results as early as possible 
+     */
+    private void writeBatchResult(Writer writer, Deque<CompletableFuture<String>> pending, int index) throws IOException {
+        CompletableFuture<String> next = pending.poll();
+        String line;
+        try {
+            line = next.get(BATCH_QUERY_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            line = batchErrorLine(index, new ServiceException(408, "Operation time out"));
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IOException("Batch lookup interrupted", e);
+        }
+        writer.write(line);
+        writer.write('\n');
+
+        if (pending.isEmpty() || !pending.peek().isDone()) {
+            writer.flush();
+        }
+    }
+
+    private static String batchResultLine(int index, String response) {
+        if (isBlank(response)) {
+            return batchErrorLine(index, new NotFoundException("Cannot find bibliographical records or map ID for the input query"));
+        }
+        return "{\"index\":" + index + ",\"status\":200,\"result\":" + response + "}";
+    }
+
+    private static String batchErrorLine(int index, Throwable exception) {
+        int status = 500;
+        if (exception instanceof ServiceException) {
+            status = ((ServiceException) exception).getStatusCode();
+        } else if (exception instanceof NotFoundException) {
+            status = 404;
+        } else if (exception instanceof ServiceOverloadedException) {
+            status = 503;
+        }
+
+        ObjectNode line = mapper.createObjectNode();
+        line.put("index", index);
+        line.put("status", status);
+        line.put("message", exception.getMessage());
+        return line.toString();
+    }
+
     @Deprecated
     /*protected void processByQueryMixedMode(
             String doi,
@@ -342,6 +530,56 @@ public class LookupController {
             final Boolean parseReference,
             AsyncResponse asyncResponse
     ) {
+        // the request is admitted or rejected with a 503 status according to the limit of its 
+        // class, then processed by the request executor, the permit being released once the 
+        // response is resumed
+        final RequestExecutor.RequestClass requestClass = requestClass(doi, halid, pmid, pmc, pii, istexid);
+        RequestExecutor.getInstance(configuration).execute(requestClass, permit -> {
+            try {
+                processByQuery(doi, halid, pmid, pmc, pii, istexid, firstAuthor, atitle,
+                    jtitle, volume, firstPage, year, biblio, parseReference, (response, exception) -> {
+                        permit.release(exception);
+                        if (exception != null) {
+                            asyncResponse.resume(exception);
+                        } else {
+                            asyncResponse.resume(response);
+                        }
+                    });
+            } catch (RuntimeException e) {
+                permit.release(e);
+                asyncResponse.resume(e);
+            }
+        });
+    }
+
+    private static RequestExecutor.RequestClass requestClass(String doi, String halid, String pmid, 
+            String pmc, String pii, String istexid) {
+        return isNotBlank(doi) || isNotBlank(halid) || isNotBlank(pmid) || isNotBlank(pmc) || isNotBlank(pii) || isNotBlank(istexid) ?
+            RequestExecutor.RequestClass.STRONG_ID : RequestExecutor.RequestClass.BIBLIO;
+    }
+
+    /**
+     * Process a lookup query, the result is passed to the callback either as a JSON response 
+     * (first argument) or as an exception (second argument). Exceptions related to the query
+     * parameters or to a strong identifier not found are thrown directly.
+     */
+    protected void processByQuery(
+            String doi,
+            String halid,
+            String pmid,
+            String pmc,
+            String pii, 
+            String istexid,
+            String firstAuthor,
+            String atitle,
+            String jtitle,
+            String volume,
+            String firstPage,
+            String year,
+            String biblio,
+            final Boolean parseReference,
+            final BiConsumer<String, Throwable> callback
+    ) {
 
         boolean areParametersEnoughToLookup = false;
         StringBuilder messagesSb = new StringBuilder();
@@ -352,7 +590,7 @@ public class LookupController {
                 final String response = lookupEngine.retrieveByDoi(doi, firstAuthor, atitle, year);
 
                 if (isNotBlank(response)) {
-                    asyncResponse.resume(response);
+                    callback.accept(response, null);
                     return;
                 }
 
@@ -370,7 +608,7 @@ public class LookupController {
                 final String response = lookupEngine.retrieveByHalId(halid, firstAuthor, atitle, year);
 
                 if (isNotBlank(response)) {
-                    asyncResponse.resume(response);
+                    callback.accept(response, null);
                     return;
                 }
             } catch (NotFoundException e) {
@@ -386,7 +624,7 @@ public class LookupController {
                 final String response = lookupEngine.retrieveByPmid(pmid, firstAuthor, atitle, year);
 
                 if (isNotBlank(response)) {
-                    asyncResponse.resume(response);
+                    callback.accept(response, null);
                     return;
                 }
             } catch (NotFoundException e) {
@@ -401,7 +639,7 @@ public class LookupController {
             try {
                 final String response = lookupEngine.retrieveByPmc(pmc, firstAuthor, atitle, year);
                 if (isNotBlank(response)) {
-                    asyncResponse.resume(response);
+                    callback.accept(response, null);
                     return;
                 }
             } catch (NotFoundException e) {
@@ -416,7 +654,7 @@ public class LookupController {
             try {
                 final String response = lookupEngine.retrieveByPii(pii, firstAuthor, atitle, year);
                 if (isNotBlank(response)) {
-                    asyncResponse.resume(response);
+                    callback.accept(response, null);
                     return;
                 }
             } catch (NotFoundException e) {
@@ -432,7 +670,7 @@ public class LookupController {
                 final String response = lookupEngine.retrieveByIstexid(istexid, firstAuthor, atitle, year);
 
                 if (isNotBlank(response)) {
-                    asyncResponse.resume(response);
+                    callback.accept(response, null);
                     return;
                 }
 
@@ -449,10 +687,10 @@ public class LookupController {
             LOGGER.debug("Match with biblio string");
             lookupEngine.retrieveByBiblioAsync(biblio, firstAuthor, atitle, jtitle, year, parseReference, matchingDocumentBiblio -> {
                 if (matchingDocumentBiblio.isException()) {
-                    asyncResponse.resume(matchingDocumentBiblio.getException());
+                    callback.accept(null, matchingDocumentBiblio.getException());
                     //messagesSb.append(matchingDocumentBiblio.getException().getMessage());
                 } else {
-                    asyncResponse.resume(matchingDocumentBiblio.getFinalJsonObject());
+                    callback.accept(matchingDocumentBiblio.getFinalJsonObject(), null);
                     return;
                 }
             });
@@ -470,21 +708,21 @@ public class LookupController {
                     if (isNotBlank(jtitle) && isNotBlank(volume) && isNotBlank(firstPage) && isNotBlank(firstAuthor)) {
                         lookupEngine.retrieveByJournalMetadataAsync(jtitle, volume, firstPage, atitle, firstAuthor, matchingDocumentJournal -> {
                             if (matchingDocumentJournal.isException()) {
-                                asyncResponse.resume(matchingDocument.getException());
+                                callback.accept(null, matchingDocument.getException());
                                 //messagesSb.append(matchingDocumentJournal.getException().getMessage());
                                 return;
                             } else {
-                                asyncResponse.resume(matchingDocumentJournal.getFinalJsonObject());
+                                callback.accept(matchingDocumentJournal.getFinalJsonObject(), null);
                                 return;
                             }
                         });
                         return;
                     } else {
-                        asyncResponse.resume(matchingDocument.getException());
+                        callback.accept(null, matchingDocument.getException());
                         return;
                     }
                 } else {
-                    asyncResponse.resume(matchingDocument.getFinalJsonObject());
+                    callback.accept(matchingDocument.getFinalJsonObject(), null);
                     return;
                 }
             });
@@ -497,11 +735,11 @@ public class LookupController {
             LOGGER.debug("Try to match with journal title, journal volume, journal first page and first author name if available");
             lookupEngine.retrieveByJournalMetadataAsync(jtitle, volume, firstPage, atitle, firstAuthor, matchingDocument -> {
                 if (matchingDocument.isException()) {
-                    asyncResponse.resume(matchingDocument.getException());
+                    callback.accept(null, matchingDocument.getException());
                     //messagesSb.append(matchingDocument.getException().getMessage());
                     return;
                 } else {
-                    asyncResponse.resume(matchingDocument.getFinalJsonObject());
+                    callback.accept(matchingDocument.getFinalJsonObject(), null);
                     return;
                 }
             });
@@ -0,0 +1,45 @@
+package com.scienceminer.glutton.indexing;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class MetadataObjBuilderTest {
+
+    @Test
+    public void testCreateMetadataObj() throws Exception {
+        String record = "{\"DOI\":\"10.1000/abc\",\"source\":\"Crossref\",\"type\":\"journal-article\"," +
+            "\"title\":[\"A  title\\nin two lines\"]," +
+            "\"author\":[{\"family\":\"Smith\",\"sequence\":\"additional\"},{\"family\":\"Doe\",\"sequence\":\"first\"}]," +
+            "\"container-title\":[\"Journal of Tests\"],\"short-container-title\":[\"J. Tests\"]," +
+            "\"volume\":\"12\",\"issue\":\"3\",\"page\":\"101-110\"," +
+            "\"issued\":{\"date-parts\":[[2020,5,1]]}}";
+
+        MetadataObj target = MetadataObjBuilder.createMetadataObj(record);
+
+        assertThat(target._id, is("crossref:10.1000/abc"));
+        assertThat(target.title, is(Arrays.asList("A title in two lines")));
+        assertThat(target.author, is("Smith Doe"));
+        assertThat(target.first_author, is("Doe"));
+        assertThat(target.first_page, is("101"));
+        assertThat(target.issue, is("3"));
+        assertThat(target.year, is("2020"));
+        assertThat(target.bibliographic, is("Smith Doe A title in two lines Journal of Tests J. Tests 12 3 101 2020"));
+    }
+
+    @Test
+    public void testCreateMetadataObj_nullIssue() throws Exception {
+        String record = "{\"DOI\":\"10.1000/def\",\"source\":\"crossref\",\"issue\":null," +
+            "\"created\":{\"date-parts\":[[2019]]}}";
+
+        MetadataObj target = MetadataObjBuilder.createMetadataObj(record);
+
+        assertThat(target.issue, is(nullValue()));
+        assertThat(target.year, is("2019"));
+        assertThat(target.bibliographic, is("2019"));
+    }
+}
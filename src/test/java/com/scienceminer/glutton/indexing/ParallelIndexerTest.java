@@ -0,0 +1,51 @@
+package com.scienceminer.glutton.indexing;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ParallelIndexerTest {
+
+    @Test
+    public void testMiddle() throws Exception {
+        assertThat(new String(ParallelIndexer.middle(bytes("a"), bytes("c")), StandardCharsets.UTF_8), is("b"));
+
+        byte[] middle = ParallelIndexer.middle(bytes("10.1016/j.cell.2020.01.001"), bytes("10.1016/j.cell.2020.01.002"));
+        assertThat(ParallelIndexer.compare(bytes("10.1016/j.cell.2020.01.001"), middle) < 0, is(true));
+        assertThat(ParallelIndexer.compare(middle, bytes("10.1016/j.cell.2020.01.002")) < 0, is(true));
+
+        middle = ParallelIndexer.middle(bytes("10.1016/j.cell"), null);
+        assertThat(ParallelIndexer.compare(bytes("10.1016/j.cell"), middle) < 0, is(true));
+    }
+
+    @Test
+    public void testNoMiddle() throws Exception {
+        assertThat(ParallelIndexer.middle(bytes("a"), bytes("a")), is(nullValue()));
+        assertThat(ParallelIndexer.middle(bytes("b"), bytes("a")), is(nullValue()));
+        // no key between a key and the same key followed by a zero byte
+        assertThat(ParallelIndexer.middle(bytes("a"), new byte[] { 'a', 0 }), is(nullValue()));
+    }
+
+    @Test
+    public void testSplit() throws Exception {
+        ParallelIndexer.Slice slice = new ParallelIndexer.Slice(0, null, null, null);
+        assertThat(slice.advance(bytes("10.1000/abc")), is(true));
+
+        ParallelIndexer.Slice upper = slice.split(1);
+        assertThat(upper, is(not(nullValue())));
+        assertThat(ParallelIndexer.compare(bytes("10.1000/abc"), upper.getFrom()) < 0, is(true));
+
+        // the keys from the split point belong to the upper slice only
+        assertThat(slice.advance(upper.getFrom()), is(false));
+        assertThat(upper.advance(upper.getFrom()), is(true));
+    }
+
+    private static byte[] bytes(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+}
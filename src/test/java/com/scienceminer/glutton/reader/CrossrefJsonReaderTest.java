@@ -0,0 +1,88 @@
+package com.scienceminer.glutton.reader;
+
+import com.codahale.metrics.Counter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.scienceminer.glutton.configuration.LookupConfiguration;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class CrossrefJsonReaderTest {
+    private static final String RECORD_1 = "{\"DOI\":\"10.1000/ABC\",\"type\":\"journal-article\"," +
+        "\"reference\":[{\"key\":\"r1\",\"unstructured\":\"A reference\"}],\"abstract\":\"An abstract\"," +
+        "\"indexed\":{\"date-time\":\"2024-02-02T10:00:00Z\"},\"title\":[\"A title\"],\"_id\":{\"$oid\":\"1\"}}";
+    private static final String RECORD_2 = "{\"DOI\":\"10.1000/def\",\"type\":\"journal-article\"," +
+        "\"indexed\":{\"date-time\":\"2024-03-01T00:00:00Z\"},\"volume\":null}";
+    private static final String COMPONENT = "{\"DOI\":\"10.1000/comp\",\"type\":\"component\"," +
+        "\"indexed\":{\"date-time\":\"2024-05-01T00:00:00Z\"}}";
+
+    LookupConfiguration configuration;
+    Counter counterInvalidRecords;
+    List<JsonNode> records;
+
+    @Before
+    public void setUp() {
+        configuration = new LookupConfiguration() {
+            private final Crossref crossref = new Crossref();
+
+            {
+                crossref.setIgnoreCrossrefFields(Arrays.asList("reference", "abstract", "indexed"));
+            }
+
+            @Override
+            public Crossref getCrossref() {
+                return crossref;
+            }
+        };
+        counterInvalidRecords = new Counter();
+        records = new ArrayList<>();
+    }
+
+    @Test
+    public void testJsonl() throws Exception {
+        CrossrefJsonlReader target = new CrossrefJsonlReader(configuration);
+
+        String input = RECORD_1 + "\n" + "{not json" + "\n" + COMPONENT + "\n" + RECORD_2 + "\n";
+        target.load(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), counterInvalidRecords, records::add);
+
+        assertRecords(target);
+    }
+
+    @Test
+    public void testJsonArray() throws Exception {
+        CrossrefJsonArrayReader target = new CrossrefJsonArrayReader(configuration);
+
+        String input = "{\"status\":\"ok\",\"items\":[" + RECORD_1 + "," + COMPONENT + "," + RECORD_2 + "],\"next\":{\"a\":[1]}}";
+        target.load(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), counterInvalidRecords, records::add);
+
+        assertRecords(target);
+    }
+
+    private void assertRecords(CrossrefJsonReader target) {
+        assertThat(records.size(), is(2));
+        assertThat(counterInvalidRecords.getCount() >= 1, is(true));
+
+        JsonNode record = records.get(0);
+        assertThat(record.get("DOI").asText(), is("10.1000/ABC"));
+        assertThat(record.get("title").get(0).asText(), is("A title"));
+        assertThat(record.get("reference"), is(nullValue()));
+        assertThat(record.get("abstract"), is(nullValue()));
+        assertThat(record.get("indexed"), is(nullValue()));
+        assertThat(record.get("_id"), is(nullValue()));
+
+        assertThat(records.get(1).get("volume").isNull(), is(true));
+
+        // the component record is rejected and does not count for the latest indexed date
+        assertThat(target.getLastIndexed(), is(LocalDateTime.of(2024, 3, 1, 0, 0)));
+    }
+}
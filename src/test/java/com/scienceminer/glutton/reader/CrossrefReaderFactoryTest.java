@@ -0,0 +1,62 @@
+package com.scienceminer.glutton.reader;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class CrossrefReaderFactoryTest {
+
+    @Test
+    public void testJsonArray() throws Exception {
+        assertThat(detect("{\"items\":[{\"DOI\":\"10.1000/abc\"}]}"), is(CrossrefReaderFactory.Format.JSON_ARRAY));
+        assertThat(detect("{\n  \"items\" : [\n {\"DOI\":\"10.1000/abc\"}]}"), is(CrossrefReaderFactory.Format.JSON_ARRAY));
+    }
+
+    @Test
+    public void testJsonl() throws Exception {
+        assertThat(detect("{\"DOI\":\"10.1000/abc\"}\n{\"DOI\":\"10.1000/def\"}\n"), is(CrossrefReaderFactory.Format.JSONL));
+        assertThat(detect("{\"items\":\"not an array\"}\n"), is(CrossrefReaderFactory.Format.JSONL));
+    }
+
+    @Test
+    public void testTar() throws Exception {
+        byte[] content = "{\"items\":[]}".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream tarOutput = new TarArchiveOutputStream(output)) {
+            TarArchiveEntry entry = new TarArchiveEntry("0.json");
+            entry.setSize(content.length);
+            tarOutput.putArchiveEntry(entry);
+            tarOutput.write(content);
+            tarOutput.closeArchiveEntry();
+        }
+
+        assertThat(detect(output.toByteArray()), is(CrossrefReaderFactory.Format.TAR));
+    }
+
+    @Test
+    public void testStreamIsReset() throws Exception {
+        String content = "{\"DOI\":\"10.1000/abc\"}\n";
+        InputStream input = new BufferedInputStream(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+
+        CrossrefReaderFactory.detectFormat(input);
+
+        assertThat(new String(input.readAllBytes(), StandardCharsets.UTF_8), is(content));
+    }
+
+    private CrossrefReaderFactory.Format detect(String content) throws Exception {
+        return detect(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private CrossrefReaderFactory.Format detect(byte[] content) throws Exception {
+        return CrossrefReaderFactory.detectFormat(new ByteArrayInputStream(content));
+    }
+}
@@ -0,0 +1,49 @@
+package com.scienceminer.glutton.storage;
+
+import com.scienceminer.glutton.utils.BinarySerialiser;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class KeyEncodingTest {
+
+    private static final String DOI = "10.1070/rc1998v067n04abeh000372";
+
+    @Test
+    public void testEncodeDecode_utf8() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(511);
+        KeyEncoding.UTF8.encode("10.1000/é-ü", buffer);
+        buffer.flip();
+
+        assertThat(KeyEncoding.UTF8.decode(buffer), is("10.1000/é-ü"));
+        assertThat(buffer.remaining(), is("10.1000/é-ü".getBytes("UTF-8").length));
+    }
+
+    @Test
+    public void testEncode_fst_sameAsLegacyKeys() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(511);
+        KeyEncoding.FST.encode(DOI, buffer);
+        buffer.flip();
+
+        byte[] encoded = new byte[buffer.remaining()];
+        buffer.duplicate().get(encoded);
+        assertThat(encoded, is(BinarySerialiser.serialize(DOI)));
+        assertThat(KeyEncoding.FST.decode(buffer), is(DOI));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEncode_utf8_tooLong() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(8);
+        KeyEncoding.UTF8.encode(DOI, buffer);
+    }
+
+    @Test
+    public void testFromName() throws Exception {
+        assertThat(KeyEncoding.fromName("utf8"), is(KeyEncoding.UTF8));
+        assertThat(KeyEncoding.fromName(" FST "), is(KeyEncoding.FST));
+        assertThat(KeyEncoding.fromName(KeyEncoding.UTF8.getName()), is(KeyEncoding.UTF8));
+    }
+}
@@ -0,0 +1,100 @@
+package com.scienceminer.glutton.storage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lmdbjava.Env;
+import org.lmdbjava.EnvFlags;
+import org.lmdbjava.Txn;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class KeyFilterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Env<ByteBuffer> environment;
+    private LmdbStore<String> store;
+    private File filterFile;
+
+    @Before
+    public void setUp() throws Exception {
+        environment = Env.create()
+            .setMapSize(10L * 1024L * 1024L)
+            .setMaxDbs(2)
+            .open(folder.getRoot(), EnvFlags.MDB_NOTLS);
+        store = LmdbStore.open(environment, "test_doi", KeyEncoding.UTF8, ValueCodec.fst());
+        filterFile = new File(folder.getRoot(), "test_doi.bloom");
+    }
+
+    @After
+    public void tearDown() {
+        environment.close();
+    }
+
+    @Test
+    public void testReload_afterWriteOfAnotherStore() throws Exception {
+        KeyFilter keyFilter = awaitReady(new KeyFilter(store, filterFile, 0.01));
+        LmdbStore<String> filteredStore = store.withKeyFilter(keyFilter);
+        put(filteredStore, "10.1000/a");
+        keyFilter.save();
+        assertThat(filterFile.exists(), is(true));
+
+        // write not seen by the filter, as by another process
+        put(store, "10.1000/b");
+        // the filtered store is written again, as by the daily update
+        put(filteredStore, "10.1000/c");
+        keyFilter.save();
+        assertThat(filterFile.exists(), is(false));
+
+        KeyFilter reloadedFilter = awaitReady(new KeyFilter(store, filterFile, 0.01));
+        assertThat(reloadedFilter.mightContain("10.1000/b"), is(true));
+        assertThat(store.withKeyFilter(reloadedFilter).get("10.1000/b"), is("b"));
+    }
+
+    @Test
+    public void testReload_upToDate() throws Exception {
+        KeyFilter keyFilter = awaitReady(new KeyFilter(store, filterFile, 0.01));
+        put(store.withKeyFilter(keyFilter), "10.1000/a");
+        keyFilter.save();
+
+        KeyFilter reloadedFilter = new KeyFilter(store, filterFile, 0.01);
+        // loaded from the file, without rebuild
+        assertThat(reloadedFilter.isReady(), is(true));
+        assertThat(reloadedFilter.mightContain("10.1000/a"), is(true));
+    }
+
+    @Test
+    public void testReload_savedBeforeWriteOfAnotherStore() throws Exception {
+        KeyFilter keyFilter = awaitReady(new KeyFilter(store, filterFile, 0.01));
+        put(store.withKeyFilter(keyFilter), "10.1000/a");
+        keyFilter.save();
+
+        put(store, "10.1000/b");
+
+        KeyFilter reloadedFilter = awaitReady(new KeyFilter(store, filterFile, 0.01));
+        assertThat(reloadedFilter.mightContain("10.1000/b"), is(true));
+    }
+
+    private static void put(LmdbStore<String> store, String doi) {
+        try (Txn<ByteBuffer> txn = store.getEnvironment().txnWrite()) {
+            store.put(txn, doi, doi.substring(doi.length() - 1));
+            txn.commit();
+        }
+    }
+
+    private static KeyFilter awaitReady(KeyFilter keyFilter) throws InterruptedException {
+        for (int i = 0; i < 500 && !keyFilter.isReady(); i++) {
+            Thread.sleep(10);
+        }
+        assertThat(keyFilter.isReady(), is(true));
+        return keyFilter;
+    }
+}
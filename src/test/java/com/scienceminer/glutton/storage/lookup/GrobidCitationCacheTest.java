@@ -0,0 +1,19 @@
+package com.scienceminer.glutton.storage.lookup;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class GrobidCitationCacheTest {
+
+    @Test
+    public void testKey_normalizedReference() throws Exception {
+        String key = GrobidCitationCache.key("Foppiano L. This si the end of the world. J. Appl. Sci. 2016");
+
+        assertThat(key.length(), is(64));
+        assertThat(GrobidCitationCache.key("  foppiano L.  This si the end\nof the world. J. APPL. Sci. 2016 "), is(key));
+        assertThat(GrobidCitationCache.key("Foppiano L. This si the end of the world. J. Appl. Sci. 2017"), is(not(key)));
+    }
+}
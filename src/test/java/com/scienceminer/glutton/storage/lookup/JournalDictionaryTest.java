@@ -0,0 +1,74 @@
+package com.scienceminer.glutton.storage.lookup;
+
+import com.scienceminer.glutton.storage.KeyEncoding;
+import com.scienceminer.glutton.storage.LmdbStore;
+import com.scienceminer.glutton.storage.ValueCodec;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lmdbjava.Env;
+import org.lmdbjava.EnvFlags;
+import org.lmdbjava.Txn;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class JournalDictionaryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Env<ByteBuffer> environment;
+    private LmdbStore<List<String>> store;
+
+    @Before
+    public void setUp() throws Exception {
+        environment = Env.create()
+            .setMapSize(10L * 1024L * 1024L)
+            .setMaxDbs(2)
+            .open(folder.getRoot(), EnvFlags.MDB_NOTLS);
+        store = LmdbStore.open(environment, "test_journals", KeyEncoding.UTF8, ValueCodec.fst());
+    }
+
+    @After
+    public void tearDown() {
+        environment.close();
+    }
+
+    @Test
+    public void testAdd_visibleOnceApplied() throws Exception {
+        JournalDictionary target = new JournalDictionary(store);
+        JournalDictionary.Changes changes = new JournalDictionary.Changes();
+        try (Txn<ByteBuffer> txn = environment.txnWrite()) {
+            target.add(txn, changes, Arrays.asList("naturephysics", "natphys"), Arrays.asList("1745-2473"));
+            target.add(txn, changes, Arrays.asList("naturephysics"), Arrays.asList("1745-2481"));
+            txn.commit();
+        }
+        assertThat(target.getIssns("Nature Physics"), is(Collections.emptyList()));
+
+        target.apply(changes);
+        assertThat(target.getIssns("Nature Physics"), is(Arrays.asList("1745-2473", "1745-2481")));
+        assertThat(target.getIssns("Nat. Phys."), is(Arrays.asList("1745-2473")));
+        assertThat(new JournalDictionary(store).getIssns("Nature Physics"), is(Arrays.asList("1745-2473", "1745-2481")));
+    }
+
+    @Test
+    public void testAdd_abortedTransaction() throws Exception {
+        JournalDictionary target = new JournalDictionary(store);
+        try (Txn<ByteBuffer> txn = environment.txnWrite()) {
+            target.add(txn, new JournalDictionary.Changes(), Arrays.asList("naturephysics"), Arrays.asList("1745-2473"));
+            txn.abort();
+        }
+
+        // the changes of the aborted transaction are dropped, the dictionary is unchanged
+        assertThat(target.getIssns("Nature Physics"), is(Collections.emptyList()));
+        assertThat(target.size(), is(0L));
+    }
+}
@@ -0,0 +1,50 @@
+package com.scienceminer.glutton.storage.lookup;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class JournalKeysTest {
+
+    @Test
+    public void testNormalizeIssn() throws Exception {
+        assertThat(JournalKeys.normalizeIssn("0028-0836"), is("00280836"));
+        assertThat(JournalKeys.normalizeIssn("1234-567x"), is("1234567X"));
+        assertThat(JournalKeys.normalizeIssn("123-456"), is(nullValue()));
+    }
+
+    @Test
+    public void testKeys_recordWithIssn() throws Exception {
+        JsonNode record = new ObjectMapper().readTree("{\"ISSN\": [\"0028-0836\", \"1476-4687\"], " +
+            "\"container-title\": [\"Nature\"], \"volume\": \"521\", \"page\": \"436-444\"}");
+
+        List<String> keys = JournalKeys.keys(record);
+        assertThat(keys.size(), is(2));
+        assertThat(keys.get(0), is(JournalKeys.key("00280836", "521", "436")));
+        assertThat(JournalKeys.titles(record), is(Arrays.asList("nature")));
+    }
+
+    @Test
+    public void testKeys_recordWithoutIssn() throws Exception {
+        JsonNode record = new ObjectMapper().readTree("{\"container-title\": [\"Journal of Things\"], " +
+            "\"short-container-title\": [\"J. Things\"], \"volume\": \"12\", \"page\": \"e1234\"}");
+
+        List<String> keys = JournalKeys.keys(record);
+        assertThat(keys.size(), is(2));
+        assertThat(keys.get(1), is(JournalKeys.key(JournalKeys.titlePart("jthings"), "12", "E1234")));
+    }
+
+    @Test
+    public void testKeys_noPage() throws Exception {
+        JsonNode record = new ObjectMapper().readTree("{\"ISSN\": [\"0028-0836\"], \"volume\": \"521\"}");
+
+        assertThat(JournalKeys.keys(record).size(), is(0));
+    }
+}
@@ -0,0 +1,38 @@
+package com.scienceminer.glutton.storage.lookup;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class TitleAuthorKeysTest {
+
+    @Test
+    public void testNormalize() throws Exception {
+        assertThat(TitleAuthorKeys.normalize("Æsthetic: Café-Études, (2nd ed.)"), is("aestheticcafeetudes2nded"));
+        assertThat(TitleAuthorKeys.normalize("Müller"), is("muller"));
+    }
+
+    @Test
+    public void testKey_sameForVariants() throws Exception {
+        assertThat(TitleAuthorKeys.key("Attention Is All You Need.", "Vaswani"),
+            is(TitleAuthorKeys.key("attention is all you need", "VASWANI")));
+        assertThat(TitleAuthorKeys.key("  --  ", "Vaswani"), is(nullValue()));
+    }
+
+    @Test
+    public void testKeys_crossrefRecord() throws Exception {
+        JsonNode record = new ObjectMapper().readTree("{\"title\": [\"A Study\", \"a study.\"], " + 
+            "\"author\": [{\"given\": \"J.\", \"family\": \"Doe\", \"sequence\": \"additional\"}, " + 
+            "{\"given\": \"Anna\", \"family\": \"Łukasik\", \"sequence\": \"first\"}]}");
+
+        List<String> keys = TitleAuthorKeys.keys(record);
+        assertThat(keys.size(), is(1));
+        assertThat(keys.get(0), is(TitleAuthorKeys.key("A study", "Lukasik")));
+    }
+}
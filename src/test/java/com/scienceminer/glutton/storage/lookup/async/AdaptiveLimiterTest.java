@@ -0,0 +1,70 @@
+package com.scienceminer.glutton.storage.lookup.async;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class AdaptiveLimiterTest {
+
+    @Test
+    public void testRejectBeyondLimit() throws Exception {
+        AdaptiveLimiter target = new AdaptiveLimiter("test", 1, 4, 100, 0.5);
+
+        assertThat(target.getLimit(), is(2));
+        assertThat(target.tryAcquire(), is(1L));
+        assertThat(target.tryAcquire(), is(2L));
+        assertThat(target.tryAcquire(), is(AdaptiveLimiter.REJECTED));
+        assertThat(target.getInFlight(), is(2));
+    }
+
+    @Test
+    public void testIncreaseWhenFastAndUsed() throws Exception {
+        AdaptiveLimiter target = new AdaptiveLimiter("test", 1, 4, 100, 0.5);
+
+        for (int i = 0; i < 20; i++) {
+            long first = target.tryAcquire();
+            long second = target.tryAcquire();
+            target.release(first, 10, false);
+            target.release(second, 10, false);
+        }
+        assertThat(target.getLimit(), is(4));
+    }
+
+    @Test
+    public void testDecreaseWhenSlowOrOverloaded() throws Exception {
+        AdaptiveLimiter target = new AdaptiveLimiter("test", 2, 16, 100, 0.5);
+
+        assertThat(target.getLimit(), is(8));
+        target.release(target.tryAcquire(), 500, false);
+        assertThat(target.getLimit(), is(4));
+        target.release(target.tryAcquire(), 10, true);
+        assertThat(target.getLimit(), is(2));
+        target.release(target.tryAcquire(), 500, false);
+        assertThat(target.getLimit(), is(2));
+    }
+
+    @Test
+    public void testDecreaseOncePerRound() throws Exception {
+        AdaptiveLimiter target = new AdaptiveLimiter("test", 2, 128, 100, 0.5);
+
+        assertThat(target.getLimit(), is(64));
+        List<Long> admissions = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            admissions.add(target.tryAcquire());
+        }
+        // a latency peak slows all the requests in flight
+        for (long admission : admissions) {
+            target.release(admission, 500, false);
+        }
+        assertThat(target.getLimit(), is(32));
+        assertThat(target.getInFlight(), is(0));
+
+        // a request admitted after the decrease can decrease the limit again
+        target.release(target.tryAcquire(), 500, false);
+        assertThat(target.getLimit(), is(16));
+    }
+}
@@ -0,0 +1,30 @@
+package com.scienceminer.glutton.storage.lookup.search;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class SolrSearchBackendTest {
+
+    @Test
+    public void testToSolrQuery_match() throws Exception {
+        BlockingQuery query = new BlockingQuery()
+            .shouldMatch("title", "Attention is all: you need")
+            .shouldMatch("first_author", "Vaswani");
+
+        assertThat(SolrSearchBackend.toSolrQuery(query),
+            is("title:(Attention\\ is\\ all\\:\\ you\\ need) first_author:(Vaswani)"));
+    }
+
+    @Test
+    public void testToSolrQuery_termsAndExists() throws Exception {
+        BlockingQuery query = new BlockingQuery()
+            .mustExist("DOI")
+            .mustTerm("volume", "12")
+            .mustNotTerm("_id", "crossref:10.1/abc");
+
+        assertThat(SolrSearchBackend.toSolrQuery(query),
+            is("+DOI:[* TO *] +volume:12 -id:crossref\\:10.1\\/abc"));
+    }
+}
@@ -0,0 +1,76 @@
+package com.scienceminer.glutton.utils;
+
+import com.scienceminer.glutton.data.IdsGraphData;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class IdsGraphSerialiserTest {
+
+    @Test
+    public void testSerializeDeserialize_allIdentifiers() throws Exception {
+        IdsGraphData ids = new IdsGraphData();
+        ids.setPmid("12345678");
+        ids.setPmcid("PMC1234567");
+        ids.setIstexId("E6CF7ECC9B002E3EA3EC590E7CC8DDBF38655723");
+        ids.setArk("ark:/67375/6H6-N49F7F6G-P");
+        ids.setMesh("D000818");
+        ids.setPii("S0014-5793(01)03313-0");
+        ids.setHalId("hal-01234567");
+        ids.setOaLink("https://hal.science/hal-01234567/document");
+
+        IdsGraphData result = IdsGraphSerialiser.deserialize(IdsGraphSerialiser.serialize(ids));
+
+        assertThat(result.getPmid(), is(ids.getPmid()));
+        assertThat(result.getPmcid(), is(ids.getPmcid()));
+        assertThat(result.getIstexId(), is(ids.getIstexId()));
+        assertThat(result.getArk(), is(ids.getArk()));
+        assertThat(result.getMesh(), is(ids.getMesh()));
+        assertThat(result.getPii(), is(ids.getPii()));
+        assertThat(result.getHalId(), is(ids.getHalId()));
+        assertThat(result.getOaLink(), is(ids.getOaLink()));
+    }
+
+    @Test
+    public void testSerializeDeserialize_someIdentifiers_directBuffer() throws Exception {
+        IdsGraphData ids = new IdsGraphData();
+        ids.setPmcid("PMC1234567");
+        ids.setOaLink("https://www.ncbi.nlm.nih.gov/pmc/articles/PMC1234567/pdf/" + "é".repeat(100));
+
+        byte[] data = IdsGraphSerialiser.serialize(ids);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+        buffer.put(data).flip();
+
+        IdsGraphData result = IdsGraphSerialiser.deserialize(buffer);
+
+        assertThat(result.getPmid(), is(nullValue()));
+        assertThat(result.getPmcid(), is("PMC1234567"));
+        assertThat(result.getHalId(), is(nullValue()));
+        assertThat(result.getOaLink(), is(ids.getOaLink()));
+        assertThat(buffer.position(), is(0));
+    }
+
+    @Test
+    public void testSerialize_empty() throws Exception {
+        byte[] data = IdsGraphSerialiser.serialize(new IdsGraphData());
+
+        assertThat(data.length, is(2));
+        assertThat(IdsGraphSerialiser.deserialize(data).getPmid(), is(nullValue()));
+    }
+
+    @Test(expected = IOException.class)
+    public void testDeserialize_truncated() throws Exception {
+        IdsGraphData ids = new IdsGraphData();
+        ids.setPmid("12345678");
+        byte[] data = IdsGraphSerialiser.serialize(ids);
+
+        byte[] truncated = new byte[data.length - 1];
+        System.arraycopy(data, 0, truncated, 0, truncated.length);
+        IdsGraphSerialiser.deserialize(truncated);
+    }
+}
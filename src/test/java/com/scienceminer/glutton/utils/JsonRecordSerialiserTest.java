@@ -0,0 +1,59 @@
+package com.scienceminer.glutton.utils;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class JsonRecordSerialiserTest {
+
+    private static final String INPUT = "{\"publisher\":\"IOP Publishing\",\"issue\":\"4\",\"type\":\"journal-article\",\"title\":[\"Haloalkenes activated by geminal groups in reactions with N-nucleophiles\"],\"author\":[{\"given\":\"Alexander Yu\",\"family\":\"Rulev\",\"sequence\":\"first\"}],\"container-title\":[\"Успехи химии\"],\"DOI\":\"10.1070/rc1998v067n04abeh000372\"}";
+
+    @Test
+    public void testSerializeDeserialize_compressed() throws Exception {
+        byte[] data = JsonRecordSerialiser.serialize(INPUT, true);
+
+        assertThat(JsonRecordSerialiser.isJsonRecord(data), is(true));
+        assertThat(JsonRecordSerialiser.deserialize(data), is(INPUT));
+    }
+
+    @Test
+    public void testSerializeDeserialize_raw() throws Exception {
+        byte[] data = JsonRecordSerialiser.serialize(INPUT, false);
+
+        assertThat(JsonRecordSerialiser.isJsonRecord(data), is(true));
+        assertThat(JsonRecordSerialiser.deserialize(data), is(INPUT));
+    }
+
+    @Test
+    public void testDeserialize_directBuffer() throws Exception {
+        byte[] data = JsonRecordSerialiser.serialize(INPUT, true);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+        buffer.put(data).flip();
+
+        assertThat(JsonRecordSerialiser.deserializeRecord(buffer), is(INPUT));
+    }
+
+    @Test
+    public void testDeserializeRecord_legacyFormat() throws Exception {
+        byte[] data = BinarySerialiser.serializeAndCompress(INPUT);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+        buffer.put(data).flip();
+
+        assertThat(JsonRecordSerialiser.isJsonRecord(buffer), is(false));
+        assertThat(JsonRecordSerialiser.deserializeRecord(buffer), is(INPUT));
+    }
+
+    @Test
+    public void testDeserializeRecord_notAString() throws Exception {
+        byte[] data = BinarySerialiser.serializeAndCompress(LocalDateTime.now());
+        ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+        buffer.put(data).flip();
+
+        assertThat(JsonRecordSerialiser.deserializeRecord(buffer), is(nullValue()));
+    }
+}
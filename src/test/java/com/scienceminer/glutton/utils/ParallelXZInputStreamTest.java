@@ -0,0 +1,59 @@
+package com.scienceminer.glutton.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.XZOutputStream;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ParallelXZInputStreamTest {
+    File file;
+    String expected;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("glutton", ".xz");
+
+        StringBuilder content = new StringBuilder();
+        try (XZOutputStream output = new XZOutputStream(new FileOutputStream(file), new LZMA2Options())) {
+            for (int block = 0; block < 10; block++) {
+                StringBuilder blockContent = new StringBuilder();
+                for (int i = 0; i < 1000; i++) {
+                    blockContent.append("{\"DOI\":\"10.1000/").append(block).append('-').append(i).append("\"}\n");
+                }
+                output.write(blockContent.toString().getBytes(StandardCharsets.UTF_8));
+                output.endBlock();
+                content.append(blockContent);
+            }
+        }
+        expected = content.toString();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        try (InputStream input = ParallelXZInputStream.open(file, 4)) {
+            assertThat(input instanceof ParallelXZInputStream, is(true));
+            assertThat(new String(input.readAllBytes(), StandardCharsets.UTF_8), is(expected));
+        }
+    }
+
+    @Test
+    public void testSequential() throws Exception {
+        try (InputStream input = ParallelXZInputStream.open(file, 1)) {
+            assertThat(new String(input.readAllBytes(), StandardCharsets.UTF_8), is(expected));
+        }
+    }
+}
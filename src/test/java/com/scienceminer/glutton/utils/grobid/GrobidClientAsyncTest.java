@@ -0,0 +1,31 @@
+package com.scienceminer.glutton.utils.grobid;
+
+import com.scienceminer.glutton.exception.ServiceException;
+import org.junit.Test;
+
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CompletionException;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class GrobidClientAsyncTest {
+
+    @Test
+    public void testIsConnectionFailure_connectionRefused() throws Exception {
+        assertThat(GrobidClientAsync.isConnectionFailure(
+            new ServiceException(502, "Error while connecting to GROBID service", new ConnectException("Connection refused"))), is(true));
+        assertThat(GrobidClientAsync.isConnectionFailure(new CompletionException(
+            new ServiceException(502, "Error while connecting to GROBID service", new NoRouteToHostException()))), is(true));
+    }
+
+    @Test
+    public void testIsConnectionFailure_readTimeout() throws Exception {
+        assertThat(GrobidClientAsync.isConnectionFailure(
+            new ServiceException(502, "Error while connecting to GROBID service", new SocketTimeoutException())), is(false));
+        assertThat(GrobidClientAsync.isConnectionFailure(
+            new ServiceException(502, "Error while connecting to GROBID service. Error code: 503")), is(false));
+    }
+}
@@ -10,6 +10,7 @@ import java.io.InputStream;
 import java.util.List;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.Matchers.hasSize;
 import static org.junit.Assert.*;
 
@@ -61,4 +62,22 @@ public class GrobidResponseStaxHandlerTest {
         assertThat(structures.getAtitle(), is("This si the end of the world"));
         assertThat(structures.getFirstAuthor(), is("Foppiano"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testParsingCitationList_shouldWork() throws Exception {
+        InputStream inputStream = this.getClass().getResourceAsStream("/sample.grobid-list.xml");
+        XMLStreamReader2 reader = (XMLStreamReader2) inputFactory.createXMLStreamReader(inputStream);
+
+        StaxUtils.traverse(reader, target);
+
+        List<GrobidResponseStaxHandler.GrobidResponse> structures = target.getResponses();
+
+        assertThat(structures, hasSize(3));
+        assertThat(structures.get(0).getAtitle(), is("This si the end of the world"));
+        assertThat(structures.get(0).getFirstAuthor(), is("Foppiano"));
+        assertThat(structures.get(0).getYear(), is("2016"));
+        assertThat(structures.get(1).getFirstAuthorMonograph(), is("Gupta"));
+        assertThat(structures.get(1).getYear(), is("2002"));
+        assertThat(structures.get(2).getAtitle(), is(nullValue()));
+    }
+}